@@ -0,0 +1,63 @@
+package com.mujin.productioncycleclient;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Generates SubscribeRobotBridgesState messages shaped like the ones sent by a Mujin controller.
+ */
+final class BenchmarkMessages {
+
+    private BenchmarkMessages() {
+    }
+
+    /**
+     * Generates a subscription message with order queue pointers and location IOs.
+     *
+     * @param numberOfIOs Number of IO values in each of sentiovalues and receivediovalues
+     * @return Subscription message text
+     */
+    static String GenerateMessage(int numberOfIOs) {
+        JSONArray receivedIOValues = new JSONArray();
+        JSONArray sentIOValues = new JSONArray();
+        receivedIOValues.put(new JSONArray(List.of("location1OrderReadPointer", 1)));
+        receivedIOValues.put(new JSONArray(List.of("location1OrderWritePointer", 1)));
+        receivedIOValues.put(new JSONArray(List.of("location1OrderResultReadPointer", 1)));
+        receivedIOValues.put(new JSONArray(List.of("location1OrderResultWritePointer", 1)));
+        sentIOValues.put(new JSONArray(List.of("isRunningProductionCycle", true)));
+        for (int index = 0; index < numberOfIOs; index++) {
+            receivedIOValues.put(new JSONArray(List.of("location" + index + "ContainerId", "c_" + (1700000000000L + index))));
+            switch (index % 3) {
+                case 0:
+                    sentIOValues.put(new JSONArray(List.of("moveInLocation" + index + "Container", index % 2 == 0)));
+                    break;
+                case 1:
+                    sentIOValues.put(new JSONArray(List.of("location" + index + "HasContainer", true)));
+                    break;
+                default:
+                    sentIOValues.put(new JSONArray(List.of("location" + index + "PartSize", new JSONArray(List.of(204, 223, 191)))));
+            }
+        }
+        return Message(receivedIOValues, sentIOValues);
+    }
+
+    /**
+     * Wraps IO values in a subscription data message.
+     *
+     * @param receivedIOValues Array of [ioName, ioValue] pairs
+     * @param sentIOValues     Array of [ioName, ioValue] pairs
+     * @return Subscription message text
+     */
+    static String Message(JSONArray receivedIOValues, JSONArray sentIOValues) {
+        JSONObject state = new JSONObject();
+        state.put("receivediovalues", receivedIOValues);
+        state.put("sentiovalues", sentIOValues);
+        JSONObject message = new JSONObject();
+        message.put("type", "data");
+        message.put("id", "1");
+        message.put("payload", new JSONObject().put("data", new JSONObject().put("SubscribeRobotBridgesState", state)));
+        return message.toString();
+    }
+}
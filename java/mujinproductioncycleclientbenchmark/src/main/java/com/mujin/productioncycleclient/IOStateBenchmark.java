@@ -0,0 +1,56 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Reading IO values published by the subscription, as OrderManager and location handlers do in their loops.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IOStateBenchmark {
+
+    @Param({"50", "500"})
+    public int numberOfIOs; // number of IO values per direction in the published state
+
+    private GraphClient _graphClient = null; // client holding the published state
+
+    @Setup
+    public void Setup() throws Exception {
+        this._graphClient = new GraphClient("http://127.0.0.1", "mujin", "mujin");
+        this._graphClient.DecodeSubscriptionMessage(BenchmarkMessages.GenerateMessage(this.numberOfIOs));
+    }
+
+    @Benchmark
+    public Object GetReceivedIOMap() {
+        Map<String, Object> receivedIOMap = this._graphClient.GetReceivedIOMap();
+        return receivedIOMap.get("location1OrderReadPointer");
+    }
+
+    @Benchmark
+    public Object GetSentIOMap() {
+        Map<String, Object> sentIOMap = this._graphClient.GetSentIOMap();
+        return sentIOMap.get("isRunningProductionCycle");
+    }
+
+    @Benchmark
+    public int GetReceivedInt() {
+        return this._graphClient.GetIOState().GetReceivedInt("location1OrderReadPointer", 0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mujin.productioncycleclient;
+
+import java.util.List;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * GraphTransport answering GraphQL requests in memory like a Mujin controller running a single production
+ * queue that completes every order as soon as its write pointer is advanced. Pointer changes are pushed
+ * back into the client as subscription messages, so the client never touches the network.
+ */
+final class InMemoryController implements GraphTransport {
+
+    private static final byte[] SET_RESPONSE = "{\"data\":{\"CommandRobotBridges\":{\"commandid\":1}}}".getBytes(StandardCharsets.UTF_8);
+
+    private GraphClient _graphClient = null; // client receiving the subscription messages
+    private int _queueLength = 0; // length of the order and result queues
+    private Object[] _orders = null; // order queue entries
+    private JSONObject[] _results = null; // result queue entries
+
+    private int _orderReadPointer = 1; // value of order request read pointer
+    private int _orderWritePointer = 1; // value of order request write pointer
+    private int _resultReadPointer = 1; // value of order result read pointer
+    private int _resultWritePointer = 1; // value of order result write pointer
+
+    InMemoryController(int queueLength) {
+        this._queueLength = queueLength;
+        this._orders = new Object[queueLength];
+        this._results = new JSONObject[queueLength];
+    }
+
+    /**
+     * Attaches the client and publishes the initial pointers.
+     *
+     * @param graphClient Client using this transport
+     */
+    synchronized void Attach(GraphClient graphClient) {
+        this._graphClient = graphClient;
+        this._PublishState();
+    }
+
+    @Override
+    public synchronized byte[] Post(byte[] body) throws Exception {
+        JSONObject request = new JSONObject(new String(body, StandardCharsets.UTF_8));
+        String query = request.getString("query");
+        JSONObject parameters = request.getJSONObject("variables").getJSONObject("parameters");
+
+        if (query.contains("\"SetControllerIOVariables\"")) {
+            JSONArray ioNameValues = parameters.getJSONArray("ioNameValues");
+            for (int index = 0; index < ioNameValues.length(); index++) {
+                JSONArray ioNameValue = ioNameValues.getJSONArray(index);
+                this._SetIO(ioNameValue.getString(0), ioNameValue.get(1));
+            }
+            this._ProcessOrders();
+            this._PublishState();
+            return SET_RESPONSE;
+        }
+
+        JSONObject commandRobotBridges = new JSONObject();
+        commandRobotBridges.put("commandid", 1);
+        if (query.contains("\"GetControllerIOVariables\"")) {
+            JSONArray values = new JSONArray();
+            for (Object ioName : parameters.getJSONArray("parameternames")) {
+                values.put(this._GetIO((String) ioName));
+            }
+            commandRobotBridges.put("parametervalue", values);
+        } else {
+            commandRobotBridges.put("parametervalue", this._GetIO(parameters.getString("parametername")));
+        }
+        return new JSONObject().put("data", new JSONObject().put("CommandRobotBridges", commandRobotBridges)).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void _SetIO(String ioName, Object value) {
+        if (ioName.equals("location1OrderWritePointer")) {
+            this._orderWritePointer = (Integer) value;
+        } else if (ioName.equals("location1OrderResultReadPointer")) {
+            this._resultReadPointer = (Integer) value;
+        } else if (ioName.startsWith("productionQueue1Order[")) {
+            String range = ioName.substring(ioName.indexOf('[') + 1, ioName.indexOf(']'));
+            if (range.contains(":")) {
+                int start = Integer.parseInt(range.substring(0, range.indexOf(':')));
+                JSONArray entries = (JSONArray) value;
+                for (int index = 0; index < entries.length(); index++) {
+                    this._orders[start + index] = entries.get(index);
+                }
+            } else {
+                this._orders[Integer.parseInt(range)] = value;
+            }
+        }
+    }
+
+    private Object _GetIO(String ioName) {
+        if (ioName.equals("productionQueue1Order")) {
+            JSONArray orders = new JSONArray();
+            for (Object order : this._orders) {
+                orders.put(order == null ? JSONObject.NULL : order);
+            }
+            return orders;
+        }
+        if (ioName.startsWith("productionQueue1Result[")) {
+            return this._results[Integer.parseInt(ioName.substring(ioName.indexOf('[') + 1, ioName.indexOf(']')))];
+        }
+        return JSONObject.NULL;
+    }
+
+    /**
+     * Completes all queued orders for which there is room in the result queue.
+     */
+    private void _ProcessOrders() {
+        while (this._orderReadPointer != this._orderWritePointer && this._Increment(this._resultWritePointer) != this._resultReadPointer) {
+            JSONObject order = (JSONObject) this._orders[this._orderReadPointer - 1];
+            JSONObject result = new JSONObject();
+            result.put("orderUniqueId", order.optString("orderUniqueId"));
+            result.put("orderCycleFinishCode", "FinishedNoMoreTargets");
+            result.put("numPutInDestination", order.optInt("orderNumber"));
+            this._results[this._resultWritePointer - 1] = result;
+            this._orderReadPointer = this._Increment(this._orderReadPointer);
+            this._resultWritePointer = this._Increment(this._resultWritePointer);
+        }
+    }
+
+    private int _Increment(int pointerValue) {
+        return pointerValue >= this._queueLength ? 1 : pointerValue + 1;
+    }
+
+    private void _PublishState() {
+        JSONArray receivedIOValues = new JSONArray();
+        receivedIOValues.put(new JSONArray(List.of("location1OrderReadPointer", this._orderReadPointer)));
+        receivedIOValues.put(new JSONArray(List.of("location1OrderWritePointer", this._orderWritePointer)));
+        receivedIOValues.put(new JSONArray(List.of("location1OrderResultReadPointer", this._resultReadPointer)));
+        receivedIOValues.put(new JSONArray(List.of("location1OrderResultWritePointer", this._resultWritePointer)));
+        this._graphClient.DecodeSubscriptionMessage(BenchmarkMessages.Message(receivedIOValues, new JSONArray()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Queuing an order and waiting for its result, dequeued in the background, through OrderManager against an
+ * in-memory controller that completes orders immediately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderManagerBenchmark {
+
+    private OrderManager _orderManager = null; // order manager under test
+    private int _orderCount = 0; // number of queued orders, numbers the unique id of the next order
+
+    @Setup
+    public void Setup() throws Exception {
+        InMemoryController controller = new InMemoryController(10);
+        GraphClient graphClient = new GraphClient("http://127.0.0.1", "mujin", "mujin", controller);
+        controller.Attach(graphClient);
+        this._orderManager = new OrderManager(graphClient, 1);
+        this._orderManager.InitializeOrderPointers(5);
+        this._orderManager.ResetResultPointers();
+    }
+
+    @Benchmark
+    public Map<String, Object> QueueOrderAndDequeueOrderResult() throws Exception {
+        // results are dequeued in the background and matched by orderUniqueId, so every order needs its own
+        this._orderCount++;
+        Map<String, Object> orderEntry = Map.ofEntries(
+            Map.entry("orderUniqueId", "order_" + this._orderCount),
+            Map.entry("orderGroupId", "group_0001"),
+            Map.entry("orderPickContainerId", "c_1700000000000"),
+            Map.entry("orderPlaceContainerId", ""),
+            Map.entry("orderScenarioId", "depallet"),
+            Map.entry("orderType", "picking"),
+            Map.entry("orderNumber", 1),
+            Map.entry("orderInputPartIndex", 0),
+            Map.entry("orderPickLocationName", "location1"),
+            Map.entry("orderPlaceLocationName", "location2"),
+            Map.entry("orderPartWeight", 0),
+            Map.entry("orderPartSizeX", 0),
+            Map.entry("orderPartSizeY", 0),
+            Map.entry("orderPartSizeZ", 0)
+        );
+        return this._orderManager.QueueOrder(orderEntry).get();
+    }
+}
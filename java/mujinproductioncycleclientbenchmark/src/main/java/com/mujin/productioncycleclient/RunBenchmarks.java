@@ -0,0 +1,22 @@
+package com.mujin.productioncycleclient;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that allocation rate is reported next to throughput.
+ * Accepts the regular JMH command line options, e.g. a benchmark name regex or -rf json -rff result.json.
+ */
+public class RunBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Building the request body of SetControllerIOVariables and parsing its response, with a transport that
+ * answers immediately so that only client-side work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetControllerIOVariablesBenchmark {
+
+    private static final byte[] RESPONSE = "{\"data\":{\"CommandRobotBridges\":{\"commandid\":1}}}".getBytes(StandardCharsets.UTF_8);
+
+    private GraphClient _graphClient = null; // client sending the requests
+    private Map<String, Object> _pointerWrite = null; // write pointer update
+    private Map<String, Object> _orderWrite = null; // order entry and write pointer update
+    private Map<String, Object> _locationWrite = null; // location state update
+
+    @Setup
+    public void Setup() throws Exception {
+        this._graphClient = new GraphClient("http://127.0.0.1", "mujin", "mujin", new GraphTransport() {
+            @Override
+            public byte[] Post(byte[] body) {
+                return RESPONSE;
+            }
+
+            @Override
+            public byte[] Post(byte[] body, int length) {
+                return RESPONSE;
+            }
+        });
+        this._pointerWrite = Map.of("location1OrderWritePointer", 3);
+        this._orderWrite = new LinkedHashMap<>();
+        this._orderWrite.put("productionQueue1Order[2]", Map.ofEntries(
+            Map.entry("orderUniqueId", "order_0001"),
+            Map.entry("orderGroupId", "group_0001"),
+            Map.entry("orderPickContainerId", "c_1700000000000"),
+            Map.entry("orderPlaceContainerId", ""),
+            Map.entry("orderScenarioId", "depallet"),
+            Map.entry("orderType", "picking"),
+            Map.entry("orderNumber", 100),
+            Map.entry("orderInputPartIndex", 0),
+            Map.entry("orderPickLocationName", "location1"),
+            Map.entry("orderPlaceLocationName", "location2"),
+            Map.entry("orderPartWeight", 0),
+            Map.entry("orderPartSizeX", 204),
+            Map.entry("orderPartSizeY", 223),
+            Map.entry("orderPartSizeZ", 191),
+            Map.entry("orderPartFullSize", List.of(204, 223, 191))
+        ));
+        this._orderWrite.put("location1OrderWritePointer", 3);
+        this._locationWrite = Map.of("location1ContainerId", "c_1700000000000", "location1HasContainer", true);
+    }
+
+    @Benchmark
+    public void SetPointer() throws Exception {
+        this._graphClient.SetControllerIOVariables(this._pointerWrite);
+    }
+
+    @Benchmark
+    public void SetOrderEntry() throws Exception {
+        this._graphClient.SetControllerIOVariables(this._orderWrite);
+    }
+
+    @Benchmark
+    public void SetLocationState() throws Exception {
+        this._graphClient.SetControllerIOVariables(this._locationWrite);
+    }
+}
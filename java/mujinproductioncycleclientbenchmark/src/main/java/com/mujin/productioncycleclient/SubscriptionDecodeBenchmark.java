@@ -0,0 +1,49 @@
+package com.mujin.productioncycleclient;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Decoding and publishing a subscription message, the work done by the subscription for every text frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionDecodeBenchmark {
+
+    @Param({"50", "500"})
+    public int numberOfIOs; // number of IO values per direction in the message
+
+    @Param({"false", "true"})
+    public boolean isFiltered; // whether only the order pointers are registered as interesting
+
+    private GraphClient _graphClient = null; // client decoding the messages
+    private String _message = null; // subscription message text
+
+    @Setup
+    public void Setup() throws Exception {
+        this._graphClient = new GraphClient("http://127.0.0.1", "mujin", "mujin");
+        new OrderManager(this._graphClient, 1);
+        this._graphClient.SetIONameFilterEnabled(this.isFiltered);
+        this._message = BenchmarkMessages.GenerateMessage(this.numberOfIOs);
+    }
+
+    @Benchmark
+    public String DecodeSubscriptionMessage() {
+        return this._graphClient.DecodeSubscriptionMessage(this._message);
+    }
+}
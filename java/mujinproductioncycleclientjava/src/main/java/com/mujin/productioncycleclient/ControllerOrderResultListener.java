@@ -0,0 +1,20 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+
+/**
+ * Listener notified of order results dequeued from any controller of a ControllerPool.
+ */
+@FunctionalInterface
+public interface ControllerOrderResultListener {
+
+    /**
+     * Called for every dequeued result. Results of the same production queue are delivered one at a time, in
+     * queue order.
+     * 
+     * @param controller  Controller the result was read from
+     * @param queueIndex  1-based index of the production queue the result was read from
+     * @param resultEntry Order result information
+     */
+    void OnOrderResult(PooledController controller, int queueIndex, Map<String, Object> resultEntry);
+}
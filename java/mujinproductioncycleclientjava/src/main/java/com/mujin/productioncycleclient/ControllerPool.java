@@ -0,0 +1,283 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.logging.Logger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Spreads orders over several Mujin controllers. Each controller has its own GraphClient, so its own
+ * subscription and transport, and a MultiQueueOrderManager for its production queues. Orders are placed on
+ * healthy controllers by a PlacementStrategy, and results of all controllers are delivered to one
+ * ControllerOrderResultListener. A controller is healthy while its subscription delivers fresh IO state.
+ */
+public class ControllerPool {
+
+    private final CopyOnWriteArrayList<PooledController> _controllers = new CopyOnWriteArrayList<>(); // controllers in the order they were added
+    private volatile PlacementStrategy _placementStrategy = PlacementStrategy.LeastLoaded(); // chooses the controller of an order
+    private volatile long _maxMessageAgeMillis = 20000; // controllers are unhealthy when the subscription is silent for longer
+    private volatile ControllerOrderResultListener _resultListener = null; // receives the results of all controllers
+
+    private final MetricsRegistry _metrics = new MetricsRegistry(); // metrics of the pool
+    private final Counter _placedOrders = this._metrics.GetCounter("controllerpool.placedOrders"); // orders placed on any controller
+    private final Counter _rejectedOrders = this._metrics.GetCounter("controllerpool.rejectedOrders"); // orders rejected without a healthy controller
+
+    private static final Logger log = Logger.getLogger(ControllerPool.class.getName());
+
+    public ControllerPool() {
+        this._metrics.RegisterGauge("controllerpool.controllers", () -> this._controllers.size());
+        this._metrics.RegisterGauge("controllerpool.healthyControllers", () -> this.GetHealthyControllers().size());
+        this._metrics.RegisterGauge("controllerpool.orderLoad", () -> {
+            long orderLoad = 0;
+            for (PooledController controller : this._controllers) {
+                orderLoad += controller.GetOrderLoad();
+            }
+            return orderLoad;
+        });
+    }
+
+    /**
+     * Adds a controller to the pool. Orders are placed on it once Start succeeds for it.
+     *
+     * @param name         Name of the controller, unique in the pool
+     * @param url          URL of the Mujin controller
+     * @param username     Username to login with
+     * @param password     Password to login with
+     * @param queueIndices 1-based indices of the production queues to drive
+     * @return Added controller
+     * @throws Exception If the name is already used or the URL is invalid
+     */
+    public synchronized PooledController AddController(String name, String url, String username, String password, int... queueIndices) throws Exception {
+        if (this.GetController(name) != null) {
+            throw new Exception("Controller " + name + " is already in the pool");
+        }
+        GraphClient graphClient = new GraphClient(url, username, password);
+        String metricPrefix = "controllerpool.controller." + name + ".";
+        PooledController controller = new PooledController(
+            name,
+            graphClient,
+            new MultiQueueOrderManager(graphClient, queueIndices),
+            this._metrics.GetCounter(metricPrefix + "placedOrders")
+        );
+        controller.SetMaxMessageAgeMillis(this._maxMessageAgeMillis);
+        this._metrics.RegisterGauge(metricPrefix + "healthy", () -> controller.IsHealthy() ? 1 : 0);
+        this._metrics.RegisterGauge(metricPrefix + "orderLoad", controller::GetOrderLoad);
+        this._metrics.RegisterGauge(metricPrefix + "lastMessageAgeMillis", graphClient::GetLastSubscriptionMessageAgeMillis);
+        this._controllers.add(controller);
+        return controller;
+    }
+
+    /**
+     * @param name Name of the controller
+     * @return Controller with the name, or null if there is none
+     */
+    public PooledController GetController(String name) {
+        for (PooledController controller : this._controllers) {
+            if (controller.GetName().equals(name)) {
+                return controller;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return All controllers in the order they were added
+     */
+    public List<PooledController> GetControllers() {
+        return List.copyOf(this._controllers);
+    }
+
+    /**
+     * @return Controllers orders can be placed on, in the order they were added
+     */
+    public List<PooledController> GetHealthyControllers() {
+        List<PooledController> healthyControllers = new ArrayList<>();
+        for (PooledController controller : this._controllers) {
+            if (controller.IsHealthy()) {
+                healthyControllers.add(controller);
+            }
+        }
+        return healthyControllers;
+    }
+
+    /**
+     * Sets how orders are placed on controllers
+     *
+     * @param placementStrategy Strategy to use
+     */
+    public void SetPlacementStrategy(PlacementStrategy placementStrategy) {
+        this._placementStrategy = placementStrategy;
+    }
+
+    /**
+     * Sets how long a controller may go without subscription messages before it is considered unhealthy.
+     *
+     * @param maxMessageAgeMillis Milliseconds since the last subscription message
+     */
+    public void SetMaxMessageAgeMillis(long maxMessageAgeMillis) {
+        this._maxMessageAgeMillis = maxMessageAgeMillis;
+        for (PooledController controller : this._controllers) {
+            controller.SetMaxMessageAgeMillis(maxMessageAgeMillis);
+        }
+    }
+
+    /**
+     * Subscribes to all controllers not started yet, initializes their order pointers, clears their result
+     * queues and starts dequeuing their results. Controllers are started concurrently. A controller that fails
+     * to start stays out of placement and is retried on the next call.
+     *
+     * @param timeout        Number of seconds to wait for the order pointers of each controller
+     * @param resultListener Listener receiving the results of all controllers
+     * @return Number of started controllers
+     * @throws Exception If the calling thread is interrupted
+     */
+    public int Start(long timeout, ControllerOrderResultListener resultListener) throws Exception {
+        this._resultListener = resultListener;
+        List<CompletableFuture<Void>> starts = new ArrayList<>();
+        for (PooledController controller : this._controllers) {
+            if (controller.IsStarted()) {
+                continue;
+            }
+            GraphClient graphClient = controller.GetGraphClient();
+            starts.add(graphClient.SupplyAsync(() -> {
+                graphClient.SubscribeRobotBridgesState();
+                MultiQueueOrderManager orderManager = controller.GetOrderManager();
+                orderManager.InitializeOrderPointers(timeout);
+                orderManager.ResetResultPointers();
+                orderManager.StartDequeueOrderResults((queueIndex, resultEntry) -> {
+                    ControllerOrderResultListener listener = this._resultListener;
+                    if (listener != null) {
+                        listener.OnOrderResult(controller, queueIndex, resultEntry);
+                    }
+                });
+                controller.SetStarted(true);
+                return null;
+            }).handle((ignored, e) -> {
+                if (e != null) {
+                    log.warning("Failed to start controller " + controller.GetName() + ": " + e.toString());
+                    graphClient.UnsubscribeRobotBridgesState();
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(starts.toArray(new CompletableFuture<?>[0])).get();
+
+        int numberOfStarted = 0;
+        for (PooledController controller : this._controllers) {
+            if (controller.IsStarted()) {
+                numberOfStarted++;
+            }
+        }
+        return numberOfStarted;
+    }
+
+    /**
+     * Stops dequeuing results and closes the subscriptions of all controllers.
+     */
+    public void Stop() {
+        for (PooledController controller : this._controllers) {
+            controller.SetStarted(false);
+            controller.GetOrderManager().StopDequeueOrderResults();
+            controller.GetGraphClient().UnsubscribeRobotBridgesState();
+        }
+        this._resultListener = null;
+    }
+
+    /**
+     * Places an order on a healthy controller chosen by the placement strategy and queues it there.
+     *
+     * @param orderEntry Order information to queue to the system
+     * @return Future completed with the chosen controller when the order is written to its order queue
+     */
+    public CompletableFuture<PooledController> QueueOrderAsync(Map<String, Object> orderEntry) {
+        List<PooledController> healthyControllers = this.GetHealthyControllers();
+        if (healthyControllers.isEmpty()) {
+            this._rejectedOrders.Increment();
+            return CompletableFuture.failedFuture(new Exception("No healthy controller to queue order " + orderEntry.get("orderUniqueId")));
+        }
+        PooledController controller = this._placementStrategy.Place(orderEntry, healthyControllers);
+        controller.RecordPlacedOrder();
+        this._placedOrders.Increment();
+        return controller.GetOrderManager().QueueOrderAsync(orderEntry).thenApply(queueIndex -> controller);
+    }
+
+    /**
+     * Places multiple orders and queues them. Orders placed on the same controller are written together as
+     * in MultiQueueOrderManager.QueueOrders. Orders placed earlier in the batch count towards the order load
+     * of their controller, so that the strategy spreads the batch.
+     *
+     * @param orderEntries Order information to queue to the system
+     * @return One future per order entry, completed with the chosen controller when the entry is written
+     */
+    public List<CompletableFuture<PooledController>> QueueOrders(List<Map<String, Object>> orderEntries) {
+        List<CompletableFuture<PooledController>> futures = new ArrayList<>();
+        List<PooledController> healthyControllers = this.GetHealthyControllers();
+        Map<PooledController, List<Integer>> placedIndices = new LinkedHashMap<>();
+        try {
+            for (int index = 0; index < orderEntries.size(); index++) {
+                futures.add(null);
+                if (healthyControllers.isEmpty()) {
+                    this._rejectedOrders.Increment();
+                    futures.set(index, CompletableFuture.failedFuture(new Exception("No healthy controller to queue order " + orderEntries.get(index).get("orderUniqueId"))));
+                    continue;
+                }
+                PooledController controller = this._placementStrategy.Place(orderEntries.get(index), healthyControllers);
+                controller.RecordPlacedOrder();
+                controller.AddPlacingOrders(1);
+                this._placedOrders.Increment();
+                placedIndices.computeIfAbsent(controller, ignored -> new ArrayList<>()).add(index);
+            }
+        } catch (RuntimeException e) {
+            for (Map.Entry<PooledController, List<Integer>> placed : placedIndices.entrySet()) {
+                placed.getKey().AddPlacingOrders(-placed.getValue().size());
+            }
+            throw e;
+        }
+
+        for (Map.Entry<PooledController, List<Integer>> placed : placedIndices.entrySet()) {
+            PooledController controller = placed.getKey();
+            List<Map<String, Object>> controllerOrderEntries = new ArrayList<>();
+            for (int index : placed.getValue()) {
+                controllerOrderEntries.add(orderEntries.get(index));
+            }
+            List<CompletableFuture<Integer>> controllerFutures = null;
+            try {
+                controllerFutures = controller.GetOrderManager().QueueOrders(controllerOrderEntries);
+            } finally {
+                // the order manager counts the orders as pending from here on
+                controller.AddPlacingOrders(-controllerOrderEntries.size());
+            }
+            for (int position = 0; position < controllerFutures.size(); position++) {
+                futures.set(placed.getValue().get(position), controllerFutures.get(position).thenApply(queueIndex -> controller));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * @return Metrics of the pool: placed and rejected orders, health and order load, overall and per controller
+     */
+    public MetricsRegistry GetMetrics() {
+        return this._metrics;
+    }
+
+    /**
+     * Reads the metrics of the pool together with the client metrics of every controller, which are prefixed
+     * with the controller name.
+     *
+     * @return Current metric values keyed by name, sorted by name
+     */
+    public Map<String, Number> SnapshotAll() {
+        Map<String, Number> snapshot = new TreeMap<>(this._metrics.Snapshot());
+        for (PooledController controller : this._controllers) {
+            controller.GetGraphClient().GetMetrics().Snapshot().forEach((name, value) -> {
+                snapshot.put(controller.GetName() + "." + name, value);
+            });
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,34 @@
+package com.mujin.productioncycleclient;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free monotonically increasing counter.
+ */
+public final class Counter {
+
+    private final LongAdder _value = new LongAdder(); // current count, striped across threads under contention
+
+    /**
+     * Increments the counter by one.
+     */
+    public void Increment() {
+        this._value.increment();
+    }
+
+    /**
+     * Increments the counter.
+     * 
+     * @param amount Amount to add
+     */
+    public void Add(long amount) {
+        this._value.add(amount);
+    }
+
+    /**
+     * @return Current count
+     */
+    public long Get() {
+        return this._value.sum();
+    }
+}
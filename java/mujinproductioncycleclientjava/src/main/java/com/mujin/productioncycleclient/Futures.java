@@ -0,0 +1,31 @@
+package com.mujin.productioncycleclient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for blocking on futures completed by the client.
+ */
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Blocks until the future completes and rethrows the original failure instead of an ExecutionException.
+     * 
+     * @param future Future to wait for
+     * @return Value of the future
+     * @throws Exception If the future completed exceptionally or the wait was interrupted
+     */
+    static <T> T Get(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
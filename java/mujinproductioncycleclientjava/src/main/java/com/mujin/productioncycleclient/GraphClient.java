@@ -1,39 +1,92 @@
 package com.mujin.productioncycleclient;
 
-import java.io.OutputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URI;
-import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.Base64;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashSet;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.logging.Logger;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
-
-import com.neovisionaries.ws.client.WebSocket;
-import com.neovisionaries.ws.client.WebSocketFrame;
-import com.neovisionaries.ws.client.WebSocketAdapter;
-import com.neovisionaries.ws.client.WebSocketFactory;
+import org.json.JSONException;
 
 public class GraphClient {
 
+    private static final GraphRequestTemplate SET_IO_VARIABLES_TEMPLATE = new GraphRequestTemplate("""
+            mutation SetControllerIOVariables($parameters: Any!) {
+                CommandRobotBridges(command: \"SetControllerIOVariables\", parameters: $parameters)
+            }
+        """, "ioNameValues"); // request of SetControllerIOVariables
+    private static final GraphRequestTemplate GET_IO_VARIABLES_TEMPLATE = new GraphRequestTemplate("""
+            mutation GetControllerIOVariables($parameters: Any!) {
+                CommandRobotBridges(command: \"GetControllerIOVariables\", parameters: $parameters)
+            }
+        """, "parameternames"); // request of GetControllerIOVariables
+    private static final GraphRequestTemplate GET_IO_VARIABLE_TEMPLATE = new GraphRequestTemplate("""
+            mutation GetControllerIOVariable($parameters: Any!) {
+                CommandRobotBridges(command: \"GetControllerIOVariable\", parameters: $parameters)
+            }
+        """, "parametername"); // request of GetControllerIOVariable
+
     private URL _url = null; // passed in url of mujin controller
     private URL _graphEndpoint = null; // URL to http GraphQL endpoint on Mujin controller
 
     private Map<String, String> _headers = null; // request headers information
     private Map<String, String> _cookies = null; // request cookies information
-
-    public Map<String, Object> robotBridgeState = null; // storing last received RobotBridgesState from subscription
+    private GraphTransport _transport = null; // transport used for all GraphQL requests
+    private final MetricsRegistry _metrics = new MetricsRegistry(); // metrics of the client hot paths
+    private final RequestMetrics _setIOMetrics = new RequestMetrics(this._metrics, "SetControllerIOVariables"); // metrics of IO writes
+    private final RequestMetrics _getIOMetrics = new RequestMetrics(this._metrics, "GetControllerIOVariable"); // metrics of single IO reads
+    private final RequestMetrics _getIOsMetrics = new RequestMetrics(this._metrics, "GetControllerIOVariables"); // metrics of batched IO reads
+    private final Counter _subscriptionMessages = this._metrics.GetCounter("graphclient.subscription.messages"); // number of received subscription messages
+    private final Histogram _subscriptionDecodeNanos = this._metrics.GetHistogram("graphclient.subscription.decodeNanos"); // time to decode and publish a subscription message
+    private volatile IOReadBatcher _readBatcher = null; // merges concurrent single IO reads, null when disabled
+    private final IOReadCache _readCache = new IOReadCache(this._metrics, 256, () -> this._ioState); // caches reads of IO names configured with SetReadCacheTTL
+    private IOWriteBatcher _writeBatcher = null; // merges IO writes from all threads into batches
+    private volatile Executor _executor = null; // runs the blocking work behind the asynchronous API
+    private volatile TrafficRecorder _trafficRecorder = null; // records subscription messages and requests, null when not recording
+
+    private volatile IOState _ioState = IOState.EMPTY; // last received RobotBridgesState from subscription, indexed
+    private final IOStateDecoder _ioStateDecoder = new IOStateDecoder(); // decodes subscription messages
+    private final Set<String> _registeredIONames = new HashSet<>(); // IO name patterns kept by the IO name filter
+    private boolean _isIONameFilterEnabled = false; // whether to skip IO names that are not registered, guarded by _registeredIONames
+    private final IOChangeDispatcher _ioChangeDispatcher = new IOChangeDispatcher(this); // notifies IO change listeners
+    private RobotBridgesStateSubscription _subscription = null; // supervised IO subscription
+    private final Object _publishLock = new Object(); // serializes publishing of IO state snapshots
+    private final Set<Thread> _ioStateWaiters = ConcurrentHashMap.newKeySet(); // threads waiting in AwaitIO
+    private volatile WaitStrategy _waitStrategy = WaitStrategy.SPIN_THEN_PARK; // how AwaitIO waits for new IO state
 
     private static final Logger log = Logger.getLogger(GraphClient.class.getName());
 
     public GraphClient(String url, String username, String password) throws Exception {
+        this(url, username, password, null);
+    }
+
+    /**
+     * @param url       URL of the Mujin controller
+     * @param username  Username to login with
+     * @param password  Password to login with
+     * @param transport Transport used for GraphQL requests. If null, a pooled HttpGraphTransport is created.
+     * @throws Exception If the URL is invalid
+     */
+    public GraphClient(String url, String username, String password, GraphTransport transport) throws Exception {
         this._url = new URL(url);
         this._graphEndpoint = new URL(
             this._url.getProtocol(),
@@ -53,126 +106,518 @@ public class GraphClient {
         this._cookies = Map.of(
             "csrftoken", "token"
         );
+
+        if (transport == null) {
+            transport = new HttpGraphTransport(this._graphEndpoint.toURI(), this._headers, this._cookies);
+        }
+        this._transport = transport;
+        this._writeBatcher = new IOWriteBatcher(this, 0, 256);
+        this._executor = _CreateDefaultExecutor();
+
+        // replace the url protocol
+        URI websocketUri = this._graphEndpoint.toURI();
+        websocketUri = new URI(
+            "ws",
+            websocketUri.getUserInfo(),
+            websocketUri.getHost(),
+            websocketUri.getPort(),
+            websocketUri.getPath(),
+            websocketUri.getQuery(),
+            websocketUri.getFragment()
+        );
+        this._subscription = new RobotBridgesStateSubscription(this, websocketUri, this._headers);
+        this._metrics.RegisterGauge("graphclient.subscription.lastMessageAgeMillis", this::GetLastSubscriptionMessageAgeMillis);
+        this._metrics.RegisterGauge("graphclient.subscription.lastRecoveryMillis", this._subscription::GetLastRecoveryMillis);
+        this._metrics.RegisterGauge("graphclient.subscription.stale", () -> this._ioState.IsStale() ? 1 : 0);
+        if (this._transport instanceof HttpGraphTransport) {
+            HttpGraphTransport httpTransport = (HttpGraphTransport) this._transport;
+            this._metrics.RegisterGauge("graphclient.http.responseWireBytes", httpTransport::GetResponseWireBytes);
+            this._metrics.RegisterGauge("graphclient.http.responseBytes", httpTransport::GetResponseBytes);
+        }
+    }
+
+    /**
+     * Creates the default executor for the asynchronous API. Uses a virtual thread per task when running on
+     * Java 21 or later, and falls back to a cached pool of daemon platform threads otherwise.
+     * 
+     * @return Executor for asynchronous operations
+     */
+    private static Executor _CreateDefaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // virtual threads are not available on this runtime
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "GraphClient-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets the executor running the blocking work behind the asynchronous API
+     * 
+     * @param executor Executor for asynchronous operations
+     */
+    public void SetExecutor(Executor executor) {
+        this._executor = executor;
+    }
+
+    /**
+     * @return Executor running the blocking work behind the asynchronous API
+     */
+    public Executor GetExecutor() {
+        return this._executor;
+    }
+
+    /**
+     * Runs a blocking operation on the client executor.
+     * 
+     * @param operation Operation to run
+     * @return Future completed with the result of the operation
+     */
+    public <T> CompletableFuture<T> SupplyAsync(Callable<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this._executor.execute(() -> {
+            try {
+                future.complete(operation.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sends a request body written from a template through the transport and releases the writer.
+     * 
+     * @param requestMetrics Metrics of the kind of request
+     * @param template       Template the body was started with
+     * @param writer         Writer holding the body up to the end of the parameter value
+     * @return Raw response body
+     * @throws Exception If the request fails
+     */
+    private String _ExecuteRequest(RequestMetrics requestMetrics, GraphRequestTemplate template, RequestBodyWriter writer) throws Exception {
+        // send the request, the transport does not keep the pooled buffer
+        long startNanos = System.nanoTime();
+        int requestLength = 0;
+        byte[] responseBody = null;
+        TrafficRecorder trafficRecorder = this._trafficRecorder;
+        try {
+            template.End(writer);
+            requestLength = writer.GetLength();
+            responseBody = this._transport.Post(writer.GetBytes(), requestLength);
+            if (trafficRecorder != null) {
+                // record before the pooled buffer is released
+                trafficRecorder.RecordRequest(writer.GetBytes(), requestLength, responseBody, System.nanoTime() - startNanos);
+            }
+        } catch (Exception e) {
+            requestMetrics.RecordError();
+            if (trafficRecorder != null) {
+                trafficRecorder.RecordFailedRequest(writer.GetBytes(), requestLength, e, System.nanoTime() - startNanos);
+            }
+            throw e;
+        } finally {
+            writer.Release();
+        }
+        requestMetrics.RecordRequest(System.nanoTime() - startNanos, requestLength, responseBody.length);
+        return new String(responseBody, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts or stops recording the IO traffic of this client: subscription messages, losses of the
+     * subscription, and GraphQL requests with their responses. Set the recorder before subscribing to record
+     * the whole session, so that the log can be played back with a TrafficReplayer.
+     * 
+     * @param trafficRecorder Recorder to write the traffic to, or null to stop recording. Closed by the caller.
+     */
+    public void SetTrafficRecorder(TrafficRecorder trafficRecorder) {
+        this._trafficRecorder = trafficRecorder;
+    }
+
+    /**
+     * @return Registry holding the metrics of this client and of the order managers using it
+     */
+    public MetricsRegistry GetMetrics() {
+        return this._metrics;
+    }
+
+    /**
+     * Returns the last IO state snapshot published by the subscription
+     * 
+     * @return Immutable IO state snapshot, never null
+     */
+    public IOState GetIOState() {
+        return this._ioState;
     }
 
     /**
      * Returns the received IO values from Mujin controller state
      * 
-     * @return A map received IO values
+     * @return A read-only map received IO values
      */
     public Map<String, Object> GetReceivedIOMap() {
-        if (this.robotBridgeState == null) {
-            return new HashMap<>();
-        }
-        // convert to the required format
-        Map<String, Object> result = new HashMap<String, Object>();
-        Object receivedIOValuesObject = this.robotBridgeState.getOrDefault("receivediovalues", new ArrayList<>());
-        List<List<Object>> receivedIOValues = (List<List<Object>>) receivedIOValuesObject;
-        for (List<Object> ioValue : receivedIOValues) {
-            String key = (String) ioValue.get(0);
-            Object value = ioValue.get(1);
-            result.put(key, value);
-        }
-        return result;
+        return this._ioState.GetReceivedIOMap();
     }
 
     /**
      * Returns the sent IO values from Mujin controller state
      * 
-     * @return A map sent IO values
+     * @return A read-only map sent IO values
      */
     public Map<String, Object> GetSentIOMap() {
-        if (this.robotBridgeState == null) {
-            return new HashMap<>();
-        }
-        // convert to the required format
-        Map<String, Object> result = new HashMap<String, Object>();
-        Object sentIOValuesObject = this.robotBridgeState.getOrDefault("sentiovalues", new ArrayList<>());
-        List<List<Object>> sentIOValues = (List<List<Object>>) sentIOValuesObject;
-        for (List<Object> ioValue : sentIOValues) {
-            String key = (String) ioValue.get(0);
-            Object value = ioValue.get(1);
-            result.put(key, value);
-        }
-        return result;
+        return this._ioState.GetSentIOMap();
     }
 
     /**
-     * Subscribes to IO changes on Mujin controller.
+     * Registers IO names whose values should be kept from subscription messages when the IO name filter is
+     * enabled. Patterns ending with '*' match IO names by prefix.
      * 
-     * @throws Exception If subscription fails
+     * @param ioNamePatterns IO names or prefix patterns
      */
-    public void SubscribeRobotBridgesState() throws Exception {
-        // subscribes to IO changes on Mujin controller.
-        String query = """
-            subscription {
-                SubscribeRobotBridgesState {
-                    sentiovalues
-                    receivediovalues
+    public void RegisterIONames(String... ioNamePatterns) {
+        synchronized (this._registeredIONames) {
+            this._registeredIONames.addAll(Arrays.asList(ioNamePatterns));
+            this._UpdateIONameFilter();
+        }
+    }
+
+    /**
+     * @param ioName IO name
+     * @return Whether the IO name was registered with RegisterIONames, by name or by a prefix pattern
+     */
+    boolean IsIONameRegistered(String ioName) {
+        synchronized (this._registeredIONames) {
+            for (String ioNamePattern : this._registeredIONames) {
+                if (ioNamePattern.endsWith("*") ? ioName.startsWith(ioNamePattern.substring(0, ioNamePattern.length() - 1)) : ioName.equals(ioNamePattern)) {
+                    return true;
                 }
             }
-        """;
+            return false;
+        }
+    }
 
-        // replace the url protocol
-        URI websocketUri = this._graphEndpoint.toURI();
-        websocketUri = new URI(
-            "ws",
-            websocketUri.getUserInfo(),
-            websocketUri.getHost(),
-            websocketUri.getPort(),
-            websocketUri.getPath(),
-            websocketUri.getQuery(),
-            websocketUri.getFragment()
-        );
+    /**
+     * Enables or disables the IO name filter. When enabled, the subscription only decodes values of IO names
+     * registered with RegisterIONames and skips everything else. Disabled by default.
+     * 
+     * @param enabled Whether to filter IO values by registered IO names
+     */
+    public void SetIONameFilterEnabled(boolean enabled) {
+        synchronized (this._registeredIONames) {
+            this._isIONameFilterEnabled = enabled;
+            this._UpdateIONameFilter();
+        }
+    }
 
-        // create the client for executing the subscription
-        WebSocket webSocket = new WebSocketFactory().createSocket(websocketUri);
-        // add the headers
-        this._headers.forEach((key, value) -> {
-            webSocket.addHeader(key, value);
-        });
-        // add the listener
-        webSocket.addListener(new WebSocketAdapter() {
-            @Override
-            public void onConnected(WebSocket webSocket, Map<String, List<String>> headers) throws Exception {
-                // send the WebSocket connection initialization request
-                JSONObject init = new JSONObject();
-                init.put("type", "connection_init");
-                init.put("payload", new JSONObject());
-                webSocket.sendText(init.toString());
-
-                // start a new subscription on the WebSocket connection
-                JSONObject payload = new JSONObject();
-                payload.put("query", query);
-                JSONObject start = new JSONObject();
-                start.put("type", "start");
-                start.put("payload", payload);
-                webSocket.sendText(start.toString());
+    private void _UpdateIONameFilter() {
+        this._ioStateDecoder.SetIONameFilter(this._isIONameFilterEnabled ? new ArrayList<>(this._registeredIONames) : null);
+    }
+
+    /**
+     * Decodes a subscription message carrying IO values and publishes it as a new snapshot
+     * 
+     * @param message Subscription message text
+     * @return Type of the message
+     */
+    String DecodeSubscriptionMessage(String message) {
+        long startNanos = System.nanoTime();
+        this._subscriptionMessages.Increment();
+        TrafficRecorder trafficRecorder = this._trafficRecorder;
+        if (trafficRecorder != null) {
+            trafficRecorder.RecordSubscriptionMessage(message);
+        }
+        // size the maps after the previous snapshot to avoid rehashing
+        IOState previousState = this._ioState;
+        Map<String, Object> receivedIOMap = new HashMap<>(previousState.GetReceivedIOMap().size() * 4 / 3 + 1);
+        Map<String, Object> sentIOMap = new HashMap<>(previousState.GetSentIOMap().size() * 4 / 3 + 1);
+        String messageType = this._ioStateDecoder.Decode(message, receivedIOMap, sentIOMap);
+        if (this._ioStateDecoder.HasIOValues()) {
+            this._PublishIOState(receivedIOMap, sentIOMap);
+        }
+        this._subscriptionDecodeNanos.Record(System.nanoTime() - startNanos);
+        return messageType;
+    }
+
+    /**
+     * @return Whether the last decoded subscription message contained IO values
+     */
+    boolean HasDecodedIOValues() {
+        return this._ioStateDecoder.HasIOValues();
+    }
+
+    /**
+     * @return True if the IO state does not reflect the controller state, e.g. while the subscription is reconnecting
+     */
+    public boolean IsIOStateStale() {
+        return this._ioState.IsStale();
+    }
+
+    /**
+     * Republishes the current IO values marked as stale, waking up waiters so that they can re-check their
+     * conditions.
+     */
+    void PublishStaleIOState() {
+        synchronized (this._publishLock) {
+            IOState ioState = this._ioState;
+            if (ioState.IsStale()) {
+                return;
+            }
+            TrafficRecorder trafficRecorder = this._trafficRecorder;
+            if (trafficRecorder != null) {
+                trafficRecorder.RecordStale();
             }
+            this._ioState = ioState.AsStale(ioState.GetSequence() + 1);
+            // changes made while disconnected are never seen, so cached reads cannot be trusted anymore
+            this._readCache.InvalidateAll();
+            this._WakeUpWaiters();
+        }
+    }
 
-            @Override
-            public void onTextMessage(WebSocket webSocket, String message) throws Exception {
-                // read incoming messages
-                JSONObject response = new JSONObject(message);
-                if (response.getString("type").equals("connection_ack")) {
-                    log.info("Received connection_ack");
-                } else if (response.getString("type").equals("connection_ack")) {
-                    // received keep-alive "ka" message
-                } else {
-                    // update with response robotBridgeState
-                    GraphClient.this.robotBridgeState = response
-                            .getJSONObject("payload")
-                            .getJSONObject("data")
-                            .getJSONObject("SubscribeRobotBridgesState")
-                            .toMap();
-                }
+    private void _WakeUpWaiters() {
+        if (!this._ioStateWaiters.isEmpty()) {
+            for (Thread waiter : this._ioStateWaiters) {
+                LockSupport.unpark(waiter);
             }
+        }
+    }
 
-            @Override
-            public void onDisconnected(WebSocket webSocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
-                log.info("Disconnected from the server");
+    /**
+     * Publishes indexed IO values as a new snapshot to readers
+     * 
+     * @param receivedIOMap Received IO values keyed by IO name
+     * @param sentIOMap     Sent IO values keyed by IO name
+     */
+    private void _PublishIOState(Map<String, Object> receivedIOMap, Map<String, Object> sentIOMap) {
+        IOState previousState = null;
+        IOState ioState = null;
+        synchronized (this._publishLock) {
+            previousState = this._ioState;
+            ioState = new IOState(previousState.GetSequence() + 1, receivedIOMap, sentIOMap);
+            this._ioState = ioState;
+
+            // drop cached reads of changed IOs before anyone acts on the new state
+            this._readCache.Invalidate(previousState, ioState);
+
+            // wake up threads waiting for new IO state
+            this._WakeUpWaiters();
+        }
+
+        // notify listeners of the changed IO values
+        this._ioChangeDispatcher.Dispatch(previousState, ioState);
+    }
+
+    /**
+     * Adds a listener notified when IO values change between consecutive subscription messages. Changes of the
+     * same IO are delivered one at a time and in order. The IO names are also registered with RegisterIONames.
+     * 
+     * @param ioNamePattern IO name, or IO name prefix ending with '*', e.g. "moveIn*"
+     * @param listener      Listener to notify
+     */
+    public void AddIOListener(String ioNamePattern, IOChangeListener listener) {
+        this.RegisterIONames(ioNamePattern);
+        this._ioChangeDispatcher.AddListener(ioNamePattern, listener);
+    }
+
+    /**
+     * Removes all registrations of a listener
+     * 
+     * @param listener Listener to remove
+     */
+    public void RemoveIOListener(IOChangeListener listener) {
+        this._ioChangeDispatcher.RemoveListener(listener);
+    }
+
+    /**
+     * Sets the executor delivering IO changes to listeners
+     * 
+     * @param executor Executor for listeners, or null to use the client executor
+     */
+    public void SetListenerExecutor(Executor executor) {
+        this._ioChangeDispatcher.SetExecutor(executor);
+    }
+
+    /**
+     * Sets the strategy used by AwaitIO to wait for new IO state
+     * 
+     * @param waitStrategy Strategy to use
+     */
+    public void SetWaitStrategy(WaitStrategy waitStrategy) {
+        this._waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Blocks until the IO state published by the subscription matches the predicate. The predicate is
+     * evaluated once against the current IO state and then once for every newly published IO state.
+     * 
+     * @param predicate     Condition on the IO state to wait for
+     * @param timeoutMillis Number of milliseconds to wait
+     * @return The IO state that matched the predicate, or null if timed out
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public IOState AwaitIO(Predicate<IOState> predicate, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        WaitStrategy waitStrategy = this._waitStrategy;
+        Thread currentThread = Thread.currentThread();
+
+        // register before checking the state so that a publish in between is not missed
+        this._ioStateWaiters.add(currentThread);
+        try {
+            long checkedSequence = -1;
+            int iteration = 0;
+            while (true) {
+                IOState ioState = this._ioState;
+                if (ioState.GetSequence() != checkedSequence) {
+                    if (predicate.test(ioState)) {
+                        return ioState;
+                    }
+                    checkedSequence = ioState.GetSequence();
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                waitStrategy.Idle(iteration++, remainingNanos);
             }
-        }).connect();
+        } finally {
+            this._ioStateWaiters.remove(currentThread);
+        }
+    }
+
+    /**
+     * Blocks until the received or sent value of an IO changes from its current value.
+     * 
+     * @param ioName        Name of the IO to watch
+     * @param timeoutMillis Number of milliseconds to wait
+     * @return The IO state containing the changed value, or null if timed out
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public IOState AwaitChange(String ioName, long timeoutMillis) throws InterruptedException {
+        IOState initialState = this._ioState;
+        Object initialReceivedValue = initialState.GetReceivedIOMap().get(ioName);
+        Object initialSentValue = initialState.GetSentIOMap().get(ioName);
+        return this.AwaitIO(ioState -> {
+            return !Objects.equals(initialReceivedValue, ioState.GetReceivedIOMap().get(ioName))
+                || !Objects.equals(initialSentValue, ioState.GetSentIOMap().get(ioName));
+        }, timeoutMillis);
+    }
+
+    /**
+     * Waits asynchronously until the IO state matches the predicate. See AwaitIO.
+     * 
+     * @param predicate     Condition on the IO state to wait for
+     * @param timeoutMillis Number of milliseconds to wait
+     * @return Future completed with the matching IO state, or null if timed out
+     */
+    public CompletableFuture<IOState> AwaitIOAsync(Predicate<IOState> predicate, long timeoutMillis) {
+        return this.SupplyAsync(() -> this.AwaitIO(predicate, timeoutMillis));
+    }
+
+    /**
+     * Subscribes to IO changes on Mujin controller asynchronously.
+     * 
+     * @return Future completed when the subscription is connected
+     */
+    public CompletableFuture<Void> SubscribeRobotBridgesStateAsync() {
+        return this.SupplyAsync(() -> {
+            this.SubscribeRobotBridgesState();
+            return null;
+        });
+    }
+
+    /**
+     * Subscribes to IO changes on Mujin controller. The subscription is supervised: when the connection is
+     * lost or stays silent longer than the keep-alive timeout, the IO state is marked stale and the
+     * subscription reconnects with jittered exponential backoff until fresh IO state arrives.
+     * 
+     * @throws Exception If subscription fails
+     */
+    public void SubscribeRobotBridgesState() throws Exception {
+        this._subscription.Connect();
+    }
+
+    /**
+     * Closes the subscription and stops reconnecting.
+     */
+    public void UnsubscribeRobotBridgesState() {
+        this._subscription.Close();
+    }
+
+    /**
+     * Configures the supervision of the subscription.
+     * 
+     * @param keepAliveTimeoutMillis Milliseconds without any message after which the connection is considered lost
+     * @param initialBackoffMillis   Delay before the first reconnect attempt
+     * @param maxBackoffMillis       Upper bound of the delay between reconnect attempts
+     */
+    public void SetSubscriptionTimeouts(long keepAliveTimeoutMillis, long initialBackoffMillis, long maxBackoffMillis) {
+        this._subscription.SetTimeouts(keepAliveTimeoutMillis, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Sets whether the subscription offers permessage-deflate compression, taking effect on the next
+     * connection. Compare graphclient.subscription.wireBytes with graphclient.subscription.messageBytes to
+     * measure the savings.
+     * 
+     * @param enabled Whether to offer compression, true by default
+     */
+    public void SetSubscriptionCompressionEnabled(boolean enabled) {
+        this._subscription.SetCompressionEnabled(enabled);
+    }
+
+    /**
+     * Sets whether GraphQL responses are requested gzip encoded. Only applies to the default
+     * HttpGraphTransport. Compare graphclient.http.responseWireBytes with graphclient.http.responseBytes to
+     * measure the savings.
+     * 
+     * @param enabled Whether to accept gzip encoded responses, true by default
+     */
+    public void SetResponseCompressionEnabled(boolean enabled) {
+        if (this._transport instanceof HttpGraphTransport) {
+            ((HttpGraphTransport) this._transport).SetGzipEnabled(enabled);
+        }
+    }
+
+    /**
+     * @return Milliseconds from losing the subscription connection to receiving fresh IO state in the last
+     *         recovery, -1 if the subscription never recovered
+     */
+    public long GetLastSubscriptionRecoveryMillis() {
+        return this._subscription.GetLastRecoveryMillis();
+    }
+
+    /**
+     * @return Milliseconds since the last subscription message was received, -1 if no message was received
+     */
+    public long GetLastSubscriptionMessageAgeMillis() {
+        long ageNanos = this._subscription.GetLastMessageAgeNanos();
+        return ageNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(ageNanos);
+    }
+
+    /**
+     * Configures how SetControllerIOVariablesAsync batches writes. With a zero window, writes are still
+     * merged while the previous batch is in flight.
+     * 
+     * @param windowMicros Number of microseconds to collect writes for a batch
+     * @param maxBatchSize Number of distinct IO names that triggers an immediate flush
+     */
+    public void SetWriteBatchWindow(long windowMicros, int maxBatchSize) {
+        this._writeBatcher.SetWindow(windowMicros, maxBatchSize);
+    }
+
+    /**
+     * Queues IO variables to be set on Mujin controller. Writes from all threads are merged per IO name
+     * with last-writer-wins and sent together as one SetControllerIOVariables request.
+     * 
+     * @param ioNameValues Map<ioName, ioValue> for IO variables to set, sent in iteration order
+     * @return Future completed when the write is acknowledged by Mujin controller
+     */
+    public CompletableFuture<Void> SetControllerIOVariablesAsync(Map<String, Object> ioNameValues) {
+        return this._writeBatcher.Set(ioNameValues);
     }
 
     /**
@@ -182,125 +627,364 @@ public class GraphClient {
      * @throws Exception If cannot set IO variables
      */
     public void SetControllerIOVariables(Map<String, Object> ioNameValues) throws Exception {
-        String query = """
-            mutation SetControllerIOVariables($parameters: Any!) {
-                CommandRobotBridges(command: \"SetControllerIOVariables\", parameters: $parameters)
+        // write the ioNameValues as [[ioName, ioValue], ...] into the pre-compiled request
+        RequestBodyWriter writer = SET_IO_VARIABLES_TEMPLATE.Begin();
+        try {
+            writer.WriteByte('[');
+            boolean isFirst = true;
+            for (Map.Entry<String, Object> value : ioNameValues.entrySet()) {
+                if (!isFirst) {
+                    writer.WriteByte(',');
+                }
+                isFirst = false;
+                writer.WriteByte('[');
+                writer.WriteString(value.getKey());
+                writer.WriteByte(',');
+                writer.WriteValue(value.getValue());
+                writer.WriteByte(']');
             }
-        """;
-
-        // convert to the required format
-        List<List<Object>> values = new ArrayList<>();
-        for (Map.Entry<String, Object> value : ioNameValues.entrySet()) {
-            values.add(Arrays.asList(value.getKey(), value.getValue()));
-        }
-
-        // prepare the request body
-        JSONObject parameters = new JSONObject();
-        parameters.put("ioNameValues", values);
-        JSONObject variables = new JSONObject();
-        variables.put("parameters", parameters);
-        JSONObject data = new JSONObject();
-        data.put("query", query);
-        data.put("variables", variables);
-
-        // create a client
-        HttpURLConnection connection = (HttpURLConnection) this._graphEndpoint.openConnection();
-        connection.setRequestMethod("POST");
-
-        // add the headers
-        this._headers.forEach((key, value) -> {
-            connection.setRequestProperty(key, value);
-        });
+            writer.WriteByte(']');
+        } catch (RuntimeException e) {
+            // a value that cannot be serialized
+            writer.Release();
+            throw e;
+        }
+        String body = this._ExecuteRequest(this._setIOMetrics, SET_IO_VARIABLES_TEMPLATE, writer);
 
-        // add the cookies
-        this._cookies.forEach((key, value) -> {
-            connection.setRequestProperty("Cookie", key + "=" + value);
-        });
+        // parse the response, only when it may contain errors
+        if (body.contains("\"errors\"") && new JSONObject(body).has("errors")) {
+            this._setIOMetrics.RecordError();
+            throw new Exception("Failed to set io variables for " + ioNameValues + ". response: " + body);
+        }
+        this._readCache.Invalidate(ioNameValues.keySet());
+    }
 
-        // write the body
-        connection.setDoOutput(true);
-        OutputStream stream = connection.getOutputStream();
-        stream.write(data.toString().getBytes());
-        stream.flush();
-        stream.close();
+    /**
+     * Caches values of matching IO names read with GetControllerIOVariable and GetControllerIOVariables. A
+     * cached value is read again once the TTL passes, or as soon as the subscription reports a change of the
+     * IO, the client writes it or the subscription loses its connection. Cached JSONObject and JSONArray
+     * values are shared between callers and must not be modified. A later pattern overrides earlier ones.
+     * 
+     * @param ioNamePattern IO name, or IO name prefix ending with '*', e.g. "inputPackFormation*"
+     * @param ttlMillis     Milliseconds to cache values for, 0 to stop caching, Long.MAX_VALUE to keep them until invalidated
+     */
+    public void SetReadCacheTTL(String ioNamePattern, long ttlMillis) {
+        // keep the IO values in subscription messages so that changes invalidate the cache
+        int bracketIndex = ioNamePattern.indexOf('[');
+        this.RegisterIONames(bracketIndex < 0 ? ioNamePattern : ioNamePattern.substring(0, bracketIndex));
+        this._readCache.SetTTL(ioNamePattern, ttlMillis);
+    }
 
-        // read the response
-        BufferedReader streamReader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
-        StringBuilder bodyBuilder = new StringBuilder();
-        String value;
-        while ((value = streamReader.readLine()) != null) {
-            bodyBuilder.append(value);
-        }
-        String body = bodyBuilder.toString();
+    /**
+     * Sets how many IO values the read cache keeps. The least recently used value is evicted first.
+     * 
+     * @param maxEntries Maximum number of cached values, 256 by default
+     */
+    public void SetReadCacheCapacity(int maxEntries) {
+        this._readCache.SetCapacity(maxEntries);
+    }
 
-        // parse the response
-        JSONObject response = new JSONObject(body);
-        if (response.has("errors")) {
-            throw new Exception("Failed to set io variables for " + ioNameValues + ". response: " + body);
+    /**
+     * Drops all cached IO values and session values such as queue lengths.
+     */
+    public void InvalidateReadCache() {
+        this._readCache.InvalidateAll();
+    }
+
+    /**
+     * Gets the length of an array IO, such as an order or result queue. The length is configuration of the
+     * controller, so it is read once per subscription session instead of on every call.
+     * 
+     * @param ioName Name of the array IO variable
+     * @return Number of elements of the array
+     * @throws Exception If cannot get the IO value
+     */
+    public int GetControllerIOArrayLength(String ioName) throws Exception {
+        String key = ioName + ".length";
+        Object length = this._readCache.GetSessionValue(key);
+        if (length == null) {
+            length = ((JSONArray) this.RequestControllerIOVariable(ioName)).length();
+            this._readCache.PutSessionValue(key, length);
         }
+        return (Integer) length;
     }
 
     /**
-     * Sends GraphQL query to get single IO variable from Mujin controller
+     * Enables merging of concurrent GetControllerIOVariable calls into one GetControllerIOVariables request.
+     * 
+     * @param windowMicros Number of microseconds to collect reads for a batch. Zero disables batching.
+     */
+    public void SetReadBatchWindow(long windowMicros) {
+        this._readBatcher = windowMicros > 0 ? new IOReadBatcher(this, windowMicros) : null;
+    }
+
+    /**
+     * Sends GraphQL query to get single IO variable from Mujin controller. If read batching is enabled, the
+     * read is merged with other concurrent reads.
      * 
      * @param ioName Name of IO variable to get
      * @return Value of IO variable
      * @throws Exception If cannot get the IO value
      */
     public Object GetControllerIOVariable(String ioName) throws Exception {
-        String query = """
-            mutation GetControllerIOVariable($parameters: Any!) {
-                CommandRobotBridges(command: \"GetControllerIOVariable\", parameters: $parameters)
+        IOState readState = this._ioState;
+        boolean isCacheable = this._readCache.HasRules() && this._readCache.GetTTLNanos(ioName) > 0;
+        if (isCacheable) {
+            IOReadCache.Entry entry = this._readCache.Get(ioName);
+            if (entry != null) {
+                return entry.GetValue();
             }
-        """;
-
-        // prepare the request body
-        JSONObject parameters = new JSONObject();
-        parameters.put("parametername", ioName);
-        JSONObject variables = new JSONObject();
-        variables.put("parameters", parameters);
-        JSONObject data = new JSONObject();
-        data.put("query", query);
-        data.put("variables", variables);
-
-        // create a client
-        HttpURLConnection connection = (HttpURLConnection) this._graphEndpoint.openConnection();
-        connection.setRequestMethod("POST");
-
-        // add the headers
-        this._headers.forEach((key, value) -> {
-            connection.setRequestProperty(key, value);
-        });
+        }
 
-        // add the cookies
-        this._cookies.forEach((key, value) -> {
-            connection.setRequestProperty("Cookie", key + "=" + value);
-        });
+        Object value = null;
+        IOReadBatcher readBatcher = this._readBatcher;
+        if (readBatcher != null) {
+            value = readBatcher.Get(ioName);
+        } else {
+            value = this.RequestControllerIOVariable(ioName);
+        }
+        if (isCacheable) {
+            this._readCache.Put(ioName, value, readState);
+        }
+        return value;
+    }
+
+    /**
+     * Gets single IO variable from Mujin controller asynchronously. See GetControllerIOVariable.
+     * 
+     * @param ioName Name of IO variable to get
+     * @return Future completed with the value of IO variable
+     */
+    public CompletableFuture<Object> GetControllerIOVariableAsync(String ioName) {
+        return this.SupplyAsync(() -> this.GetControllerIOVariable(ioName));
+    }
 
-        // write the body
-        connection.setDoOutput(true);
-        OutputStream stream = connection.getOutputStream();
-        stream.write(data.toString().getBytes());
-        stream.flush();
-        stream.close();
+    /**
+     * Gets multiple IO variables from Mujin controller asynchronously. See GetControllerIOVariables.
+     * 
+     * @param ioNames Names of IO variables to get
+     * @return Future completed with Map<ioName, ioValue> in the order of ioNames
+     */
+    public CompletableFuture<Map<String, Object>> GetControllerIOVariablesAsync(List<String> ioNames) {
+        return this.SupplyAsync(() -> this.GetControllerIOVariables(ioNames));
+    }
 
-        // read the response
-        BufferedReader streamReader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
-        StringBuilder bodyBuilder = new StringBuilder();
-        String value;
-        while ((value = streamReader.readLine()) != null) {
-            bodyBuilder.append(value);
+    /**
+     * Gets multiple IO variables from Mujin controller in a single request. Cached values are not requested.
+     * 
+     * @param ioNames Names of IO variables to get
+     * @return Map<ioName, ioValue> in the order of ioNames
+     * @throws Exception If cannot get the IO values
+     */
+    public Map<String, Object> GetControllerIOVariables(List<String> ioNames) throws Exception {
+        if (!this._readCache.HasRules()) {
+            return this.RequestControllerIOVariables(ioNames);
+        }
+
+        // answer cached values, keeping the position of the others in the result
+        IOState readState = this._ioState;
+        Map<String, Object> result = new LinkedHashMap<>();
+        List<String> requestIONames = new ArrayList<>();
+        for (String ioName : ioNames) {
+            IOReadCache.Entry entry = this._readCache.GetTTLNanos(ioName) > 0 ? this._readCache.Get(ioName) : null;
+            if (entry != null) {
+                result.put(ioName, entry.GetValue());
+            } else {
+                result.put(ioName, null);
+                requestIONames.add(ioName);
+            }
+        }
+        if (requestIONames.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Object> values = this.RequestControllerIOVariables(requestIONames);
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            result.put(value.getKey(), value.getValue());
+            this._readCache.Put(value.getKey(), value.getValue(), readState);
+        }
+        return result;
+    }
+
+    /**
+     * Gets single IO variable from Mujin controller and decodes it with a typed codec straight from the
+     * response text, e.g. OrderResult.CODEC. Bypasses read batching and the read cache.
+     * 
+     * @param ioName Name of IO variable to get
+     * @param codec  Codec of the IO value
+     * @return Decoded value of IO variable
+     * @throws Exception If cannot get or decode the IO value
+     */
+    public <T> T GetControllerIOVariable(String ioName, IOCodec<T> codec) throws Exception {
+        RequestBodyWriter writer = GET_IO_VARIABLE_TEMPLATE.Begin();
+        try {
+            writer.WriteString(ioName);
+        } catch (RuntimeException e) {
+            writer.Release();
+            throw e;
+        }
+        String body = this._ExecuteRequest(this._getIOMetrics, GET_IO_VARIABLE_TEMPLATE, writer);
+
+        // decode the parameter value in place, parsing the whole response only when it may contain errors
+        try {
+            JsonReader reader = _SeekParameterValue(body);
+            if (reader != null) {
+                return codec.Read(reader);
+            }
+        } catch (JSONException e) {
+            this._getIOMetrics.RecordError();
+            throw new Exception("Failed to decode io variable " + ioName + ". response: " + body, e);
+        }
+        this._getIOMetrics.RecordError();
+        throw new Exception("Failed to get io variables for IO name " + ioName + ". response: " + body);
+    }
+
+    /**
+     * Gets multiple IO variables from Mujin controller in a single request and decodes each with its typed
+     * codec straight from the response text. Bypasses the read cache.
+     * 
+     * @param ioNameCodecs Codecs of the IO variables to get by IO name, in request order
+     * @return Map<ioName, decoded ioValue> in the order of ioNameCodecs
+     * @throws Exception If cannot get or decode the IO values
+     */
+    public Map<String, Object> GetControllerIOVariables(Map<String, IOCodec<?>> ioNameCodecs) throws Exception {
+        List<String> ioNames = new ArrayList<>(ioNameCodecs.keySet());
+        RequestBodyWriter writer = GET_IO_VARIABLES_TEMPLATE.Begin();
+        try {
+            writer.WriteValue(ioNames);
+        } catch (RuntimeException e) {
+            writer.Release();
+            throw e;
+        }
+        String body = this._ExecuteRequest(this._getIOsMetrics, GET_IO_VARIABLES_TEMPLATE, writer);
+
+        // decode the parameter values in place, parsing the whole response only when it may contain errors
+        Map<String, Object> result = new LinkedHashMap<>();
+        try {
+            JsonReader reader = _SeekParameterValue(body);
+            if (reader != null && !reader.ReadNull()) {
+                reader.BeginArray();
+                for (String ioName : ioNames) {
+                    if (!reader.NextElement()) {
+                        break;
+                    }
+                    result.put(ioName, ioNameCodecs.get(ioName).Read(reader));
+                }
+            }
+        } catch (JSONException e) {
+            this._getIOsMetrics.RecordError();
+            throw new Exception("Failed to decode io variables for IO names " + ioNames + ". response: " + body, e);
+        }
+        if (result.size() != ioNames.size()) {
+            this._getIOsMetrics.RecordError();
+            throw new Exception("Failed to get io variables for IO names " + ioNames + ". response: " + body);
+        }
+        return result;
+    }
+
+    /**
+     * @param body Response body of a CommandRobotBridges request
+     * @return Reader positioned at data.CommandRobotBridges.parametervalue, or null if the response has
+     *         errors or no parameter value
+     */
+    private static JsonReader _SeekParameterValue(String body) {
+        if (body.contains("\"errors\"") && new JSONObject(body).has("errors")) {
+            return null;
+        }
+        JsonReader reader = new JsonReader(body);
+        reader.BeginObject();
+        while (reader.NextField()) {
+            if (!reader.IsName("data")) {
+                reader.SkipValue();
+                continue;
+            }
+            reader.BeginObject();
+            while (reader.NextField()) {
+                if (!reader.IsName("CommandRobotBridges")) {
+                    reader.SkipValue();
+                    continue;
+                }
+                reader.BeginObject();
+                while (reader.NextField()) {
+                    if (reader.IsName("parametervalue")) {
+                        return reader;
+                    }
+                    reader.SkipValue();
+                }
+                return null;
+            }
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Sends GraphQL query to get multiple IO variables from Mujin controller in a single request, bypassing
+     * the read cache
+     * 
+     * @param ioNames Names of IO variables to get
+     * @return Map<ioName, ioValue> in the order of ioNames
+     * @throws Exception If cannot get the IO values
+     */
+    Map<String, Object> RequestControllerIOVariables(List<String> ioNames) throws Exception {
+        RequestBodyWriter writer = GET_IO_VARIABLES_TEMPLATE.Begin();
+        try {
+            writer.WriteValue(ioNames);
+        } catch (RuntimeException e) {
+            writer.Release();
+            throw e;
+        }
+        String body = this._ExecuteRequest(this._getIOsMetrics, GET_IO_VARIABLES_TEMPLATE, writer);
+
+        // parse the response
+        JSONObject response = new JSONObject(body);
+        if (response.has("errors")) {
+            this._getIOsMetrics.RecordError();
+            throw new Exception("Failed to get io variables for IO names " + ioNames + ". response: " + body);
+        }
+        JSONObject commandRobotBridges = response.getJSONObject("data").getJSONObject("CommandRobotBridges");
+        JSONArray parameterValues = commandRobotBridges.optJSONArray("parametervalue");
+        if (parameterValues == null || parameterValues.length() != ioNames.size()) {
+            this._getIOsMetrics.RecordError();
+            throw new Exception("Failed to get io variables for IO names " + ioNames + ". response: " + body);
+        }
+
+        // map values back to their names
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int index = 0; index < ioNames.size(); index++) {
+            result.put(ioNames.get(index), parameterValues.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Sends GraphQL query to get single IO variable from Mujin controller, bypassing read batching and the
+     * read cache
+     * 
+     * @param ioName Name of IO variable to get
+     * @return Value of IO variable
+     * @throws Exception If cannot get the IO value
+     */
+    Object RequestControllerIOVariable(String ioName) throws Exception {
+        RequestBodyWriter writer = GET_IO_VARIABLE_TEMPLATE.Begin();
+        try {
+            writer.WriteString(ioName);
+        } catch (RuntimeException e) {
+            writer.Release();
+            throw e;
         }
-        String body = bodyBuilder.toString();
+        String body = this._ExecuteRequest(this._getIOMetrics, GET_IO_VARIABLE_TEMPLATE, writer);
 
         // parse the response
         JSONObject response = new JSONObject(body);
         if (response.has("errors")) {
+            this._getIOMetrics.RecordError();
             throw new Exception("Failed to get io variables for IO name " + ioName + ". response: " + body);
         }
         JSONObject commandRobotBridges = response.getJSONObject("data").getJSONObject("CommandRobotBridges");
         Object parameterValue = commandRobotBridges.get("parametervalue");
         if (parameterValue == null) {
+            this._getIOMetrics.RecordError();
             throw new Exception("Failed to get io variables for IO name " + ioName + ". response: " + body);
         }
 
@@ -0,0 +1,47 @@
+package com.mujin.productioncycleclient;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+
+/**
+ * Pre-compiled body of a CommandRobotBridges GraphQL request taking a single parameter. The constant text
+ * around the parameter value is encoded to UTF-8 once, so that sending a request only writes the value:
+ *
+ * {"query":"...","variables":{"parameters":{"<parameterName>":<value>}}}
+ */
+final class GraphRequestTemplate {
+
+    private final byte[] _prefix; // request body up to the parameter value
+    private final byte[] _suffix; // request body after the parameter value
+
+    /**
+     * @param query         GraphQL query taking the parameters as $parameters
+     * @param parameterName Name of the single parameter
+     */
+    GraphRequestTemplate(String query, String parameterName) {
+        String prefix = "{\"query\":" + JSONObject.quote(query) + ",\"variables\":{\"parameters\":{" + JSONObject.quote(parameterName) + ":";
+        this._prefix = prefix.getBytes(StandardCharsets.UTF_8);
+        this._suffix = "}}}".getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Acquires a pooled writer and writes the request body up to the parameter value.
+     *
+     * @return Writer to write the parameter value to, to be passed to End
+     */
+    RequestBodyWriter Begin() {
+        RequestBodyWriter writer = RequestBodyWriter.Acquire();
+        writer.WriteBytes(this._prefix);
+        return writer;
+    }
+
+    /**
+     * Writes the request body after the parameter value.
+     *
+     * @param writer Writer returned by Begin
+     */
+    void End(RequestBodyWriter writer) {
+        writer.WriteBytes(this._suffix);
+    }
+}
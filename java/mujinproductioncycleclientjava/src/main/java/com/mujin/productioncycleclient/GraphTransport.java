@@ -0,0 +1,32 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Arrays;
+
+/**
+ * Transport used by GraphClient to send GraphQL requests to the Mujin controller.
+ */
+public interface GraphTransport {
+
+    /**
+     * Posts a GraphQL request body to the GraphQL endpoint and returns the response body.
+     * 
+     * @param body UTF-8 encoded JSON request body
+     * @return Raw response body
+     * @throws Exception If the request fails
+     */
+    byte[] Post(byte[] body) throws Exception;
+
+    /**
+     * Posts the first length bytes of a buffer as request body. GraphClient reuses the buffer once Post
+     * returns, so the transport must not keep it. Transports override this to send from the buffer without
+     * copying it.
+     * 
+     * @param body   Buffer starting with the UTF-8 encoded JSON request body
+     * @param length Number of bytes of the request body
+     * @return Raw response body
+     * @throws Exception If the request fails
+     */
+    default byte[] Post(byte[] body, int length) throws Exception {
+        return this.Post(length == body.length ? body : Arrays.copyOf(body, length));
+    }
+}
@@ -0,0 +1,109 @@
+package com.mujin.productioncycleclient;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, e.g. latencies in nanoseconds. Values are counted in
+ * log-linear buckets like an HDR histogram: each power of two is split into 8 linear sub-buckets, so
+ * recorded values are reported with at most 12.5% relative error over the whole long range.
+ * Recording a value is a single atomic increment without allocation.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3; // log2 of the number of sub-buckets per power of two
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // number of sub-buckets per power of two
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT; // buckets covering all long values
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKET_COUNT); // number of values per bucket
+    private final LongAdder _count = new LongAdder(); // number of recorded values
+    private final LongAdder _sum = new LongAdder(); // sum of recorded values
+    private final AtomicLong _max = new AtomicLong(); // largest recorded value
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     * 
+     * @param value Value to record
+     */
+    public void Record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this._counts.incrementAndGet(_BucketIndex(value));
+        this._count.increment();
+        this._sum.add(value);
+        long max = this._max.get();
+        while (value > max && !this._max.compareAndSet(max, value)) {
+            max = this._max.get();
+        }
+    }
+
+    /**
+     * @return Number of recorded values
+     */
+    public long GetCount() {
+        return this._count.sum();
+    }
+
+    /**
+     * @return Mean of recorded values, 0 if empty
+     */
+    public double GetMean() {
+        long count = this._count.sum();
+        return count == 0 ? 0 : (double) this._sum.sum() / count;
+    }
+
+    /**
+     * @return Largest recorded value
+     */
+    public long GetMax() {
+        return this._max.get();
+    }
+
+    /**
+     * Returns the value at a percentile of the recorded values.
+     * 
+     * @param percentile Percentile between 0 and 100
+     * @return Upper bound of the bucket containing the percentile, 0 if empty
+     */
+    public long GetValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            counts[index] = this._counts.get(index);
+            total += counts[index];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += counts[index];
+            if (seen >= rank) {
+                return Math.min(_BucketUpperBound(index), this._max.get());
+            }
+        }
+        return this._max.get();
+    }
+
+    private static int _BucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long _BucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowerBound = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,160 @@
+package com.mujin.productioncycleclient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.FilterInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GraphTransport backed by java.net.http.HttpClient, which keeps connections to the Mujin controller
+ * alive and reuses them across requests. The number of concurrent in-flight requests is bounded.
+ * Responses are requested gzip encoded unless disabled, and are inflated while they are received.
+ */
+public class HttpGraphTransport implements GraphTransport {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 8; // default bound on concurrent in-flight requests
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000; // default timeout to establish a connection
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 30000; // default timeout to receive a response
+
+    private URI _graphEndpoint = null; // URI to http GraphQL endpoint on Mujin controller
+    private String[] _headers = null; // request headers as name, value pairs
+    private Duration _requestTimeout = null; // timeout to receive a response
+    private HttpClient _httpClient = null; // pooled http client
+    private Semaphore _inFlightRequests = null; // bounds the number of concurrent in-flight requests
+    private volatile boolean _isGzipEnabled = true; // whether to accept gzip encoded responses
+    private final Counter _responseWireBytes = new Counter(); // number of response body bytes received, before inflating
+    private final Counter _responseBytes = new Counter(); // number of response body bytes after inflating
+
+    public HttpGraphTransport(URI graphEndpoint, Map<String, String> headers, Map<String, String> cookies) {
+        this(graphEndpoint, headers, cookies, DEFAULT_MAX_IN_FLIGHT_REQUESTS, DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
+
+    public HttpGraphTransport(URI graphEndpoint, Map<String, String> headers, Map<String, String> cookies, int maxInFlightRequests, long connectTimeoutMillis, long requestTimeoutMillis) {
+        this._graphEndpoint = graphEndpoint;
+        this._requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this._inFlightRequests = new Semaphore(maxInFlightRequests);
+        this._httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+            .build();
+
+        // prepare the headers once, cookies are sent in a single Cookie header
+        List<String> headerList = new ArrayList<>();
+        headers.forEach((key, value) -> {
+            headerList.add(key);
+            headerList.add(value);
+        });
+        if (!cookies.isEmpty()) {
+            List<String> cookieList = new ArrayList<>();
+            cookies.forEach((key, value) -> {
+                cookieList.add(key + "=" + value);
+            });
+            headerList.add("Cookie");
+            headerList.add(String.join("; ", cookieList));
+        }
+        this._headers = headerList.toArray(new String[0]);
+    }
+
+    /**
+     * Sets whether responses are requested gzip encoded. The controller may still answer uncompressed.
+     * 
+     * @param enabled Whether to send Accept-Encoding: gzip, true by default
+     */
+    public void SetGzipEnabled(boolean enabled) {
+        this._isGzipEnabled = enabled;
+    }
+
+    /**
+     * @return Number of response body bytes received on the wire, before inflating
+     */
+    public long GetResponseWireBytes() {
+        return this._responseWireBytes.Get();
+    }
+
+    /**
+     * @return Number of response body bytes after inflating, equal to the wire bytes without compression
+     */
+    public long GetResponseBytes() {
+        return this._responseBytes.Get();
+    }
+
+    @Override
+    public byte[] Post(byte[] body) throws Exception {
+        return this.Post(body, body.length);
+    }
+
+    @Override
+    public byte[] Post(byte[] body, int length) throws Exception {
+        // the body is fully sent once send returns, so the buffer is not referenced afterwards
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(this._graphEndpoint)
+            .headers(this._headers)
+            .timeout(this._requestTimeout)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body, 0, length));
+        if (this._isGzipEnabled) {
+            requestBuilder.header("Accept-Encoding", "gzip");
+        }
+        HttpRequest request = requestBuilder.build();
+
+        HttpResponse<InputStream> response = null;
+        byte[] responseBody = null;
+        this._inFlightRequests.acquire();
+        try {
+            // the connection is in use until the body is read, inflate it while it is received
+            response = this._httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            CountingInputStream wireStream = new CountingInputStream(response.body());
+            boolean isGzip = response.headers().firstValue("Content-Encoding").map(value -> value.trim().equalsIgnoreCase("gzip")).orElse(false);
+            try (InputStream bodyStream = isGzip ? new GZIPInputStream(wireStream, 8192) : wireStream) {
+                responseBody = bodyStream.readAllBytes();
+            }
+            this._responseWireBytes.Add(wireStream._count);
+            this._responseBytes.Add(responseBody.length);
+        } finally {
+            this._inFlightRequests.release();
+        }
+
+        if (response.statusCode() >= 400) {
+            throw new Exception("GraphQL request failed with status " + response.statusCode() + ". response: " + new String(responseBody, StandardCharsets.UTF_8));
+        }
+        return responseBody;
+    }
+
+    /**
+     * Counts the bytes read from the wire.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long _count = 0; // number of bytes read
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                this._count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                this._count += count;
+            }
+            return count;
+        }
+    }
+}
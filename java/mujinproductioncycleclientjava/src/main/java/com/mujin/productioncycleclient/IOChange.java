@@ -0,0 +1,61 @@
+package com.mujin.productioncycleclient;
+
+/**
+ * Change of a single IO value between two consecutive IO state snapshots.
+ */
+public final class IOChange {
+
+    private final String _ioName; // name of the changed IO
+    private final boolean _isReceived; // whether the IO is a received IO, otherwise a sent IO
+    private final Object _oldValue; // value in the previous snapshot, null if the IO was missing
+    private final Object _newValue; // value in the new snapshot, null if the IO is missing
+    private final IOState _ioState; // snapshot containing the new value
+
+    IOChange(String ioName, boolean isReceived, Object oldValue, Object newValue, IOState ioState) {
+        this._ioName = ioName;
+        this._isReceived = isReceived;
+        this._oldValue = oldValue;
+        this._newValue = newValue;
+        this._ioState = ioState;
+    }
+
+    /**
+     * @return Name of the changed IO
+     */
+    public String GetIOName() {
+        return this._ioName;
+    }
+
+    /**
+     * @return True if the IO is a received IO, false if it is a sent IO
+     */
+    public boolean IsReceived() {
+        return this._isReceived;
+    }
+
+    /**
+     * @return Value in the previous snapshot, null if the IO was missing
+     */
+    public Object GetOldValue() {
+        return this._oldValue;
+    }
+
+    /**
+     * @return Value in the new snapshot, null if the IO is missing
+     */
+    public Object GetNewValue() {
+        return this._newValue;
+    }
+
+    /**
+     * @return Snapshot containing the new value
+     */
+    public IOState GetIOState() {
+        return this._ioState;
+    }
+
+    @Override
+    public String toString() {
+        return (this._isReceived ? "received " : "sent ") + this._ioName + ": " + this._oldValue + " -> " + this._newValue;
+    }
+}
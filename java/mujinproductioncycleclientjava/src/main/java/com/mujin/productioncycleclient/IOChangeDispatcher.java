@@ -0,0 +1,152 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.ArrayDeque;
+import java.util.logging.Logger;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Computes the IO values changed between consecutive IO state snapshots and dispatches them to the
+ * listeners registered for the IO name. Each IO has its own lane, so changes of the same IO are delivered
+ * in order and one at a time, while changes of different IOs can be delivered concurrently.
+ */
+class IOChangeDispatcher {
+
+    private GraphClient _graphClient = null; // client providing the default executor
+    private volatile Executor _executor = null; // executor delivering the changes, null to use the client executor
+
+    private final CopyOnWriteArrayList<Registration> _registrations = new CopyOnWriteArrayList<>(); // registered listeners
+    private final Map<String, Lane> _receivedLanes = new ConcurrentHashMap<>(); // delivery lanes of received IOs
+    private final Map<String, Lane> _sentLanes = new ConcurrentHashMap<>(); // delivery lanes of sent IOs
+
+    private static final Logger log = Logger.getLogger(IOChangeDispatcher.class.getName());
+
+    IOChangeDispatcher(GraphClient graphClient) {
+        this._graphClient = graphClient;
+    }
+
+    void SetExecutor(Executor executor) {
+        this._executor = executor;
+    }
+
+    void AddListener(String ioNamePattern, IOChangeListener listener) {
+        this._registrations.add(new Registration(ioNamePattern, listener));
+    }
+
+    void RemoveListener(IOChangeListener listener) {
+        this._registrations.removeIf(registration -> registration._listener == listener);
+    }
+
+    boolean HasListeners() {
+        return !this._registrations.isEmpty();
+    }
+
+    /**
+     * Dispatches the changes between two snapshots to the matching listeners.
+     * 
+     * @param previousState Previously published snapshot
+     * @param ioState       Newly published snapshot
+     */
+    void Dispatch(IOState previousState, IOState ioState) {
+        if (this._registrations.isEmpty()) {
+            return;
+        }
+        this._DispatchChanges(previousState.GetReceivedIOMap(), ioState.GetReceivedIOMap(), true, ioState);
+        this._DispatchChanges(previousState.GetSentIOMap(), ioState.GetSentIOMap(), false, ioState);
+    }
+
+    private void _DispatchChanges(Map<String, Object> previousIOMap, Map<String, Object> ioMap, boolean isReceived, IOState ioState) {
+        for (Map.Entry<String, Object> ioValue : ioMap.entrySet()) {
+            Object oldValue = previousIOMap.get(ioValue.getKey());
+            if (!Objects.equals(oldValue, ioValue.getValue()) || (oldValue == null && !previousIOMap.containsKey(ioValue.getKey()))) {
+                this._DispatchChange(new IOChange(ioValue.getKey(), isReceived, oldValue, ioValue.getValue(), ioState));
+            }
+        }
+        for (Map.Entry<String, Object> previousIOValue : previousIOMap.entrySet()) {
+            if (!ioMap.containsKey(previousIOValue.getKey())) {
+                this._DispatchChange(new IOChange(previousIOValue.getKey(), isReceived, previousIOValue.getValue(), null, ioState));
+            }
+        }
+    }
+
+    private void _DispatchChange(IOChange change) {
+        Lane lane = null;
+        for (Registration registration : this._registrations) {
+            if (!registration.Matches(change.GetIOName())) {
+                continue;
+            }
+            if (lane == null) {
+                Map<String, Lane> lanes = change.IsReceived() ? this._receivedLanes : this._sentLanes;
+                lane = lanes.computeIfAbsent(change.GetIOName(), ioName -> new Lane());
+            }
+            IOChangeListener listener = registration._listener;
+            lane.Submit(() -> listener.OnIOChange(change));
+        }
+    }
+
+    /**
+     * Listener registered for an IO name or an IO name prefix ending with '*'.
+     */
+    private static final class Registration {
+
+        private final String _ioNamePattern; // IO name, or prefix when _isPrefix
+        private final boolean _isPrefix; // whether the pattern matches by prefix
+        private final IOChangeListener _listener; // listener to notify
+
+        Registration(String ioNamePattern, IOChangeListener listener) {
+            this._isPrefix = ioNamePattern.endsWith("*");
+            this._ioNamePattern = this._isPrefix ? ioNamePattern.substring(0, ioNamePattern.length() - 1) : ioNamePattern;
+            this._listener = listener;
+        }
+
+        boolean Matches(String ioName) {
+            return this._isPrefix ? ioName.startsWith(this._ioNamePattern) : ioName.equals(this._ioNamePattern);
+        }
+    }
+
+    /**
+     * Runs the changes of a single IO one at a time on the dispatcher executor.
+     */
+    private final class Lane implements Runnable {
+
+        private final ArrayDeque<Runnable> _tasks = new ArrayDeque<>(); // pending deliveries, guarded by this
+        private boolean _isRunning = false; // whether the lane is scheduled on the executor, guarded by this
+
+        void Submit(Runnable task) {
+            synchronized (this) {
+                this._tasks.add(task);
+                if (this._isRunning) {
+                    return;
+                }
+                this._isRunning = true;
+            }
+            Executor executor = IOChangeDispatcher.this._executor;
+            if (executor == null) {
+                executor = IOChangeDispatcher.this._graphClient.GetExecutor();
+            }
+            executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = null;
+                synchronized (this) {
+                    task = this._tasks.poll();
+                    if (task == null) {
+                        this._isRunning = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.warning("IO change listener failed: " + e.toString());
+                }
+            }
+        }
+    }
+}
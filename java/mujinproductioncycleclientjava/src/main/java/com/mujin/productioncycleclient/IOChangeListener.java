@@ -0,0 +1,16 @@
+package com.mujin.productioncycleclient;
+
+/**
+ * Listener notified when an IO value changes between consecutive SubscribeRobotBridgesState messages.
+ */
+@FunctionalInterface
+public interface IOChangeListener {
+
+    /**
+     * Called for every change of a matching IO. Changes of the same IO are delivered one at a time, in the
+     * order they were received.
+     * 
+     * @param change Change of the IO value
+     */
+    void OnIOChange(IOChange change);
+}
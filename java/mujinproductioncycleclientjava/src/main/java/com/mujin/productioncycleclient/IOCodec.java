@@ -0,0 +1,63 @@
+package com.mujin.productioncycleclient;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Hand-written JSON codec of a typed IO value, writing it into the request body and reading it from the
+ * response text directly, without JSONObject trees or intermediate maps. Codecs are provided by the typed
+ * values, e.g. OrderResult.CODEC, and passed to GraphClient.GetControllerIOVariable. Codecs of other IO
+ * types subclass it.
+ *
+ * @param <T> Type of the IO value
+ */
+public abstract class IOCodec<T> {
+
+    protected IOCodec() {
+    }
+
+    /**
+     * Writes the value as JSON.
+     */
+    public abstract void Write(RequestBodyWriter writer, T value);
+
+    /**
+     * Reads the value from the current position of the reader.
+     */
+    public abstract T Read(JsonReader reader);
+
+    /**
+     * Returns the codec of a JSON array of values, e.g. of resultPackFormationEntry.
+     *
+     * @param elementCodec Codec of the elements
+     * @return Codec of a list of elements, reading null as an empty list
+     */
+    public static <T> IOCodec<List<T>> ListOf(IOCodec<T> elementCodec) {
+        return new IOCodec<List<T>>() {
+            @Override
+            public void Write(RequestBodyWriter writer, List<T> values) {
+                writer.WriteByte('[');
+                for (int index = 0; index < values.size(); index++) {
+                    if (index > 0) {
+                        writer.WriteByte(',');
+                    }
+                    elementCodec.Write(writer, values.get(index));
+                }
+                writer.WriteByte(']');
+            }
+
+            @Override
+            public List<T> Read(JsonReader reader) {
+                List<T> values = new ArrayList<>();
+                if (reader.ReadNull()) {
+                    return values;
+                }
+                reader.BeginArray();
+                while (reader.NextElement()) {
+                    values.add(elementCodec.Read(reader));
+                }
+                return values;
+            }
+        };
+    }
+}
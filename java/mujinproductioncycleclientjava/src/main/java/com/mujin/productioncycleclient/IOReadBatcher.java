@@ -0,0 +1,85 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Merges single IO reads issued concurrently within a short window into one GetControllerIOVariables
+ * request. The first caller of a window becomes the leader, waits for the window to pass, sends the merged
+ * request and demultiplexes the values back to the other callers.
+ */
+class IOReadBatcher {
+
+    private GraphClient _graphClient = null; // client used to send the merged requests
+    private long _windowNanos = 0; // how long the leader waits for other reads to join the batch
+
+    private Map<String, CompletableFuture<Object>> _pending = null; // reads of the current window, guarded by this
+
+    IOReadBatcher(GraphClient graphClient, long windowMicros) {
+        this._graphClient = graphClient;
+        this._windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+    }
+
+    /**
+     * Reads single IO variable, merged with other reads of the same window.
+     * 
+     * @param ioName Name of IO variable to get
+     * @return Value of IO variable
+     * @throws Exception If cannot get the IO value
+     */
+    Object Get(String ioName) throws Exception {
+        CompletableFuture<Object> future = null;
+        boolean isLeader = false;
+        synchronized (this) {
+            if (this._pending == null) {
+                this._pending = new LinkedHashMap<>();
+                isLeader = true;
+            }
+            future = this._pending.computeIfAbsent(ioName, key -> new CompletableFuture<>());
+        }
+
+        if (isLeader) {
+            // wait for other reads to join the batch
+            long deadline = System.nanoTime() + this._windowNanos;
+            long remainingNanos = this._windowNanos;
+            while (remainingNanos > 0) {
+                LockSupport.parkNanos(this, remainingNanos);
+                remainingNanos = deadline - System.nanoTime();
+            }
+
+            Map<String, CompletableFuture<Object>> batch = null;
+            synchronized (this) {
+                batch = this._pending;
+                this._pending = null;
+            }
+            this._Flush(batch);
+        }
+
+        return Futures.Get(future);
+    }
+
+    /**
+     * Sends the merged read request and completes the futures of all callers.
+     * 
+     * @param batch Futures of the batched reads keyed by IO name
+     */
+    private void _Flush(Map<String, CompletableFuture<Object>> batch) {
+        try {
+            if (batch.size() == 1) {
+                Map.Entry<String, CompletableFuture<Object>> read = batch.entrySet().iterator().next();
+                read.getValue().complete(this._graphClient.RequestControllerIOVariable(read.getKey()));
+                return;
+            }
+            Map<String, Object> values = this._graphClient.RequestControllerIOVariables(new ArrayList<>(batch.keySet()));
+            batch.forEach((ioName, future) -> {
+                future.complete(values.get(ioName));
+            });
+        } catch (Exception e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+import java.util.function.Predicate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Read-through cache of IO values read with GetControllerIOVariable and GetControllerIOVariables. Only IO
+ * names matching a pattern configured with SetTTL are cached, each for the TTL of its pattern. The least
+ * recently used entry is evicted when the cache is full.
+ *
+ * An entry is invalidated as soon as a subscription message changes the IO, when the client writes the IO,
+ * and when the subscription loses its connection. Entries of indexed IO names such as "name[2]" are
+ * invalidated by changes of the whole IO "name".
+ *
+ * Session values such as queue lengths are kept until the subscription loses its connection.
+ */
+class IOReadCache {
+
+    private final CopyOnWriteArrayList<Rule> _rules = new CopyOnWriteArrayList<>(); // TTL of IO name patterns, last match wins
+    private LinkedHashMap<String, Entry> _entries = null; // cached values in access order, guarded by this
+    private int _capacity = 0; // maximum number of cached values, guarded by this
+    private volatile boolean _isEmpty = true; // whether there are no cached values, checked without locking on every message
+    private final Map<String, Object> _sessionValues = new ConcurrentHashMap<>(); // values fetched once per subscription session
+    private final Supplier<IOState> _ioStateSupplier; // currently published IO state
+
+    private final Counter _hits; // reads answered from the cache
+    private final Counter _misses; // reads of cacheable IO names sent to the controller
+    private final Counter _evictions; // entries evicted because the cache was full
+    private final Counter _invalidations; // entries dropped because the IO changed or expired
+
+    IOReadCache(MetricsRegistry metrics, int capacity, Supplier<IOState> ioStateSupplier) {
+        this._ioStateSupplier = ioStateSupplier;
+        this._hits = metrics.GetCounter("graphclient.readcache.hits");
+        this._misses = metrics.GetCounter("graphclient.readcache.misses");
+        this._evictions = metrics.GetCounter("graphclient.readcache.evictions");
+        this._invalidations = metrics.GetCounter("graphclient.readcache.invalidations");
+        metrics.RegisterGauge("graphclient.readcache.size", this::GetSize);
+        this.SetCapacity(capacity);
+    }
+
+    /**
+     * @param capacity Maximum number of cached values, existing entries beyond it are evicted
+     */
+    synchronized void SetCapacity(int capacity) {
+        this._capacity = Math.max(0, capacity);
+        LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (this.size() > IOReadCache.this._capacity) {
+                    IOReadCache.this._evictions.Increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (this._entries != null) {
+            this._entries.forEach(entries::put);
+        }
+        this._entries = entries;
+        this._isEmpty = entries.isEmpty();
+    }
+
+    /**
+     * Sets how long values of matching IO names are cached. A later pattern overrides earlier ones.
+     *
+     * @param ioNamePattern IO name, or IO name prefix ending with '*'
+     * @param ttlMillis     Milliseconds to cache values for, 0 to not cache them, Long.MAX_VALUE to keep them until invalidated
+     */
+    void SetTTL(String ioNamePattern, long ttlMillis) {
+        this._rules.removeIf(rule -> rule._ioNamePattern.equals(ioNamePattern));
+        this._rules.add(new Rule(ioNamePattern, ttlMillis <= 0 ? 0 : ttlMillis == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+        this._Invalidate(ioName -> Rule.Matches(ioNamePattern, ioName));
+    }
+
+    /**
+     * @param ioName IO name
+     * @return TTL of the IO name in nanoseconds, 0 if it is not cached
+     */
+    long GetTTLNanos(String ioName) {
+        for (int index = this._rules.size() - 1; index >= 0; index--) {
+            Rule rule = this._rules.get(index);
+            if (Rule.Matches(rule._ioNamePattern, ioName)) {
+                return rule._ttlNanos;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Whether any IO name is cached
+     */
+    boolean HasRules() {
+        return !this._rules.isEmpty();
+    }
+
+    /**
+     * Looks up a cached value and counts the hit or miss.
+     *
+     * @param ioName IO name, which must be cacheable
+     * @return Cached entry, or null if the value has to be read from the controller
+     */
+    synchronized Entry Get(String ioName) {
+        Entry entry = this._entries.get(ioName);
+        if (entry != null && entry._ttlNanos != Long.MAX_VALUE && System.nanoTime() - entry._readNanos >= entry._ttlNanos) {
+            this._entries.remove(ioName);
+            this._isEmpty = this._entries.isEmpty();
+            this._invalidations.Increment();
+            entry = null;
+        }
+        if (entry == null) {
+            this._misses.Increment();
+            return null;
+        }
+        this._hits.Increment();
+        return entry;
+    }
+
+    /**
+     * Caches a value read from the controller, unless a subscription message changed the IO since the read
+     * was sent.
+     *
+     * @param ioName    IO name, which must be cacheable
+     * @param value     Value read from the controller
+     * @param readState IO state published before the read was sent
+     */
+    void Put(String ioName, Object value, IOState readState) {
+        long ttlNanos = this.GetTTLNanos(ioName);
+        if (ttlNanos <= 0 || readState.IsStale()) {
+            return;
+        }
+        synchronized (this) {
+            if (this._capacity == 0) {
+                return;
+            }
+            // mark non-empty before reading the state, so that a concurrent publish either is seen here or
+            // invalidates the entry afterwards
+            this._isEmpty = false;
+            IOState ioState = this._ioStateSupplier.get();
+            if (ioState.IsStale() || _IsChanged(readState, ioState, ioName)) {
+                this._isEmpty = this._entries.isEmpty();
+                return;
+            }
+            this._entries.put(ioName, new Entry(value, System.nanoTime(), ttlNanos));
+        }
+    }
+
+    /**
+     * Drops the entries of IOs changed between two published snapshots. Called for every published snapshot.
+     *
+     * @param previousState Previously published snapshot
+     * @param ioState       Newly published snapshot
+     */
+    void Invalidate(IOState previousState, IOState ioState) {
+        if (this._isEmpty) {
+            return;
+        }
+        this._Invalidate(ioName -> _IsChanged(previousState, ioState, ioName));
+    }
+
+    /**
+     * Drops the entries of written IOs.
+     *
+     * @param ioNames Written IO names
+     */
+    void Invalidate(Iterable<String> ioNames) {
+        if (this._isEmpty) {
+            return;
+        }
+        Set<String> baseNames = new HashSet<>();
+        for (String ioName : ioNames) {
+            baseNames.add(_GetBaseName(ioName));
+        }
+        this._Invalidate(cachedIOName -> baseNames.contains(_GetBaseName(cachedIOName)));
+    }
+
+    /**
+     * Drops all entries and session values, e.g. because the subscription lost its connection and the
+     * controller may have changed without the client seeing it.
+     */
+    void InvalidateAll() {
+        this._sessionValues.clear();
+        synchronized (this) {
+            this._invalidations.Add(this._entries.size());
+            this._entries.clear();
+            this._isEmpty = true;
+        }
+    }
+
+    private synchronized void _Invalidate(Predicate<String> isInvalid) {
+        for (Iterator<String> ioNames = this._entries.keySet().iterator(); ioNames.hasNext();) {
+            if (isInvalid.test(ioNames.next())) {
+                ioNames.remove();
+                this._invalidations.Increment();
+            }
+        }
+        this._isEmpty = this._entries.isEmpty();
+    }
+
+    /**
+     * @param key Key of the session value, e.g. the IO name it is derived from
+     * @return Session value, or null if not fetched in this session
+     */
+    Object GetSessionValue(String key) {
+        Object value = this._sessionValues.get(key);
+        (value != null ? this._hits : this._misses).Increment();
+        return value;
+    }
+
+    /**
+     * @param key   Key of the session value
+     * @param value Value to keep until the subscription loses its connection
+     */
+    void PutSessionValue(String key, Object value) {
+        this._sessionValues.put(key, value);
+    }
+
+    synchronized long GetSize() {
+        return this._entries.size();
+    }
+
+    /**
+     * @param previousState Snapshot before
+     * @param ioState       Snapshot after
+     * @param ioName        Cached IO name, possibly indexed
+     * @return Whether the IO, or the whole IO of an indexed IO name, has a different value in the snapshots
+     */
+    private static boolean _IsChanged(IOState previousState, IOState ioState, String ioName) {
+        String baseName = _GetBaseName(ioName);
+        return !Objects.equals(previousState.GetReceivedIOMap().get(baseName), ioState.GetReceivedIOMap().get(baseName))
+            || !Objects.equals(previousState.GetSentIOMap().get(baseName), ioState.GetSentIOMap().get(baseName));
+    }
+
+    /**
+     * @param ioName IO name, possibly indexed such as "name[2]" or "name[0:3]"
+     * @return IO name without the index
+     */
+    private static String _GetBaseName(String ioName) {
+        int bracketIndex = ioName.indexOf('[');
+        return bracketIndex < 0 ? ioName : ioName.substring(0, bracketIndex);
+    }
+
+    /**
+     * Cached value of an IO
+     */
+    static final class Entry {
+
+        private final Object _value; // value read from the controller
+        private final long _readNanos; // System.nanoTime() when the value was cached
+        private final long _ttlNanos; // how long the value is cached, Long.MAX_VALUE until invalidated
+
+        Entry(Object value, long readNanos, long ttlNanos) {
+            this._value = value;
+            this._readNanos = readNanos;
+            this._ttlNanos = ttlNanos;
+        }
+
+        Object GetValue() {
+            return this._value;
+        }
+    }
+
+    /**
+     * TTL of an IO name pattern
+     */
+    private static final class Rule {
+
+        private final String _ioNamePattern; // IO name, or IO name prefix ending with '*'
+        private final long _ttlNanos; // how long values are cached, Long.MAX_VALUE until invalidated
+
+        Rule(String ioNamePattern, long ttlNanos) {
+            this._ioNamePattern = ioNamePattern;
+            this._ttlNanos = ttlNanos;
+        }
+
+        static boolean Matches(String ioNamePattern, String ioName) {
+            if (ioNamePattern.endsWith("*")) {
+                return ioName.startsWith(ioNamePattern.substring(0, ioNamePattern.length() - 1));
+            }
+            return ioNamePattern.equals(ioName);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Collections;
+
+/**
+ * Immutable snapshot of the IO values received from a single SubscribeRobotBridgesState message.
+ * Received and sent IO values are indexed once when the snapshot is created, so lookups are O(1)
+ * and do not allocate.
+ *
+ * A snapshot is stale when it does not reflect the current controller state, i.e. before the first
+ * subscription message and while the subscription is reconnecting.
+ */
+public final class IOState {
+
+    public static final IOState EMPTY = new IOState(0, Collections.emptyMap(), Collections.emptyMap(), true);
+
+    private final long _sequence; // sequence number of this snapshot, incremented on every published snapshot
+    private final Map<String, Object> _receivedIOMap; // received IO values keyed by IO name
+    private final Map<String, Object> _sentIOMap; // sent IO values keyed by IO name
+    private final boolean _isStale; // whether the values may no longer reflect the controller state
+
+    public IOState(long sequence, Map<String, Object> receivedIOMap, Map<String, Object> sentIOMap) {
+        this(sequence, receivedIOMap, sentIOMap, false);
+    }
+
+    public IOState(long sequence, Map<String, Object> receivedIOMap, Map<String, Object> sentIOMap, boolean isStale) {
+        this._sequence = sequence;
+        this._receivedIOMap = Collections.unmodifiableMap(receivedIOMap);
+        this._sentIOMap = Collections.unmodifiableMap(sentIOMap);
+        this._isStale = isStale;
+    }
+
+    /**
+     * Returns a copy of this snapshot marked as stale.
+     *
+     * @param sequence Sequence number of the new snapshot
+     * @return Stale snapshot with the same IO values
+     */
+    public IOState AsStale(long sequence) {
+        return new IOState(sequence, this._receivedIOMap, this._sentIOMap, true);
+    }
+
+    /**
+     * @return True if the IO values may no longer reflect the controller state and must not be used for
+     *         pointer-based decisions
+     */
+    public boolean IsStale() {
+        return this._isStale;
+    }
+
+    /**
+     * @return Sequence number of this snapshot. Changes whenever a new snapshot is published.
+     */
+    public long GetSequence() {
+        return this._sequence;
+    }
+
+    /**
+     * @return Read-only map of received IO values
+     */
+    public Map<String, Object> GetReceivedIOMap() {
+        return this._receivedIOMap;
+    }
+
+    /**
+     * @return Read-only map of sent IO values
+     */
+    public Map<String, Object> GetSentIOMap() {
+        return this._sentIOMap;
+    }
+
+    /**
+     * Returns received IO value as an int.
+     *
+     * @param ioName       Name of the IO
+     * @param defaultValue Value returned when the IO is missing or not a number
+     * @return IO value
+     */
+    public int GetReceivedInt(String ioName, int defaultValue) {
+        return _AsInt(this._receivedIOMap.get(ioName), defaultValue);
+    }
+
+    /**
+     * Returns received IO value as a boolean.
+     *
+     * @param ioName       Name of the IO
+     * @param defaultValue Value returned when the IO is missing or not a boolean
+     * @return IO value
+     */
+    public boolean GetReceivedBoolean(String ioName, boolean defaultValue) {
+        return _AsBoolean(this._receivedIOMap.get(ioName), defaultValue);
+    }
+
+    /**
+     * Returns received IO value as a string.
+     *
+     * @param ioName       Name of the IO
+     * @param defaultValue Value returned when the IO is missing or not a string
+     * @return IO value
+     */
+    public String GetReceivedString(String ioName, String defaultValue) {
+        return _AsString(this._receivedIOMap.get(ioName), defaultValue);
+    }
+
+    /**
+     * Returns sent IO value as an int.
+     *
+     * @param ioName       Name of the IO
+     * @param defaultValue Value returned when the IO is missing or not a number
+     * @return IO value
+     */
+    public int GetSentInt(String ioName, int defaultValue) {
+        return _AsInt(this._sentIOMap.get(ioName), defaultValue);
+    }
+
+    /**
+     * Returns sent IO value as a boolean.
+     *
+     * @param ioName       Name of the IO
+     * @param defaultValue Value returned when the IO is missing or not a boolean
+     * @return IO value
+     */
+    public boolean GetSentBoolean(String ioName, boolean defaultValue) {
+        return _AsBoolean(this._sentIOMap.get(ioName), defaultValue);
+    }
+
+    /**
+     * Returns sent IO value as a string.
+     *
+     * @param ioName       Name of the IO
+     * @param defaultValue Value returned when the IO is missing or not a string
+     * @return IO value
+     */
+    public String GetSentString(String ioName, String defaultValue) {
+        return _AsString(this._sentIOMap.get(ioName), defaultValue);
+    }
+
+    private static int _AsInt(Object value, int defaultValue) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
+    }
+
+    private static boolean _AsBoolean(Object value, boolean defaultValue) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return defaultValue;
+    }
+
+    private static String _AsString(Object value, String defaultValue) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        return defaultValue;
+    }
+}
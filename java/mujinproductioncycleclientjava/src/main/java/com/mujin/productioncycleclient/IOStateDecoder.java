@@ -0,0 +1,461 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.json.JSONException;
+
+/**
+ * Pull-based decoder for SubscribeRobotBridgesState subscription messages. Reads the sentiovalues and
+ * receivediovalues pair arrays directly from the message text into the given maps, without building a
+ * JSONObject tree first. When the IO name filter is enabled, values of IO names that are not registered
+ * are skipped without being decoded or allocated.
+ *
+ * Decoded values have the same types as JSONObject.toMap() produces. A decoder instance is used by a
+ * single thread at a time, while the IO name filter can be replaced from any thread.
+ */
+public final class IOStateDecoder {
+
+    private volatile NameFilter _nameFilter = null; // registered IO names, null when the filter is disabled
+
+    private String _message = null; // message being decoded
+    private int _position = 0; // current read position in _message
+    private int _tokenStart = 0; // start of the content of the last read string token
+    private int _tokenEnd = 0; // end of the content of the last read string token
+    private boolean _tokenHasEscape = false; // whether the last read string token contains escape sequences
+
+    private String _messageType = null; // type of the last decoded message
+    private boolean _hasIOValues = false; // whether the last decoded message contained IO values
+
+    /**
+     * Sets the IO names whose values are decoded. Patterns ending with '*' match IO names by prefix.
+     *
+     * @param ioNamePatterns IO names or prefix patterns to decode. Null disables the filter and decodes all IO values.
+     */
+    public void SetIONameFilter(Collection<String> ioNamePatterns) {
+        this._nameFilter = ioNamePatterns == null ? null : new NameFilter(ioNamePatterns);
+    }
+
+    /**
+     * Decodes a subscription message, writing the IO values it contains into the given maps.
+     *
+     * @param message       Subscription message text
+     * @param receivedIOMap Map to put received IO values into
+     * @param sentIOMap     Map to put sent IO values into
+     * @return Type of the message, e.g. "data", "ka", or "connection_ack"
+     * @throws JSONException If the message is not valid JSON
+     */
+    public String Decode(String message, Map<String, Object> receivedIOMap, Map<String, Object> sentIOMap) throws JSONException {
+        this._message = message;
+        this._position = 0;
+        this._messageType = null;
+        this._hasIOValues = false;
+        try {
+            this._DecodeObject(0, receivedIOMap, sentIOMap);
+        } finally {
+            this._message = null;
+        }
+        return this._messageType;
+    }
+
+    /**
+     * @return Whether the last decoded message contained sentiovalues or receivediovalues
+     */
+    public boolean HasIOValues() {
+        return this._hasIOValues;
+    }
+
+    /**
+     * Decodes the fields of an object at a given nesting level of the subscription message:
+     * 0 = message, 1 = payload, 2 = data, 3 = SubscribeRobotBridgesState.
+     */
+    private void _DecodeObject(int level, Map<String, Object> receivedIOMap, Map<String, Object> sentIOMap) {
+        this._Expect('{');
+        if (this._Peek() == '}') {
+            this._position++;
+            return;
+        }
+        while (true) {
+            this._ReadString();
+            this._Expect(':');
+            char next = this._Peek();
+            if (level == 0 && this._TokenEquals("type") && next == '"') {
+                this._ReadString();
+                this._messageType = this._TokenString();
+            } else if (next == '{' && ((level == 0 && this._TokenEquals("payload"))
+                    || (level == 1 && this._TokenEquals("data"))
+                    || (level == 2 && this._TokenEquals("SubscribeRobotBridgesState")))) {
+                this._DecodeObject(level + 1, receivedIOMap, sentIOMap);
+            } else if (next == '[' && level == 3 && this._TokenEquals("receivediovalues")) {
+                this._DecodeIOValues(receivedIOMap);
+            } else if (next == '[' && level == 3 && this._TokenEquals("sentiovalues")) {
+                this._DecodeIOValues(sentIOMap);
+            } else {
+                this._SkipValue();
+            }
+            if (this._Next() == '}') {
+                return;
+            }
+            this._position--;
+            this._Expect(',');
+        }
+    }
+
+    /**
+     * Decodes an array of [ioName, ioValue] pairs into the map.
+     */
+    private void _DecodeIOValues(Map<String, Object> ioMap) {
+        this._hasIOValues = true;
+        NameFilter nameFilter = this._nameFilter;
+        this._Expect('[');
+        if (this._Peek() == ']') {
+            this._position++;
+            return;
+        }
+        while (true) {
+            this._Expect('[');
+            this._ReadString();
+            String ioName = null;
+            if (nameFilter == null) {
+                ioName = this._TokenString();
+            } else if (this._tokenHasEscape) {
+                ioName = nameFilter.Match(this._TokenString());
+            } else {
+                ioName = nameFilter.Match(this._message, this._tokenStart, this._tokenEnd);
+            }
+            this._Expect(',');
+            if (ioName == null) {
+                this._SkipValue();
+            } else {
+                ioMap.put(ioName, this._ReadValue());
+            }
+            this._Expect(']');
+            if (this._Next() == ']') {
+                return;
+            }
+            this._position--;
+            this._Expect(',');
+        }
+    }
+
+    /**
+     * Reads a JSON value using the same types as JSONObject.toMap().
+     */
+    private Object _ReadValue() {
+        char next = this._Peek();
+        switch (next) {
+            case '"':
+                this._ReadString();
+                return this._TokenString();
+            case '{': {
+                this._position++;
+                Map<String, Object> result = new HashMap<>();
+                if (this._Peek() == '}') {
+                    this._position++;
+                    return result;
+                }
+                while (true) {
+                    this._ReadString();
+                    String key = this._TokenString();
+                    this._Expect(':');
+                    result.put(key, this._ReadValue());
+                    if (this._Next() == '}') {
+                        return result;
+                    }
+                    this._position--;
+                    this._Expect(',');
+                }
+            }
+            case '[': {
+                this._position++;
+                List<Object> result = new ArrayList<>();
+                if (this._Peek() == ']') {
+                    this._position++;
+                    return result;
+                }
+                while (true) {
+                    result.add(this._ReadValue());
+                    if (this._Next() == ']') {
+                        return result;
+                    }
+                    this._position--;
+                    this._Expect(',');
+                }
+            }
+            case 't':
+                this._ExpectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                this._ExpectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                this._ExpectLiteral("null");
+                return null;
+            default:
+                return this._ReadNumber();
+        }
+    }
+
+    private Object _ReadNumber() {
+        int start = this._position;
+        boolean isDecimal = false;
+        int length = this._message.length();
+        while (this._position < length) {
+            char c = this._message.charAt(this._position);
+            if (c == '.' || c == 'e' || c == 'E') {
+                isDecimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            this._position++;
+        }
+        if (start == this._position) {
+            throw new JSONException("Unexpected character at " + start);
+        }
+        if (isDecimal) {
+            return new BigDecimal(this._message.substring(start, this._position));
+        }
+
+        // integer fast path without allocating a substring, accumulated negatively so that Long.MIN_VALUE
+        // fits, falling back to BigInteger only beyond the long range as JSONObject does
+        boolean isNegative = this._message.charAt(start) == '-';
+        int digitStart = isNegative ? start + 1 : start;
+        long limit = isNegative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int index = digitStart; index < this._position; index++) {
+            char c = this._message.charAt(index);
+            if (c < '0' || c > '9') {
+                throw new JSONException("Invalid number at " + start);
+            }
+            int digit = c - '0';
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                return new BigInteger(this._message.substring(start, this._position));
+            }
+            value = value * 10 - digit;
+        }
+        if (!isNegative) {
+            value = -value;
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+    /**
+     * Skips a JSON value without decoding it.
+     */
+    private void _SkipValue() {
+        char next = this._Peek();
+        if (next == '"') {
+            this._ReadString();
+            return;
+        }
+        if (next != '{' && next != '[') {
+            // literal or number
+            int length = this._message.length();
+            while (this._position < length) {
+                char c = this._message.charAt(this._position);
+                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                    break;
+                }
+                this._position++;
+            }
+            return;
+        }
+        int depth = 0;
+        int length = this._message.length();
+        while (this._position < length) {
+            char c = this._message.charAt(this._position);
+            if (c == '"') {
+                this._ReadString();
+                continue;
+            }
+            this._position++;
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw new JSONException("Unterminated value");
+    }
+
+    /**
+     * Reads a string token, recording the range of its content.
+     */
+    private void _ReadString() {
+        this._Expect('"');
+        this._tokenStart = this._position;
+        this._tokenHasEscape = false;
+        int length = this._message.length();
+        while (this._position < length) {
+            char c = this._message.charAt(this._position);
+            if (c == '"') {
+                this._tokenEnd = this._position;
+                this._position++;
+                return;
+            }
+            if (c == '\\') {
+                this._tokenHasEscape = true;
+                this._position++;
+            }
+            this._position++;
+        }
+        throw new JSONException("Unterminated string at " + this._tokenStart);
+    }
+
+    private boolean _TokenEquals(String value) {
+        return !this._tokenHasEscape
+            && this._tokenEnd - this._tokenStart == value.length()
+            && this._message.regionMatches(this._tokenStart, value, 0, value.length());
+    }
+
+    private String _TokenString() {
+        if (!this._tokenHasEscape) {
+            return this._message.substring(this._tokenStart, this._tokenEnd);
+        }
+        StringBuilder builder = new StringBuilder(this._tokenEnd - this._tokenStart);
+        for (int index = this._tokenStart; index < this._tokenEnd; index++) {
+            char c = this._message.charAt(index);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            c = this._message.charAt(++index);
+            switch (c) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    builder.append((char) Integer.parseInt(this._message.substring(index + 1, index + 5), 16));
+                    index += 4;
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private void _ExpectLiteral(String literal) {
+        if (!this._message.startsWith(literal, this._position)) {
+            throw new JSONException("Expected " + literal + " at " + this._position);
+        }
+        this._position += literal.length();
+    }
+
+    private void _Expect(char expected) {
+        char c = this._Next();
+        if (c != expected) {
+            throw new JSONException("Expected '" + expected + "' at " + (this._position - 1) + " but found '" + c + "'");
+        }
+    }
+
+    /**
+     * @return Next non-whitespace character, without consuming it
+     */
+    private char _Peek() {
+        char c = this._Next();
+        this._position--;
+        return c;
+    }
+
+    /**
+     * @return Next non-whitespace character
+     */
+    private char _Next() {
+        int length = this._message.length();
+        while (this._position < length) {
+            char c = this._message.charAt(this._position++);
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        throw new JSONException("Unexpected end of message");
+    }
+
+    /**
+     * Immutable set of IO names and prefixes that can be matched against a region of the message without
+     * allocating. Exact names are stored in an open addressing table keyed by String.hashCode().
+     */
+    private static final class NameFilter {
+
+        private String[] _names = null; // hash table of exact IO names
+        private String[] _prefixes = null; // IO name prefixes
+
+        NameFilter(Collection<String> ioNamePatterns) {
+            List<String> names = new ArrayList<>();
+            List<String> prefixes = new ArrayList<>();
+            for (String pattern : ioNamePatterns) {
+                if (pattern.endsWith("*")) {
+                    prefixes.add(pattern.substring(0, pattern.length() - 1));
+                } else {
+                    names.add(pattern);
+                }
+            }
+            this._prefixes = prefixes.toArray(new String[0]);
+
+            int capacity = Integer.highestOneBit(Math.max(1, names.size()) * 4);
+            this._names = new String[capacity];
+            for (String name : names) {
+                int slot = name.hashCode() & (capacity - 1);
+                while (this._names[slot] != null && !this._names[slot].equals(name)) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                this._names[slot] = name;
+            }
+        }
+
+        /**
+         * @return The registered IO name equal to message[start:end], a new string if it matches a prefix, or null
+         */
+        String Match(String message, int start, int end) {
+            int hash = 0;
+            for (int index = start; index < end; index++) {
+                hash = 31 * hash + message.charAt(index);
+            }
+            int length = end - start;
+            int mask = this._names.length - 1;
+            for (int slot = hash & mask; this._names[slot] != null; slot = (slot + 1) & mask) {
+                String name = this._names[slot];
+                if (name.length() == length && message.regionMatches(start, name, 0, length)) {
+                    return name;
+                }
+            }
+            for (String prefix : this._prefixes) {
+                if (length >= prefix.length() && message.startsWith(prefix, start)) {
+                    return message.substring(start, end);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return The IO name if it is registered or matches a prefix, otherwise null
+         */
+        String Match(String ioName) {
+            return this.Match(ioName, 0, ioName.length());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Collects IO writes from all threads and sends them as one SetControllerIOVariables request per flush.
+ * Writes to the same IO name are merged with last-writer-wins. A rewritten IO name moves to the end of
+ * the batch, so that the relative order of writes is kept, e.g. a queue slot written before its write
+ * pointer is also sent before it. Flushes are sent one at a time, so batches are never reordered.
+ */
+class IOWriteBatcher {
+
+    private GraphClient _graphClient = null; // client used to send the merged requests
+    private volatile long _windowNanos = 0; // how long writes are collected before a flush
+    private volatile int _maxBatchSize = 0; // number of distinct IO names that triggers an immediate flush
+
+    private ScheduledExecutorService _flusher = null; // single thread sending the batches in order
+
+    private LinkedHashMap<String, Object> _pendingValues = new LinkedHashMap<>(); // merged writes, guarded by this
+    private List<CompletableFuture<Void>> _pendingFutures = new ArrayList<>(); // futures of merged writes, guarded by this
+    private boolean _isFlushScheduled = false; // whether a flush is scheduled for the pending writes, guarded by this
+
+    IOWriteBatcher(GraphClient graphClient, long windowMicros, int maxBatchSize) {
+        this._graphClient = graphClient;
+        this.SetWindow(windowMicros, maxBatchSize);
+        this._flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GraphClient-IOWriteBatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param windowMicros Number of microseconds to collect writes for a batch
+     * @param maxBatchSize Number of distinct IO names that triggers an immediate flush
+     */
+    void SetWindow(long windowMicros, int maxBatchSize) {
+        this._windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this._maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Adds IO writes to the current batch.
+     * 
+     * @param ioNameValues Map<ioName, ioValue> for IO variables to set, sent in iteration order
+     * @return Future completed when the batch containing the writes is acknowledged
+     */
+    CompletableFuture<Void> Set(Map<String, Object> ioNameValues) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            for (Map.Entry<String, Object> ioNameValue : ioNameValues.entrySet()) {
+                this._pendingValues.remove(ioNameValue.getKey());
+                this._pendingValues.put(ioNameValue.getKey(), ioNameValue.getValue());
+            }
+            this._pendingFutures.add(future);
+
+            if (this._pendingValues.size() >= this._maxBatchSize) {
+                this._flusher.execute(this::_Flush);
+            } else if (!this._isFlushScheduled) {
+                this._isFlushScheduled = true;
+                this._flusher.schedule(this::_Flush, this._windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Sends the pending writes and completes their futures. Runs on the flusher thread only.
+     */
+    private void _Flush() {
+        Map<String, Object> values = null;
+        List<CompletableFuture<Void>> futures = null;
+        synchronized (this) {
+            this._isFlushScheduled = false;
+            if (this._pendingFutures.isEmpty()) {
+                return;
+            }
+            values = this._pendingValues;
+            futures = this._pendingFutures;
+            this._pendingValues = new LinkedHashMap<>();
+            this._pendingFutures = new ArrayList<>();
+        }
+
+        try {
+            if (!values.isEmpty()) {
+                this._graphClient.SetControllerIOVariables(values);
+            }
+            futures.forEach(future -> future.complete(null));
+        } catch (Exception e) {
+            futures.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.json.JSONException;
+
+/**
+ * Pull-based JSON reader used by the IO codecs to decode values straight from the response text into typed
+ * objects, without building a JSONObject tree or intermediate maps first. Field names are compared against
+ * the text in place, so known fields are matched without allocating.
+ *
+ * Objects are read as BeginObject, then NextField until it returns false, reading or skipping the value of
+ * every field. Arrays are read the same way with BeginArray and NextElement.
+ */
+public final class JsonReader {
+
+    private final String _text; // JSON text being read
+    private int _position = 0; // current read position in _text
+    private int _tokenStart = 0; // start of the content of the last read string token
+    private int _tokenEnd = 0; // end of the content of the last read string token
+    private boolean _tokenHasEscape = false; // whether the last read string token contains escape sequences
+    private boolean _isFirst = false; // whether the next field or element is the first of its object or array
+
+    JsonReader(String text) {
+        this._text = text;
+    }
+
+    public void BeginObject() {
+        this._Expect('{');
+        this._isFirst = true;
+    }
+
+    /**
+     * Reads the name of the next field of the current object, see IsName and GetName.
+     *
+     * @return False if the object has no more fields
+     */
+    public boolean NextField() {
+        char next = this._Next();
+        if (next == '}') {
+            // the enclosing object or array continues after its first value
+            this._isFirst = false;
+            return false;
+        }
+        if (!this._isFirst) {
+            if (next != ',') {
+                throw new JSONException("Expected ',' at " + (this._position - 1) + " but found '" + next + "'");
+            }
+        } else {
+            this._position--;
+        }
+        this._ReadString();
+        this._Expect(':');
+        this._isFirst = false;
+        return true;
+    }
+
+    /**
+     * @param name Field name to compare
+     * @return Whether the last read field name equals name, without allocating
+     */
+    public boolean IsName(String name) {
+        return !this._tokenHasEscape
+            && this._tokenEnd - this._tokenStart == name.length()
+            && this._text.regionMatches(this._tokenStart, name, 0, name.length());
+    }
+
+    /**
+     * @return Last read field name
+     */
+    public String GetName() {
+        return this._TokenString();
+    }
+
+    public void BeginArray() {
+        this._Expect('[');
+        this._isFirst = true;
+    }
+
+    /**
+     * Moves to the next element of the current array.
+     *
+     * @return False if the array has no more elements
+     */
+    public boolean NextElement() {
+        char next = this._Next();
+        if (next == ']') {
+            this._isFirst = false;
+            return false;
+        }
+        if (!this._isFirst) {
+            if (next != ',') {
+                throw new JSONException("Expected ',' at " + (this._position - 1) + " but found '" + next + "'");
+            }
+        } else {
+            this._position--;
+        }
+        this._isFirst = false;
+        return true;
+    }
+
+    /**
+     * @return Whether the next value is null, consuming it if so
+     */
+    public boolean ReadNull() {
+        if (this._Peek() != 'n') {
+            return false;
+        }
+        this._ExpectLiteral("null");
+        return true;
+    }
+
+    /**
+     * @return String value, or the JSON text of a number or boolean, null for null
+     */
+    public String ReadString() {
+        char next = this._Peek();
+        if (next == '"') {
+            this._ReadString();
+            return this._TokenString();
+        }
+        if (this.ReadNull()) {
+            return null;
+        }
+        return String.valueOf(this.ReadValue());
+    }
+
+    public int ReadInt() {
+        long value = this.ReadLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new JSONException("Integer out of range at " + this._position);
+        }
+        return (int) value;
+    }
+
+    public long ReadLong() {
+        return ((Number) this._ReadNumber()).longValue();
+    }
+
+    public double ReadDouble() {
+        return ((Number) this._ReadNumber()).doubleValue();
+    }
+
+    public boolean ReadBoolean() {
+        if (this._Peek() == 't') {
+            this._ExpectLiteral("true");
+            return true;
+        }
+        this._ExpectLiteral("false");
+        return false;
+    }
+
+    /**
+     * Reads an array of numbers.
+     *
+     * @return Values, null for null
+     */
+    public double[] ReadDoubleArray() {
+        if (this.ReadNull()) {
+            return null;
+        }
+        double[] values = new double[4];
+        int count = 0;
+        this.BeginArray();
+        while (this.NextElement()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = this.ReadDouble();
+        }
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads any JSON value using the same types as JSONObject.toMap().
+     *
+     * @return Value
+     */
+    public Object ReadValue() {
+        char next = this._Peek();
+        switch (next) {
+            case '"':
+                this._ReadString();
+                return this._TokenString();
+            case '{': {
+                Map<String, Object> result = new HashMap<>();
+                this.BeginObject();
+                while (this.NextField()) {
+                    result.put(this.GetName(), this.ReadValue());
+                }
+                return result;
+            }
+            case '[': {
+                List<Object> result = new ArrayList<>();
+                this.BeginArray();
+                while (this.NextElement()) {
+                    result.add(this.ReadValue());
+                }
+                return result;
+            }
+            case 't':
+            case 'f':
+                return this.ReadBoolean();
+            case 'n':
+                this._ExpectLiteral("null");
+                return null;
+            default:
+                return this._ReadNumber();
+        }
+    }
+
+    /**
+     * Skips a JSON value without decoding it.
+     */
+    public void SkipValue() {
+        char next = this._Peek();
+        if (next == '"') {
+            this._ReadString();
+            return;
+        }
+        if (next != '{' && next != '[') {
+            // literal or number
+            int length = this._text.length();
+            while (this._position < length) {
+                char c = this._text.charAt(this._position);
+                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                    break;
+                }
+                this._position++;
+            }
+            return;
+        }
+        int depth = 0;
+        int length = this._text.length();
+        while (this._position < length) {
+            char c = this._text.charAt(this._position);
+            if (c == '"') {
+                this._ReadString();
+                continue;
+            }
+            this._position++;
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw new JSONException("Unterminated value");
+    }
+
+    private Object _ReadNumber() {
+        this._Peek();
+        int start = this._position;
+        boolean isDecimal = false;
+        int length = this._text.length();
+        while (this._position < length) {
+            char c = this._text.charAt(this._position);
+            if (c == '.' || c == 'e' || c == 'E') {
+                isDecimal = true;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            this._position++;
+        }
+        if (start == this._position) {
+            throw new JSONException("Unexpected character at " + start);
+        }
+        if (isDecimal) {
+            return new BigDecimal(this._text.substring(start, this._position));
+        }
+
+        // integer fast path without allocating a substring, accumulated negatively so that Long.MIN_VALUE
+        // fits, falling back to BigInteger only beyond the long range as JSONObject does
+        boolean isNegative = this._text.charAt(start) == '-';
+        int digitStart = isNegative ? start + 1 : start;
+        long limit = isNegative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int index = digitStart; index < this._position; index++) {
+            char c = this._text.charAt(index);
+            if (c < '0' || c > '9') {
+                throw new JSONException("Invalid number at " + start);
+            }
+            int digit = c - '0';
+            if (value < limit / 10 || value * 10 < limit + digit) {
+                return new BigInteger(this._text.substring(start, this._position));
+            }
+            value = value * 10 - digit;
+        }
+        if (!isNegative) {
+            value = -value;
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+    /**
+     * Reads a string token, recording the range of its content.
+     */
+    private void _ReadString() {
+        this._Expect('"');
+        this._tokenStart = this._position;
+        this._tokenHasEscape = false;
+        int length = this._text.length();
+        while (this._position < length) {
+            char c = this._text.charAt(this._position);
+            if (c == '"') {
+                this._tokenEnd = this._position;
+                this._position++;
+                return;
+            }
+            if (c == '\\') {
+                this._tokenHasEscape = true;
+                this._position++;
+            }
+            this._position++;
+        }
+        throw new JSONException("Unterminated string at " + this._tokenStart);
+    }
+
+    private String _TokenString() {
+        if (!this._tokenHasEscape) {
+            return this._text.substring(this._tokenStart, this._tokenEnd);
+        }
+        StringBuilder builder = new StringBuilder(this._tokenEnd - this._tokenStart);
+        for (int index = this._tokenStart; index < this._tokenEnd; index++) {
+            char c = this._text.charAt(index);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            c = this._text.charAt(++index);
+            switch (c) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    builder.append((char) Integer.parseInt(this._text.substring(index + 1, index + 5), 16));
+                    index += 4;
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private void _ExpectLiteral(String literal) {
+        this._Peek();
+        if (!this._text.startsWith(literal, this._position)) {
+            throw new JSONException("Expected " + literal + " at " + this._position);
+        }
+        this._position += literal.length();
+    }
+
+    private void _Expect(char expected) {
+        char c = this._Next();
+        if (c != expected) {
+            throw new JSONException("Expected '" + expected + "' at " + (this._position - 1) + " but found '" + c + "'");
+        }
+    }
+
+    /**
+     * @return Next non-whitespace character, without consuming it
+     */
+    private char _Peek() {
+        char c = this._Next();
+        this._position--;
+        return c;
+    }
+
+    /**
+     * @return Next non-whitespace character
+     */
+    private char _Next() {
+        int length = this._text.length();
+        while (this._position < length) {
+            char c = this._text.charAt(this._position++);
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        throw new JSONException("Unexpected end of JSON text");
+    }
+}
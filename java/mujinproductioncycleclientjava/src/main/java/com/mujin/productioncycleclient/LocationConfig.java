@@ -0,0 +1,76 @@
+package com.mujin.productioncycleclient;
+
+/**
+ * IO names of a location handled by LocationEngine. Mujin sends move-in and move-out requests through the
+ * sent IOs, and the location reports its container through the hasContainer and containerId IOs.
+ */
+public final class LocationConfig {
+
+    private final String _locationName; // name of the location for logging
+    private final String _containerIdIOName; // IO name used to set this location's container ID value
+    private final String _requestContainerIdIOName; // IO name used to get this location's requested container ID
+    private final String _hasContainerIOName; // IO name used to set this location's hasContainer
+    private final String _moveInIOName; // IO name used to get and check for move-in request for this location
+    private final String _moveOutIOName; // IO name used to get and check for move-out request for this location
+
+    /**
+     * @param locationName             Name of the location for logging
+     * @param containerIdIOName        IO name used to set this location's container ID value
+     * @param requestContainerIdIOName IO name used to get this location's requested container ID
+     * @param hasContainerIOName       IO name used to set this location's hasContainer
+     * @param moveInIOName             IO name used to get and check for move-in request for this location
+     * @param moveOutIOName            IO name used to get and check for move-out request for this location
+     */
+    public LocationConfig(String locationName, String containerIdIOName, String requestContainerIdIOName, String hasContainerIOName, String moveInIOName, String moveOutIOName) {
+        this._locationName = locationName;
+        this._containerIdIOName = containerIdIOName;
+        this._requestContainerIdIOName = requestContainerIdIOName;
+        this._hasContainerIOName = hasContainerIOName;
+        this._moveInIOName = moveInIOName;
+        this._moveOutIOName = moveOutIOName;
+    }
+
+    /**
+     * Returns the configuration of location<N> with the default IO names, e.g. location1ContainerId,
+     * location1RequestContainerId, location1HasContainer, moveInLocation1Container and moveOutLocation1Container.
+     * The IO names depend on the Mujin controller configuration.
+     *
+     * @param locationIndex 1-based index of the location
+     * @return Location configuration
+     */
+    public static LocationConfig ForLocation(int locationIndex) {
+        String locationName = "location" + locationIndex;
+        return new LocationConfig(
+            locationName,
+            locationName + "ContainerId",
+            locationName + "RequestContainerId",
+            locationName + "HasContainer",
+            "moveInLocation" + locationIndex + "Container",
+            "moveOutLocation" + locationIndex + "Container"
+        );
+    }
+
+    public String GetLocationName() {
+        return this._locationName;
+    }
+
+    public String GetContainerIdIOName() {
+        return this._containerIdIOName;
+    }
+
+    public String GetRequestContainerIdIOName() {
+        return this._requestContainerIdIOName;
+    }
+
+    public String GetHasContainerIOName() {
+        return this._hasContainerIOName;
+    }
+
+    public String GetMoveInIOName() {
+        return this._moveInIOName;
+    }
+
+    public String GetMoveOutIOName() {
+        return this._moveOutIOName;
+    }
+}
@@ -0,0 +1,229 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.logging.Logger;
+import java.util.function.Supplier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Handles move-in and move-out requests of any number of locations. Evaluation is driven by changes of the
+ * move-in, move-out and requested container ID IOs, so nothing runs while no request changes. All locations
+ * are evaluated on one thread: locations changed since the last evaluation are evaluated together against
+ * one IO state snapshot, and their IO writes are sent as one batch.
+ *
+ * A move-out request clears the container of a location that has one. A move-in request, once any move-out
+ * has finished, puts the requested container, or a newly generated container ID if none was requested.
+ */
+public class LocationEngine {
+
+    private static final long RETRY_DELAY_MILLIS = 100; // delay before re-evaluating locations whose writes failed
+
+    private GraphClient _graphClient = null; // client for checking Mujin IO state and setting location state IO
+    private Map<String, Location> _locationsByIOName = new HashMap<>(); // locations keyed by the IO names that trigger their evaluation
+    private List<Location> _locations = new ArrayList<>(); // all locations in configuration order
+    private volatile Supplier<String> _containerIdGenerator = null; // generates container IDs for move-ins without requested ID
+
+    private LinkedHashSet<Location> _dirtyLocations = new LinkedHashSet<>(); // locations to evaluate, guarded by this
+    private boolean _isEvaluationScheduled = false; // whether an evaluation is scheduled, guarded by this
+    private ScheduledExecutorService _executor = null; // single thread evaluating all locations, null when stopped, guarded by this
+    private IOChangeListener _listener = null; // marks locations dirty on IO changes, guarded by this
+
+    private Counter _moveIns = null; // number of handled move-in requests
+    private Counter _moveOuts = null; // number of handled move-out requests
+
+    private static final Logger log = Logger.getLogger(LocationEngine.class.getName());
+
+    /**
+     * @param graphClient     Client for checking Mujin IO state and setting location state IO
+     * @param locationConfigs Locations to handle
+     */
+    public LocationEngine(GraphClient graphClient, List<LocationConfig> locationConfigs) {
+        this._graphClient = graphClient;
+        for (LocationConfig locationConfig : locationConfigs) {
+            Location location = new Location(locationConfig);
+            this._locations.add(location);
+            this._locationsByIOName.put(locationConfig.GetMoveInIOName(), location);
+            this._locationsByIOName.put(locationConfig.GetMoveOutIOName(), location);
+            this._locationsByIOName.put(locationConfig.GetRequestContainerIdIOName(), location);
+        }
+        AtomicLong containerCount = new AtomicLong();
+        this._containerIdGenerator = () -> "c_" + System.currentTimeMillis() + "_" + containerCount.incrementAndGet();
+
+        MetricsRegistry metrics = graphClient.GetMetrics();
+        this._moveIns = metrics.GetCounter("locationengine.moveIns");
+        this._moveOuts = metrics.GetCounter("locationengine.moveOuts");
+    }
+
+    /**
+     * Sets how container IDs are generated when a move-in does not request a specific container
+     *
+     * @param containerIdGenerator Function returning a unique container ID on each call
+     */
+    public void SetContainerIdGenerator(Supplier<String> containerIdGenerator) {
+        this._containerIdGenerator = containerIdGenerator;
+    }
+
+    /**
+     * Starts handling the locations. The current hasContainer state of every location is read from the IO
+     * state, and requests already pending are handled right away.
+     */
+    public synchronized void Start() {
+        if (this._executor != null) {
+            return;
+        }
+        this._executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LocationEngine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        IOState ioState = this._graphClient.GetIOState();
+        for (Location location : this._locations) {
+            location._hasContainer = ioState.GetSentBoolean(location._config.GetHasContainerIOName(), false);
+            this._graphClient.RegisterIONames(location._config.GetHasContainerIOName());
+        }
+        this._listener = change -> {
+            Location location = this._locationsByIOName.get(change.GetIOName());
+            if (location != null && !change.IsReceived()) {
+                this._MarkDirty(List.of(location), 0);
+            }
+        };
+        for (String ioName : this._locationsByIOName.keySet()) {
+            this._graphClient.AddIOListener(ioName, this._listener);
+        }
+        this._MarkDirty(this._locations, 0);
+    }
+
+    /**
+     * Stops handling the locations. An evaluation already running completes.
+     */
+    public synchronized void Stop() {
+        if (this._executor == null) {
+            return;
+        }
+        this._graphClient.RemoveIOListener(this._listener);
+        this._listener = null;
+        this._executor.shutdown();
+        this._executor = null;
+        this._dirtyLocations.clear();
+        this._isEvaluationScheduled = false;
+    }
+
+    /**
+     * Marks locations for evaluation and schedules an evaluation if none is scheduled.
+     *
+     * @param locations   Locations to evaluate
+     * @param delayMillis Delay before the evaluation
+     */
+    private synchronized void _MarkDirty(List<Location> locations, long delayMillis) {
+        if (this._executor == null) {
+            return;
+        }
+        this._dirtyLocations.addAll(locations);
+        if (this._isEvaluationScheduled) {
+            return;
+        }
+        this._isEvaluationScheduled = true;
+        this._executor.schedule(this::_Evaluate, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evaluates all dirty locations against the latest IO state and sends their IO writes as one batch.
+     */
+    private void _Evaluate() {
+        List<Location> locations = null;
+        synchronized (this) {
+            this._isEvaluationScheduled = false;
+            locations = new ArrayList<>(this._dirtyLocations);
+            this._dirtyLocations.clear();
+        }
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        // do not act on requests while the subscription is recovering, the requests may have changed
+        IOState ioState = this._graphClient.GetIOState();
+        if (ioState.IsStale()) {
+            try {
+                ioState = this._graphClient.AwaitIO(state -> !state.IsStale(), TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (ioState == null) {
+                this._MarkDirty(locations, 0);
+                return;
+            }
+        }
+
+        Map<String, Object> ioNameValues = new LinkedHashMap<>();
+        Map<Location, Boolean> hasContainerUpdates = new LinkedHashMap<>();
+        for (Location location : locations) {
+            LocationConfig config = location._config;
+            boolean isMoveIn = ioState.GetSentBoolean(config.GetMoveInIOName(), false);
+            boolean isMoveOut = ioState.GetSentBoolean(config.GetMoveOutIOName(), false);
+
+            // handle move out
+            if (isMoveOut && location._hasContainer) {
+                // reset container ID and set hasContainer False
+                ioNameValues.put(config.GetContainerIdIOName(), "");
+                ioNameValues.put(config.GetHasContainerIOName(), false);
+                hasContainerUpdates.put(location, false);
+                log.info("Moved out container from location " + config.GetLocationName());
+            }
+            // handle move in only when move out has finished or not requested
+            else if (isMoveIn && !location._hasContainer && !isMoveOut) {
+                // get requested container ID for the move in
+                String requestContainerId = ioState.GetSentString(config.GetRequestContainerIdIOName(), "");
+                if (requestContainerId.length() == 0) {
+                    // generate a new container ID because specific ID was not requested by the system
+                    requestContainerId = this._containerIdGenerator.get();
+                }
+                // set container ID and set hasContainer True
+                ioNameValues.put(config.GetContainerIdIOName(), requestContainerId);
+                ioNameValues.put(config.GetHasContainerIOName(), true);
+                hasContainerUpdates.put(location, true);
+                log.info("Moved in container " + requestContainerId + " to location " + config.GetLocationName());
+            }
+        }
+        if (ioNameValues.isEmpty()) {
+            return;
+        }
+
+        // set ioNameValues of all locations at once, merged with other writes of the client
+        try {
+            Futures.Get(this._graphClient.SetControllerIOVariablesAsync(ioNameValues));
+        } catch (Exception e) {
+            log.warning("Failed to set location IO, retrying: " + e.toString());
+            this._MarkDirty(new ArrayList<>(hasContainerUpdates.keySet()), RETRY_DELAY_MILLIS);
+            return;
+        }
+        hasContainerUpdates.forEach((location, hasContainer) -> {
+            location._hasContainer = hasContainer;
+            (hasContainer ? this._moveIns : this._moveOuts).Increment();
+        });
+
+        // a request may have changed while the writes were in flight
+        this._MarkDirty(new ArrayList<>(hasContainerUpdates.keySet()), 0);
+    }
+
+    /**
+     * State of a single location. Only accessed by the evaluation thread after Start.
+     */
+    private static final class Location {
+
+        private final LocationConfig _config; // IO names of the location
+        private boolean _hasContainer = false; // whether the location currently has a container
+
+        Location(LocationConfig config) {
+            this._config = config;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of named counters, histograms and gauges. Recording only touches lock-free counters, and gauges
+ * are computed only when the registry is read, so metrics cost next to nothing when nobody reads them.
+ * Read the registry periodically with Snapshot() for scraping or Dump() for logging. Rates, e.g. messages
+ * per second, are derived by the reader from the difference of counters between reads.
+ */
+public final class MetricsRegistry {
+
+    private final Map<String, Counter> _counters = new ConcurrentHashMap<>(); // counters keyed by name
+    private final Map<String, Histogram> _histograms = new ConcurrentHashMap<>(); // histograms keyed by name
+    private final Map<String, LongSupplier> _gauges = new ConcurrentHashMap<>(); // gauges keyed by name
+
+    /**
+     * Returns the counter with the name, creating it if needed. Callers should keep the returned counter
+     * instead of looking it up on every increment.
+     * 
+     * @param name Name of the counter
+     * @return Counter
+     */
+    public Counter GetCounter(String name) {
+        return this._counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Returns the histogram with the name, creating it if needed. Callers should keep the returned histogram
+     * instead of looking it up on every record.
+     * 
+     * @param name Name of the histogram
+     * @return Histogram
+     */
+    public Histogram GetHistogram(String name) {
+        return this._histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge computed when the registry is read. Replaces a gauge with the same name.
+     * 
+     * @param name  Name of the gauge
+     * @param gauge Function computing the current value
+     */
+    public void RegisterGauge(String name, LongSupplier gauge) {
+        this._gauges.put(name, gauge);
+    }
+
+    /**
+     * Reads all metrics. Histograms are reported as name.count, name.mean, name.p50, name.p99 and name.max.
+     * 
+     * @return Current metric values keyed by name, sorted by name
+     */
+    public Map<String, Number> Snapshot() {
+        Map<String, Number> snapshot = new TreeMap<>();
+        this._counters.forEach((name, counter) -> snapshot.put(name, counter.Get()));
+        this._gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        this._histograms.forEach((name, histogram) -> {
+            Map<String, Number> values = new LinkedHashMap<>();
+            values.put(name + ".count", histogram.GetCount());
+            values.put(name + ".mean", histogram.GetMean());
+            values.put(name + ".p50", histogram.GetValueAtPercentile(50));
+            values.put(name + ".p99", histogram.GetValueAtPercentile(99));
+            values.put(name + ".max", histogram.GetMax());
+            snapshot.putAll(values);
+        });
+        return snapshot;
+    }
+
+    /**
+     * @return All metrics formatted as one "name value" line per metric
+     */
+    public String Dump() {
+        StringBuilder builder = new StringBuilder();
+        this.Snapshot().forEach((name, value) -> {
+            builder.append(name).append(' ').append(value).append('\n');
+        });
+        return builder.toString();
+    }
+}
@@ -0,0 +1,271 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives several production queues of one controller through a single GraphClient, so all queues share
+ * the subscription and the write batcher. Orders are routed to queues by a QueueRoutingPolicy. Results of
+ * all queues are dequeued when their result write pointer changes and delivered to one OrderResultListener,
+ * so no thread polls while the queues are idle and adding queues does not add threads.
+ */
+public class MultiQueueOrderManager {
+
+    private GraphClient _graphClient = null; // client shared by all queues
+    private Map<Integer, OrderManager> _orderManagers = new LinkedHashMap<>(); // order managers keyed by queue index
+    private OrderManager[] _orderManagerList = null; // order managers in routing order
+
+    private volatile QueueRoutingPolicy _routingPolicy = QueueRoutingPolicy.LEAST_OCCUPIED; // how orders without a queue index are routed
+    private final AtomicInteger _nextQueue = new AtomicInteger(); // next position for ROUND_ROBIN
+
+    /**
+     * @param graphClient  Client shared by all queues
+     * @param queueIndices 1-based indices of the production queues to drive
+     */
+    public MultiQueueOrderManager(GraphClient graphClient, int... queueIndices) {
+        this._graphClient = graphClient;
+        for (int queueIndex : queueIndices) {
+            this._orderManagers.put(queueIndex, new OrderManager(graphClient, queueIndex));
+        }
+        this._orderManagerList = this._orderManagers.values().toArray(new OrderManager[0]);
+    }
+
+    /**
+     * Sets how orders without a queue index are routed
+     * 
+     * @param routingPolicy Policy to use
+     */
+    public void SetRoutingPolicy(QueueRoutingPolicy routingPolicy) {
+        this._routingPolicy = routingPolicy;
+    }
+
+    /**
+     * @param queueIndex 1-based index of the production queue
+     * @return Order manager of the queue
+     * @throws IllegalArgumentException If the queue is not driven by this manager
+     */
+    public OrderManager GetOrderManager(int queueIndex) {
+        OrderManager orderManager = this._orderManagers.get(queueIndex);
+        if (orderManager == null) {
+            throw new IllegalArgumentException("Production queue " + queueIndex + " is not managed");
+        }
+        return orderManager;
+    }
+
+    /**
+     * @return Number of orders not yet picked up by the controller, summed over all queues
+     */
+    int GetOrderLoad() {
+        int orderLoad = 0;
+        for (OrderManager orderManager : this._orderManagerList) {
+            orderLoad += orderManager.GetOrderLoad();
+        }
+        return orderLoad;
+    }
+
+    /**
+     * Initializes order pointers and queue lengths of all queues. See OrderManager.InitializeOrderPointers.
+     * 
+     * @param timeout Number of seconds to wait for the order pointers of each queue to be initialized
+     * @throws Exception If cannot initialize within the timeout period
+     */
+    public void InitializeOrderPointers(long timeout) throws Exception {
+        for (OrderManager orderManager : this._orderManagerList) {
+            orderManager.InitializeOrderPointers(timeout);
+        }
+    }
+
+    /**
+     * Clears the result queues of all queues. See OrderManager.ResetResultPointers.
+     * 
+     * @throws Exception If cannot reset the result pointers
+     */
+    public void ResetResultPointers() throws Exception {
+        for (OrderManager orderManager : this._orderManagerList) {
+            orderManager.ResetResultPointers();
+        }
+    }
+
+    /**
+     * Queues an order entry to the queue chosen by the routing policy.
+     * 
+     * @param orderEntry Order information to queue to the system
+     * @return Future completed with the 1-based index of the chosen queue when the order is written
+     */
+    public CompletableFuture<Integer> QueueOrderAsync(Map<String, Object> orderEntry) {
+        OrderManager orderManager = null;
+        try {
+            orderManager = this._Route();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return this._QueueOrderAsync(orderManager, orderEntry);
+    }
+
+    /**
+     * Queues an order entry to the given queue.
+     * 
+     * @param queueIndex 1-based index of the production queue
+     * @param orderEntry Order information to queue to the system
+     * @return Future completed with queueIndex when the order is written
+     */
+    public CompletableFuture<Integer> QueueOrderAsync(int queueIndex, Map<String, Object> orderEntry) {
+        OrderManager orderManager = null;
+        try {
+            orderManager = this.GetOrderManager(queueIndex);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return this._QueueOrderAsync(orderManager, orderEntry);
+    }
+
+    private CompletableFuture<Integer> _QueueOrderAsync(OrderManager orderManager, Map<String, Object> orderEntry) {
+        int queueIndex = orderManager.GetQueueIndex();
+        return orderManager.QueueOrderAsync(orderEntry).thenApply(ignored -> queueIndex);
+    }
+
+    /**
+     * Queues multiple order entries, routing each by the routing policy. Entries routed to the same queue are
+     * written together as in OrderManager.QueueOrders.
+     * 
+     * @param orderEntries Order information to queue to the system
+     * @return One future per order entry, completed with the 1-based index of the chosen queue when the entry
+     *         is written
+     */
+    public List<CompletableFuture<Integer>> QueueOrders(List<Map<String, Object>> orderEntries) {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        Map<OrderManager, List<Integer>> routedIndices = new LinkedHashMap<>();
+        int[] routedLoads = new int[this._orderManagerList.length];
+        for (int index = 0; index < orderEntries.size(); index++) {
+            futures.add(null);
+            OrderManager orderManager = null;
+            try {
+                orderManager = this._RouteBatchEntry(routedLoads);
+            } catch (Exception e) {
+                futures.set(index, CompletableFuture.failedFuture(e));
+                continue;
+            }
+            routedIndices.computeIfAbsent(orderManager, ignored -> new ArrayList<>()).add(index);
+        }
+
+        for (Map.Entry<OrderManager, List<Integer>> routed : routedIndices.entrySet()) {
+            int queueIndex = routed.getKey().GetQueueIndex();
+            List<Map<String, Object>> queueOrderEntries = new ArrayList<>();
+            for (int index : routed.getValue()) {
+                queueOrderEntries.add(orderEntries.get(index));
+            }
+            List<CompletableFuture<Void>> queueFutures = routed.getKey().QueueOrders(queueOrderEntries);
+            for (int position = 0; position < queueFutures.size(); position++) {
+                futures.set(routed.getValue().get(position), queueFutures.get(position).thenApply(ignored -> queueIndex));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Queues multiple order entries to the given queue. See OrderManager.QueueOrders.
+     * 
+     * @param queueIndex   1-based index of the production queue
+     * @param orderEntries Order information to queue to the system
+     * @return One future per order entry, completed with queueIndex when the entry is written
+     */
+    public List<CompletableFuture<Integer>> QueueOrders(int queueIndex, List<Map<String, Object>> orderEntries) {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        OrderManager orderManager = null;
+        try {
+            orderManager = this.GetOrderManager(queueIndex);
+        } catch (Exception e) {
+            for (int index = 0; index < orderEntries.size(); index++) {
+                futures.add(CompletableFuture.failedFuture(e));
+            }
+            return futures;
+        }
+        for (CompletableFuture<Void> future : orderManager.QueueOrders(orderEntries)) {
+            futures.add(future.thenApply(ignored -> queueIndex));
+        }
+        return futures;
+    }
+
+    /**
+     * Chooses the queue for an order without a queue index.
+     * 
+     * @return Order manager of the chosen queue
+     * @throws Exception If the routing policy requires a queue index
+     */
+    private OrderManager _Route() throws Exception {
+        return this._RouteBatchEntry(null);
+    }
+
+    /**
+     * Chooses the queue for an entry of a batch. Loads of entries routed earlier in the same batch are added
+     * to the queue loads, since they are not accounted by the order managers yet.
+     * 
+     * @param routedLoads Number of entries routed to each queue earlier in the batch, or null for a single order
+     * @return Order manager of the chosen queue
+     * @throws Exception If the routing policy requires a queue index
+     */
+    private OrderManager _RouteBatchEntry(int[] routedLoads) throws Exception {
+        int position = 0;
+        switch (this._routingPolicy) {
+            case ROUND_ROBIN:
+                position = Math.floorMod(this._nextQueue.getAndIncrement(), this._orderManagerList.length);
+                break;
+            case LEAST_OCCUPIED:
+                int leastLoad = Integer.MAX_VALUE;
+                for (int index = 0; index < this._orderManagerList.length; index++) {
+                    int load = this._orderManagerList[index].GetOrderLoad() + (routedLoads == null ? 0 : routedLoads[index]);
+                    if (load < leastLoad) {
+                        leastLoad = load;
+                        position = index;
+                    }
+                }
+                break;
+            default:
+                throw new Exception("Routing policy " + this._routingPolicy + " requires a queue index for every order");
+        }
+        if (routedLoads != null) {
+            routedLoads[position]++;
+        }
+        return this._orderManagerList[position];
+    }
+
+    /**
+     * Starts dequeuing the results of all queues. Results are read as soon as a result write pointer changes,
+     * all available entries of a queue in one request. See OrderManager.StartDequeueOrderResults.
+     * 
+     * @param resultListener Listener receiving the dequeued results
+     */
+    public void StartDequeueOrderResults(OrderResultListener resultListener) {
+        for (OrderManager orderManager : this._orderManagerList) {
+            orderManager.StartDequeueOrderResults(resultListener);
+        }
+    }
+
+    /**
+     * Stops dequeuing results. Results already being read are still delivered.
+     */
+    public void StopDequeueOrderResults() {
+        for (OrderManager orderManager : this._orderManagerList) {
+            orderManager.StopDequeueOrderResults();
+        }
+    }
+
+    /**
+     * Returns a future of the result of an order queued to any of the queues. See OrderManager.GetOrderResultAsync.
+     * 
+     * @param queueIndex    1-based index of the production queue the order was queued to
+     * @param orderUniqueId Unique id of the order
+     * @return Future completed with the order result
+     */
+    public CompletableFuture<Map<String, Object>> GetOrderResultAsync(int queueIndex, String orderUniqueId) {
+        try {
+            return this.GetOrderManager(queueIndex).GetOrderResultAsync(orderUniqueId);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
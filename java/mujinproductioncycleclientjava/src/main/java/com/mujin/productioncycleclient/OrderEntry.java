@@ -0,0 +1,359 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+/**
+ * Typed entry of the production queue order queue, written by its codec without building a map. Also a
+ * read-only Map<String, Object> with the order field names as keys, see TypedIOValue. Created with NewBuilder.
+ */
+public final class OrderEntry extends TypedIOValue {
+
+    public static final IOCodec<OrderEntry> CODEC = new IOCodec<OrderEntry>() {
+        @Override
+        public void Write(RequestBodyWriter writer, OrderEntry value) {
+            value.WriteJson(writer);
+        }
+
+        @Override
+        public OrderEntry Read(JsonReader reader) {
+            return _Read(reader);
+        }
+    }; // codec of order queue entries
+
+    private final String _orderUniqueId; // unique id for this order
+    private final String _orderGroupId; // groups multiple orders to the same place container
+    private final String _orderPickContainerId; // id of the container to pick from
+    private final String _orderPlaceContainerId; // id of the container to place to
+    private final String _orderScenarioId; // scenario configured on the controller, e.g. "pallet"
+    private final String _orderType; // type of the order, e.g. "picking" or "packFormation"
+    private final int _orderNumber; // number of parts to pick
+    private final int _orderInputPartIndex; // 1-based index into the pack formation, 0 if not packing
+    private final String _orderPickLocationName; // name of the location to pick from
+    private final String _orderPlaceLocationName; // name of the location to place to
+    private final double _orderPartWeight; // weight of the part
+    private final double _orderPartSizeX; // size of the part along x
+    private final double _orderPartSizeY; // size of the part along y
+    private final double _orderPartSizeZ; // size of the part along z
+    private final Map<String, Object> _extras; // additional parameters required by the controller configuration
+
+    /**
+     * Used by the codec and the builder. Applications use NewBuilder, which sets the many adjacent string
+     * fields by name.
+     */
+    OrderEntry(String orderUniqueId, String orderGroupId, String orderPickContainerId, String orderPlaceContainerId, String orderScenarioId, String orderType, int orderNumber, int orderInputPartIndex, String orderPickLocationName, String orderPlaceLocationName, double orderPartWeight, double orderPartSizeX, double orderPartSizeY, double orderPartSizeZ, Map<String, Object> extras) {
+        this._orderUniqueId = orderUniqueId;
+        this._orderGroupId = orderGroupId;
+        this._orderPickContainerId = orderPickContainerId;
+        this._orderPlaceContainerId = orderPlaceContainerId;
+        this._orderScenarioId = orderScenarioId;
+        this._orderType = orderType;
+        this._orderNumber = orderNumber;
+        this._orderInputPartIndex = orderInputPartIndex;
+        this._orderPickLocationName = orderPickLocationName;
+        this._orderPlaceLocationName = orderPlaceLocationName;
+        this._orderPartWeight = orderPartWeight;
+        this._orderPartSizeX = orderPartSizeX;
+        this._orderPartSizeY = orderPartSizeY;
+        this._orderPartSizeZ = orderPartSizeZ;
+        this._extras = extras;
+    }
+
+    /**
+     * @return Builder of an order entry, with strings left out, numbers 0 and no extras until set
+     */
+    public static Builder NewBuilder() {
+        return new Builder();
+    }
+
+    private static OrderEntry _Read(JsonReader reader) {
+        String orderUniqueId = null;
+        String orderGroupId = null;
+        String orderPickContainerId = null;
+        String orderPlaceContainerId = null;
+        String orderScenarioId = null;
+        String orderType = null;
+        int orderNumber = 0;
+        int orderInputPartIndex = 0;
+        String orderPickLocationName = null;
+        String orderPlaceLocationName = null;
+        double orderPartWeight = 0;
+        double orderPartSizeX = 0;
+        double orderPartSizeY = 0;
+        double orderPartSizeZ = 0;
+        Map<String, Object> extras = Map.of();
+        reader.BeginObject();
+        while (reader.NextField()) {
+            if (reader.IsName("orderUniqueId")) {
+                orderUniqueId = reader.ReadString();
+            } else if (reader.IsName("orderGroupId")) {
+                orderGroupId = reader.ReadString();
+            } else if (reader.IsName("orderPickContainerId")) {
+                orderPickContainerId = reader.ReadString();
+            } else if (reader.IsName("orderPlaceContainerId")) {
+                orderPlaceContainerId = reader.ReadString();
+            } else if (reader.IsName("orderScenarioId")) {
+                orderScenarioId = reader.ReadString();
+            } else if (reader.IsName("orderType")) {
+                orderType = reader.ReadString();
+            } else if (reader.IsName("orderNumber")) {
+                orderNumber = reader.ReadInt();
+            } else if (reader.IsName("orderInputPartIndex")) {
+                orderInputPartIndex = reader.ReadInt();
+            } else if (reader.IsName("orderPickLocationName")) {
+                orderPickLocationName = reader.ReadString();
+            } else if (reader.IsName("orderPlaceLocationName")) {
+                orderPlaceLocationName = reader.ReadString();
+            } else if (reader.IsName("orderPartWeight")) {
+                orderPartWeight = reader.ReadDouble();
+            } else if (reader.IsName("orderPartSizeX")) {
+                orderPartSizeX = reader.ReadDouble();
+            } else if (reader.IsName("orderPartSizeY")) {
+                orderPartSizeY = reader.ReadDouble();
+            } else if (reader.IsName("orderPartSizeZ")) {
+                orderPartSizeZ = reader.ReadDouble();
+            } else {
+                if (extras.isEmpty()) {
+                    extras = new LinkedHashMap<>();
+                }
+                extras.put(reader.GetName(), reader.ReadValue());
+            }
+        }
+        return new OrderEntry(orderUniqueId, orderGroupId, orderPickContainerId, orderPlaceContainerId, orderScenarioId, orderType, orderNumber, orderInputPartIndex, orderPickLocationName, orderPlaceLocationName, orderPartWeight, orderPartSizeX, orderPartSizeY, orderPartSizeZ, extras);
+    }
+
+    @Override
+    void WriteJson(RequestBodyWriter writer) {
+        writer.WriteByte('{');
+        // strings are left out when null, as JSONObject leaves out null map values
+        boolean isFirst = _WriteString(writer, "orderUniqueId", this._orderUniqueId, true);
+        isFirst = _WriteString(writer, "orderGroupId", this._orderGroupId, isFirst);
+        isFirst = _WriteString(writer, "orderPickContainerId", this._orderPickContainerId, isFirst);
+        isFirst = _WriteString(writer, "orderPlaceContainerId", this._orderPlaceContainerId, isFirst);
+        isFirst = _WriteString(writer, "orderScenarioId", this._orderScenarioId, isFirst);
+        isFirst = _WriteString(writer, "orderType", this._orderType, isFirst);
+        WriteName(writer, "orderNumber", isFirst);
+        writer.WriteLong(this._orderNumber);
+        WriteName(writer, "orderInputPartIndex", false);
+        writer.WriteLong(this._orderInputPartIndex);
+        _WriteString(writer, "orderPickLocationName", this._orderPickLocationName, false);
+        _WriteString(writer, "orderPlaceLocationName", this._orderPlaceLocationName, false);
+        WriteName(writer, "orderPartWeight", false);
+        writer.WriteDouble(this._orderPartWeight);
+        WriteName(writer, "orderPartSizeX", false);
+        writer.WriteDouble(this._orderPartSizeX);
+        WriteName(writer, "orderPartSizeY", false);
+        writer.WriteDouble(this._orderPartSizeY);
+        WriteName(writer, "orderPartSizeZ", false);
+        writer.WriteDouble(this._orderPartSizeZ);
+        WriteExtras(writer, this._extras);
+        writer.WriteByte('}');
+    }
+
+    /**
+     * @return Whether the next field is still the first field
+     */
+    private static boolean _WriteString(RequestBodyWriter writer, String name, String value, boolean isFirst) {
+        if (value == null) {
+            return isFirst;
+        }
+        WriteName(writer, name, isFirst);
+        writer.WriteString(value);
+        return false;
+    }
+
+    @Override
+    void PutFields(Map<String, Object> map) {
+        map.put("orderUniqueId", this._orderUniqueId);
+        map.put("orderGroupId", this._orderGroupId);
+        map.put("orderPickContainerId", this._orderPickContainerId);
+        map.put("orderPlaceContainerId", this._orderPlaceContainerId);
+        map.put("orderScenarioId", this._orderScenarioId);
+        map.put("orderType", this._orderType);
+        map.put("orderNumber", this._orderNumber);
+        map.put("orderInputPartIndex", this._orderInputPartIndex);
+        map.put("orderPickLocationName", this._orderPickLocationName);
+        map.put("orderPlaceLocationName", this._orderPlaceLocationName);
+        map.values().removeIf(value -> value == null);
+        map.put("orderPartWeight", ToNumber(this._orderPartWeight));
+        map.put("orderPartSizeX", ToNumber(this._orderPartSizeX));
+        map.put("orderPartSizeY", ToNumber(this._orderPartSizeY));
+        map.put("orderPartSizeZ", ToNumber(this._orderPartSizeZ));
+        map.putAll(this._extras);
+    }
+
+    public String GetOrderUniqueId() {
+        return this._orderUniqueId;
+    }
+
+    public String GetOrderGroupId() {
+        return this._orderGroupId;
+    }
+
+    public String GetOrderPickContainerId() {
+        return this._orderPickContainerId;
+    }
+
+    public String GetOrderPlaceContainerId() {
+        return this._orderPlaceContainerId;
+    }
+
+    public String GetOrderScenarioId() {
+        return this._orderScenarioId;
+    }
+
+    public String GetOrderType() {
+        return this._orderType;
+    }
+
+    public int GetOrderNumber() {
+        return this._orderNumber;
+    }
+
+    public int GetOrderInputPartIndex() {
+        return this._orderInputPartIndex;
+    }
+
+    public String GetOrderPickLocationName() {
+        return this._orderPickLocationName;
+    }
+
+    public String GetOrderPlaceLocationName() {
+        return this._orderPlaceLocationName;
+    }
+
+    public double GetOrderPartWeight() {
+        return this._orderPartWeight;
+    }
+
+    public double GetOrderPartSizeX() {
+        return this._orderPartSizeX;
+    }
+
+    public double GetOrderPartSizeY() {
+        return this._orderPartSizeY;
+    }
+
+    public double GetOrderPartSizeZ() {
+        return this._orderPartSizeZ;
+    }
+
+    /**
+     * @return Additional parameters required by the controller configuration
+     */
+    public Map<String, Object> GetExtras() {
+        return this._extras;
+    }
+
+    /**
+     * Sets the fields of an OrderEntry by name.
+     */
+    public static final class Builder {
+
+        private String _orderUniqueId = null; // unique id for this order
+        private String _orderGroupId = null; // groups multiple orders to the same place container
+        private String _orderPickContainerId = null; // id of the container to pick from
+        private String _orderPlaceContainerId = null; // id of the container to place to
+        private String _orderScenarioId = null; // scenario configured on the controller
+        private String _orderType = null; // type of the order
+        private int _orderNumber = 0; // number of parts to pick
+        private int _orderInputPartIndex = 0; // 1-based index into the pack formation, 0 if not packing
+        private String _orderPickLocationName = null; // name of the location to pick from
+        private String _orderPlaceLocationName = null; // name of the location to place to
+        private double _orderPartWeight = 0; // weight of the part
+        private double _orderPartSizeX = 0; // size of the part along x
+        private double _orderPartSizeY = 0; // size of the part along y
+        private double _orderPartSizeZ = 0; // size of the part along z
+        private final Map<String, Object> _extras = new LinkedHashMap<>(); // additional parameters in insertion order
+
+        private Builder() {
+        }
+
+        public Builder SetOrderUniqueId(String orderUniqueId) {
+            this._orderUniqueId = orderUniqueId;
+            return this;
+        }
+
+        public Builder SetOrderGroupId(String orderGroupId) {
+            this._orderGroupId = orderGroupId;
+            return this;
+        }
+
+        public Builder SetOrderPickContainerId(String orderPickContainerId) {
+            this._orderPickContainerId = orderPickContainerId;
+            return this;
+        }
+
+        public Builder SetOrderPlaceContainerId(String orderPlaceContainerId) {
+            this._orderPlaceContainerId = orderPlaceContainerId;
+            return this;
+        }
+
+        public Builder SetOrderScenarioId(String orderScenarioId) {
+            this._orderScenarioId = orderScenarioId;
+            return this;
+        }
+
+        public Builder SetOrderType(String orderType) {
+            this._orderType = orderType;
+            return this;
+        }
+
+        public Builder SetOrderNumber(int orderNumber) {
+            this._orderNumber = orderNumber;
+            return this;
+        }
+
+        public Builder SetOrderInputPartIndex(int orderInputPartIndex) {
+            this._orderInputPartIndex = orderInputPartIndex;
+            return this;
+        }
+
+        public Builder SetOrderPickLocationName(String orderPickLocationName) {
+            this._orderPickLocationName = orderPickLocationName;
+            return this;
+        }
+
+        public Builder SetOrderPlaceLocationName(String orderPlaceLocationName) {
+            this._orderPlaceLocationName = orderPlaceLocationName;
+            return this;
+        }
+
+        public Builder SetOrderPartWeight(double orderPartWeight) {
+            this._orderPartWeight = orderPartWeight;
+            return this;
+        }
+
+        public Builder SetOrderPartSize(double orderPartSizeX, double orderPartSizeY, double orderPartSizeZ) {
+            this._orderPartSizeX = orderPartSizeX;
+            this._orderPartSizeY = orderPartSizeY;
+            this._orderPartSizeZ = orderPartSizeZ;
+            return this;
+        }
+
+        /**
+         * Adds a parameter required by the Mujin controller configuration, written after the typed fields.
+         *
+         * @param name  Name of the parameter
+         * @param value Value of the parameter
+         * @return This builder
+         */
+        public Builder PutExtra(String name, Object value) {
+            this._extras.put(name, value);
+            return this;
+        }
+
+        /**
+         * @return Order entry with the fields set so far
+         * @throws IllegalStateException If orderUniqueId is not set, since results are matched by it
+         */
+        public OrderEntry Build() {
+            if (this._orderUniqueId == null) {
+                throw new IllegalStateException("orderUniqueId is required");
+            }
+            Map<String, Object> extras = this._extras.isEmpty() ? Map.of() : Collections.unmodifiableMap(new LinkedHashMap<>(this._extras));
+            return new OrderEntry(this._orderUniqueId, this._orderGroupId, this._orderPickContainerId, this._orderPlaceContainerId, this._orderScenarioId, this._orderType, this._orderNumber, this._orderInputPartIndex, this._orderPickLocationName, this._orderPlaceLocationName, this._orderPartWeight, this._orderPartSizeX, this._orderPartSizeY, this._orderPartSizeZ, extras);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.mujin.productioncycleclient;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.List;
+import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32;
+import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Append-only, memory-mapped journal of one production queue, used by OrderManager to survive restarts of
+ * the client process. It records the orders written to the order queue together with the order write
+ * pointer, the results read from the result queue together with the result read pointer, and which results
+ * were handed to the application. Replaying it on startup restores the orders still waiting for a result and
+ * the results read but not yet handed over.
+ *
+ * Records are written to the mapped file, which the OS keeps when the process dies, so appending costs a
+ * memory copy. The file is forced to disk at most once per force interval to also survive OS crashes.
+ *
+ * When a record does not fit, the journal is compacted: the current state is written as a single snapshot
+ * record to a new file replacing the old one. The file grows only if the snapshot itself does not fit. The
+ * mapping of the old file is released right away instead of when the buffer is garbage collected, so that
+ * frequent compactions do not pile up mappings of replaced files.
+ *
+ * Record layout: int length of type and payload, int CRC32 of type and payload, byte type, UTF-8 JSON payload.
+ * Replay stops at the first record with zero length or a bad checksum, i.e. at a record torn by a crash.
+ */
+public final class OrderJournal implements AutoCloseable {
+
+    public static final long DEFAULT_CAPACITY_BYTES = 16 << 20; // default size of the mapped file
+    public static final int DEFAULT_MAX_IN_FLIGHT_ORDERS = 4096; // default number of orders waiting for a result kept
+    public static final int DEFAULT_MAX_UNCLAIMED_RESULTS = 4096; // default number of results not handed over kept
+
+    private static final int MAGIC = 0x4d4a4f4a; // "MJOJ", start of the journal file
+    private static final int VERSION = 1; // version of the record layout
+    private static final int FILE_HEADER_BYTES = 8; // magic and version
+    private static final int RECORD_HEADER_BYTES = 9; // length, checksum and type
+
+    private static final byte RECORD_SNAPSHOT = 1; // whole state, first record after compaction
+    private static final byte RECORD_ORDERS = 2; // orders about to be written to the order queue
+    private static final byte RECORD_RESULTS = 3; // results read from the result queue, before the read pointer is advanced
+    private static final byte RECORD_CLAIMED = 4; // result handed to the application
+
+    private final Path _path; // journal file
+    private final long _forceIntervalNanos; // minimum time between forcing the file to disk, negative to never force
+    private long _capacity = 0; // size of the mapped file
+    private FileChannel _channel = null; // channel of the journal file
+    private MappedByteBuffer _buffer = null; // mapped journal file, positioned at the end of the last record
+    private long _lastForceNanos = 0; // when the file was last forced to disk
+    private int _maxInFlightOrders = DEFAULT_MAX_IN_FLIGHT_ORDERS; // number of orders waiting for a result kept
+    private int _maxUnclaimedResults = DEFAULT_MAX_UNCLAIMED_RESULTS; // number of results not handed over kept
+
+    private final LinkedHashMap<String, Map<String, Object>> _inFlightOrders = new LinkedHashMap<>(); // orders waiting for a result keyed by orderUniqueId, oldest first
+    private final LinkedHashMap<String, Map<String, Object>> _unclaimedResults = new LinkedHashMap<>(); // results read but not handed over keyed by orderUniqueId, oldest first
+    private int _lastOrdersFromPointer = 0; // order write pointer before the last journaled orders, 0 if none
+    private int _lastOrdersToPointer = 0; // order write pointer after the last journaled orders, 0 if none
+    private List<Map<String, Object>> _lastOrders = new ArrayList<>(); // last journaled orders, rewritten if the controller never received them
+    private int _lastResultsFromPointer = 0; // result read pointer before the last journaled results, 0 if none
+    private int _lastResultsToPointer = 0; // result read pointer after the last journaled results, 0 if none
+
+    private static final Logger log = Logger.getLogger(OrderJournal.class.getName());
+    private static final MethodHandle UNMAP = _FindUnmap(); // releases a mapped buffer right away, null if unavailable, after log which it uses
+
+    /**
+     * Opens the journal, replaying it if the file exists. Never forces the file to disk.
+     *
+     * @param path Journal file, one per production queue
+     * @throws IOException If cannot open the file
+     */
+    public OrderJournal(Path path) throws IOException {
+        this(path, DEFAULT_CAPACITY_BYTES, -1);
+    }
+
+    /**
+     * Opens the journal, replaying it if the file exists.
+     *
+     * @param path                Journal file, one per production queue
+     * @param capacityBytes       Size of the mapped file, compacted when full
+     * @param forceIntervalMillis Minimum milliseconds between forcing the file to disk on append, 0 to force
+     *                            on every append, negative to never force
+     * @throws IOException If cannot open the file
+     */
+    public OrderJournal(Path path, long capacityBytes, long forceIntervalMillis) throws IOException {
+        this._path = path;
+        this._forceIntervalNanos = forceIntervalMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(forceIntervalMillis);
+        long startNanos = System.nanoTime();
+        boolean exists = Files.exists(path) && Files.size(path) >= FILE_HEADER_BYTES;
+        this._Map(path, Math.max(capacityBytes, exists ? Files.size(path) : 0));
+        if (exists && this._buffer.getInt(0) == MAGIC && this._buffer.getInt(4) == VERSION) {
+            int recordCount = this._Replay();
+            log.info("Replayed " + recordCount + " journal records from " + path + " in " + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos) + "us, " + this._inFlightOrders.size() + " orders in flight, " + this._unclaimedResults.size() + " unclaimed results");
+        } else {
+            this._buffer.putInt(0, MAGIC);
+            this._buffer.putInt(4, VERSION);
+            this._buffer.position(FILE_HEADER_BYTES);
+            // a previous journal may have left records behind
+            this._buffer.putInt(FILE_HEADER_BYTES, 0);
+        }
+    }
+
+    /**
+     * Sets how many orders waiting for a result are kept. The oldest are forgotten beyond it, e.g. orders
+     * whose results the controller discarded.
+     *
+     * @param maxInFlightOrders Number of orders
+     */
+    public synchronized void SetMaxInFlightOrders(int maxInFlightOrders) {
+        this._maxInFlightOrders = Math.max(0, maxInFlightOrders);
+        this._TrimInFlightOrders();
+    }
+
+    /**
+     * Sets how many results not handed to the application are kept, which bounds the snapshot written on
+     * compaction. The oldest are forgotten beyond it, e.g. results nobody ever waits for.
+     *
+     * @param maxUnclaimedResults Number of results
+     */
+    public synchronized void SetMaxUnclaimedResults(int maxUnclaimedResults) {
+        this._maxUnclaimedResults = Math.max(0, maxUnclaimedResults);
+        this._TrimUnclaimedResults();
+    }
+
+    /**
+     * @return Orders written to the order queue whose results were not read yet, oldest first
+     */
+    public synchronized List<Map<String, Object>> GetInFlightOrders() {
+        return new ArrayList<>(this._inFlightOrders.values());
+    }
+
+    /**
+     * @return Results read from the result queue but not handed to the application, oldest first
+     */
+    public synchronized List<Map<String, Object>> GetUnclaimedResults() {
+        return new ArrayList<>(this._unclaimedResults.values());
+    }
+
+    /**
+     * @return Whether nothing was journaled yet
+     */
+    synchronized boolean IsEmpty() {
+        return this._lastOrdersToPointer == 0 && this._lastResultsToPointer == 0 && this._inFlightOrders.isEmpty() && this._unclaimedResults.isEmpty();
+    }
+
+    synchronized int GetLastOrdersFromPointer() {
+        return this._lastOrdersFromPointer;
+    }
+
+    synchronized int GetLastOrdersToPointer() {
+        return this._lastOrdersToPointer;
+    }
+
+    synchronized List<Map<String, Object>> GetLastOrders() {
+        return new ArrayList<>(this._lastOrders);
+    }
+
+    synchronized int GetLastResultsFromPointer() {
+        return this._lastResultsFromPointer;
+    }
+
+    synchronized int GetLastResultsToPointer() {
+        return this._lastResultsToPointer;
+    }
+
+    /**
+     * Records orders before they are written to the order queue.
+     *
+     * @param fromPointer  Order write pointer before the orders
+     * @param toPointer    Order write pointer after the orders
+     * @param orderEntries Orders in slot order
+     * @throws IOException If cannot append to the journal
+     */
+    synchronized void AppendOrders(int fromPointer, int toPointer, List<? extends Map<String, Object>> orderEntries) throws IOException {
+        JSONObject payload = new JSONObject();
+        payload.put("from", fromPointer);
+        payload.put("to", toPointer);
+        payload.put("orders", new JSONArray(orderEntries));
+        this._Append(RECORD_ORDERS, payload);
+        this._ApplyOrders(fromPointer, toPointer, orderEntries);
+    }
+
+    /**
+     * Records results after they are read from the result queue, before the result read pointer is advanced.
+     *
+     * @param fromPointer   Result read pointer before the results
+     * @param toPointer     Result read pointer after the results
+     * @param resultEntries Results in queue order, empty when results are discarded
+     * @throws IOException If cannot append to the journal
+     */
+    synchronized void AppendResults(int fromPointer, int toPointer, List<Map<String, Object>> resultEntries) throws IOException {
+        JSONObject payload = new JSONObject();
+        payload.put("from", fromPointer);
+        payload.put("to", toPointer);
+        payload.put("results", new JSONArray(resultEntries));
+        this._Append(RECORD_RESULTS, payload);
+        this._ApplyResults(fromPointer, toPointer, resultEntries);
+    }
+
+    /**
+     * Records that a result was handed to the application, so it is not restored after a restart.
+     *
+     * @param orderUniqueId ID of the order of the result
+     * @throws IOException If cannot append to the journal
+     */
+    synchronized void AppendClaimed(String orderUniqueId) throws IOException {
+        if (!this._unclaimedResults.containsKey(orderUniqueId)) {
+            return;
+        }
+        JSONObject payload = new JSONObject();
+        payload.put("orderUniqueId", orderUniqueId);
+        this._Append(RECORD_CLAIMED, payload);
+        this._unclaimedResults.remove(orderUniqueId);
+    }
+
+    /**
+     * Replaces the journal with a single snapshot of the current state.
+     *
+     * @throws IOException If cannot write the new journal file
+     */
+    public synchronized void Compact() throws IOException {
+        byte[] snapshot = this._CreateSnapshot().toString().getBytes(StandardCharsets.UTF_8);
+        long capacity = this._capacity;
+        while (FILE_HEADER_BYTES + RECORD_HEADER_BYTES + snapshot.length + 4 > capacity / 2) {
+            // keep room for appends after the snapshot
+            capacity *= 2;
+        }
+
+        // write the snapshot next to the journal and replace the journal with it in one rename
+        Path compactedPath = this._path.resolveSibling(this._path.getFileName() + ".compact");
+        Files.deleteIfExists(compactedPath);
+        FileChannel oldChannel = this._channel;
+        MappedByteBuffer oldBuffer = this._buffer;
+        this._Map(compactedPath, capacity);
+        this._buffer.putInt(0, MAGIC);
+        this._buffer.putInt(4, VERSION);
+        this._buffer.position(FILE_HEADER_BYTES);
+        this._WriteRecord(RECORD_SNAPSHOT, snapshot);
+        this._buffer.force();
+        this._lastForceNanos = System.nanoTime();
+        Files.move(compactedPath, this._path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        oldChannel.close();
+        _Unmap(oldBuffer);
+        log.info("Compacted order journal " + this._path + " to " + snapshot.length + " bytes");
+    }
+
+    /**
+     * Forces the journal to disk and closes it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this._channel == null) {
+            return;
+        }
+        this._buffer.force();
+        this._channel.close();
+        _Unmap(this._buffer);
+        this._channel = null;
+        this._buffer = null;
+    }
+
+    /**
+     * Releases the mapping of a buffer that is not accessed anymore. Left to the garbage collector if the
+     * runtime does not allow it.
+     *
+     * @param buffer Mapped buffer, must not be accessed afterwards
+     */
+    private static void _Unmap(MappedByteBuffer buffer) {
+        if (UNMAP == null) {
+            return;
+        }
+        try {
+            UNMAP.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            log.warning("Failed to unmap order journal buffer: " + e.toString());
+        }
+    }
+
+    /**
+     * @return Handle of sun.misc.Unsafe.invokeCleaner bound to the Unsafe instance, null if unavailable
+     */
+    private static MethodHandle _FindUnmap() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            MethodHandle invokeCleaner = MethodHandles.lookup().findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class));
+            return invokeCleaner.bindTo(unsafeField.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("Cannot unmap order journal buffers explicitly, leaving it to the garbage collector: " + e.toString());
+            return null;
+        }
+    }
+
+    private void _Map(Path path, long capacity) throws IOException {
+        this._channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this._buffer = this._channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this._capacity = capacity;
+    }
+
+    /**
+     * Appends a record, compacting the journal first if it does not fit.
+     */
+    private void _Append(byte type, JSONObject payload) throws IOException {
+        if (this._channel == null) {
+            throw new IOException("Order journal " + this._path + " is closed");
+        }
+        byte[] bytes = payload.toString().getBytes(StandardCharsets.UTF_8);
+        // keep room for the zero length marking the end
+        if (this._buffer.remaining() < RECORD_HEADER_BYTES + bytes.length + 4) {
+            this.Compact();
+            if (this._buffer.remaining() < RECORD_HEADER_BYTES + bytes.length + 4) {
+                throw new IOException("Order journal record of " + bytes.length + " bytes does not fit in " + this._capacity + " bytes");
+            }
+        }
+        this._WriteRecord(type, bytes);
+        if (this._forceIntervalNanos >= 0) {
+            long nowNanos = System.nanoTime();
+            if (nowNanos - this._lastForceNanos >= this._forceIntervalNanos) {
+                this._buffer.force();
+                this._lastForceNanos = nowNanos;
+            }
+        }
+    }
+
+    /**
+     * Writes a record at the buffer position. The length is written last, so a record torn by a crash
+     * either ends the journal or fails its checksum.
+     */
+    private void _WriteRecord(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        int start = this._buffer.position();
+        this._buffer.position(start + 4);
+        this._buffer.putInt((int) crc.getValue());
+        this._buffer.put(type);
+        this._buffer.put(payload);
+        this._buffer.putInt(this._buffer.position(), 0);
+        this._buffer.putInt(start, 1 + payload.length);
+    }
+
+    /**
+     * Applies all intact records and positions the buffer after the last one.
+     *
+     * @return Number of applied records
+     */
+    private int _Replay() {
+        int recordCount = 0;
+        int position = FILE_HEADER_BYTES;
+        while (position + RECORD_HEADER_BYTES <= this._capacity) {
+            int length = this._buffer.getInt(position);
+            if (length < 1 || position + 8L + length > this._capacity) {
+                break;
+            }
+            byte[] record = new byte[length];
+            this._buffer.get(position + 8, record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != this._buffer.getInt(position + 4)) {
+                log.warning("Order journal " + this._path + " ends with a torn record at byte " + position);
+                break;
+            }
+            JSONObject payload = new JSONObject(new String(record, 1, length - 1, StandardCharsets.UTF_8));
+            this._ApplyRecord(record[0], payload);
+            recordCount++;
+            position += 8 + length;
+        }
+        this._buffer.position(position);
+        if (position + 4 <= this._capacity) {
+            this._buffer.putInt(position, 0);
+        }
+        return recordCount;
+    }
+
+    private void _ApplyRecord(byte type, JSONObject payload) {
+        switch (type) {
+            case RECORD_SNAPSHOT:
+                this._inFlightOrders.clear();
+                this._unclaimedResults.clear();
+                for (Object orderEntry : payload.getJSONArray("inFlightOrders")) {
+                    Map<String, Object> order = ((JSONObject) orderEntry).toMap();
+                    this._inFlightOrders.put(String.valueOf(order.get("orderUniqueId")), order);
+                }
+                for (Object resultEntry : payload.getJSONArray("unclaimedResults")) {
+                    Map<String, Object> result = ((JSONObject) resultEntry).toMap();
+                    this._unclaimedResults.put(String.valueOf(result.get("orderUniqueId")), result);
+                }
+                this._lastOrdersFromPointer = payload.getInt("lastOrdersFrom");
+                this._lastOrdersToPointer = payload.getInt("lastOrdersTo");
+                this._lastOrders = _ToMaps(payload.getJSONArray("lastOrders"));
+                this._lastResultsFromPointer = payload.getInt("lastResultsFrom");
+                this._lastResultsToPointer = payload.getInt("lastResultsTo");
+                break;
+            case RECORD_ORDERS:
+                this._ApplyOrders(payload.getInt("from"), payload.getInt("to"), _ToMaps(payload.getJSONArray("orders")));
+                break;
+            case RECORD_RESULTS:
+                this._ApplyResults(payload.getInt("from"), payload.getInt("to"), _ToMaps(payload.getJSONArray("results")));
+                break;
+            case RECORD_CLAIMED:
+                this._unclaimedResults.remove(payload.getString("orderUniqueId"));
+                break;
+            default:
+                log.warning("Skipped order journal record of unknown type " + type);
+        }
+    }
+
+    private void _ApplyOrders(int fromPointer, int toPointer, List<? extends Map<String, Object>> orderEntries) {
+        this._lastOrdersFromPointer = fromPointer;
+        this._lastOrdersToPointer = toPointer;
+        this._lastOrders = new ArrayList<>(orderEntries);
+        for (Map<String, Object> orderEntry : orderEntries) {
+            this._inFlightOrders.put(String.valueOf(orderEntry.get("orderUniqueId")), orderEntry);
+        }
+        this._TrimInFlightOrders();
+    }
+
+    private void _ApplyResults(int fromPointer, int toPointer, List<Map<String, Object>> resultEntries) {
+        this._lastResultsFromPointer = fromPointer;
+        this._lastResultsToPointer = toPointer;
+        for (Map<String, Object> resultEntry : resultEntries) {
+            String orderUniqueId = String.valueOf(resultEntry.get("orderUniqueId"));
+            this._inFlightOrders.remove(orderUniqueId);
+            this._unclaimedResults.put(orderUniqueId, resultEntry);
+        }
+        this._TrimUnclaimedResults();
+    }
+
+    private void _TrimInFlightOrders() {
+        Iterator<Map<String, Object>> iterator = this._inFlightOrders.values().iterator();
+        while (this._inFlightOrders.size() > this._maxInFlightOrders && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void _TrimUnclaimedResults() {
+        Iterator<Map<String, Object>> iterator = this._unclaimedResults.values().iterator();
+        while (this._unclaimedResults.size() > this._maxUnclaimedResults && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private JSONObject _CreateSnapshot() {
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("inFlightOrders", new JSONArray(this._inFlightOrders.values()));
+        snapshot.put("unclaimedResults", new JSONArray(this._unclaimedResults.values()));
+        snapshot.put("lastOrdersFrom", this._lastOrdersFromPointer);
+        snapshot.put("lastOrdersTo", this._lastOrdersToPointer);
+        snapshot.put("lastOrders", new JSONArray(this._lastOrders));
+        snapshot.put("lastResultsFrom", this._lastResultsFromPointer);
+        snapshot.put("lastResultsTo", this._lastResultsToPointer);
+        return snapshot;
+    }
+
+    private static List<Map<String, Object>> _ToMaps(JSONArray array) {
+        List<Map<String, Object>> maps = new ArrayList<>();
+        for (Object value : array) {
+            maps.add(((JSONObject) value).toMap());
+        }
+        return maps;
+    }
+}
@@ -1,13 +1,18 @@
 package com.mujin.productioncycleclient;
 
 import java.util.Map;
+import java.util.List;
+import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.logging.Logger;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import static java.util.Map.entry;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 public class OrderManager {
 
     private String _orderQueueIOName = null; // io name of order request queue
@@ -18,22 +23,126 @@ public class OrderManager {
     private String _resultReadPointerIOName = null; // io name of order result read pointer
     private String _resultWritePointerIOName = null; // io name of order result write pointer
 
-    private int _orderWritePointer = 0; // value of current order request write pointer
-    private int _resultReadPointer = 0; // value of current order result write pointer
+    private volatile int _orderWritePointer = 0; // value of current order request write pointer
+    private volatile int _resultReadPointer = 0; // value of current order result write pointer
     private int _queueLength = 0; // length of order request queue
+    private volatile boolean _isPointersInitialized = false; // whether InitializeOrderPointers read the pointers, no results are dequeued before
+    private int _queueIndex = 0; // 1-based index of the production queue
+    private final AtomicInteger _pendingOrders = new AtomicInteger(); // orders accepted by the async API but not yet written
+
+    private final Map<String, CompletableFuture<Map<String, Object>>> _resultWaiters = new ConcurrentHashMap<>(); // futures of queued orders keyed by orderUniqueId
+    private final Map<String, Map<String, Object>> _unclaimedResults = new LinkedHashMap<>(); // results nobody waited for keyed by orderUniqueId, oldest first, guarded by itself
+    private volatile int _unclaimedResultCapacity = 1024; // number of unclaimed results kept for late waiters
+    private volatile OrderResultListener _overflowHandler = null; // receives unclaimed results evicted from _unclaimedResults
+    private volatile OrderResultListener _resultListener = null; // receives every dequeued result, may be null
+    private volatile IOChangeListener _resultWritePointerListener = null; // triggers dequeuing on result write pointer changes, written with this locked
+    private final ResultDrain _resultDrain = new ResultDrain(); // dequeues results on the client executor
+    private Counter _droppedResults = null; // number of unclaimed results evicted from _unclaimedResults
+    private volatile OrderJournal _journal = null; // records queued orders and dequeued results for restarts, may be null
 
     private GraphClient _graphClient = null; // instance of graphqlclient.GraphClient
+    private Histogram _queueBlockedNanos = null; // time spent waiting for a free slot in the order queue
+    private Histogram _dequeueNanos = null; // time to read a result entry and advance the result read pointer
+
+    private final ReentrantLock _orderLock = new ReentrantLock(); // serializes writers of the order request queue, held across IO waits and requests, so a lock rather than a monitor that would pin virtual threads
+    private final ReentrantLock _resultLock = new ReentrantLock(); // serializes readers of the order result queue, held across requests
+    private final Object _asyncOrderLock = new Object(); // guards _lastAsyncOrder
+    private CompletableFuture<Void> _lastAsyncOrder = CompletableFuture.completedFuture(null); // last order queued by QueueOrderAsync
 
     private static final Logger log = Logger.getLogger(OrderManager.class.getName());
 
     public OrderManager(GraphClient graphClient, int queueIndex) {
         this._graphClient = graphClient;
+        this._queueIndex = queueIndex;
         this._orderQueueIOName = "productionQueue" + queueIndex + "Order";
         this._resultQueueIOName = "productionQueue" + queueIndex + "Result";
         this._orderReadPointerIOName = "location" + queueIndex + "OrderReadPointer";
         this._orderWritePointerIOName = "location" + queueIndex + "OrderWritePointer";
         this._resultReadPointerIOName = "location" + queueIndex + "OrderResultReadPointer";
         this._resultWritePointerIOName = "location" + queueIndex + "OrderResultWritePointer";
+
+        // ring occupancy is computed from the pointers only when metrics are read
+        MetricsRegistry metrics = graphClient.GetMetrics();
+        String metricPrefix = "ordermanager.queue" + queueIndex + ".";
+        metrics.RegisterGauge(metricPrefix + "orderOccupancy", () -> {
+            return this._GetOccupancy(this._graphClient.GetIOState().GetReceivedInt(this._orderReadPointerIOName, 0), this._orderWritePointer);
+        });
+        metrics.RegisterGauge(metricPrefix + "resultBacklog", () -> {
+            return this._GetOccupancy(this._resultReadPointer, this._graphClient.GetIOState().GetReceivedInt(this._resultWritePointerIOName, 0));
+        });
+        metrics.RegisterGauge(metricPrefix + "queueLength", () -> this._queueLength);
+        this._queueBlockedNanos = metrics.GetHistogram(metricPrefix + "queueOrderBlockedNanos");
+        this._dequeueNanos = metrics.GetHistogram(metricPrefix + "dequeueNanos");
+        this._droppedResults = metrics.GetCounter(metricPrefix + "droppedUnclaimedResults");
+        metrics.RegisterGauge(metricPrefix + "resultWaiters", () -> this._resultWaiters.size());
+
+        // keep the pointers when the subscription filters IO names
+        this._graphClient.RegisterIONames(
+            this._orderReadPointerIOName,
+            this._orderWritePointerIOName,
+            this._resultReadPointerIOName,
+            this._resultWritePointerIOName
+        );
+    }
+
+    /**
+     * @return 1-based index of the production queue
+     */
+    public int GetQueueIndex() {
+        return this._queueIndex;
+    }
+
+    /**
+     * @return IO name of the order result write pointer
+     */
+    String GetResultWritePointerIOName() {
+        return this._resultWritePointerIOName;
+    }
+
+    /**
+     * @return IO name of the order read pointer
+     */
+    String GetOrderReadPointerIOName() {
+        return this._orderReadPointerIOName;
+    }
+
+    /**
+     * @return Client used by this order manager
+     */
+    GraphClient GetGraphClient() {
+        return this._graphClient;
+    }
+
+    /**
+     * @return Length of the order queue, 0 before InitializeOrderPointers
+     */
+    public int GetQueueLength() {
+        return this._queueLength;
+    }
+
+    /**
+     * Returns number of order entries that can be written to the order queue right now, derived from the
+     * order read pointer of the controller and the order write pointer. One slot is always kept empty to tell
+     * a full queue from an empty one, so at most GetQueueLength() - 1 slots are free.
+     * 
+     * @return Number of free slots, 0 while the IO state is stale or the pointers are not initialized
+     */
+    public int GetFreeOrderSlots() {
+        if (this._queueLength <= 0) {
+            return 0;
+        }
+        return this._GetFreeSlots(this._graphClient.GetIOState());
+    }
+
+    /**
+     * Returns number of orders in the order queue plus orders accepted by QueueOrderAsync or QueueOrders
+     * that are not written yet.
+     * 
+     * @return Number of orders not yet picked up by the controller
+     */
+    int GetOrderLoad() {
+        IOState ioState = this._graphClient.GetIOState();
+        return this._GetOccupancy(ioState.GetReceivedInt(this._orderReadPointerIOName, 0), this._orderWritePointer) + this._pendingOrders.get();
     }
 
     /**
@@ -50,6 +159,20 @@ public class OrderManager {
         return pointerValue;
     }
 
+    /**
+     * Returns number of entries between a read and a write pointer of a queue.
+     * 
+     * @param readPointerValue  Value of the read pointer
+     * @param writePointerValue Value of the write pointer
+     * @return Number of entries written but not yet read, 0 if the pointers are not initialized
+     */
+    private int _GetOccupancy(int readPointerValue, int writePointerValue) {
+        if (this._queueLength <= 0 || readPointerValue < 1 || writePointerValue < 1) {
+            return 0;
+        }
+        return Math.floorMod(writePointerValue - readPointerValue, this._queueLength);
+    }
+
     /**
      * Sends GraphQL query to get order queue pointers and order queue length
      * 
@@ -57,35 +180,166 @@ public class OrderManager {
      * @throws Exception If cannot initialize within the timeout period
      */
     public void InitializeOrderPointers(long timeout) throws Exception {
-        long startTime = System.currentTimeMillis();
+        // stop dequeuing until the pointers of this session are read
+        this._isPointersInitialized = false;
 
-        // initialize order queue length from order queue
-        this._queueLength = ((JSONArray) this._graphClient.GetControllerIOVariable(this._orderQueueIOName)).length();
+        // initialize order queue length from order queue, read once per subscription session
+        this._queueLength = this._graphClient.GetControllerIOArrayLength(this._orderQueueIOName);
         log.info("Order queue length is " + this._queueLength);
 
+        // wait until order queue pointer values are valid
+        IOState ioState = this._graphClient.AwaitIO(this::_IsOrderPointersValid, TimeUnit.SECONDS.toMillis(timeout));
+        if (ioState == null) {
+            throw new Exception("Production cycle order queue pointers are invalid");
+        }
+
         // initialize order pointers
-        boolean initializedOrderPointers = false;
-        while (!initializedOrderPointers) {
-            Map<String, Object> receivedIOMap = this._graphClient.GetReceivedIOMap();
-
-            this._orderWritePointer = (int) receivedIOMap.getOrDefault(this._orderWritePointerIOName, 0);
-            this._resultReadPointer = (int) receivedIOMap.getOrDefault(this._resultReadPointerIOName, 0);
-            int orderReadPointer = (int) receivedIOMap.getOrDefault(this._orderReadPointerIOName, 0);
-            int resultWritePointer = (int) receivedIOMap.getOrDefault(this._resultWritePointerIOName, 0);
-
-            // verify order queue pointer values are valid
-            initializedOrderPointers = true;
-            for (int pointerValue : new int[] {
-                    this._orderWritePointer, this._resultReadPointer, orderReadPointer, resultWritePointer
-            }) {
-                if (pointerValue < 1 || pointerValue > this._queueLength) {
-                    initializedOrderPointers = false;
-                    if (System.currentTimeMillis() - startTime > TimeUnit.SECONDS.toMillis(timeout)) {
-                        throw new Exception("Production cycle order queue pointers are invalid");
-                    }
+        this._orderWritePointer = ioState.GetReceivedInt(this._orderWritePointerIOName, 0);
+        this._resultReadPointer = ioState.GetReceivedInt(this._resultReadPointerIOName, 0);
+        if (this._journal != null) {
+            this._ReconcileJournal(this._journal);
+        }
+        this._isPointersInitialized = true;
+
+        // results written while dequeuing waited for the pointers do not change the pointer again
+        if (this._resultWritePointerListener != null) {
+            this._resultDrain.Request();
+        }
+    }
+
+    /**
+     * Sets the journal recording queued orders, pointer advances and dequeued results, so that a restarted
+     * client continues where it stopped instead of discarding results. Must be set before
+     * InitializeOrderPointers, which replays it against the pointers of the controller. Restored results are
+     * kept for GetOrderResultAsync like results nobody waited for yet, and the orders still waiting for a
+     * result are listed by GetJournaledInFlightOrders. Do not call ResetResultPointers after a restart, as it
+     * discards the results the controller wrote in the meantime.
+     * 
+     * @param journal Journal of this production queue, or null to disable journaling
+     */
+    public void SetJournal(OrderJournal journal) {
+        this._journal = journal;
+    }
+
+    /**
+     * @return Orders written to the order queue whose results were not dequeued yet according to the
+     *         journal, oldest first. Empty without a journal.
+     */
+    public List<Map<String, Object>> GetJournaledInFlightOrders() {
+        OrderJournal journal = this._journal;
+        return journal == null ? new ArrayList<>() : journal.GetInFlightOrders();
+    }
+
+    /**
+     * Reconciles the journal with the pointers of the controller read by InitializeOrderPointers. Orders
+     * journaled but never written because the client stopped in between are written again, and a result read
+     * pointer advance that did not reach the controller is sent again.
+     * 
+     * @param journal Journal replayed on open
+     * @throws Exception If cannot write to the controller
+     */
+    private void _ReconcileJournal(OrderJournal journal) throws Exception {
+        if (journal.IsEmpty()) {
+            return;
+        }
+        this._orderLock.lock();
+        try {
+            int lastOrdersToPointer = journal.GetLastOrdersToPointer();
+            if (lastOrdersToPointer != 0 && lastOrdersToPointer != this._orderWritePointer) {
+                if (this._orderWritePointer == journal.GetLastOrdersFromPointer()) {
+                    List<Map<String, Object>> lastOrders = journal.GetLastOrders();
+                    log.info("Writing " + lastOrders.size() + " journaled orders the controller did not receive");
+                    this._WriteOrderSlots(lastOrders, false);
+                } else {
+                    log.warning("Order write pointer " + this._orderWritePointer + " does not match journaled " + lastOrdersToPointer + ", the order queue was reset");
+                }
+            }
+        } finally {
+            this._orderLock.unlock();
+        }
+        this._resultLock.lock();
+        try {
+            int lastResultsToPointer = journal.GetLastResultsToPointer();
+            if (lastResultsToPointer != 0 && lastResultsToPointer != this._resultReadPointer) {
+                if (this._resultReadPointer == journal.GetLastResultsFromPointer()) {
+                    this._resultReadPointer = lastResultsToPointer;
+                    Futures.Get(this._graphClient.SetControllerIOVariablesAsync(Map.of(this._resultReadPointerIOName, this._resultReadPointer)));
+                } else {
+                    log.warning("Result read pointer " + this._resultReadPointer + " does not match journaled " + lastResultsToPointer + ", the result queue was reset");
                 }
             }
+        } finally {
+            this._resultLock.unlock();
         }
+        // restored results complete early waiters or are kept like dequeued results, evicting beyond the capacity
+        List<Map<String, Object>> unclaimedResults = journal.GetUnclaimedResults();
+        for (Map<String, Object> resultEntry : unclaimedResults) {
+            this._CompleteResultWaiter(resultEntry, false);
+        }
+        log.info("Restored " + unclaimedResults.size() + " unclaimed results and " + journal.GetInFlightOrders().size() + " orders in flight from the journal");
+    }
+
+    /**
+     * Records that a result was handed to the application, if journaling.
+     * 
+     * @param orderUniqueId ID of the order of the result
+     */
+    private void _JournalClaimed(String orderUniqueId) {
+        OrderJournal journal = this._journal;
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.AppendClaimed(orderUniqueId);
+        } catch (Exception e) {
+            log.warning("Failed to journal claimed order result " + orderUniqueId + ": " + e.toString());
+        }
+    }
+
+    /**
+     * Blocks until the subscription delivers IO state reflecting the controller state.
+     * 
+     * @return Fresh IO state
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    private IOState _AwaitFreshIOState() throws InterruptedException {
+        IOState ioState = null;
+        while ((ioState = this._graphClient.AwaitIO(state -> !state.IsStale(), TimeUnit.SECONDS.toMillis(30))) == null) {
+            // log periodically
+            log.info("Currently the IO state is stale, waiting for the subscription to recover");
+        }
+        return ioState;
+    }
+
+    /**
+     * Checks whether InitializeOrderPointers read a result read pointer within the result queue, so that
+     * results can be dequeued.
+     * 
+     * @return True if the result read pointer is valid
+     */
+    private boolean _IsResultReadPointerValid() {
+        return this._isPointersInitialized && this._queueLength > 0 && this._resultReadPointer >= 1 && this._resultReadPointer <= this._queueLength;
+    }
+
+    /**
+     * Checks whether all order queue pointer values in the IO state are within the order queue.
+     * 
+     * @param ioState IO state to check
+     * @return True if all pointers are valid
+     */
+    private boolean _IsOrderPointersValid(IOState ioState) {
+        if (ioState.IsStale()) {
+            return false;
+        }
+        for (String pointerIOName : new String[] {
+                this._orderWritePointerIOName, this._resultReadPointerIOName, this._orderReadPointerIOName, this._resultWritePointerIOName
+        }) {
+            int pointerValue = ioState.GetReceivedInt(pointerIOName, 0);
+            if (pointerValue < 1 || pointerValue > this._queueLength) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -93,65 +347,582 @@ public class OrderManager {
      * 
      */
     public void ResetResultPointers() throws Exception {
-        // clears the result queue
-        Map<String, Object> receivedIOMap = this._graphClient.GetReceivedIOMap();
-        int resultWritePointer = (int) receivedIOMap.getOrDefault(this._resultWritePointerIOName, 0);
-        this._resultReadPointer = resultWritePointer;
-        this._graphClient.SetControllerIOVariables(Map.of(this._resultReadPointerIOName, resultWritePointer));
+        this._resultLock.lock();
+        try {
+            // clears the result queue
+            int resultWritePointer = this._AwaitFreshIOState().GetReceivedInt(this._resultWritePointerIOName, 0);
+            if (this._journal != null) {
+                this._journal.AppendResults(this._resultReadPointer, resultWritePointer, List.of());
+            }
+            this._resultReadPointer = resultWritePointer;
+            Futures.Get(this._graphClient.SetControllerIOVariablesAsync(Map.of(this._resultReadPointerIOName, resultWritePointer)));
+        } finally {
+            this._resultLock.unlock();
+        }
+    }
+
+    /**
+     * Queues an order entry to the order queue. Blocks until the entry is written. Starts dequeuing results
+     * if not started yet, see StartDequeueOrderResults.
+     * 
+     * @param orderEntry Order information to queue to the system
+     * @return Future completed with the order result carrying the same orderUniqueId
+     * @throws Exception If cannot queue an order
+     */
+    public CompletableFuture<Map<String, Object>> QueueOrder(Map<String, Object> orderEntry) throws Exception {
+        // wait for the result before it can be written, so that it cannot be missed
+        CompletableFuture<Map<String, Object>> result = this.GetOrderResultAsync(String.valueOf(orderEntry.get("orderUniqueId")));
+        try {
+            this._WriteOrder(orderEntry);
+        } catch (Exception e) {
+            this.AbandonOrderResult(String.valueOf(orderEntry.get("orderUniqueId")), result, e);
+            throw e;
+        }
+        return result;
     }
 
     /**
-     * Queues an order entry to the order queue.
+     * Queues a typed order entry to the order queue, written by its codec. See QueueOrder.
      * 
      * @param orderEntry Order information to queue to the system
+     * @return Future completed with the typed order result carrying the same orderUniqueId
      * @throws Exception If cannot queue an order
      */
-    public void QueueOrder(Map<String, Object> orderEntry) throws Exception {
-        long startTime = System.currentTimeMillis();
+    public CompletableFuture<OrderResult> QueueOrder(OrderEntry orderEntry) throws Exception {
+        return this.QueueOrder((Map<String, Object>) orderEntry).thenApply(OrderResult::From);
+    }
 
-        // queue order to next entry in order queue and increment the order write pointer
-        int orderReadPointer = (int) this._graphClient.GetReceivedIOMap().getOrDefault(this._orderReadPointerIOName, 0);
+    /**
+     * Stops waiting for the result of an order that could not be queued.
+     * 
+     * @param orderUniqueId ID of the order
+     * @param result        Future returned by GetOrderResultAsync for the order
+     * @param e             Reason the order could not be queued, completing the future
+     */
+    void AbandonOrderResult(String orderUniqueId, CompletableFuture<Map<String, Object>> result, Throwable e) {
+        this._resultWaiters.remove(orderUniqueId, result);
+        result.completeExceptionally(e);
+    }
 
-        // wait until the order queue becomes available
-        while (this._IncrementPointer(this._orderWritePointer) == orderReadPointer) {
-            orderReadPointer = (int) this._graphClient.GetReceivedIOMap().getOrDefault(this._orderReadPointerIOName, 0);
-            if (System.currentTimeMillis() - startTime > TimeUnit.SECONDS.toMillis(30)) {
+    /**
+     * Writes an order entry to the order queue once there is a free slot.
+     * 
+     * @param orderEntry Order information to queue to the system
+     * @throws Exception If cannot queue an order
+     */
+    private void _WriteOrder(Map<String, Object> orderEntry) throws Exception {
+        this._orderLock.lock();
+        try {
+            // wait until the order queue becomes available
+            long waitStartNanos = System.nanoTime();
+            int nextOrderWritePointer = this._IncrementPointer(this._orderWritePointer);
+            while (this._graphClient.AwaitIO(ioState -> {
+                return !ioState.IsStale() && ioState.GetReceivedInt(this._orderReadPointerIOName, 0) != nextOrderWritePointer;
+            }, TimeUnit.SECONDS.toMillis(30)) == null) {
                 // log periodically
                 log.info("Currently the order queue is full, waiting for the orders to complete");
-                startTime = System.currentTimeMillis();
             }
+            this._queueBlockedNanos.Record(System.nanoTime() - waitStartNanos);
+
+            // queue order entry and increment order write pointer
+            this._WriteOrderSlots(List.of(orderEntry), true);
+        } finally {
+            this._orderLock.unlock();
         }
+    }
 
-        // queue order entry and increment order write pointer
-        String orderQueueEntryIOName = this._orderQueueIOName + "[" + (this._orderWritePointer - 1) + "]";
-        this._orderWritePointer = this._IncrementPointer(this._orderWritePointer);
+    /**
+     * Writes order entries to the free slots starting at the order write pointer and advances the pointer
+     * in one request. Must be called with _orderLock held.
+     * 
+     * @param orderEntries Order information for consecutive slots, at most the number of free slots
+     * @param isJournaled  Whether to record the orders in the journal first
+     * @throws Exception If cannot write the orders
+     */
+    private void _WriteOrderSlots(List<? extends Map<String, Object>> orderEntries, boolean isJournaled) throws Exception {
+        // write contiguous slots with slice syntax, split in two when wrapping around the end of the ring
+        int count = orderEntries.size();
+        Map<String, Object> variables = new LinkedHashMap<>();
+        int startIndex = this._orderWritePointer - 1;
+        int firstCount = Math.min(count, this._queueLength - startIndex);
+        this._PutOrderQueueEntries(variables, startIndex, orderEntries.subList(0, firstCount));
+        if (firstCount < count) {
+            this._PutOrderQueueEntries(variables, 0, orderEntries.subList(firstCount, count));
+        }
+        int orderWritePointer = ((startIndex + count) % this._queueLength) + 1;
+        OrderJournal journal = this._journal;
+        if (isJournaled && journal != null) {
+            // journal before writing, so orders lost by stopping in between are written again on restart
+            journal.AppendOrders(this._orderWritePointer, orderWritePointer, orderEntries);
+        }
+        // the entries must be written before the write pointer, so keep the insertion order
+        this._orderWritePointer = orderWritePointer;
+        variables.put(this._orderWritePointerIOName, this._orderWritePointer);
+        Futures.Get(this._graphClient.SetControllerIOVariablesAsync(variables));
+    }
 
-        Map<String, Object> variables = Map.ofEntries(
-            entry(orderQueueEntryIOName, orderEntry),
-            entry(this._orderWritePointerIOName, this._orderWritePointer)
-        );
-        this._graphClient.SetControllerIOVariables(variables);
+    /**
+     * Queues an order entry to the order queue asynchronously. Orders are written to the order queue in the
+     * order QueueOrderAsync is called.
+     * 
+     * @param orderEntry Order information to queue to the system
+     * @return Future completed when the order is written to the order queue
+     */
+    public CompletableFuture<Void> QueueOrderAsync(Map<String, Object> orderEntry) {
+        this._pendingOrders.incrementAndGet();
+        synchronized (this._asyncOrderLock) {
+            // chain after the previously queued order regardless of its outcome
+            this._lastAsyncOrder = this._lastAsyncOrder.exceptionally(e -> null).thenCompose(ignored -> {
+                return this._graphClient.SupplyAsync(() -> {
+                    try {
+                        this._WriteOrder(orderEntry);
+                    } finally {
+                        this._pendingOrders.decrementAndGet();
+                    }
+                    return null;
+                });
+            });
+            return this._lastAsyncOrder;
+        }
     }
 
     /**
-     * Dequeues next result entry in order result queue.
+     * Queues multiple order entries to the order queue. As many entries as there are free slots in the order
+     * queue are written in a single request together with one write pointer update. Remaining entries are
+     * written as soon as the controller frees up slots. Orders are written in list order, after any order
+     * previously queued by QueueOrderAsync or QueueOrders.
      * 
-     * @return Order result information. Null if there is no result entry to be read.
+     * @param orderEntries Order information to queue to the system
+     * @return One future per order entry, completed when the entry is written to the order queue
+     */
+    public List<CompletableFuture<Void>> QueueOrders(List<? extends Map<String, Object>> orderEntries) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int index = 0; index < orderEntries.size(); index++) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.whenComplete((result, e) -> this._pendingOrders.decrementAndGet());
+            futures.add(future);
+        }
+        this._pendingOrders.addAndGet(orderEntries.size());
+        synchronized (this._asyncOrderLock) {
+            this._lastAsyncOrder = this._lastAsyncOrder.exceptionally(e -> null).thenCompose(ignored -> {
+                return this._graphClient.SupplyAsync(() -> {
+                    try {
+                        this._QueueOrders(orderEntries, futures);
+                    } catch (Exception e) {
+                        futures.forEach(future -> future.completeExceptionally(e));
+                    }
+                    return null;
+                });
+            });
+        }
+        return futures;
+    }
+
+    /**
+     * Writes order entries to the order queue in as few requests as the free slots allow.
+     * 
+     * @param orderEntries Order information to queue to the system
+     * @param futures      Futures of the order entries, completed as the entries are written
+     * @throws Exception If cannot queue the orders
+     */
+    private void _QueueOrders(List<? extends Map<String, Object>> orderEntries, List<CompletableFuture<Void>> futures) throws Exception {
+        this._orderLock.lock();
+        try {
+            int queuedCount = 0;
+            while (queuedCount < orderEntries.size()) {
+                // wait until the order queue has free slots
+                long waitStartNanos = System.nanoTime();
+                IOState ioState = null;
+                while ((ioState = this._graphClient.AwaitIO(state -> this._GetFreeSlots(state) > 0, TimeUnit.SECONDS.toMillis(30))) == null) {
+                    // log periodically
+                    log.info("Currently the order queue is full, waiting for the orders to complete");
+                }
+                this._queueBlockedNanos.Record(System.nanoTime() - waitStartNanos);
+                int count = Math.min(this._GetFreeSlots(ioState), orderEntries.size() - queuedCount);
+                this._WriteOrderSlots(orderEntries.subList(queuedCount, queuedCount + count), true);
+
+                for (int index = queuedCount; index < queuedCount + count; index++) {
+                    futures.get(index).complete(null);
+                }
+                queuedCount += count;
+            }
+        } finally {
+            this._orderLock.unlock();
+        }
+    }
+
+    /**
+     * Writes as many order entries as there are free slots in the order queue in one request, without
+     * waiting for slots to become free.
+     * 
+     * @param orderEntries Order information to queue to the system
+     * @return Number of entries written from the start of the list
+     * @throws Exception If cannot write the orders
+     */
+    int TryWriteOrders(List<? extends Map<String, Object>> orderEntries) throws Exception {
+        this._orderLock.lock();
+        try {
+            int count = Math.min(this.GetFreeOrderSlots(), orderEntries.size());
+            if (count > 0) {
+                this._WriteOrderSlots(orderEntries.subList(0, count), true);
+            }
+            return count;
+        } finally {
+            this._orderLock.unlock();
+        }
+    }
+
+    /**
+     * Adds contiguous order queue entries to the IO variables to set.
+     * 
+     * @param variables    IO variables to set
+     * @param startIndex   0-based index of the first order queue slot
+     * @param orderEntries Order information for consecutive slots
+     */
+    private void _PutOrderQueueEntries(Map<String, Object> variables, int startIndex, List<? extends Map<String, Object>> orderEntries) {
+        if (orderEntries.size() == 1) {
+            variables.put(this._orderQueueIOName + "[" + startIndex + "]", orderEntries.get(0));
+            return;
+        }
+        variables.put(this._orderQueueIOName + "[" + startIndex + ":" + (startIndex + orderEntries.size()) + "]", new ArrayList<>(orderEntries));
+    }
+
+    /**
+     * Returns number of free slots in the order queue. One slot is always kept empty to tell a full queue
+     * from an empty one.
+     * 
+     * @param ioState IO state containing the order read pointer
+     * @return Number of order entries that can be written without overtaking the order read pointer
+     */
+    private int _GetFreeSlots(IOState ioState) {
+        if (ioState.IsStale()) {
+            return 0;
+        }
+        int orderReadPointer = ioState.GetReceivedInt(this._orderReadPointerIOName, 0);
+        if (orderReadPointer < 1 || orderReadPointer > this._queueLength) {
+            return 0;
+        }
+        return Math.floorMod(orderReadPointer - this._orderWritePointer - 1, this._queueLength);
+    }
+
+    /**
+     * Dequeues next result entry in order result queue asynchronously.
+     * 
+     * @return Future completed with order result information, or null if there is no result entry to be read
+     */
+    public CompletableFuture<Map<String, Object>> DequeueOrderResultAsync() {
+        return this._graphClient.SupplyAsync(this::DequeueOrderResult);
+    }
+
+    /**
+     * Dequeues next result entry in order result queue. The caller claims the result, it completes a future
+     * waiting for it but is not kept for late waiters.
+     * 
+     * @return Order result information as an OrderResult. Null if there is no result entry to be read.
      * @throws Exception If cannot dequeue an order
      */
     public Map<String, Object> DequeueOrderResult() throws Exception {
-        int resultWritePointer = (int) this._graphClient.GetReceivedIOMap().getOrDefault(this._resultWritePointerIOName, 0);
+        this._resultLock.lock();
+        try {
+            // do not act on result pointers while the subscription is recovering or before they are read
+            IOState ioState = this._graphClient.GetIOState();
+            if (ioState.IsStale() || !this._IsResultReadPointerValid()) {
+                return null;
+            }
+            int resultWritePointer = ioState.GetReceivedInt(this._resultWritePointerIOName, 0);
 
-        // reads next order result from order result queue and increment the order result read pointer
-        Map<String, Object> resultEntry = null;
-        if (this._resultReadPointer != resultWritePointer) {
-            String orderResultQueueEntryIOName = this._resultQueueIOName + "[" + (this._resultReadPointer - 1) + "]";
-            resultEntry = ((JSONObject) this._graphClient.GetControllerIOVariable(orderResultQueueEntryIOName)).toMap();
-            this._resultReadPointer = this._IncrementPointer(this._resultReadPointer);
+            // reads next order result from order result queue and increment the order result read pointer
+            Map<String, Object> resultEntry = null;
+            if (this._resultReadPointer != resultWritePointer) {
+                long startNanos = System.nanoTime();
+                String orderResultQueueEntryIOName = this._resultQueueIOName + "[" + (this._resultReadPointer - 1) + "]";
+                resultEntry = this._graphClient.GetControllerIOVariable(orderResultQueueEntryIOName, OrderResult.CODEC);
+                int nextResultReadPointer = this._IncrementPointer(this._resultReadPointer);
+                if (this._journal != null) {
+                    // journal before advancing the pointer, so the result is restored if stopping in between
+                    this._journal.AppendResults(this._resultReadPointer, nextResultReadPointer, List.of(resultEntry));
+                }
+                this._resultReadPointer = nextResultReadPointer;
+
+                Map<String, Object> variables = Map.ofEntries(entry(this._resultReadPointerIOName, this._resultReadPointer));
+                Futures.Get(this._graphClient.SetControllerIOVariablesAsync(variables));
+                this._dequeueNanos.Record(System.nanoTime() - startNanos);
+                this._CompleteResultWaiter(resultEntry, true);
+                this._JournalClaimed(String.valueOf(resultEntry.get("orderUniqueId")));
+            }
+            return resultEntry;
+        } finally {
+            this._resultLock.unlock();
+        }
+    }
+
+    /**
+     * Dequeues all result entries currently in the order result queue with one read request and one result
+     * read pointer update.
+     * The caller claims the results, see DequeueOrderResult.
+     * 
+     * @return Order result information as OrderResults in queue order. Empty if there is no result entry to be read.
+     * @throws Exception If cannot dequeue the results
+     */
+    public List<Map<String, Object>> DequeueOrderResults() throws Exception {
+        List<Map<String, Object>> resultEntries = this._DequeueOrderResults(true);
+        for (Map<String, Object> resultEntry : resultEntries) {
+            this._JournalClaimed(String.valueOf(resultEntry.get("orderUniqueId")));
+        }
+        return resultEntries;
+    }
+
+    /**
+     * Dequeues all result entries currently in the order result queue, see DequeueOrderResults.
+     * 
+     * @param isDelivered Whether the results are handed to a caller or listener that claims them, otherwise
+     *                    results nobody waits for are kept for late waiters
+     * @return Order result information as OrderResults in queue order
+     * @throws Exception If cannot dequeue the results
+     */
+    private List<Map<String, Object>> _DequeueOrderResults(boolean isDelivered) throws Exception {
+        this._resultLock.lock();
+        try {
+            // do not act on result pointers while the subscription is recovering or before they are read
+            IOState ioState = this._graphClient.GetIOState();
+            List<Map<String, Object>> resultEntries = new ArrayList<>();
+            if (ioState.IsStale() || !this._IsResultReadPointerValid()) {
+                return resultEntries;
+            }
+            int resultWritePointer = ioState.GetReceivedInt(this._resultWritePointerIOName, 0);
+            if (this._resultReadPointer == resultWritePointer) {
+                return resultEntries;
+            }
+
+            // read all entries between the read and the write pointer at once
+            long startNanos = System.nanoTime();
+            Map<String, IOCodec<?>> resultQueueEntryCodecs = new LinkedHashMap<>();
+            for (int pointerValue = this._resultReadPointer; pointerValue != resultWritePointer; pointerValue = this._IncrementPointer(pointerValue)) {
+                resultQueueEntryCodecs.put(this._resultQueueIOName + "[" + (pointerValue - 1) + "]", OrderResult.CODEC);
+            }
+            for (Object resultEntry : this._graphClient.GetControllerIOVariables(resultQueueEntryCodecs).values()) {
+                resultEntries.add((OrderResult) resultEntry);
+            }
+            if (this._journal != null) {
+                // journal before advancing the pointer, so the results are restored if stopping in between
+                this._journal.AppendResults(this._resultReadPointer, resultWritePointer, resultEntries);
+            }
+            this._resultReadPointer = resultWritePointer;
 
             Map<String, Object> variables = Map.ofEntries(entry(this._resultReadPointerIOName, this._resultReadPointer));
-            this._graphClient.SetControllerIOVariables(variables);
+            Futures.Get(this._graphClient.SetControllerIOVariablesAsync(variables));
+            this._dequeueNanos.Record(System.nanoTime() - startNanos);
+            for (Map<String, Object> resultEntry : resultEntries) {
+                this._CompleteResultWaiter(resultEntry, isDelivered);
+            }
+            return resultEntries;
+        } finally {
+            this._resultLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a future of the result of an order. Results dequeued before nobody waited for them are kept
+     * in a bounded buffer, so the future of a result already dequeued completes immediately as long as the
+     * result was not evicted. Starts dequeuing results if not started yet, see StartDequeueOrderResults.
+     * Callers waiting for the same orderUniqueId share one future.
+     * 
+     * @param orderUniqueId Unique id of the order
+     * @return Future completed with the order result
+     */
+    public CompletableFuture<Map<String, Object>> GetOrderResultAsync(String orderUniqueId) {
+        CompletableFuture<Map<String, Object>> result = null;
+        synchronized (this._unclaimedResults) {
+            Map<String, Object> resultEntry = this._unclaimedResults.remove(orderUniqueId);
+            if (resultEntry != null) {
+                this._JournalClaimed(orderUniqueId);
+                return CompletableFuture.completedFuture(resultEntry);
+            }
+            result = this._resultWaiters.computeIfAbsent(orderUniqueId, key -> new CompletableFuture<>());
+        }
+        this._EnsureDequeuing();
+        return result;
+    }
+
+    /**
+     * Returns a future of the typed result of an order. See GetOrderResultAsync.
+     * 
+     * @param orderEntry Order whose result to wait for
+     * @return Future completed with the typed order result
+     */
+    public CompletableFuture<OrderResult> GetOrderResultAsync(OrderEntry orderEntry) {
+        return this.GetOrderResultAsync(orderEntry.GetOrderUniqueId()).thenApply(OrderResult::From);
+    }
+
+    /**
+     * Sets how many results nobody waited for are kept, and who receives the results evicted when more
+     * arrive. Evicted results are dropped and counted when there is no handler.
+     * 
+     * @param capacity        Number of unclaimed results to keep
+     * @param overflowHandler Listener receiving evicted results, or null
+     */
+    public void SetUnclaimedResultHandler(int capacity, OrderResultListener overflowHandler) {
+        this._unclaimedResultCapacity = capacity;
+        this._overflowHandler = overflowHandler;
+    }
+
+    /**
+     * Completes the future waiting for the result, or keeps the result for a late waiter unless it is
+     * delivered. Delivered results are journaled as claimed by whoever delivers them.
+     * 
+     * @param resultEntry Dequeued order result
+     * @param isDelivered Whether the result is handed to a caller or listener that claims it
+     */
+    private void _CompleteResultWaiter(Map<String, Object> resultEntry, boolean isDelivered) {
+        String orderUniqueId = String.valueOf(resultEntry.get("orderUniqueId"));
+        CompletableFuture<Map<String, Object>> result = null;
+        List<Map<String, Object>> evictedResults = new ArrayList<>();
+        synchronized (this._unclaimedResults) {
+            result = this._resultWaiters.remove(orderUniqueId);
+            if (result == null && !isDelivered) {
+                this._unclaimedResults.put(orderUniqueId, resultEntry);
+                Iterator<Map<String, Object>> iterator = this._unclaimedResults.values().iterator();
+                while (this._unclaimedResults.size() > this._unclaimedResultCapacity && iterator.hasNext()) {
+                    evictedResults.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+        }
+        if (result != null) {
+            result.complete(resultEntry);
+            if (!isDelivered) {
+                this._JournalClaimed(orderUniqueId);
+            }
+        }
+        OrderResultListener overflowHandler = this._overflowHandler;
+        for (Map<String, Object> evictedResult : evictedResults) {
+            this._droppedResults.Increment();
+            this._JournalClaimed(String.valueOf(evictedResult.get("orderUniqueId")));
+            if (overflowHandler == null) {
+                log.warning("Dropped unclaimed order result: " + evictedResult);
+                continue;
+            }
+            try {
+                overflowHandler.OnOrderResult(this._queueIndex, evictedResult);
+            } catch (Throwable e) {
+                log.warning("Unclaimed order result handler failed: " + e.toString());
+            }
+        }
+    }
+
+    /**
+     * Starts dequeuing results as soon as the result write pointer changes, all available entries in one
+     * request. Dequeued results complete the futures of QueueOrder and GetOrderResultAsync, and are then
+     * delivered to the listener. Without a listener, results nobody waits for are kept for late waiters, see
+     * SetUnclaimedResultHandler. No thread runs while the result queue is empty.
+     * 
+     * @param resultListener Listener receiving every dequeued result, or null
+     */
+    public synchronized void StartDequeueOrderResults(OrderResultListener resultListener) {
+        this._resultListener = resultListener;
+        this._EnsureDequeuing();
+    }
+
+    /**
+     * Stops dequeuing results. Results already being read are still delivered.
+     */
+    public synchronized void StopDequeueOrderResults() {
+        if (this._resultWritePointerListener != null) {
+            this._graphClient.RemoveIOListener(this._resultWritePointerListener);
+            this._resultWritePointerListener = null;
         }
-        return resultEntry;
+        this._resultListener = null;
+    }
+
+    private synchronized void _EnsureDequeuing() {
+        if (this._resultWritePointerListener != null) {
+            return;
+        }
+        this._resultWritePointerListener = change -> this._resultDrain.Request();
+        this._graphClient.AddIOListener(this._resultWritePointerIOName, this._resultWritePointerListener);
+
+        // results written before the listener was added do not change the pointer again, InitializeOrderPointers
+        // requests the drain itself if the pointers are not read yet
+        if (this._isPointersInitialized) {
+            this._resultDrain.Request();
+        }
+    }
+
+    /**
+     * Dequeues results on the client executor. Requests made while dequeuing run the loop once more instead
+     * of starting another one, so results are delivered in order and at most one thread is busy.
+     */
+    private final class ResultDrain implements Runnable {
+
+        private final AtomicInteger _requests = new AtomicInteger(); // requests since the loop last checked, 0 when idle
+
+        void Request() {
+            if (this._requests.getAndIncrement() == 0) {
+                OrderManager.this._graphClient.GetExecutor().execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                this._requests.set(1);
+                this._Drain();
+            } while (!this._requests.compareAndSet(1, 0));
+        }
+
+        /**
+         * Dequeues and delivers results until the result queue is empty. While the IO state is stale, waits
+         * for the subscription to recover, since the pointer may not change again once it has.
+         */
+        private void _Drain() {
+            OrderManager orderManager = OrderManager.this;
+            while (orderManager._resultWritePointerListener != null) {
+                OrderResultListener resultListener = orderManager._resultListener;
+                List<Map<String, Object>> resultEntries = null;
+                try {
+                    resultEntries = orderManager._DequeueOrderResults(resultListener != null);
+                } catch (Exception e) {
+                    log.warning("Failed to dequeue order results of queue " + orderManager._queueIndex + ": " + e.toString());
+                    return;
+                }
+                if (resultEntries.isEmpty()) {
+                    if (!orderManager._graphClient.IsIOStateStale()) {
+                        return;
+                    }
+                    try {
+                        orderManager._graphClient.AwaitIO(ioState -> !ioState.IsStale(), TimeUnit.SECONDS.toMillis(30));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    continue;
+                }
+                if (resultListener == null) {
+                    continue;
+                }
+                for (Map<String, Object> resultEntry : resultEntries) {
+                    try {
+                        resultListener.OnOrderResult(orderManager._queueIndex, resultEntry);
+                    } catch (Throwable e) {
+                        log.warning("Order result listener failed: " + e.toString());
+                    }
+                    orderManager._JournalClaimed(String.valueOf(resultEntry.get("orderUniqueId")));
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks until there is a result entry to be read in the order result queue.
+     * 
+     * @param timeoutMillis Number of milliseconds to wait
+     * @return True if a result entry is ready to be dequeued, false if timed out
+     * @throws InterruptedException If the waiting thread is interrupted
+     */
+    public boolean AwaitOrderResult(long timeoutMillis) throws InterruptedException {
+        int resultReadPointer = this._resultReadPointer;
+        return this._graphClient.AwaitIO(ioState -> {
+            return !ioState.IsStale() && ioState.GetReceivedInt(this._resultWritePointerIOName, 0) != resultReadPointer;
+        }, timeoutMillis) != null;
     }
 }
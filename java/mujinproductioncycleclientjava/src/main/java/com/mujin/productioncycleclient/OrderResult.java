@@ -0,0 +1,134 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.LinkedHashMap;
+
+/**
+ * Typed entry of the production queue result queue, read by its codec without building a map. Also a
+ * read-only Map<String, Object> with the result field names as keys, see TypedIOValue.
+ */
+public final class OrderResult extends TypedIOValue {
+
+    private static final Set<String> FIELD_NAMES = Set.of("orderUniqueId", "orderCycleFinishCode", "numPutInDestination", "numLeftInOrder"); // names of the typed fields
+
+    public static final IOCodec<OrderResult> CODEC = new IOCodec<OrderResult>() {
+        @Override
+        public void Write(RequestBodyWriter writer, OrderResult value) {
+            value.WriteJson(writer);
+        }
+
+        @Override
+        public OrderResult Read(JsonReader reader) {
+            return _Read(reader);
+        }
+    }; // codec of result queue entries
+
+    private final String _orderUniqueId; // unique id of the order this is the result of
+    private final Object _orderCycleFinishCode; // finish code as sent by the controller, a string or a number
+    private final int _numPutInDestination; // number of parts placed
+    private final int _numLeftInOrder; // number of parts not placed
+    private final Map<String, Object> _extras; // additional fields sent by the controller
+
+    OrderResult(String orderUniqueId, Object orderCycleFinishCode, int numPutInDestination, int numLeftInOrder, Map<String, Object> extras) {
+        this._orderUniqueId = orderUniqueId;
+        this._orderCycleFinishCode = orderCycleFinishCode;
+        this._numPutInDestination = numPutInDestination;
+        this._numLeftInOrder = numLeftInOrder;
+        this._extras = extras;
+    }
+
+    /**
+     * @param map Untyped order result, e.g. restored from an order journal
+     * @return Typed order result, the map itself if it is one, null for null
+     */
+    static OrderResult From(Map<String, Object> map) {
+        if (map == null || map instanceof OrderResult) {
+            return (OrderResult) map;
+        }
+        Object orderUniqueId = map.get("orderUniqueId");
+        return new OrderResult(
+            orderUniqueId == null ? null : String.valueOf(orderUniqueId),
+            map.get("orderCycleFinishCode"),
+            (int) ToDouble(map.get("numPutInDestination")),
+            (int) ToDouble(map.get("numLeftInOrder")),
+            GetExtras(map, FIELD_NAMES)
+        );
+    }
+
+    private static OrderResult _Read(JsonReader reader) {
+        String orderUniqueId = null;
+        Object orderCycleFinishCode = null;
+        int numPutInDestination = 0;
+        int numLeftInOrder = 0;
+        Map<String, Object> extras = Map.of();
+        reader.BeginObject();
+        while (reader.NextField()) {
+            if (reader.IsName("orderUniqueId")) {
+                orderUniqueId = reader.ReadString();
+            } else if (reader.IsName("orderCycleFinishCode")) {
+                orderCycleFinishCode = reader.ReadValue();
+            } else if (reader.IsName("numPutInDestination")) {
+                numPutInDestination = reader.ReadInt();
+            } else if (reader.IsName("numLeftInOrder")) {
+                numLeftInOrder = reader.ReadInt();
+            } else {
+                if (extras.isEmpty()) {
+                    extras = new LinkedHashMap<>();
+                }
+                extras.put(reader.GetName(), reader.ReadValue());
+            }
+        }
+        return new OrderResult(orderUniqueId, orderCycleFinishCode, numPutInDestination, numLeftInOrder, extras);
+    }
+
+    @Override
+    void WriteJson(RequestBodyWriter writer) {
+        writer.WriteByte('{');
+        WriteName(writer, "orderUniqueId", true);
+        writer.WriteValue(this._orderUniqueId);
+        WriteName(writer, "orderCycleFinishCode", false);
+        writer.WriteValue(this._orderCycleFinishCode);
+        WriteName(writer, "numPutInDestination", false);
+        writer.WriteLong(this._numPutInDestination);
+        WriteName(writer, "numLeftInOrder", false);
+        writer.WriteLong(this._numLeftInOrder);
+        WriteExtras(writer, this._extras);
+        writer.WriteByte('}');
+    }
+
+    @Override
+    void PutFields(Map<String, Object> map) {
+        map.put("orderUniqueId", this._orderUniqueId);
+        map.put("orderCycleFinishCode", this._orderCycleFinishCode);
+        map.put("numPutInDestination", this._numPutInDestination);
+        map.put("numLeftInOrder", this._numLeftInOrder);
+        map.putAll(this._extras);
+    }
+
+    public String GetOrderUniqueId() {
+        return this._orderUniqueId;
+    }
+
+    /**
+     * @return Finish code, e.g. FinishedNoMoreTargets, or null if not sent
+     */
+    public String GetOrderCycleFinishCode() {
+        return this._orderCycleFinishCode == null ? null : String.valueOf(this._orderCycleFinishCode);
+    }
+
+    public int GetNumPutInDestination() {
+        return this._numPutInDestination;
+    }
+
+    public int GetNumLeftInOrder() {
+        return this._numLeftInOrder;
+    }
+
+    /**
+     * @return Additional fields sent by the controller
+     */
+    public Map<String, Object> GetExtras() {
+        return this._extras;
+    }
+}
@@ -0,0 +1,18 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+
+/**
+ * Listener notified of order results dequeued from any production queue of a MultiQueueOrderManager.
+ */
+@FunctionalInterface
+public interface OrderResultListener {
+
+    /**
+     * Called for every dequeued result. Results of the same queue are delivered one at a time, in queue order.
+     * 
+     * @param queueIndex  1-based index of the production queue the result was read from
+     * @param resultEntry Order result information
+     */
+    void OnOrderResult(int queueIndex, Map<String, Object> resultEntry);
+}
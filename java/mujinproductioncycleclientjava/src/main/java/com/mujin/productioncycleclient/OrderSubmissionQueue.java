@@ -0,0 +1,321 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.logging.Logger;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded client-side queue of orders in front of the order queue of one production queue. Producers offer
+ * orders without blocking: TryOffer refuses an order when the queue is full, and as a Flow.Subscriber the
+ * queue requests from its publisher only as many orders as it has room for. Orders are written to the
+ * controller whenever the controller frees up slots in its order queue, as many per request as there are
+ * free slots, so producers see backpressure as refused offers or missing demand instead of blocked threads.
+ *
+ * Orders offered here are written in offer order, but may interleave with orders queued directly on the
+ * OrderManager. Room requested from the publisher is reserved for it, so orders within the requested demand
+ * are never refused. TryOffer only takes room that is not reserved: the publisher is given all free room when
+ * it subscribes and the room of each of its written orders again, so TryOffer refuses orders while subscribed
+ * except for room left by orders offered before the subscription.
+ */
+public class OrderSubmissionQueue implements Flow.Subscriber<Map<String, Object>>, AutoCloseable {
+
+    private final OrderManager _orderManager; // order manager of the production queue the orders are written to
+    private final int _capacity; // number of orders kept before offers are refused
+    private final ArrayDeque<PendingOrder> _pendingOrders = new ArrayDeque<>(); // orders not written yet, oldest first, guarded by itself
+    private final IOChangeListener _orderReadPointerListener; // drains when the controller frees up slots
+    private final AtomicInteger _drainRequests = new AtomicInteger(); // requests since the drain loop last checked, 0 when idle
+    private volatile Flow.Subscription _subscription = null; // subscription to the publisher, null if not subscribed
+    private int _publisherDemand = 0; // orders requested from the publisher and not received yet, room reserved for them, guarded by _pendingOrders
+    private volatile boolean _isClosed = false; // whether the queue refuses all offers
+
+    private final Counter _offered; // number of accepted orders
+    private final Counter _rejected; // number of refused orders
+    private final Histogram _waitNanos; // time orders spend in the queue before they are written
+
+    private static final Logger log = Logger.getLogger(OrderSubmissionQueue.class.getName());
+
+    /**
+     * Starts draining into the order queue. InitializeOrderPointers must have been called on the order manager.
+     *
+     * @param orderManager Order manager of the production queue the orders are written to
+     * @param capacity     Number of orders kept before offers are refused
+     */
+    public OrderSubmissionQueue(OrderManager orderManager, int capacity) {
+        this._orderManager = orderManager;
+        this._capacity = capacity;
+
+        MetricsRegistry metrics = orderManager.GetGraphClient().GetMetrics();
+        String metricPrefix = "ordermanager.queue" + orderManager.GetQueueIndex() + ".submission.";
+        this._offered = metrics.GetCounter(metricPrefix + "offered");
+        this._rejected = metrics.GetCounter(metricPrefix + "rejected");
+        this._waitNanos = metrics.GetHistogram(metricPrefix + "waitNanos");
+        metrics.RegisterGauge(metricPrefix + "size", this::GetSize);
+        metrics.RegisterGauge(metricPrefix + "freeOrderSlots", orderManager::GetFreeOrderSlots);
+
+        this._orderReadPointerListener = change -> this._RequestDrain();
+        orderManager.GetGraphClient().AddIOListener(orderManager.GetOrderReadPointerIOName(), this._orderReadPointerListener);
+    }
+
+    /**
+     * Offers an order without blocking.
+     *
+     * @param orderEntry Order information to queue to the system
+     * @return Future completed with the order result carrying the same orderUniqueId, or null if the queue
+     *         is full or closed
+     */
+    public CompletableFuture<Map<String, Object>> TryOffer(Map<String, Object> orderEntry) {
+        return this._Offer(orderEntry, false);
+    }
+
+    /**
+     * @param orderEntry      Order information to queue to the system
+     * @param isFromPublisher Whether the order was requested from the publisher and takes its reserved room
+     * @return Future of the order result, or null if there is no room or the queue is closed
+     */
+    private CompletableFuture<Map<String, Object>> _Offer(Map<String, Object> orderEntry, boolean isFromPublisher) {
+        PendingOrder pendingOrder = null;
+        synchronized (this._pendingOrders) {
+            boolean hasRoom = isFromPublisher
+                ? this._publisherDemand > 0
+                : this._pendingOrders.size() + this._publisherDemand < this._capacity;
+            if (this._isClosed || !hasRoom) {
+                this._rejected.Increment();
+                return null;
+            }
+            if (isFromPublisher) {
+                this._publisherDemand--;
+            }
+            // wait for the result before it can be written, so that it cannot be missed
+            String orderUniqueId = String.valueOf(orderEntry.get("orderUniqueId"));
+            pendingOrder = new PendingOrder(orderEntry, this._orderManager.GetOrderResultAsync(orderUniqueId), isFromPublisher);
+            this._pendingOrders.addLast(pendingOrder);
+        }
+        this._offered.Increment();
+        this._RequestDrain();
+        return pendingOrder._result;
+    }
+
+    /**
+     * @return Number of orders waiting to be written to the controller
+     */
+    public int GetSize() {
+        synchronized (this._pendingOrders) {
+            return this._pendingOrders.size();
+        }
+    }
+
+    /**
+     * @return Number of orders that can be offered with TryOffer before offers are refused, excluding the
+     *         room reserved for orders requested from the publisher
+     */
+    public int GetRemainingCapacity() {
+        synchronized (this._pendingOrders) {
+            return this._isClosed ? 0 : this._capacity - this._pendingOrders.size() - this._publisherDemand;
+        }
+    }
+
+    /**
+     * Requests as many orders as the queue has room for and reserves the room for them. Further orders are
+     * requested as orders of the publisher are written to the controller.
+     */
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        int remainingCapacity = 0;
+        synchronized (this._pendingOrders) {
+            if (this._subscription != null || this._isClosed) {
+                subscription.cancel();
+                return;
+            }
+            this._subscription = subscription;
+            remainingCapacity = this._capacity - this._pendingOrders.size() - this._publisherDemand;
+            this._publisherDemand += Math.max(0, remainingCapacity);
+        }
+        if (remainingCapacity > 0) {
+            subscription.request(remainingCapacity);
+        }
+    }
+
+    /**
+     * Queues an order from the publisher into the room reserved for it. Orders beyond the requested demand
+     * are refused and counted.
+     */
+    @Override
+    public void onNext(Map<String, Object> orderEntry) {
+        if (this._Offer(orderEntry, true) == null) {
+            log.warning("Refused order from publisher beyond demand: " + orderEntry);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        log.warning("Order publisher failed: " + throwable.toString());
+        this._Unsubscribe();
+    }
+
+    @Override
+    public void onComplete() {
+        this._Unsubscribe();
+    }
+
+    /**
+     * Forgets the publisher and releases the room reserved for it.
+     */
+    private void _Unsubscribe() {
+        synchronized (this._pendingOrders) {
+            this._subscription = null;
+            this._publisherDemand = 0;
+        }
+    }
+
+    /**
+     * Stops draining, cancels the subscription and fails the futures of the orders not written yet.
+     */
+    @Override
+    public void close() {
+        List<PendingOrder> pendingOrders = null;
+        synchronized (this._pendingOrders) {
+            this._isClosed = true;
+            pendingOrders = new ArrayList<>(this._pendingOrders);
+            this._pendingOrders.clear();
+        }
+        this._orderManager.GetGraphClient().RemoveIOListener(this._orderReadPointerListener);
+        Flow.Subscription subscription = this._subscription;
+        this._subscription = null;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        for (PendingOrder pendingOrder : pendingOrders) {
+            String orderUniqueId = String.valueOf(pendingOrder._orderEntry.get("orderUniqueId"));
+            this._orderManager.AbandonOrderResult(orderUniqueId, pendingOrder._result, new CancellationException("Order submission queue closed"));
+        }
+    }
+
+    /**
+     * Runs the drain loop on the client executor. Requests made while draining run the loop once more
+     * instead of starting another one, so orders are written in offer order and at most one thread is busy.
+     */
+    private void _RequestDrain() {
+        if (this._drainRequests.getAndIncrement() == 0) {
+            this._orderManager.GetGraphClient().GetExecutor().execute(() -> {
+                do {
+                    this._drainRequests.set(1);
+                    this._Drain();
+                } while (!this._drainRequests.compareAndSet(1, 0));
+            });
+        }
+    }
+
+    /**
+     * Writes pending orders while the order queue has free slots. While the IO state is stale, waits for
+     * the subscription to recover, since the order read pointer may not change again once it has.
+     */
+    private void _Drain() {
+        GraphClient graphClient = this._orderManager.GetGraphClient();
+        while (!this._isClosed) {
+            int freeSlots = this._orderManager.GetFreeOrderSlots();
+            List<PendingOrder> batch = new ArrayList<>();
+            synchronized (this._pendingOrders) {
+                for (PendingOrder pendingOrder : this._pendingOrders) {
+                    if (batch.size() >= freeSlots) {
+                        break;
+                    }
+                    batch.add(pendingOrder);
+                }
+            }
+            if (batch.isEmpty()) {
+                if (freeSlots > 0 || this.GetSize() == 0 || !graphClient.IsIOStateStale()) {
+                    // the order read pointer listener drains again once the controller frees up slots
+                    return;
+                }
+                try {
+                    graphClient.AwaitIO(ioState -> !ioState.IsStale(), TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            // only the drain loop removes orders, so the batch is still at the head of the queue
+            List<Map<String, Object>> orderEntries = new ArrayList<>();
+            for (PendingOrder pendingOrder : batch) {
+                orderEntries.add(pendingOrder._orderEntry);
+            }
+            int writtenCount = 0;
+            try {
+                writtenCount = this._orderManager.TryWriteOrders(orderEntries);
+            } catch (Exception e) {
+                log.warning("Failed to write orders to queue " + this._orderManager.GetQueueIndex() + ": " + e.toString());
+                this._FailHead(batch, e);
+                writtenCount = batch.size();
+            }
+            this._RemoveHead(batch.subList(0, writtenCount));
+            if (writtenCount == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes written orders from the head of the queue and requests as many new orders from the publisher
+     * as there were publisher orders among them, reserving their room again.
+     */
+    private void _RemoveHead(List<PendingOrder> writtenOrders) {
+        if (writtenOrders.isEmpty()) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        int publisherOrders = 0;
+        Flow.Subscription subscription = null;
+        synchronized (this._pendingOrders) {
+            for (PendingOrder pendingOrder : writtenOrders) {
+                if (this._pendingOrders.peekFirst() == pendingOrder) {
+                    this._pendingOrders.removeFirst();
+                }
+                this._waitNanos.Record(nowNanos - pendingOrder._offerNanos);
+                if (pendingOrder._isFromPublisher) {
+                    publisherOrders++;
+                }
+            }
+            subscription = this._subscription;
+            if (subscription == null || this._isClosed) {
+                return;
+            }
+            this._publisherDemand += publisherOrders;
+        }
+        if (publisherOrders > 0) {
+            subscription.request(publisherOrders);
+        }
+    }
+
+    private void _FailHead(List<PendingOrder> failedOrders, Exception e) {
+        for (PendingOrder pendingOrder : failedOrders) {
+            String orderUniqueId = String.valueOf(pendingOrder._orderEntry.get("orderUniqueId"));
+            this._orderManager.AbandonOrderResult(orderUniqueId, pendingOrder._result, e);
+        }
+    }
+
+    /**
+     * Order waiting to be written to the controller
+     */
+    private static final class PendingOrder {
+
+        private final Map<String, Object> _orderEntry; // order information to queue to the system
+        private final CompletableFuture<Map<String, Object>> _result; // future of the order result
+        private final boolean _isFromPublisher; // whether the order was requested from the publisher
+        private final long _offerNanos = System.nanoTime(); // when the order was offered
+
+        PendingOrder(Map<String, Object> orderEntry, CompletableFuture<Map<String, Object>> result, boolean isFromPublisher) {
+            this._orderEntry = orderEntry;
+            this._result = result;
+            this._isFromPublisher = isFromPublisher;
+        }
+    }
+}
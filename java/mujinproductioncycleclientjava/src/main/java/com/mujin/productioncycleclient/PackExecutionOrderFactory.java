@@ -0,0 +1,21 @@
+package com.mujin.productioncycleclient;
+
+import java.util.List;
+
+/**
+ * Creates the orders executing a computed pack formation in a PackFormationPipeline.
+ */
+@FunctionalInterface
+public interface PackExecutionOrderFactory {
+
+    /**
+     * Called once per pack, after its formation is computed. Each order places one or more items, referring to
+     * the pack formation with a 1-based orderInputPartIndex, and needs a unique orderUniqueId.
+     * 
+     * @param packRequest                Request the pack was computed for
+     * @param resultPackFormationHeader  Computed resultPackFormationHeader, e.g. numPacked
+     * @param resultPackFormationEntries Computed resultPackFormationEntry
+     * @return Orders to queue, in execution order
+     */
+    List<OrderEntry> CreateExecutionOrders(PackRequest packRequest, PackFormationHeader resultPackFormationHeader, List<PackFormationEntry> resultPackFormationEntries);
+}
@@ -0,0 +1,127 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.LinkedHashMap;
+
+/**
+ * Typed element of inputPackFormationEntry, resultPackFormationEntry and orderPackFormationEntry. Also a
+ * read-only Map<String, Object> with the entry field names as keys, see TypedIOValue.
+ */
+public final class PackFormationEntry extends TypedIOValue {
+
+    private static final Set<String> FIELD_NAMES = Set.of("partFullSize", "partWeight", "aabbPoseInContainer"); // names of the typed fields
+
+    public static final IOCodec<PackFormationEntry> CODEC = new IOCodec<PackFormationEntry>() {
+        @Override
+        public void Write(RequestBodyWriter writer, PackFormationEntry value) {
+            value.WriteJson(writer);
+        }
+
+        @Override
+        public PackFormationEntry Read(JsonReader reader) {
+            return _Read(reader);
+        }
+    }; // codec of pack formation entries
+
+    public static final IOCodec<List<PackFormationEntry>> LIST_CODEC = IOCodec.ListOf(CODEC); // codec of the pack formation entry arrays
+
+    private final double[] _partFullSize; // size of the item along x, y and z
+    private final double _partWeight; // weight of the item
+    private final double[] _aabbPoseInContainer; // pose of the item in the container, quaternion followed by translation
+    private final Map<String, Object> _extras; // additional parameters
+
+    public PackFormationEntry(double[] partFullSize, double partWeight, double[] aabbPoseInContainer) {
+        this(partFullSize, partWeight, aabbPoseInContainer, Map.of());
+    }
+
+    /**
+     * @param extras Additional parameters required by the Mujin controller configuration
+     */
+    public PackFormationEntry(double[] partFullSize, double partWeight, double[] aabbPoseInContainer, Map<String, Object> extras) {
+        this._partFullSize = partFullSize == null ? null : partFullSize.clone();
+        this._partWeight = partWeight;
+        this._aabbPoseInContainer = aabbPoseInContainer == null ? null : aabbPoseInContainer.clone();
+        this._extras = extras;
+    }
+
+    private static PackFormationEntry _Read(JsonReader reader) {
+        double[] partFullSize = null;
+        double partWeight = 0;
+        double[] aabbPoseInContainer = null;
+        Map<String, Object> extras = Map.of();
+        reader.BeginObject();
+        while (reader.NextField()) {
+            if (reader.IsName("partFullSize")) {
+                partFullSize = reader.ReadDoubleArray();
+            } else if (reader.IsName("partWeight")) {
+                partWeight = reader.ReadDouble();
+            } else if (reader.IsName("aabbPoseInContainer")) {
+                aabbPoseInContainer = reader.ReadDoubleArray();
+            } else {
+                if (extras.isEmpty()) {
+                    extras = new LinkedHashMap<>();
+                }
+                extras.put(reader.GetName(), reader.ReadValue());
+            }
+        }
+        return new PackFormationEntry(partFullSize, partWeight, aabbPoseInContainer, extras);
+    }
+
+    @Override
+    void WriteJson(RequestBodyWriter writer) {
+        writer.WriteByte('{');
+        boolean isFirst = true;
+        if (this._partFullSize != null) {
+            WriteName(writer, "partFullSize", isFirst);
+            WriteDoubles(writer, this._partFullSize);
+            isFirst = false;
+        }
+        WriteName(writer, "partWeight", isFirst);
+        writer.WriteDouble(this._partWeight);
+        if (this._aabbPoseInContainer != null) {
+            WriteName(writer, "aabbPoseInContainer", false);
+            WriteDoubles(writer, this._aabbPoseInContainer);
+        }
+        WriteExtras(writer, this._extras);
+        writer.WriteByte('}');
+    }
+
+    @Override
+    void PutFields(Map<String, Object> map) {
+        if (this._partFullSize != null) {
+            map.put("partFullSize", ToNumbers(this._partFullSize));
+        }
+        map.put("partWeight", ToNumber(this._partWeight));
+        if (this._aabbPoseInContainer != null) {
+            map.put("aabbPoseInContainer", ToNumbers(this._aabbPoseInContainer));
+        }
+        map.putAll(this._extras);
+    }
+
+    /**
+     * @return Size of the item along x, y and z, null if not sent
+     */
+    public double[] GetPartFullSize() {
+        return this._partFullSize == null ? null : this._partFullSize.clone();
+    }
+
+    public double GetPartWeight() {
+        return this._partWeight;
+    }
+
+    /**
+     * @return Pose of the item in the container, null if not sent
+     */
+    public double[] GetAabbPoseInContainer() {
+        return this._aabbPoseInContainer == null ? null : this._aabbPoseInContainer.clone();
+    }
+
+    /**
+     * @return Additional parameters
+     */
+    public Map<String, Object> GetExtras() {
+        return this._extras;
+    }
+}
@@ -0,0 +1,99 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.LinkedHashMap;
+
+/**
+ * Typed value of inputPackFormationHeader, resultPackFormationHeader and orderPackFormationHeader. Also a
+ * read-only Map<String, Object> with the header field names as keys, see TypedIOValue.
+ */
+public final class PackFormationHeader extends TypedIOValue {
+
+    private static final Set<String> FIELD_NAMES = Set.of("packingUniqueId", "numPacked"); // names of the typed fields
+
+    public static final IOCodec<PackFormationHeader> CODEC = new IOCodec<PackFormationHeader>() {
+        @Override
+        public void Write(RequestBodyWriter writer, PackFormationHeader value) {
+            value.WriteJson(writer);
+        }
+
+        @Override
+        public PackFormationHeader Read(JsonReader reader) {
+            return _Read(reader);
+        }
+    }; // codec of pack formation headers
+
+    private final String _packingUniqueId; // unique id of the pack
+    private final int _numPacked; // number of items to pack, or packed by the computation
+    private final Map<String, Object> _extras; // additional parameters
+
+    public PackFormationHeader(String packingUniqueId, int numPacked) {
+        this(packingUniqueId, numPacked, Map.of());
+    }
+
+    /**
+     * @param extras Additional parameters required by the Mujin controller configuration
+     */
+    public PackFormationHeader(String packingUniqueId, int numPacked, Map<String, Object> extras) {
+        this._packingUniqueId = packingUniqueId;
+        this._numPacked = numPacked;
+        this._extras = extras;
+    }
+
+    private static PackFormationHeader _Read(JsonReader reader) {
+        String packingUniqueId = null;
+        int numPacked = 0;
+        Map<String, Object> extras = Map.of();
+        if (reader.ReadNull()) {
+            return new PackFormationHeader(packingUniqueId, numPacked, extras);
+        }
+        reader.BeginObject();
+        while (reader.NextField()) {
+            if (reader.IsName("packingUniqueId")) {
+                packingUniqueId = reader.ReadString();
+            } else if (reader.IsName("numPacked")) {
+                numPacked = reader.ReadInt();
+            } else {
+                if (extras.isEmpty()) {
+                    extras = new LinkedHashMap<>();
+                }
+                extras.put(reader.GetName(), reader.ReadValue());
+            }
+        }
+        return new PackFormationHeader(packingUniqueId, numPacked, extras);
+    }
+
+    @Override
+    void WriteJson(RequestBodyWriter writer) {
+        writer.WriteByte('{');
+        WriteName(writer, "packingUniqueId", true);
+        writer.WriteValue(this._packingUniqueId);
+        WriteName(writer, "numPacked", false);
+        writer.WriteLong(this._numPacked);
+        WriteExtras(writer, this._extras);
+        writer.WriteByte('}');
+    }
+
+    @Override
+    void PutFields(Map<String, Object> map) {
+        map.put("packingUniqueId", this._packingUniqueId);
+        map.put("numPacked", this._numPacked);
+        map.putAll(this._extras);
+    }
+
+    public String GetPackingUniqueId() {
+        return this._packingUniqueId;
+    }
+
+    public int GetNumPacked() {
+        return this._numPacked;
+    }
+
+    /**
+     * @return Additional parameters
+     */
+    public Map<String, Object> GetExtras() {
+        return this._extras;
+    }
+}
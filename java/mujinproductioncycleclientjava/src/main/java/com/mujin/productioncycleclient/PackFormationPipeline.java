@@ -0,0 +1,224 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.logging.Logger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes and executes a stream of packs. Each pack goes through two stages:
+ *
+ * 1. Computation: inputPackFormationHeader and inputPackFormationEntry are written in one request, a
+ *    packFormation order is queued, and once its result arrives resultPackFormationHeader and
+ *    resultPackFormationEntry are read in one request.
+ * 2. Execution: orderPackFormationHeader and orderPackFormationEntry are written in one request, and the
+ *    orders created by the PackExecutionOrderFactory are queued together.
+ *
+ * Computations run one at a time and executions run one at a time, in submission order, since the
+ * controller has a single set of pack formation IOs for each. The formation of the next packs is computed
+ * while the current pack is executed, so the next execution can start as soon as the current one finishes.
+ * When computation and execution orders go to different production queues, the controller computes and
+ * executes at the same time. On the same queue, the packFormation order runs right after the queued
+ * execution orders without a round trip through the client.
+ */
+public class PackFormationPipeline {
+
+    private GraphClient _graphClient = null; // client for the pack formation IOs
+    private OrderManager _computeOrderManager = null; // queue receiving the packFormation orders
+    private OrderManager _executionOrderManager = null; // queue receiving the orders executing the packs
+    private PackExecutionOrderFactory _executionOrderFactory = null; // creates the orders executing a pack
+
+    private int _maxPacksAhead = 1; // number of packs computed ahead of the executing pack, guarded by this
+    private CompletableFuture<?> _lastComputation = CompletableFuture.completedFuture(null); // computation of the last submitted pack, guarded by this
+    private ArrayDeque<CompletableFuture<?>> _executions = new ArrayDeque<>(); // executions of the last submitted packs, guarded by this
+    private final AtomicLong _lastExecutionEndNanos = new AtomicLong(-1); // when the last execution finished, -1 if none did
+
+    private final Counter _packs; // number of executed packs
+    private final Counter _failedPacks; // number of packs failed in computation or execution
+    private final Histogram _computeNanos; // time from starting the computation to reading its result
+    private final Histogram _executeNanos; // time from writing the pack formation to the last execution order result
+    private final Histogram _executionIdleNanos; // time between the end of an execution and the start of the next, already submitted one
+
+    private static final Logger log = Logger.getLogger(PackFormationPipeline.class.getName());
+
+    /**
+     * @param graphClient           Client for the pack formation IOs
+     * @param computeOrderManager   Queue receiving the packFormation orders
+     * @param executionOrderManager Queue receiving the orders executing the packs, may be computeOrderManager
+     * @param executionOrderFactory Creates the orders executing a pack
+     */
+    public PackFormationPipeline(GraphClient graphClient, OrderManager computeOrderManager, OrderManager executionOrderManager, PackExecutionOrderFactory executionOrderFactory) {
+        this._graphClient = graphClient;
+        this._computeOrderManager = computeOrderManager;
+        this._executionOrderManager = executionOrderManager;
+        this._executionOrderFactory = executionOrderFactory;
+
+        MetricsRegistry metrics = graphClient.GetMetrics();
+        this._packs = metrics.GetCounter("packpipeline.packs");
+        this._failedPacks = metrics.GetCounter("packpipeline.failedPacks");
+        this._computeNanos = metrics.GetHistogram("packpipeline.computeNanos");
+        this._executeNanos = metrics.GetHistogram("packpipeline.executeNanos");
+        this._executionIdleNanos = metrics.GetHistogram("packpipeline.executionIdleNanos");
+    }
+
+    /**
+     * Sets how many packs are computed ahead of the pack being executed. Zero computes a pack only after the
+     * previous pack is executed.
+     *
+     * @param maxPacksAhead Number of packs, 1 by default
+     */
+    public synchronized void SetMaxPacksAhead(int maxPacksAhead) {
+        this._maxPacksAhead = Math.max(0, maxPacksAhead);
+    }
+
+    /**
+     * Submits a pack to be computed and executed after the previously submitted packs. A failed pack does
+     * not stop the following packs.
+     *
+     * @param packRequest Pack to compute and execute
+     * @return Future completed when all orders executing the pack have their results
+     */
+    public synchronized CompletableFuture<PackResult> SubmitAsync(PackRequest packRequest) {
+        long submitNanos = System.nanoTime();
+        // compute after the previous computation has read its result, and at most maxPacksAhead packs ahead
+        CompletableFuture<?> executionGate = this._executions.size() > this._maxPacksAhead ? this._executions.peekFirst() : CompletableFuture.completedFuture(null);
+        CompletableFuture<ComputedPack> computation = CompletableFuture.allOf(_Settled(this._lastComputation), _Settled(executionGate))
+            .thenCompose(ignored -> this._graphClient.SupplyAsync(() -> this._StartComputation(packRequest)))
+            .thenCompose(computeOrderResult -> computeOrderResult);
+
+        // execute after the previous execution, the order pack formation IOs are in use until then
+        CompletableFuture<PackResult> execution = CompletableFuture.allOf(computation, _Settled(this._executions.isEmpty() ? null : this._executions.peekLast()))
+            .thenCompose(ignored -> this._graphClient.SupplyAsync(() -> this._StartExecution(computation.join(), submitNanos)))
+            .thenCompose(packResult -> packResult)
+            .whenComplete((packResult, e) -> {
+                this._lastExecutionEndNanos.set(System.nanoTime());
+                if (e != null) {
+                    this._failedPacks.Increment();
+                    log.warning("Failed to compute or execute pack " + packRequest.GetInputPackFormationHeader() + ": " + e.toString());
+                } else {
+                    this._packs.Increment();
+                }
+            });
+
+        this._lastComputation = computation;
+        this._executions.addLast(execution);
+        while (this._executions.size() > this._maxPacksAhead + 1) {
+            this._executions.removeFirst();
+        }
+        return execution;
+    }
+
+    /**
+     * Writes the pack formation input and queues the packFormation order.
+     *
+     * @param packRequest Pack to compute
+     * @return Future completed with the computed pack once the result is read
+     * @throws Exception If cannot write the input or queue the order
+     */
+    private CompletableFuture<ComputedPack> _StartComputation(PackRequest packRequest) throws Exception {
+        long startNanos = System.nanoTime();
+        List<Map<String, Object>> inputPackFormationEntries = packRequest.GetInputPackFormationEntries();
+        Map<String, Object> ioNameValues = new LinkedHashMap<>();
+        ioNameValues.put("inputPackFormationHeader", packRequest.GetInputPackFormationHeader());
+        if (!inputPackFormationEntries.isEmpty()) {
+            ioNameValues.put("inputPackFormationEntry[0:" + inputPackFormationEntries.size() + "]", inputPackFormationEntries);
+        }
+        this._graphClient.SetControllerIOVariables(ioNameValues);
+
+        return this._computeOrderManager.QueueOrder(packRequest.GetComputeOrderEntry()).thenCompose(computeOrderResult -> {
+            return this._graphClient.SupplyAsync(() -> {
+                // the controller writes the pack formation result before the order result
+                Map<String, IOCodec<?>> resultPackFormationCodecs = new LinkedHashMap<>();
+                resultPackFormationCodecs.put("resultPackFormationHeader", PackFormationHeader.CODEC);
+                resultPackFormationCodecs.put("resultPackFormationEntry", PackFormationEntry.LIST_CODEC);
+                Map<String, Object> resultPackFormation = this._graphClient.GetControllerIOVariables(resultPackFormationCodecs);
+                PackFormationHeader resultPackFormationHeader = (PackFormationHeader) resultPackFormation.get("resultPackFormationHeader");
+                @SuppressWarnings("unchecked")
+                List<PackFormationEntry> resultPackFormationEntries = (List<PackFormationEntry>) resultPackFormation.get("resultPackFormationEntry");
+                this._computeNanos.Record(System.nanoTime() - startNanos);
+                return new ComputedPack(packRequest, OrderResult.From(computeOrderResult), resultPackFormationHeader, resultPackFormationEntries);
+            });
+        });
+    }
+
+    /**
+     * Writes the computed pack formation and queues the orders executing it.
+     *
+     * @param computedPack Pack to execute
+     * @param submitNanos  When the pack was submitted
+     * @return Future completed with the pack result once all execution orders have their results
+     * @throws Exception If cannot write the pack formation
+     */
+    private CompletableFuture<PackResult> _StartExecution(ComputedPack computedPack, long submitNanos) throws Exception {
+        long startNanos = System.nanoTime();
+        // the controller idled between packs only if this pack was already waiting when the last one finished
+        long lastExecutionEndNanos = this._lastExecutionEndNanos.get();
+        if (lastExecutionEndNanos >= 0 && lastExecutionEndNanos - submitNanos >= 0) {
+            this._executionIdleNanos.Record(startNanos - lastExecutionEndNanos);
+        }
+
+        List<OrderEntry> executionOrderEntries = this._executionOrderFactory.CreateExecutionOrders(computedPack._packRequest, computedPack._resultPackFormationHeader, computedPack._resultPackFormationEntries);
+        Map<String, Object> ioNameValues = new LinkedHashMap<>();
+        ioNameValues.put("orderPackFormationHeader", computedPack._resultPackFormationHeader);
+        ioNameValues.put("orderPackFormationEntry", computedPack._resultPackFormationEntries);
+        this._graphClient.SetControllerIOVariables(ioNameValues);
+
+        // wait for the results before they can be written, so that they cannot be missed
+        List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>();
+        for (OrderEntry executionOrderEntry : executionOrderEntries) {
+            results.add(this._executionOrderManager.GetOrderResultAsync(executionOrderEntry.GetOrderUniqueId()));
+        }
+        List<CompletableFuture<Void>> writes = this._executionOrderManager.QueueOrders(executionOrderEntries);
+        for (int index = 0; index < writes.size(); index++) {
+            String orderUniqueId = executionOrderEntries.get(index).GetOrderUniqueId();
+            CompletableFuture<Map<String, Object>> result = results.get(index);
+            writes.get(index).whenComplete((ignored, e) -> {
+                if (e != null) {
+                    this._executionOrderManager.AbandonOrderResult(orderUniqueId, result, e);
+                }
+            });
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<OrderResult> executionOrderResults = new ArrayList<>();
+            for (CompletableFuture<Map<String, Object>> result : results) {
+                executionOrderResults.add(OrderResult.From(result.join()));
+            }
+            this._executeNanos.Record(System.nanoTime() - startNanos);
+            return new PackResult(computedPack._packRequest, computedPack._computeOrderResult, computedPack._resultPackFormationHeader, computedPack._resultPackFormationEntries, executionOrderResults);
+        });
+    }
+
+    /**
+     * @param future Future to wait for, or null
+     * @return Future completed when the future completes, successfully or not
+     */
+    private static CompletableFuture<Void> _Settled(CompletableFuture<?> future) {
+        if (future == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return future.handle((ignored, e) -> null);
+    }
+
+    /**
+     * Pack whose formation is computed and read from the controller
+     */
+    private static final class ComputedPack {
+
+        private final PackRequest _packRequest; // request the pack was computed for
+        private final OrderResult _computeOrderResult; // result of the packFormation order
+        private final PackFormationHeader _resultPackFormationHeader; // computed resultPackFormationHeader
+        private final List<PackFormationEntry> _resultPackFormationEntries; // computed resultPackFormationEntry
+
+        ComputedPack(PackRequest packRequest, OrderResult computeOrderResult, PackFormationHeader resultPackFormationHeader, List<PackFormationEntry> resultPackFormationEntries) {
+            this._packRequest = packRequest;
+            this._computeOrderResult = computeOrderResult;
+            this._resultPackFormationHeader = resultPackFormationHeader;
+            this._resultPackFormationEntries = resultPackFormationEntries;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+
+/**
+ * Request to compute a pack formation and execute it, submitted to a PackFormationPipeline.
+ */
+public final class PackRequest {
+
+    private final Map<String, Object> _inputPackFormationHeader; // value written to inputPackFormationHeader, e.g. packingUniqueId and numPacked
+    private final List<Map<String, Object>> _inputPackFormationEntries; // items to compute the pack for, written to inputPackFormationEntry
+    private final Map<String, Object> _computeOrderEntry; // packFormation order computing the pack
+
+    /**
+     * @param inputPackFormationHeader  Value written to inputPackFormationHeader, e.g. a PackFormationHeader
+     * @param inputPackFormationEntries Items to compute the pack for, written to inputPackFormationEntry, e.g. PackFormationEntries
+     * @param computeOrderEntry         Order with orderType packFormation computing the pack, with a unique orderUniqueId, e.g. an OrderEntry
+     */
+    public PackRequest(Map<String, Object> inputPackFormationHeader, List<? extends Map<String, Object>> inputPackFormationEntries, Map<String, Object> computeOrderEntry) {
+        this._inputPackFormationHeader = inputPackFormationHeader;
+        this._inputPackFormationEntries = List.copyOf(inputPackFormationEntries);
+        this._computeOrderEntry = computeOrderEntry;
+    }
+
+    public Map<String, Object> GetInputPackFormationHeader() {
+        return this._inputPackFormationHeader;
+    }
+
+    public List<Map<String, Object>> GetInputPackFormationEntries() {
+        return this._inputPackFormationEntries;
+    }
+
+    public Map<String, Object> GetComputeOrderEntry() {
+        return this._computeOrderEntry;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mujin.productioncycleclient;
+
+import java.util.List;
+
+/**
+ * Outcome of a pack executed by a PackFormationPipeline.
+ */
+public final class PackResult {
+
+    private final PackRequest _packRequest; // request the pack was computed for
+    private final OrderResult _computeOrderResult; // result of the packFormation order
+    private final PackFormationHeader _resultPackFormationHeader; // computed resultPackFormationHeader
+    private final List<PackFormationEntry> _resultPackFormationEntries; // computed resultPackFormationEntry
+    private final List<OrderResult> _executionOrderResults; // results of the orders executing the pack, in queue order
+
+    PackResult(PackRequest packRequest, OrderResult computeOrderResult, PackFormationHeader resultPackFormationHeader, List<PackFormationEntry> resultPackFormationEntries, List<OrderResult> executionOrderResults) {
+        this._packRequest = packRequest;
+        this._computeOrderResult = computeOrderResult;
+        this._resultPackFormationHeader = resultPackFormationHeader;
+        this._resultPackFormationEntries = resultPackFormationEntries;
+        this._executionOrderResults = executionOrderResults;
+    }
+
+    public PackRequest GetPackRequest() {
+        return this._packRequest;
+    }
+
+    public OrderResult GetComputeOrderResult() {
+        return this._computeOrderResult;
+    }
+
+    public PackFormationHeader GetResultPackFormationHeader() {
+        return this._resultPackFormationHeader;
+    }
+
+    public List<PackFormationEntry> GetResultPackFormationEntries() {
+        return this._resultPackFormationEntries;
+    }
+
+    public List<OrderResult> GetExecutionOrderResults() {
+        return this._executionOrderResults;
+    }
+}
@@ -0,0 +1,71 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.List;
+import java.util.LinkedHashMap;
+
+/**
+ * Chooses the controller of a ControllerPool that receives an order.
+ */
+@FunctionalInterface
+public interface PlacementStrategy {
+
+    /**
+     * Chooses a controller for the order. Called concurrently for different orders.
+     *
+     * @param orderEntry  Order information to queue to the system
+     * @param controllers Healthy controllers of the pool, never empty
+     * @return One of controllers
+     */
+    PooledController Place(Map<String, Object> orderEntry, List<PooledController> controllers);
+
+    /**
+     * @return Strategy placing every order on the controller with the fewest orders not yet picked up
+     */
+    static PlacementStrategy LeastLoaded() {
+        return (orderEntry, controllers) -> {
+            PooledController leastLoaded = null;
+            int leastLoad = Integer.MAX_VALUE;
+            for (PooledController controller : controllers) {
+                int load = controller.GetOrderLoad();
+                if (load < leastLoad) {
+                    leastLoad = load;
+                    leastLoaded = controller;
+                }
+            }
+            return leastLoaded;
+        };
+    }
+
+    /**
+     * Returns a strategy placing all orders of an orderGroupId on the same controller, so that orders sharing
+     * a place container end up in the same cell. The first order of a group, orders without orderGroupId and
+     * orders whose controller became unhealthy are placed by the fallback strategy.
+     *
+     * @param fallback   Strategy placing orders of new groups
+     * @param maxGroups  Number of most recently used groups to remember
+     * @return Sticky strategy
+     */
+    static PlacementStrategy StickyByOrderGroup(PlacementStrategy fallback, int maxGroups) {
+        Map<Object, PooledController> groupControllers = new LinkedHashMap<Object, PooledController>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, PooledController> eldest) {
+                return this.size() > maxGroups;
+            }
+        };
+        return (orderEntry, controllers) -> {
+            Object orderGroupId = orderEntry.get("orderGroupId");
+            if (orderGroupId == null || "".equals(orderGroupId)) {
+                return fallback.Place(orderEntry, controllers);
+            }
+            synchronized (groupControllers) {
+                PooledController controller = groupControllers.get(orderGroupId);
+                if (controller == null || !controllers.contains(controller)) {
+                    controller = fallback.Place(orderEntry, controllers);
+                    groupControllers.put(orderGroupId, controller);
+                }
+                return controller;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package com.mujin.productioncycleclient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controller managed by a ControllerPool, with its own GraphClient, subscription and transport.
+ */
+public final class PooledController {
+
+    private final String _name; // name of the controller, unique in the pool
+    private final GraphClient _graphClient; // client connected to the controller
+    private final MultiQueueOrderManager _orderManager; // drives the production queues of the controller
+    private final Counter _placedOrders; // number of orders placed on this controller
+    private final AtomicInteger _placingOrders = new AtomicInteger(); // orders placed by a batch but not yet handed to the order manager
+    private volatile boolean _isStarted = false; // whether the order pointers are initialized and results are dequeued
+    private volatile long _maxMessageAgeMillis = 0; // controller is unhealthy when the subscription is silent for longer
+
+    PooledController(String name, GraphClient graphClient, MultiQueueOrderManager orderManager, Counter placedOrders) {
+        this._name = name;
+        this._graphClient = graphClient;
+        this._orderManager = orderManager;
+        this._placedOrders = placedOrders;
+    }
+
+    /**
+     * @return Name of the controller, unique in the pool
+     */
+    public String GetName() {
+        return this._name;
+    }
+
+    /**
+     * @return Client connected to the controller
+     */
+    public GraphClient GetGraphClient() {
+        return this._graphClient;
+    }
+
+    /**
+     * @return Order manager driving the production queues of the controller
+     */
+    public MultiQueueOrderManager GetOrderManager() {
+        return this._orderManager;
+    }
+
+    /**
+     * A controller is healthy when it is started, its IO state is not stale and a subscription message was
+     * received recently.
+     *
+     * @return True if orders can be placed on the controller
+     */
+    public boolean IsHealthy() {
+        if (!this._isStarted || this._graphClient.IsIOStateStale()) {
+            return false;
+        }
+        long messageAgeMillis = this._graphClient.GetLastSubscriptionMessageAgeMillis();
+        return messageAgeMillis >= 0 && messageAgeMillis <= this._maxMessageAgeMillis;
+    }
+
+    /**
+     * @return Number of orders not yet picked up by the controller, summed over its production queues,
+     *         including orders of a batch still being placed on it
+     */
+    public int GetOrderLoad() {
+        return this._orderManager.GetOrderLoad() + this._placingOrders.get();
+    }
+
+    /**
+     * @return Number of orders placed on this controller by the pool
+     */
+    public long GetNumPlacedOrders() {
+        return this._placedOrders.Get();
+    }
+
+    boolean IsStarted() {
+        return this._isStarted;
+    }
+
+    void SetStarted(boolean isStarted) {
+        this._isStarted = isStarted;
+    }
+
+    void SetMaxMessageAgeMillis(long maxMessageAgeMillis) {
+        this._maxMessageAgeMillis = maxMessageAgeMillis;
+    }
+
+    void RecordPlacedOrder() {
+        this._placedOrders.Increment();
+    }
+
+    /**
+     * @param delta Number of orders placed by a batch, negative once they are handed to the order manager
+     */
+    void AddPlacingOrders(int delta) {
+        this._placingOrders.addAndGet(delta);
+    }
+
+    @Override
+    public String toString() {
+        return this._name;
+    }
+}
@@ -0,0 +1,23 @@
+package com.mujin.productioncycleclient;
+
+/**
+ * Policy used by MultiQueueOrderManager to choose the production queue of an order.
+ */
+public enum QueueRoutingPolicy {
+
+    /**
+     * Orders must name their production queue. Queuing an order without a queue index fails.
+     */
+    EXPLICIT,
+
+    /**
+     * Orders go to the queue with the fewest orders not yet picked up by the controller, counting orders
+     * that are accepted but not written yet.
+     */
+    LEAST_OCCUPIED,
+
+    /**
+     * Orders go to the queues in turn.
+     */
+    ROUND_ROBIN
+}
@@ -0,0 +1,337 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Collection;
+import java.lang.reflect.Array;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONException;
+
+/**
+ * Growable byte buffer writing JSON as UTF-8 directly, without building JSONObject trees or intermediate
+ * strings. Booleans, integers and strings are written without allocation. Typed IO values are written by
+ * their codecs. Maps, collections, arrays, JSONObject and JSONArray are written recursively, other values
+ * through JSONObject.valueToString.
+ *
+ * Writers are pooled in a small pool shared by all threads, see Acquire and Release. A shared pool rather
+ * than one writer per thread, since the client executor runs on virtual threads, which are not reused. Codecs write through the public Write methods.
+ */
+public final class RequestBodyWriter {
+
+    private static final int INITIAL_CAPACITY = 1024; // capacity of a new buffer
+    private static final int MAX_POOLED_CAPACITY = 1 << 20; // larger buffers are not kept after Release
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII); // digits of \\u escapes
+    private static final int POOL_SIZE = 2 * HttpGraphTransport.DEFAULT_MAX_IN_FLIGHT_REQUESTS; // number of idle writers kept, writers are held until the response arrives
+    private static final ArrayBlockingQueue<RequestBodyWriter> POOL = new ArrayBlockingQueue<>(POOL_SIZE); // idle writers
+
+    private byte[] _bytes = new byte[INITIAL_CAPACITY]; // written bytes
+    private int _length = 0; // number of written bytes
+    private boolean _isAcquired = false; // whether the writer is in use, so that releasing twice does not pool it twice
+
+    /**
+     * Returns an idle pooled writer, or a new writer if all are in use.
+     *
+     * @return Empty writer, to be passed to Release when done
+     */
+    static RequestBodyWriter Acquire() {
+        RequestBodyWriter writer = POOL.poll();
+        if (writer == null) {
+            writer = new RequestBodyWriter();
+        }
+        writer._isAcquired = true;
+        return writer;
+    }
+
+    /**
+     * Returns the writer to the pool, or drops it if the pool is full. The bytes must not be used anymore.
+     */
+    void Release() {
+        if (!this._isAcquired) {
+            return;
+        }
+        this._isAcquired = false;
+        this._length = 0;
+        if (this._bytes.length > MAX_POOLED_CAPACITY) {
+            this._bytes = new byte[INITIAL_CAPACITY];
+        }
+        POOL.offer(this);
+    }
+
+    /**
+     * @return Buffer holding the written bytes from index 0 to GetLength
+     */
+    byte[] GetBytes() {
+        return this._bytes;
+    }
+
+    /**
+     * @return Number of written bytes
+     */
+    int GetLength() {
+        return this._length;
+    }
+
+    private void _Reserve(int size) {
+        if (this._length + size > this._bytes.length) {
+            this._bytes = Arrays.copyOf(this._bytes, Math.max(this._bytes.length * 2, this._length + size));
+        }
+    }
+
+    public void WriteByte(int value) {
+        this._Reserve(1);
+        this._bytes[this._length++] = (byte) value;
+    }
+
+    void WriteBytes(byte[] bytes) {
+        this._Reserve(bytes.length);
+        System.arraycopy(bytes, 0, this._bytes, this._length, bytes.length);
+        this._length += bytes.length;
+    }
+
+    public void WriteBoolean(boolean value) {
+        if (value) {
+            this._Reserve(4);
+            this._bytes[this._length++] = 't';
+            this._bytes[this._length++] = 'r';
+            this._bytes[this._length++] = 'u';
+            this._bytes[this._length++] = 'e';
+        } else {
+            this._Reserve(5);
+            this._bytes[this._length++] = 'f';
+            this._bytes[this._length++] = 'a';
+            this._bytes[this._length++] = 'l';
+            this._bytes[this._length++] = 's';
+            this._bytes[this._length++] = 'e';
+        }
+    }
+
+    public void WriteLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            this._WriteRaw(Long.toString(value));
+            return;
+        }
+        this._Reserve(20);
+        if (value < 0) {
+            this._bytes[this._length++] = '-';
+            value = -value;
+        }
+        int numberOfDigits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            numberOfDigits++;
+        }
+        int position = this._length + numberOfDigits;
+        do {
+            this._bytes[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        this._length += numberOfDigits;
+    }
+
+    /**
+     * Writes a number, integral values without a fraction as JSONObject writes them.
+     *
+     * @param value Finite number to write
+     */
+    public void WriteDouble(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            this.WriteLong((long) value);
+            return;
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new JSONException("JSON does not allow non-finite numbers");
+        }
+        this._WriteRaw(Double.toString(value));
+    }
+
+    /**
+     * Writes a quoted JSON string, escaping as JSONObject.quote does.
+     *
+     * @param value String to write
+     */
+    public void WriteString(String value) {
+        int length = value.length();
+        this._Reserve(length + 2);
+        this._bytes[this._length++] = '"';
+        char previous = 0;
+        for (int index = 0; index < length; index++) {
+            char c = value.charAt(index);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\' && !(c == '/' && previous == '<')) {
+                // common case, reserve lazily for the rest of the string
+                if (this._length == this._bytes.length) {
+                    this._Reserve(length - index + 1);
+                }
+                this._bytes[this._length++] = (byte) c;
+            } else {
+                this._WriteSpecialChar(value, index, c);
+                if (Character.isHighSurrogate(c) && index + 1 < length && Character.isLowSurrogate(value.charAt(index + 1))) {
+                    index++;
+                }
+            }
+            previous = c;
+        }
+        this.WriteByte('"');
+    }
+
+    private void _WriteSpecialChar(String value, int index, char c) {
+        this._Reserve(6);
+        switch (c) {
+            case '"':
+            case '\\':
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = (byte) c;
+                return;
+            case '/':
+                // after '<' to not end an html script tag, as JSONObject.quote does
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = '/';
+                return;
+            case '\b':
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = 'b';
+                return;
+            case '\t':
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = 't';
+                return;
+            case '\n':
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = 'n';
+                return;
+            case '\f':
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = 'f';
+                return;
+            case '\r':
+                this._bytes[this._length++] = '\\';
+                this._bytes[this._length++] = 'r';
+                return;
+            default:
+                break;
+        }
+        if (c < 0x20 || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+            this._bytes[this._length++] = '\\';
+            this._bytes[this._length++] = 'u';
+            this._bytes[this._length++] = HEX_DIGITS[(c >> 12) & 0xf];
+            this._bytes[this._length++] = HEX_DIGITS[(c >> 8) & 0xf];
+            this._bytes[this._length++] = HEX_DIGITS[(c >> 4) & 0xf];
+            this._bytes[this._length++] = HEX_DIGITS[c & 0xf];
+        } else if (c < 0x800) {
+            this._bytes[this._length++] = (byte) (0xc0 | (c >> 6));
+            this._bytes[this._length++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isSurrogate(c)) {
+            int codePoint = value.codePointAt(index);
+            if (codePoint == c) {
+                // unpaired surrogate, encoded as String.getBytes does
+                this._bytes[this._length++] = '?';
+                return;
+            }
+            this._bytes[this._length++] = (byte) (0xf0 | (codePoint >> 18));
+            this._bytes[this._length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            this._bytes[this._length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            this._bytes[this._length++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else {
+            this._bytes[this._length++] = (byte) (0xe0 | (c >> 12));
+            this._bytes[this._length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            this._bytes[this._length++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    /**
+     * Writes any value as JSON the way JSONObject serializes it. Null map values are skipped like JSONObject
+     * skips them.
+     *
+     * @param value Value to write
+     */
+    public void WriteValue(Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            this._WriteRaw("null");
+        } else if (value instanceof Boolean) {
+            this.WriteBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            this.WriteLong(((Number) value).longValue());
+        } else if (value instanceof String) {
+            this.WriteString((String) value);
+        } else if (value instanceof TypedIOValue) {
+            ((TypedIOValue) value).WriteJson(this);
+        } else if (value instanceof Map) {
+            this.WriteByte('{');
+            boolean isFirst = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                if (!isFirst) {
+                    this.WriteByte(',');
+                }
+                isFirst = false;
+                this.WriteString(String.valueOf(entry.getKey()));
+                this.WriteByte(':');
+                this.WriteValue(entry.getValue());
+            }
+            this.WriteByte('}');
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            this.WriteByte('{');
+            boolean isFirst = true;
+            for (Iterator<String> keys = object.keys(); keys.hasNext();) {
+                String key = keys.next();
+                if (!isFirst) {
+                    this.WriteByte(',');
+                }
+                isFirst = false;
+                this.WriteString(key);
+                this.WriteByte(':');
+                this.WriteValue(object.opt(key));
+            }
+            this.WriteByte('}');
+        } else if (value instanceof Collection || value instanceof JSONArray) {
+            this.WriteByte('[');
+            boolean isFirst = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!isFirst) {
+                    this.WriteByte(',');
+                }
+                isFirst = false;
+                this.WriteValue(element);
+            }
+            this.WriteByte(']');
+        } else if (value.getClass().isArray()) {
+            this.WriteByte('[');
+            for (int index = 0; index < Array.getLength(value); index++) {
+                if (index > 0) {
+                    this.WriteByte(',');
+                }
+                this.WriteValue(Array.get(value, index));
+            }
+            this.WriteByte(']');
+        } else {
+            this._WriteRaw(JSONObject.valueToString(value));
+        }
+    }
+
+    /**
+     * Writes text that is already JSON, e.g. a serialized number.
+     *
+     * @param json JSON text
+     */
+    private void _WriteRaw(String json) {
+        int length = json.length();
+        boolean isAscii = true;
+        for (int index = 0; index < length && isAscii; index++) {
+            isAscii = json.charAt(index) < 0x80;
+        }
+        if (!isAscii) {
+            this.WriteBytes(json.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        this._Reserve(length);
+        for (int index = 0; index < length; index++) {
+            this._bytes[this._length++] = (byte) json.charAt(index);
+        }
+    }
+}
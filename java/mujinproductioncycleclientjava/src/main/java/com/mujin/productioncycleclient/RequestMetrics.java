@@ -0,0 +1,33 @@
+package com.mujin.productioncycleclient;
+
+/**
+ * Metrics of one kind of GraphQL request sent by GraphClient.
+ */
+final class RequestMetrics {
+
+    private final Histogram _latency; // round trip time in nanoseconds
+    private final Counter _requests; // number of sent requests
+    private final Counter _errors; // number of failed requests
+    private final Counter _bytesOut; // number of request body bytes sent
+    private final Counter _bytesIn; // number of response body bytes received
+
+    RequestMetrics(MetricsRegistry registry, String command) {
+        String prefix = "graphclient.request." + command;
+        this._latency = registry.GetHistogram(prefix + ".latencyNanos");
+        this._requests = registry.GetCounter(prefix + ".requests");
+        this._errors = registry.GetCounter(prefix + ".errors");
+        this._bytesOut = registry.GetCounter(prefix + ".bytesOut");
+        this._bytesIn = registry.GetCounter(prefix + ".bytesIn");
+    }
+
+    void RecordRequest(long latencyNanos, long bytesOut, long bytesIn) {
+        this._latency.Record(latencyNanos);
+        this._requests.Increment();
+        this._bytesOut.Add(bytesOut);
+        this._bytesIn.Add(bytesIn);
+    }
+
+    void RecordError() {
+        this._errors.Increment();
+    }
+}
@@ -0,0 +1,315 @@
+package com.mujin.productioncycleclient;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.json.JSONObject;
+
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketExtension;
+import com.neovisionaries.ws.client.WebSocketCloseCode;
+
+/**
+ * Supervised SubscribeRobotBridgesState subscription. Detects connections that stopped receiving messages
+ * within the keep-alive timeout, reconnects with jittered exponential backoff and re-sends connection_init
+ * and start on every connection. While disconnected, the IO state of the client is marked stale until the
+ * first fresh snapshot arrives. The time from losing the connection to receiving fresh state is recorded.
+ * Connections offer permessage-deflate unless disabled, which the controller may decline.
+ */
+class RobotBridgesStateSubscription {
+
+    private static final String QUERY = """
+        subscription {
+            SubscribeRobotBridgesState {
+                sentiovalues
+                receivediovalues
+            }
+        }
+    """;
+
+    private GraphClient _graphClient = null; // client receiving the subscription messages
+    private URI _websocketUri = null; // URI to WebSocket GraphQL endpoint on Mujin controller
+    private Map<String, String> _headers = null; // request headers information
+
+    private volatile long _keepAliveTimeoutNanos = TimeUnit.SECONDS.toNanos(20); // connection is dropped when silent for longer
+    private volatile long _initialBackoffMillis = 100; // delay before the first reconnect attempt
+    private volatile long _maxBackoffMillis = 10000; // upper bound of the delay between reconnect attempts
+
+    private ScheduledExecutorService _scheduler = null; // runs the keep-alive watchdog and reconnect attempts
+    private ScheduledFuture<?> _watchdog = null; // periodic keep-alive check, guarded by this
+
+    private volatile WebSocket _webSocket = null; // current connection, null while disconnected
+    private volatile boolean _isClosed = false; // whether the subscription was closed by the user
+    private volatile boolean _isAwaitingFreshState = true; // whether no IO values were received on the current connection
+    private volatile long _lastMessageNanos = 0; // time the last message was received
+    private volatile long _disconnectedNanos = 0; // time the connection was lost, 0 when not recovering
+    private volatile long _lastRecoveryNanos = -1; // time from losing the connection to receiving fresh state, -1 if never recovered
+    private volatile int _reconnectAttempt = 0; // number of reconnect attempts since the connection was lost
+    private volatile boolean _isCompressionEnabled = true; // whether to offer permessage-deflate on new connections
+    private Counter _reconnects = null; // number of reconnect attempts
+    private Counter _wireBytes = null; // number of data frame payload bytes received, before inflating
+    private Counter _messageBytes = null; // number of UTF-8 bytes of the received text messages
+
+    private static final Logger log = Logger.getLogger(RobotBridgesStateSubscription.class.getName());
+
+    RobotBridgesStateSubscription(GraphClient graphClient, URI websocketUri, Map<String, String> headers) {
+        this._graphClient = graphClient;
+        this._websocketUri = websocketUri;
+        this._headers = headers;
+        this._reconnects = graphClient.GetMetrics().GetCounter("graphclient.subscription.reconnects");
+        this._wireBytes = graphClient.GetMetrics().GetCounter("graphclient.subscription.wireBytes");
+        this._messageBytes = graphClient.GetMetrics().GetCounter("graphclient.subscription.messageBytes");
+        this._scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "GraphClient-subscription");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void SetTimeouts(long keepAliveTimeoutMillis, long initialBackoffMillis, long maxBackoffMillis) {
+        this._keepAliveTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(keepAliveTimeoutMillis);
+        this._initialBackoffMillis = initialBackoffMillis;
+        this._maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Sets whether permessage-deflate is offered, taking effect on the next connection.
+     */
+    void SetCompressionEnabled(boolean enabled) {
+        this._isCompressionEnabled = enabled;
+    }
+
+    /**
+     * @return Milliseconds from losing the connection to receiving fresh state in the last recovery, -1 if never recovered
+     */
+    long GetLastRecoveryMillis() {
+        long lastRecoveryNanos = this._lastRecoveryNanos;
+        return lastRecoveryNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(lastRecoveryNanos);
+    }
+
+    /**
+     * @return Nanoseconds since the last message was received, -1 if no message was received
+     */
+    long GetLastMessageAgeNanos() {
+        long lastMessageNanos = this._lastMessageNanos;
+        return lastMessageNanos == 0 ? -1 : System.nanoTime() - lastMessageNanos;
+    }
+
+    /**
+     * Connects the subscription and starts supervising it. Later connection losses are recovered automatically.
+     *
+     * @throws Exception If the first connection fails
+     */
+    synchronized void Connect() throws Exception {
+        this._isClosed = false;
+        WebSocket webSocket = this._CreateWebSocket();
+        this._webSocket = webSocket;
+        try {
+            webSocket.connect();
+        } catch (Exception e) {
+            this._webSocket = null;
+            throw e;
+        }
+
+        // start the keep-alive watchdog
+        if (this._watchdog == null) {
+            long periodNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), this._keepAliveTimeoutNanos / 4);
+            this._watchdog = this._scheduler.scheduleAtFixedRate(this::_CheckKeepAlive, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Closes the subscription and stops reconnecting.
+     */
+    synchronized void Close() {
+        this._isClosed = true;
+        if (this._watchdog != null) {
+            this._watchdog.cancel(false);
+            this._watchdog = null;
+        }
+        WebSocket webSocket = this._webSocket;
+        this._webSocket = null;
+        if (webSocket != null) {
+            webSocket.disconnect();
+        }
+    }
+
+    private WebSocket _CreateWebSocket() throws Exception {
+        // create the client for executing the subscription
+        WebSocket webSocket = new WebSocketFactory().createSocket(this._websocketUri);
+        if (this._isCompressionEnabled) {
+            webSocket.addExtension(WebSocketExtension.PERMESSAGE_DEFLATE);
+        }
+        // receive text messages as the inflated UTF-8 bytes, so that they are counted without scanning the text
+        webSocket.setDirectTextMessage(true);
+        // add the headers
+        this._headers.forEach((key, value) -> {
+            webSocket.addHeader(key, value);
+        });
+        // add the listener
+        webSocket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onConnected(WebSocket webSocket, Map<String, List<String>> headers) throws Exception {
+                RobotBridgesStateSubscription.this._lastMessageNanos = System.nanoTime();
+                RobotBridgesStateSubscription.this._isAwaitingFreshState = true;
+                log.info("Connected subscription with extensions: " + webSocket.getAgreedExtensions());
+
+                // send the WebSocket connection initialization request
+                JSONObject init = new JSONObject();
+                init.put("type", "connection_init");
+                init.put("payload", new JSONObject());
+                webSocket.sendText(init.toString());
+
+                // start a new subscription on the WebSocket connection
+                JSONObject payload = new JSONObject();
+                payload.put("query", QUERY);
+                JSONObject start = new JSONObject();
+                start.put("type", "start");
+                start.put("payload", payload);
+                webSocket.sendText(start.toString());
+            }
+
+            @Override
+            public void onFrame(WebSocket webSocket, WebSocketFrame frame) throws Exception {
+                // called before the payload is inflated
+                if (frame.isDataFrame()) {
+                    RobotBridgesStateSubscription.this._wireBytes.Add(frame.getPayloadLength());
+                }
+            }
+
+            @Override
+            public void onTextMessage(WebSocket webSocket, byte[] data) throws Exception {
+                RobotBridgesStateSubscription.this._messageBytes.Add(data.length);
+                RobotBridgesStateSubscription.this._OnTextMessage(webSocket, new String(data, StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void onDisconnected(WebSocket webSocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                RobotBridgesStateSubscription.this._OnConnectionLost(webSocket, "Disconnected from the server");
+            }
+        });
+        return webSocket;
+    }
+
+    private void _OnTextMessage(WebSocket webSocket, String message) {
+        if (webSocket != this._webSocket) {
+            // late message from a connection that was already given up
+            return;
+        }
+        this._lastMessageNanos = System.nanoTime();
+
+        // read incoming messages, IO values are decoded straight into a new snapshot
+        String messageType = this._graphClient.DecodeSubscriptionMessage(message);
+        if ("connection_ack".equals(messageType)) {
+            log.info("Received connection_ack");
+        } else if ("ka".equals(messageType)) {
+            // received keep-alive "ka" message
+        } else if (this._graphClient.HasDecodedIOValues()) {
+            if (this._isAwaitingFreshState) {
+                this._OnFreshState();
+            }
+        } else {
+            log.warning("Received subscription message without IO values: " + message);
+        }
+    }
+
+    /**
+     * Called on the first IO values received on a connection.
+     */
+    private void _OnFreshState() {
+        this._isAwaitingFreshState = false;
+        this._reconnectAttempt = 0;
+        long disconnectedNanos = this._disconnectedNanos;
+        if (disconnectedNanos != 0) {
+            this._disconnectedNanos = 0;
+            this._lastRecoveryNanos = System.nanoTime() - disconnectedNanos;
+            log.info("Recovered subscription state " + TimeUnit.NANOSECONDS.toMillis(this._lastRecoveryNanos) + "ms after losing the connection");
+        }
+    }
+
+    /**
+     * Drops the connection if no message was received within the keep-alive timeout.
+     */
+    private void _CheckKeepAlive() {
+        WebSocket webSocket = this._webSocket;
+        if (webSocket == null) {
+            return;
+        }
+        if (System.nanoTime() - this._lastMessageNanos > this._keepAliveTimeoutNanos) {
+            this._OnConnectionLost(webSocket, "No message received within keep-alive timeout");
+            webSocket.disconnect(WebSocketCloseCode.AWAY, null, 0);
+        }
+    }
+
+    /**
+     * Marks the IO state stale and schedules a reconnect, once per lost connection.
+     */
+    private void _OnConnectionLost(WebSocket webSocket, String reason) {
+        synchronized (this) {
+            if (webSocket != this._webSocket) {
+                return;
+            }
+            this._webSocket = null;
+        }
+        log.info(reason);
+        if (this._isClosed) {
+            return;
+        }
+        if (this._disconnectedNanos == 0) {
+            this._disconnectedNanos = System.nanoTime();
+        }
+        this._isAwaitingFreshState = true;
+        this._graphClient.PublishStaleIOState();
+        this._ScheduleReconnect();
+    }
+
+    private void _ScheduleReconnect() {
+        int attempt = this._reconnectAttempt++;
+        long backoffMillis = Math.min(this._maxBackoffMillis, this._initialBackoffMillis << Math.min(attempt, 20));
+        // full jitter on the upper half of the backoff so that many clients do not reconnect in lockstep
+        long delayMillis = backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+        this._scheduler.schedule(this::_Reconnect, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void _Reconnect() {
+        WebSocket webSocket = null;
+        synchronized (this) {
+            if (this._isClosed || this._webSocket != null) {
+                return;
+            }
+            try {
+                webSocket = this._CreateWebSocket();
+            } catch (Exception e) {
+                log.warning("Failed to create subscription connection: " + e.toString());
+                this._ScheduleReconnect();
+                return;
+            }
+            this._webSocket = webSocket;
+        }
+        try {
+            log.info("Reconnecting subscription, attempt " + this._reconnectAttempt);
+            this._reconnects.Increment();
+            webSocket.connect();
+        } catch (Exception e) {
+            log.warning("Failed to reconnect subscription: " + e.toString());
+            synchronized (this) {
+                if (webSocket != this._webSocket) {
+                    return;
+                }
+                this._webSocket = null;
+            }
+            this._ScheduleReconnect();
+        }
+    }
+}
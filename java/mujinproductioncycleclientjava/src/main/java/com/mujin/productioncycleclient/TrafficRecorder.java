@@ -0,0 +1,210 @@
+package com.mujin.productioncycleclient;
+
+import java.io.IOException;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import java.util.logging.Logger;
+
+/**
+ * Records the IO traffic of a GraphClient to a compact binary log, to be played back by a TrafficReplayer:
+ * subscription messages as received, losses of the subscription, and every GraphQL request with its response
+ * or failure, each stamped with the time it happened. See GraphClient.SetTrafficRecorder.
+ *
+ * The log is a GZIP stream starting with int magic and int version, followed by records. Record layout: byte
+ * type, varlong nanoseconds since the previous record, then by type:
+ *
+ * SUBSCRIPTION_MESSAGE: bytes message
+ * STALE: nothing
+ * REQUEST: varlong duration nanoseconds, bytes request body, bytes response body
+ * REQUEST_FAILED: varlong duration nanoseconds, bytes request body, bytes error message
+ *
+ * where bytes is a varint length followed by as many bytes, text encoded as UTF-8. Records are written when
+ * the traffic completes, so a request is stamped with the time its response arrived.
+ *
+ * Recording runs on the threads producing the traffic and costs encoding and deflating each message. If the
+ * log cannot be written, recording stops and the client carries on.
+ */
+public final class TrafficRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x4d4a5452; // "MJTR", start of the log
+    static final int VERSION = 1; // version of the record layout
+
+    static final byte RECORD_SUBSCRIPTION_MESSAGE = 1; // message received on the subscription
+    static final byte RECORD_STALE = 2; // subscription lost, IO state marked stale
+    static final byte RECORD_REQUEST = 3; // GraphQL request and its response
+    static final byte RECORD_REQUEST_FAILED = 4; // GraphQL request that failed without response
+
+    private final Path _path; // log file
+    private DataOutputStream _output = null; // stream of the log, null once closed or failed, guarded by this
+    private long _lastRecordNanos = 0; // when the last record was written, guarded by this
+    private long _recordCount = 0; // number of written records, guarded by this
+    private long _recordedBytes = 0; // number of written message and body bytes before compression, guarded by this
+
+    private static final Logger log = Logger.getLogger(TrafficRecorder.class.getName());
+
+    /**
+     * Creates the log, replacing an existing file.
+     *
+     * @param path Log file
+     * @throws IOException If cannot create the log
+     */
+    public TrafficRecorder(Path path) throws IOException {
+        this._path = path;
+        this._output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path), 1 << 16, true), 1 << 16));
+        this._output.writeInt(MAGIC);
+        this._output.writeInt(VERSION);
+        this._lastRecordNanos = System.nanoTime();
+    }
+
+    /**
+     * @param message Subscription message text as received
+     */
+    synchronized void RecordSubscriptionMessage(String message) {
+        if (this._output == null) {
+            return;
+        }
+        try {
+            this._BeginRecord(RECORD_SUBSCRIPTION_MESSAGE);
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            this._WriteBytes(bytes, bytes.length);
+        } catch (IOException e) {
+            this._Fail(e);
+        }
+    }
+
+    synchronized void RecordStale() {
+        if (this._output == null) {
+            return;
+        }
+        try {
+            this._BeginRecord(RECORD_STALE);
+        } catch (IOException e) {
+            this._Fail(e);
+        }
+    }
+
+    /**
+     * @param requestBody   Buffer starting with the request body
+     * @param requestLength Number of bytes of the request body
+     * @param responseBody  Raw response body
+     * @param durationNanos Time from sending the request to receiving the response
+     */
+    synchronized void RecordRequest(byte[] requestBody, int requestLength, byte[] responseBody, long durationNanos) {
+        if (this._output == null) {
+            return;
+        }
+        try {
+            this._BeginRecord(RECORD_REQUEST);
+            _WriteVarLong(this._output, durationNanos);
+            this._WriteBytes(requestBody, requestLength);
+            this._WriteBytes(responseBody, responseBody.length);
+        } catch (IOException e) {
+            this._Fail(e);
+        }
+    }
+
+    /**
+     * @param requestBody   Buffer starting with the request body
+     * @param requestLength Number of bytes of the request body
+     * @param error         Reason the request failed
+     * @param durationNanos Time from sending the request to failing
+     */
+    synchronized void RecordFailedRequest(byte[] requestBody, int requestLength, Throwable error, long durationNanos) {
+        if (this._output == null) {
+            return;
+        }
+        try {
+            this._BeginRecord(RECORD_REQUEST_FAILED);
+            _WriteVarLong(this._output, durationNanos);
+            this._WriteBytes(requestBody, requestLength);
+            byte[] message = String.valueOf(error).getBytes(StandardCharsets.UTF_8);
+            this._WriteBytes(message, message.length);
+        } catch (IOException e) {
+            this._Fail(e);
+        }
+    }
+
+    /**
+     * Writes the records recorded so far to the file, so that the log can be read while recording continues.
+     *
+     * @throws IOException If cannot write the log
+     */
+    public synchronized void Flush() throws IOException {
+        if (this._output != null) {
+            this._output.flush();
+        }
+    }
+
+    /**
+     * @return Whether records are still written, false once closed or after failing to write
+     */
+    public synchronized boolean IsRecording() {
+        return this._output != null;
+    }
+
+    /**
+     * @return Number of written records
+     */
+    public synchronized long GetRecordCount() {
+        return this._recordCount;
+    }
+
+    /**
+     * @return Number of written message and body bytes before compression
+     */
+    public synchronized long GetRecordedBytes() {
+        return this._recordedBytes;
+    }
+
+    /**
+     * Stops recording and completes the log.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        DataOutputStream output = this._output;
+        this._output = null;
+        if (output != null) {
+            output.close();
+        }
+    }
+
+    private void _BeginRecord(byte type) throws IOException {
+        long nowNanos = System.nanoTime();
+        this._output.writeByte(type);
+        _WriteVarLong(this._output, Math.max(0, nowNanos - this._lastRecordNanos));
+        this._lastRecordNanos = nowNanos;
+        this._recordCount++;
+    }
+
+    private void _WriteBytes(byte[] bytes, int length) throws IOException {
+        _WriteVarLong(this._output, length);
+        this._output.write(bytes, 0, length);
+        this._recordedBytes += length;
+    }
+
+    private void _Fail(IOException e) {
+        log.warning("Stopped recording traffic to " + this._path + ": " + e.toString());
+        try {
+            this._output.close();
+        } catch (IOException closeException) {
+            // the log is already broken
+        }
+        this._output = null;
+    }
+
+    /**
+     * Writes a non-negative value in 7 bit groups, least significant first, with the high bit set on all but
+     * the last byte.
+     */
+    private static void _WriteVarLong(DataOutputStream output, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            output.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+}
@@ -0,0 +1,875 @@
+package com.mujin.productioncycleclient;
+
+import java.io.IOException;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.DataInputStream;
+import java.io.BufferedInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Plays back a log written by a TrafficRecorder into a GraphClient, to benchmark decoding, IO state updates
+ * and order handling on traffic recorded from a real cell, without a controller. The replayer is the
+ * transport of the GraphClient instead of subscribing: Replay feeds the recorded subscription messages and
+ * subscription losses to the client at their recorded times scaled by a speed factor.
+ *
+ * Replay holds back the next message until the replaying client has advanced each result read pointer it
+ * registered as far as the recorded client had before that message, or to the result write pointer. So the
+ * replaying client never misses results by seeing the result queue wrap around, and dequeues as many results
+ * as recorded at any speed: above the speed it keeps up with, the replay runs as fast as the client allows.
+ *
+ * Requests of the client and of its OrderManagers are answered from IO state replayed per IO name. IOs
+ * published on the subscription or written by a client are answered as of the recorded time of the last fed
+ * subscription message, from the IO values of the recorded subscription messages, the recorded writes and
+ * the writes of the replaying client. IOs only ever read, e.g. result queue entries the controller does not
+ * publish, are answered with the values the recorded client read from the same IO name in recorded order,
+ * the last one repeating once they run out, so that each result is dequeued as often as it was recorded
+ * whatever the timing of the replaying client. Array IOs are tracked per element, so that element and slice
+ * reads and writes like productionQueue1Result[3] or productionQueue1Order[0:16] combine with whole reads.
+ *
+ * Requests needing an IO no recorded traffic carries a value for fail and are counted, see
+ * GetUnmatchedRequestCount. Requests other than IO reads and writes are answered with the oldest unused
+ * response recorded for the same request body, and fail without one. Responses are delayed by the mean
+ * recorded duration of the operation scaled by the speed.
+ *
+ * Usage: new GraphClient(url, username, password, replayer), then ReplayInitialState, drive the client as the
+ * recorded application did, e.g. InitializeOrderPointers and StartDequeueOrderResults, then ReplayAsync.
+ */
+public final class TrafficReplayer implements GraphTransport {
+
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY; // plays the messages back to back and answers requests without delay
+
+    private static final String SET_IO_VARIABLES = "SetControllerIOVariables"; // operation writing IO values
+    private static final String GET_IO_VARIABLES = "GetControllerIOVariables"; // operation reading several IO values
+    private static final String GET_IO_VARIABLE = "GetControllerIOVariable"; // operation reading one IO value
+    private static final Pattern RESULT_READ_POINTER_PATTERN = Pattern.compile("location\\d+OrderResultReadPointer"); // result read pointers the replay waits for the client to advance
+    private static final Pattern RESULT_QUEUE_PATTERN = Pattern.compile("productionQueue\\d+Result"); // result queues whose recorded reads are counted
+    private static final long MAX_CATCH_UP_NANOS = TimeUnit.SECONDS.toNanos(10); // longest time a message is held back for the client, e.g. if it stopped dequeuing
+
+    private final List<SubscriptionEvent> _subscriptionEvents = new ArrayList<>(); // subscription messages and losses in recorded order
+    private final Map<String, IOHistory> _ioHistories = new HashMap<>(); // published and written values of whole IOs and of array elements over time by IO name, guarded by this
+    private final Map<String, ArrayDeque<Object>> _readValues = new HashMap<>(); // values returned by recorded reads not yet replayed by IO name, guarded by this
+    private final Map<String, ArrayDeque<RecordedRequest>> _requestsByBody = new HashMap<>(); // unused recorded requests other than IO reads and writes by request body, guarded by this
+    private final Map<String, long[]> _durationsByOperation = new HashMap<>(); // sum and count of the recorded durations by operation name
+    private final Map<String, IOHistory> _recordedReadPointers = new HashMap<>(); // result read pointer values written by the recorded client over time by IO name
+    private final Map<String, Object> _writtenReadPointers = new HashMap<>(); // result read pointer values last written by the replaying client by IO name, guarded by this
+    private long _recordedResultCount = 0; // number of result queue entries read by the recorded client
+    private int _nextEventIndex = 0; // index of the next subscription event to feed
+    private int _requestCount = 0; // number of recorded requests
+    private long _durationNanos = 0; // time from starting the recording to the last record
+    private volatile long _positionNanos = 0; // recorded time of the last subscription event fed to the client
+    private volatile double _speed = 1; // factor applied to the recorded response delays
+    private final AtomicLong _commandId = new AtomicLong(); // id of the last answered command
+    private final AtomicLong _unmatchedRequests = new AtomicLong(); // number of requests that could not be answered
+
+    /**
+     * Reads the whole log into memory, so that reading does not disturb the replay. A log cut short, e.g.
+     * because the recording process died, is read up to its last complete record.
+     *
+     * @param path Log written by a TrafficRecorder
+     * @throws IOException If cannot read the log or it is not a traffic log
+     */
+    public TrafficReplayer(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(inputStream, 1 << 16), 1 << 16));
+            if (input.readInt() != TrafficRecorder.MAGIC) {
+                throw new IOException("Not a traffic log: " + path);
+            }
+            int version = input.readInt();
+            if (version != TrafficRecorder.VERSION) {
+                throw new IOException("Unsupported traffic log version " + version + ": " + path);
+            }
+            this._ReadRecords(input);
+        }
+    }
+
+    private void _ReadRecords(DataInputStream input) throws IOException {
+        long timeNanos = 0;
+        try {
+            while (true) {
+                byte type = input.readByte();
+                timeNanos += _ReadVarLong(input);
+                switch (type) {
+                    case TrafficRecorder.RECORD_SUBSCRIPTION_MESSAGE: {
+                        String message = new String(_ReadBytes(input), StandardCharsets.UTF_8);
+                        boolean hasIOValues = this._AddSubscriptionValues(timeNanos, message);
+                        this._subscriptionEvents.add(new SubscriptionEvent(timeNanos, message, hasIOValues));
+                        break;
+                    }
+                    case TrafficRecorder.RECORD_STALE:
+                        this._subscriptionEvents.add(new SubscriptionEvent(timeNanos, null, false));
+                        break;
+                    case TrafficRecorder.RECORD_REQUEST:
+                    case TrafficRecorder.RECORD_REQUEST_FAILED: {
+                        long durationNanos = _ReadVarLong(input);
+                        String request = new String(_ReadBytes(input), StandardCharsets.UTF_8);
+                        byte[] response = _ReadBytes(input);
+                        if (type == TrafficRecorder.RECORD_REQUEST) {
+                            this._AddRequest(timeNanos - durationNanos, new RecordedRequest(request, durationNanos, response, null));
+                        } else {
+                            this._AddRequest(timeNanos - durationNanos, new RecordedRequest(request, durationNanos, null, new String(response, StandardCharsets.UTF_8)));
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown traffic log record type " + type);
+                }
+                this._durationNanos = timeNanos;
+            }
+        } catch (EOFException e) {
+            // end of the log, or a record torn by the recording process dying
+        }
+    }
+
+    /**
+     * Adds the IO values of a subscription message to the replayed IO state.
+     *
+     * @return Whether the message carries IO values
+     */
+    private boolean _AddSubscriptionValues(long timeNanos, String message) {
+        JSONObject state = null;
+        try {
+            JSONObject payload = new JSONObject(message).optJSONObject("payload");
+            JSONObject data = payload == null ? null : payload.optJSONObject("data");
+            state = data == null ? null : data.optJSONObject("SubscribeRobotBridgesState");
+        } catch (RuntimeException e) {
+            // not JSON, the client handles it when fed
+        }
+        if (state == null) {
+            return false;
+        }
+        for (String key : new String[] { "receivediovalues", "sentiovalues" }) {
+            JSONArray ioValues = state.optJSONArray(key);
+            if (ioValues != null) {
+                this._AddIOValues(timeNanos, ioValues);
+            }
+        }
+        return true;
+    }
+
+    private void _AddRequest(long sentNanos, RecordedRequest recordedRequest) {
+        this._requestCount++;
+        String operationName = _GetOperationName(recordedRequest._request);
+        long[] durations = this._durationsByOperation.computeIfAbsent(operationName, key -> new long[2]);
+        durations[0] += recordedRequest._durationNanos;
+        durations[1]++;
+
+        if (!SET_IO_VARIABLES.equals(operationName) && !GET_IO_VARIABLES.equals(operationName) && !GET_IO_VARIABLE.equals(operationName)) {
+            this._requestsByBody.computeIfAbsent(recordedRequest._request, key -> new ArrayDeque<>()).addLast(recordedRequest);
+            return;
+        }
+        if (recordedRequest._response == null) {
+            // failed without changing or revealing IO values
+            return;
+        }
+        try {
+            JSONObject parameters = _GetParameters(recordedRequest._request);
+            if (SET_IO_VARIABLES.equals(operationName)) {
+                JSONArray ioNameValues = parameters.getJSONArray("ioNameValues");
+                this._AddIOValues(sentNanos, ioNameValues);
+                for (Map.Entry<String, Object> readPointer : _GetResultReadPointers(ioNameValues).entrySet()) {
+                    this._recordedReadPointers.computeIfAbsent(readPointer.getKey(), key -> new IOHistory()).Add(sentNanos, readPointer.getValue());
+                }
+                return;
+            }
+            JSONObject commandRobotBridges = new JSONObject(new String(recordedRequest._response, StandardCharsets.UTF_8)).optJSONObject("data");
+            commandRobotBridges = commandRobotBridges == null ? null : commandRobotBridges.optJSONObject("CommandRobotBridges");
+            if (commandRobotBridges == null || !commandRobotBridges.has("parametervalue")) {
+                return;
+            }
+            if (GET_IO_VARIABLE.equals(operationName)) {
+                this._AddReadValue(parameters.getString("parametername"), commandRobotBridges.get("parametervalue"));
+            } else {
+                JSONArray ioNames = parameters.getJSONArray("parameternames");
+                JSONArray ioValues = commandRobotBridges.getJSONArray("parametervalue");
+                for (int index = 0; index < ioNames.length() && index < ioValues.length(); index++) {
+                    this._AddReadValue(ioNames.getString(index), ioValues.get(index));
+                }
+            }
+        } catch (RuntimeException e) {
+            // request or response not in the expected form, it reveals nothing
+        }
+    }
+
+    /**
+     * Adds a value returned by a recorded read, slices split into their elements.
+     */
+    private void _AddReadValue(String name, Object value) {
+        IOName ioName = IOName.Parse(name);
+        if (ioName == null) {
+            return;
+        }
+        boolean isResultQueue = ioName._start >= 0 && RESULT_QUEUE_PATTERN.matcher(ioName._name).matches();
+        if (ioName._end - ioName._start > 1) {
+            if (value instanceof JSONArray) {
+                JSONArray values = (JSONArray) value;
+                for (int index = 0; index < values.length() && ioName._start + index < ioName._end; index++) {
+                    this._readValues.computeIfAbsent(ioName._name + "[" + (ioName._start + index) + "]", key -> new ArrayDeque<>()).addLast(values.get(index));
+                    if (isResultQueue) {
+                        this._recordedResultCount++;
+                    }
+                }
+            }
+            return;
+        }
+        this._readValues.computeIfAbsent(ioName.GetKey(), key -> new ArrayDeque<>()).addLast(value);
+        if (isResultQueue) {
+            this._recordedResultCount++;
+        }
+    }
+
+    /**
+     * Adds written or published IO values as of the given time.
+     *
+     * @param ioNameValues [[ioName, ioValue], ...] where ioName may address an array element or slice
+     */
+    private void _AddIOValues(long timeNanos, JSONArray ioNameValues) {
+        for (int index = 0; index < ioNameValues.length(); index++) {
+            JSONArray ioNameValue = ioNameValues.optJSONArray(index);
+            if (ioNameValue == null || ioNameValue.length() < 2) {
+                continue;
+            }
+            IOName ioName = IOName.Parse(ioNameValue.optString(0));
+            if (ioName == null) {
+                continue;
+            }
+            Object value = ioNameValue.get(1);
+            if (ioName._start >= 0 && ioName._end - ioName._start > 1) {
+                if (value instanceof JSONArray) {
+                    JSONArray values = (JSONArray) value;
+                    for (int element = 0; element < values.length() && ioName._start + element < ioName._end; element++) {
+                        this._AddIOValue(timeNanos, ioName._name + "[" + (ioName._start + element) + "]", values.get(element));
+                    }
+                }
+            } else {
+                this._AddIOValue(timeNanos, ioName.GetKey(), value);
+            }
+        }
+    }
+
+    private void _AddIOValue(long timeNanos, String key, Object value) {
+        IOHistory ioHistory = this._ioHistories.computeIfAbsent(key, k -> new IOHistory());
+        int index = ioHistory.Find(timeNanos);
+        if (index >= 0 && index == ioHistory._size - 1 && _IsSame(ioHistory._values[index], value)) {
+            // unchanged, as most values of a subscription message
+            return;
+        }
+        ioHistory.Add(timeNanos, value);
+    }
+
+    /**
+     * Feeds the recorded subscription events up to the first message carrying IO values, so that the client
+     * can read the initial IO state, e.g. in InitializeOrderPointers, before Replay plays back the rest.
+     *
+     * @param graphClient Client created with this replayer as transport
+     */
+    public void ReplayInitialState(GraphClient graphClient) {
+        while (this._nextEventIndex < this._subscriptionEvents.size()) {
+            SubscriptionEvent subscriptionEvent = this._subscriptionEvents.get(this._nextEventIndex++);
+            this._Feed(graphClient, subscriptionEvent);
+            if (subscriptionEvent._hasIOValues) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Feeds the recorded subscription messages not fed yet to the client, holding each back until the client
+     * caught up with the result read pointers, see the class description. Returns once the last message is
+     * decoded and the client caught up with the last recorded result read pointers. Registers
+     * replay.messages, replay.lagNanos, the delay of the messages behind their scaled recorded time,
+     * replay.catchUpNanos, the time messages were held back, and replay.catchUpTimeouts with the metrics of
+     * the client.
+     *
+     * @param graphClient Client created with this replayer as transport
+     * @param speed       Factor to speed up the recorded timing, 1 for real time, MAX_SPEED for as fast as possible
+     * @throws InterruptedException If interrupted while waiting for the next message
+     */
+    public void Replay(GraphClient graphClient, double speed) throws InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        this._speed = speed;
+        MetricsRegistry metrics = graphClient.GetMetrics();
+        Counter messages = metrics.GetCounter("replay.messages");
+        Histogram lagNanos = metrics.GetHistogram("replay.lagNanos");
+        Histogram catchUpNanos = metrics.GetHistogram("replay.catchUpNanos");
+        Counter catchUpTimeouts = metrics.GetCounter("replay.catchUpTimeouts");
+        metrics.RegisterGauge("replay.unmatchedRequests", this::GetUnmatchedRequestCount);
+
+        // wait only for the result read pointers the client manages, starting from the values it read
+        long startPositionNanos = this._positionNanos;
+        List<String> readPointerNames = new ArrayList<>();
+        synchronized (this) {
+            for (String readPointerName : this._recordedReadPointers.keySet()) {
+                if (graphClient.IsIONameRegistered(readPointerName)) {
+                    this._writtenReadPointers.computeIfAbsent(readPointerName, name -> this._GetLatestValue(name, startPositionNanos));
+                    readPointerNames.add(readPointerName);
+                }
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        while (this._nextEventIndex < this._subscriptionEvents.size()) {
+            SubscriptionEvent subscriptionEvent = this._subscriptionEvents.get(this._nextEventIndex);
+            this._AwaitCatchUp(readPointerNames, subscriptionEvent._timeNanos - 1, catchUpNanos, catchUpTimeouts);
+            if (speed != MAX_SPEED) {
+                long dueNanos = startNanos + (long) ((subscriptionEvent._timeNanos - startPositionNanos) / speed);
+                long waitNanos = 0;
+                while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                lagNanos.Record(-waitNanos);
+            }
+            this._nextEventIndex++;
+            this._Feed(graphClient, subscriptionEvent);
+            messages.Increment();
+        }
+        this._positionNanos = this._durationNanos;
+        this._AwaitCatchUp(readPointerNames, Long.MAX_VALUE, catchUpNanos, catchUpTimeouts);
+    }
+
+    /**
+     * Feeds one recorded subscription event to the client.
+     */
+    private void _Feed(GraphClient graphClient, SubscriptionEvent subscriptionEvent) {
+        // requests caused by the message see the IO state as of the message
+        this._positionNanos = subscriptionEvent._timeNanos;
+        if (subscriptionEvent._message == null) {
+            graphClient.PublishStaleIOState();
+        } else {
+            graphClient.DecodeSubscriptionMessage(subscriptionEvent._message);
+        }
+    }
+
+    /**
+     * Blocks until the client caught up with the result read pointers the recorded client had written by the
+     * given time, at most MAX_CATCH_UP_NANOS.
+     *
+     * @param readPointerNames Result read pointers the client manages
+     * @param timeNanos        Recorded time the client has to catch up with
+     */
+    private void _AwaitCatchUp(List<String> readPointerNames, long timeNanos, Histogram catchUpNanos, Counter catchUpTimeouts) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        synchronized (this) {
+            while (!this._IsCaughtUp(readPointerNames, timeNanos)) {
+                long waitNanos = startNanos + MAX_CATCH_UP_NANOS - System.nanoTime();
+                if (waitNanos <= 0) {
+                    catchUpTimeouts.Increment();
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+        }
+        catchUpNanos.Record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Checks whether the client wrote each result read pointer the recorded client had written by the given
+     * time, or advanced it to the result write pointer fed last, past which it cannot go. Called with this
+     * locked.
+     *
+     * @param readPointerNames Result read pointers the client manages
+     * @param timeNanos        Recorded time the client has to catch up with
+     * @return True if the client caught up
+     */
+    private boolean _IsCaughtUp(List<String> readPointerNames, long timeNanos) {
+        for (String readPointerName : readPointerNames) {
+            IOHistory recordedReadPointer = this._recordedReadPointers.get(readPointerName);
+            int index = recordedReadPointer.Find(timeNanos);
+            if (index < 0) {
+                continue;
+            }
+            Object writtenReadPointer = this._writtenReadPointers.get(readPointerName);
+            if (_IsSame(writtenReadPointer, recordedReadPointer._values[index])) {
+                continue;
+            }
+            String writePointerName = readPointerName.replace("OrderResultReadPointer", "OrderResultWritePointer");
+            Object writePointer = this._GetLatestValue(writePointerName, this._positionNanos);
+            if (writePointer == null || _IsSame(writtenReadPointer, writePointer)) {
+                continue;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Value of a whole IO published or written at or before the given time, null if there is none
+     */
+    private Object _GetLatestValue(String name, long timeNanos) {
+        IOHistory ioHistory = this._ioHistories.get(name);
+        int index = ioHistory == null ? -1 : ioHistory.Find(timeNanos);
+        return index < 0 ? null : ioHistory._values[index];
+    }
+
+    /**
+     * @param ioNameValues [[ioName, ioValue], ...] of a write
+     * @return Values written to result read pointers by IO name
+     */
+    private static Map<String, Object> _GetResultReadPointers(JSONArray ioNameValues) {
+        Map<String, Object> readPointers = new HashMap<>();
+        for (int index = 0; index < ioNameValues.length(); index++) {
+            JSONArray ioNameValue = ioNameValues.optJSONArray(index);
+            if (ioNameValue != null && ioNameValue.length() >= 2 && RESULT_READ_POINTER_PATTERN.matcher(ioNameValue.optString(0)).matches()) {
+                readPointers.put(ioNameValue.optString(0), ioNameValue.get(1));
+            }
+        }
+        return readPointers;
+    }
+
+    /**
+     * Feeds the recorded subscription messages to the client on its executor. See Replay.
+     *
+     * @param graphClient Client created with this replayer as transport
+     * @param speed       Factor to speed up the recorded timing, 1 for real time, MAX_SPEED for as fast as possible
+     * @return Future completed once the last message is decoded
+     */
+    public CompletableFuture<Void> ReplayAsync(GraphClient graphClient, double speed) {
+        return graphClient.SupplyAsync(() -> {
+            this.Replay(graphClient, speed);
+            return null;
+        });
+    }
+
+    /**
+     * Answers a request of the client from the replayed IO state, or with a recorded response for requests
+     * other than IO reads and writes.
+     */
+    @Override
+    public byte[] Post(byte[] body) throws Exception {
+        String request = new String(body, StandardCharsets.UTF_8);
+        String operationName = _GetOperationName(request);
+        byte[] response = null;
+        String error = null;
+        try {
+            if (SET_IO_VARIABLES.equals(operationName)) {
+                JSONArray ioNameValues = _GetParameters(request).getJSONArray("ioNameValues");
+                Map<String, Object> readPointers = _GetResultReadPointers(ioNameValues);
+                synchronized (this) {
+                    this._AddIOValues(this._positionNanos, ioNameValues);
+                    if (!readPointers.isEmpty()) {
+                        // Replay may wait for the client to advance them
+                        this._writtenReadPointers.putAll(readPointers);
+                        this.notifyAll();
+                    }
+                }
+                response = this._CreateResponse(null);
+            } else if (GET_IO_VARIABLES.equals(operationName)) {
+                JSONArray ioNames = _GetParameters(request).getJSONArray("parameternames");
+                JSONArray ioValues = new JSONArray();
+                synchronized (this) {
+                    for (int index = 0; index < ioNames.length(); index++) {
+                        ioValues.put(this._GetIOValue(ioNames.getString(index)));
+                    }
+                }
+                response = this._CreateResponse(ioValues);
+            } else if (GET_IO_VARIABLE.equals(operationName)) {
+                String ioName = _GetParameters(request).getString("parametername");
+                Object ioValue = null;
+                synchronized (this) {
+                    ioValue = this._GetIOValue(ioName);
+                }
+                response = this._CreateResponse(ioValue);
+            } else {
+                RecordedRequest recordedRequest = null;
+                synchronized (this) {
+                    ArrayDeque<RecordedRequest> recordedRequests = this._requestsByBody.get(request);
+                    recordedRequest = recordedRequests == null ? null : recordedRequests.pollFirst();
+                }
+                if (recordedRequest == null) {
+                    throw new UnmatchedRequestException("No recorded response");
+                }
+                response = recordedRequest._response;
+                error = recordedRequest._error;
+            }
+        } catch (UnmatchedRequestException e) {
+            this._unmatchedRequests.incrementAndGet();
+            throw new Exception(e.getMessage() + " for request: " + request);
+        } catch (RuntimeException e) {
+            this._unmatchedRequests.incrementAndGet();
+            throw new Exception("Cannot replay request: " + request, e);
+        }
+
+        double speed = this._speed;
+        long[] durations = this._durationsByOperation.get(operationName);
+        if (speed != MAX_SPEED && durations != null && durations[0] > 0) {
+            LockSupport.parkNanos((long) (durations[0] / durations[1] / speed));
+        }
+        if (error != null) {
+            throw new Exception("Recorded request failure: " + error);
+        }
+        return response;
+    }
+
+    /**
+     * @param name Name of an IO, array element or slice
+     * @return Value of the IO as of the replay position, or the next value read by the recorded client
+     * @throws UnmatchedRequestException If the recorded traffic carries no value for the IO
+     */
+    private Object _GetIOValue(String name) throws UnmatchedRequestException {
+        IOName ioName = IOName.Parse(name);
+        if (ioName == null) {
+            throw new UnmatchedRequestException("Invalid IO name " + name);
+        }
+        long positionNanos = this._positionNanos;
+        if (ioName._start < 0) {
+            return this._GetWholeValue(ioName._name, positionNanos);
+        }
+        if (ioName._end - ioName._start == 1) {
+            return this._GetElementValue(ioName._name, ioName._start, positionNanos);
+        }
+        JSONArray values = new JSONArray();
+        for (int index = ioName._start; index < ioName._end; index++) {
+            values.put(this._GetElementValue(ioName._name, index, positionNanos));
+        }
+        return values;
+    }
+
+    /**
+     * @return Value of a whole IO, with later writes of its elements applied if it is an array
+     */
+    private Object _GetWholeValue(String name, long positionNanos) throws UnmatchedRequestException {
+        IOHistory ioHistory = this._ioHistories.get(name);
+        int index = ioHistory == null ? -1 : ioHistory.FindOrFirst(positionNanos);
+        Object value = null;
+        long setNanos = Long.MIN_VALUE;
+        if (index >= 0) {
+            value = ioHistory._values[index];
+            setNanos = ioHistory._times[index];
+        } else if (this._readValues.containsKey(name)) {
+            value = this._PollReadValue(name);
+        } else {
+            throw new UnmatchedRequestException("No replayed value of IO " + name);
+        }
+        if (!(value instanceof JSONArray)) {
+            return value;
+        }
+        JSONArray values = new JSONArray((JSONArray) value);
+        for (int element = 0; element < values.length(); element++) {
+            IOHistory elementHistory = this._ioHistories.get(name + "[" + element + "]");
+            int elementIndex = elementHistory == null ? -1 : elementHistory.Find(positionNanos);
+            if (elementIndex >= 0 && elementHistory._times[elementIndex] >= setNanos) {
+                values.put(element, elementHistory._values[elementIndex]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return Value of an array element, from whichever of the element and the whole array was set last
+     */
+    private Object _GetElementValue(String name, int element, long positionNanos) throws UnmatchedRequestException {
+        IOHistory elementHistory = this._ioHistories.get(name + "[" + element + "]");
+        int elementIndex = elementHistory == null ? -1 : elementHistory.Find(positionNanos);
+        IOHistory ioHistory = this._ioHistories.get(name);
+        int index = ioHistory == null ? -1 : ioHistory.Find(positionNanos);
+        if (index >= 0 && (elementIndex < 0 || ioHistory._times[index] > elementHistory._times[elementIndex]) && ioHistory._values[index] instanceof JSONArray) {
+            JSONArray values = (JSONArray) ioHistory._values[index];
+            if (element < values.length()) {
+                return values.get(element);
+            }
+        }
+        if (elementIndex >= 0) {
+            return elementHistory._values[elementIndex];
+        }
+        if (this._readValues.containsKey(name + "[" + element + "]")) {
+            return this._PollReadValue(name + "[" + element + "]");
+        }
+        // known only from later, e.g. read before the first message
+        elementIndex = elementHistory == null ? -1 : elementHistory.FindOrFirst(positionNanos);
+        if (elementIndex < 0) {
+            throw new UnmatchedRequestException("No replayed value of IO " + name + "[" + element + "]");
+        }
+        return elementHistory._values[elementIndex];
+    }
+
+    /**
+     * @return Next value the recorded client read from the IO, the last one once all were replayed
+     */
+    private Object _PollReadValue(String key) {
+        ArrayDeque<Object> readValues = this._readValues.get(key);
+        return readValues.size() > 1 ? readValues.pollFirst() : readValues.peekFirst();
+    }
+
+    /**
+     * @param parameterValue Value read, null to answer a write
+     * @return Response body of CommandRobotBridges
+     */
+    private byte[] _CreateResponse(Object parameterValue) {
+        JSONObject commandRobotBridges = new JSONObject();
+        if (parameterValue != null) {
+            commandRobotBridges.put("parametervalue", parameterValue);
+        }
+        commandRobotBridges.put("commandid", this._commandId.incrementAndGet());
+        JSONObject data = new JSONObject();
+        data.put("CommandRobotBridges", commandRobotBridges);
+        JSONObject response = new JSONObject();
+        response.put("data", data);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return Number of recorded subscription messages and losses
+     */
+    public int GetSubscriptionEventCount() {
+        return this._subscriptionEvents.size();
+    }
+
+    /**
+     * @return Number of recorded requests
+     */
+    public int GetRequestCount() {
+        return this._requestCount;
+    }
+
+    /**
+     * @return Time from starting the recording to the last record
+     */
+    public long GetDurationNanos() {
+        return this._durationNanos;
+    }
+
+    /**
+     * @return Number of result queue entries the recorded client read, i.e. the results it dequeued
+     */
+    public long GetRecordedResultCount() {
+        return this._recordedResultCount;
+    }
+
+    /**
+     * @return Number of requests of the client that could not be answered from the recorded traffic
+     */
+    public long GetUnmatchedRequestCount() {
+        return this._unmatchedRequests.get();
+    }
+
+    /**
+     * @param request Request body
+     * @return variables.parameters of the request
+     */
+    private static JSONObject _GetParameters(String request) {
+        return new JSONObject(request).getJSONObject("variables").getJSONObject("parameters");
+    }
+
+    /**
+     * @return Whether two decoded JSON values are equal
+     */
+    private static boolean _IsSame(Object a, Object b) {
+        if (a instanceof JSONObject) {
+            return ((JSONObject) a).similar(b);
+        }
+        if (a instanceof JSONArray) {
+            return ((JSONArray) a).similar(b);
+        }
+        return Objects.equals(a, b);
+    }
+
+    /**
+     * @param request Request body
+     * @return Name of the GraphQL mutation, e.g. SetControllerIOVariables, empty if there is none
+     */
+    private static String _GetOperationName(String request) {
+        int start = request.indexOf("mutation ");
+        if (start < 0) {
+            return "";
+        }
+        start += "mutation ".length();
+        int end = start;
+        while (end < request.length() && Character.isJavaIdentifierPart(request.charAt(end))) {
+            end++;
+        }
+        return request.substring(start, end);
+    }
+
+    private static byte[] _ReadBytes(DataInputStream input) throws IOException {
+        long length = _ReadVarLong(input);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Traffic log record too large: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static long _ReadVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varlong in traffic log");
+    }
+
+    /**
+     * Recorded subscription message, or loss of the subscription
+     */
+    private static final class SubscriptionEvent {
+
+        private final long _timeNanos; // time since starting the recording
+        private final String _message; // message text, null for a loss of the subscription
+        private final boolean _hasIOValues; // whether the message carries IO values
+
+        SubscriptionEvent(long timeNanos, String message, boolean hasIOValues) {
+            this._timeNanos = timeNanos;
+            this._message = message;
+            this._hasIOValues = hasIOValues;
+        }
+    }
+
+    /**
+     * Recorded request with its response or failure
+     */
+    private static final class RecordedRequest {
+
+        private final String _request; // request body
+        private final long _durationNanos; // time the request took
+        private final byte[] _response; // response body, null if failed
+        private final String _error; // failure message, null if answered
+
+        RecordedRequest(String request, long durationNanos, byte[] response, String error) {
+            this._request = request;
+            this._durationNanos = durationNanos;
+            this._response = response;
+            this._error = error;
+        }
+    }
+
+    /**
+     * Values of an IO, or of an array element, ordered by the time they were set
+     */
+    private static final class IOHistory {
+
+        private long[] _times = new long[2]; // time each value was set
+        private Object[] _values = new Object[2]; // decoded values
+        private int _size = 0; // number of values
+
+        /**
+         * Adds a value after all values set at or before the given time.
+         */
+        void Add(long timeNanos, Object value) {
+            if (this._size == this._times.length) {
+                this._times = Arrays.copyOf(this._times, this._size * 2);
+                this._values = Arrays.copyOf(this._values, this._size * 2);
+            }
+            int index = this.Find(timeNanos) + 1;
+            System.arraycopy(this._times, index, this._times, index + 1, this._size - index);
+            System.arraycopy(this._values, index, this._values, index + 1, this._size - index);
+            this._times[index] = timeNanos;
+            this._values[index] = value;
+            this._size++;
+        }
+
+        /**
+         * @return Index of the last value set at or before the given time, -1 if there is none
+         */
+        int Find(long timeNanos) {
+            int low = 0;
+            int high = this._size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (this._times[middle] <= timeNanos) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+
+        /**
+         * @return Index of the last value set at or before the given time, else of the first value, -1 if empty
+         */
+        int FindOrFirst(long timeNanos) {
+            int index = this.Find(timeNanos);
+            return index < 0 && this._size > 0 ? 0 : index;
+        }
+    }
+
+    /**
+     * IO name split into the name of the IO and the addressed elements, e.g. productionQueue1Result[3] or
+     * productionQueue1Order[0:16]
+     */
+    private static final class IOName {
+
+        private final String _name; // name of the IO
+        private final int _start; // first addressed element, -1 for the whole IO
+        private final int _end; // end of the addressed elements, exclusive
+
+        private IOName(String name, int start, int end) {
+            this._name = name;
+            this._start = start;
+            this._end = end;
+        }
+
+        /**
+         * @return Parsed name, null if the element index or slice is malformed
+         */
+        static IOName Parse(String ioName) {
+            int open = ioName.indexOf('[');
+            if (open < 0) {
+                return new IOName(ioName, -1, -1);
+            }
+            if (!ioName.endsWith("]")) {
+                return null;
+            }
+            String name = ioName.substring(0, open);
+            String range = ioName.substring(open + 1, ioName.length() - 1);
+            try {
+                int colon = range.indexOf(':');
+                if (colon < 0) {
+                    int element = Integer.parseInt(range.trim());
+                    return element < 0 ? null : new IOName(name, element, element + 1);
+                }
+                int start = Integer.parseInt(range.substring(0, colon).trim());
+                int end = Integer.parseInt(range.substring(colon + 1).trim());
+                return start < 0 || end < start ? null : new IOName(name, start, end);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return Key of the history of a whole IO or of a single element
+         */
+        String GetKey() {
+            return this._start < 0 ? this._name : this._name + "[" + this._start + "]";
+        }
+    }
+
+    /**
+     * Request that cannot be answered from the recorded traffic
+     */
+    private static final class UnmatchedRequestException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnmatchedRequestException(String message) {
+            super(message);
+        }
+    }
+}
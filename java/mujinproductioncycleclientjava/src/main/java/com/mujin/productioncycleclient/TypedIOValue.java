@@ -0,0 +1,136 @@
+package com.mujin.productioncycleclient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+/**
+ * Base of the typed IO values such as OrderEntry and OrderResult. A typed value is written by its codec
+ * when passed to SetControllerIOVariables or an OrderManager, and is also a read-only Map<String, Object>
+ * with the JSON field names as keys, so that it can be used wherever the untyped maps are. The map view is
+ * built on first use only; numbers in it are Integer when integral, as JSONObject.toMap() returns them.
+ */
+abstract class TypedIOValue extends AbstractMap<String, Object> {
+
+    private volatile Map<String, Object> _map = null; // map view, built on first use
+
+    /**
+     * Writes the value as a JSON object.
+     */
+    abstract void WriteJson(RequestBodyWriter writer);
+
+    /**
+     * Puts the fields into the map view, in JSON field order.
+     */
+    abstract void PutFields(Map<String, Object> map);
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        Map<String, Object> map = this._map;
+        if (map == null) {
+            map = new LinkedHashMap<>();
+            this.PutFields(map);
+            map = Collections.unmodifiableMap(map);
+            this._map = map;
+        }
+        return map.entrySet();
+    }
+
+    /**
+     * Writes the name of a field, preceded by a comma unless it is the first field.
+     */
+    static void WriteName(RequestBodyWriter writer, String name, boolean isFirst) {
+        if (!isFirst) {
+            writer.WriteByte(',');
+        }
+        writer.WriteString(name);
+        writer.WriteByte(':');
+    }
+
+    /**
+     * Writes additional fields not covered by the typed fields.
+     */
+    static void WriteExtras(RequestBodyWriter writer, Map<String, Object> extras) {
+        for (Map.Entry<String, Object> extra : extras.entrySet()) {
+            if (extra.getValue() == null) {
+                continue;
+            }
+            WriteName(writer, extra.getKey(), false);
+            writer.WriteValue(extra.getValue());
+        }
+    }
+
+    static void WriteDoubles(RequestBodyWriter writer, double[] values) {
+        writer.WriteByte('[');
+        for (int index = 0; index < values.length; index++) {
+            if (index > 0) {
+                writer.WriteByte(',');
+            }
+            writer.WriteDouble(values[index]);
+        }
+        writer.WriteByte(']');
+    }
+
+    /**
+     * @return Value as it appears in the map view
+     */
+    static Object ToNumber(double value) {
+        if (value == Math.rint(value) && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return Integer.valueOf((int) value);
+        }
+        return Double.valueOf(value);
+    }
+
+    /**
+     * @return Values as they appear in the map view, null for null
+     */
+    static List<Object> ToNumbers(double[] values) {
+        if (values == null) {
+            return null;
+        }
+        List<Object> numbers = new ArrayList<>(values.length);
+        for (double value : values) {
+            numbers.add(ToNumber(value));
+        }
+        return Collections.unmodifiableList(numbers);
+    }
+
+    /**
+     * @return Number in an untyped value, 0 if missing
+     */
+    static double ToDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /**
+     * @return Numbers in an untyped list value, null if missing
+     */
+    static double[] ToDoubles(Object value) {
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<?> list = (List<?>) value;
+        double[] values = new double[list.size()];
+        for (int index = 0; index < values.length; index++) {
+            values[index] = ToDouble(list.get(index));
+        }
+        return values;
+    }
+
+    /**
+     * @return Fields of an untyped value not in the known field names
+     */
+    static Map<String, Object> GetExtras(Map<String, Object> map, Set<String> fieldNames) {
+        Map<String, Object> extras = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (!fieldNames.contains(entry.getKey())) {
+                extras.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return extras;
+    }
+}
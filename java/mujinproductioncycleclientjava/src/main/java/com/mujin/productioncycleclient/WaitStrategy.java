@@ -0,0 +1,50 @@
+package com.mujin.productioncycleclient;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Strategy used by threads waiting for a new IO state to be published by the subscription.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Parks the waiting thread until a new IO state is published. Lowest CPU usage.
+     */
+    PARK,
+
+    /**
+     * Busy-spins for a short while before parking. Reacts within microseconds to updates arriving right
+     * after the wait starts, while still dropping to near zero CPU usage when idle.
+     */
+    SPIN_THEN_PARK,
+
+    /**
+     * Yields the processor between checks. Lowest latency, but keeps the waiting thread runnable.
+     */
+    YIELD;
+
+    private static final int SPIN_ITERATIONS = 1000; // number of spins before parking for SPIN_THEN_PARK
+
+    /**
+     * Idles the calling thread once according to the strategy.
+     * 
+     * @param iteration      Number of times the caller has idled during the current wait
+     * @param remainingNanos Nanoseconds left until the wait times out
+     */
+    void Idle(int iteration, long remainingNanos) {
+        switch (this) {
+            case SPIN_THEN_PARK:
+                if (iteration < SPIN_ITERATIONS) {
+                    Thread.onSpinWait();
+                    return;
+                }
+                LockSupport.parkNanos(this, remainingNanos);
+                return;
+            case YIELD:
+                Thread.yield();
+                return;
+            default:
+                LockSupport.parkNanos(this, remainingNanos);
+        }
+    }
+}
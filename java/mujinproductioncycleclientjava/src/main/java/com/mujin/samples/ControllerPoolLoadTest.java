@@ -0,0 +1,104 @@
+package com.mujin.samples;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Map.entry;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+
+import com.mujin.fakecontroller.FakeController;
+import com.mujin.productioncycleclient.ControllerPool;
+import com.mujin.productioncycleclient.PooledController;
+import com.mujin.productioncycleclient.PlacementStrategy;
+
+/**
+ * Spreads orders over several embedded FakeControllers with a ControllerPool and reports the end-to-end
+ * throughput of the whole pool.
+ */
+public class ControllerPoolLoadTest {
+
+    private static final Logger log = Logger.getLogger(ControllerPoolLoadTest.class.getName());
+
+    public static void main(String[] args) {
+        ArgumentParser parser = ArgumentParsers.newFor("ControllerPoolLoadTest").build().defaultHelp(true).description("Measure order throughput of a controller pool");
+        parser.addArgument("--controllers").type(Integer.class).setDefault(4).help("Number of fake controllers");
+        parser.addArgument("--queues").type(Integer.class).setDefault(1).help("Number of production queues per controller");
+        parser.addArgument("--orders").type(Integer.class).setDefault(10000).help("Number of orders to run");
+        parser.addArgument("--batch").type(Integer.class).setDefault(16).help("Number of orders per QueueOrders call");
+        parser.addArgument("--group-size").type(Integer.class).setDefault(8).help("Number of consecutive orders sharing an orderGroupId");
+        parser.addArgument("--processing-latency").type(Long.class).setDefault(1000L).help("Fake controller processing time per order in microseconds");
+        parser.addArgument("--processing-jitter").type(Long.class).setDefault(500L).help("Fake controller random processing time added per order in microseconds");
+        Namespace arguments = null;
+        try {
+            arguments = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        }
+
+        List<FakeController> fakeControllers = new ArrayList<>();
+        ControllerPool controllerPool = new ControllerPool();
+        try {
+            int numberOfQueues = arguments.getInt("queues");
+            int[] queueIndices = new int[numberOfQueues];
+            for (int index = 0; index < numberOfQueues; index++) {
+                queueIndices[index] = index + 1;
+            }
+            for (int index = 0; index < arguments.getInt("controllers"); index++) {
+                FakeController fakeController = new FakeController(numberOfQueues, 64);
+                fakeController.SetProcessingLatency(arguments.getLong("processing_latency"), arguments.getLong("processing_jitter"));
+                fakeController.Start(0);
+                fakeControllers.add(fakeController);
+                controllerPool.AddController("cell" + index, fakeController.GetUrl(), "mujin", "mujin", queueIndices);
+            }
+            controllerPool.SetPlacementStrategy(PlacementStrategy.StickyByOrderGroup(PlacementStrategy.LeastLoaded(), 10000));
+
+            int numberOfOrders = arguments.getInt("orders");
+            CountDownLatch finishedOrders = new CountDownLatch(numberOfOrders);
+            int numberOfStarted = controllerPool.Start(5, (controller, queueIndex, resultEntry) -> finishedOrders.countDown());
+            log.info("Started " + numberOfStarted + " controllers");
+
+            long startNanos = System.nanoTime();
+            List<CompletableFuture<PooledController>> queuedOrders = new ArrayList<>();
+            for (int start = 0; start < numberOfOrders; start += arguments.getInt("batch")) {
+                List<Map<String, Object>> orderEntries = new ArrayList<>();
+                for (int index = start; index < Math.min(start + arguments.getInt("batch"), numberOfOrders); index++) {
+                    orderEntries.add(Map.ofEntries(
+                        entry("orderUniqueId", "order_" + index),
+                        entry("orderGroupId", "group_" + (index / arguments.getInt("group_size"))),
+                        entry("orderPickContainerId", "c_" + index),
+                        entry("orderPlaceContainerId", ""),
+                        entry("orderScenarioId", "depallet"),
+                        entry("orderType", "picking"),
+                        entry("orderNumber", 1),
+                        entry("orderInputPartIndex", 0),
+                        entry("orderPickLocationName", "location1"),
+                        entry("orderPlaceLocationName", "location2")
+                    ));
+                }
+                queuedOrders.addAll(controllerPool.QueueOrders(orderEntries));
+            }
+            CompletableFuture.allOf(queuedOrders.toArray(new CompletableFuture<?>[0])).get();
+            finishedOrders.await();
+            long finishedNanos = System.nanoTime() - startNanos;
+
+            log.info(String.format("Finished %d orders in %d ms, %.1f orders/s", numberOfOrders, TimeUnit.NANOSECONDS.toMillis(finishedNanos), numberOfOrders * 1e9 / finishedNanos));
+            log.info("Pool metrics:\n" + controllerPool.GetMetrics().Dump());
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            controllerPool.Stop();
+            fakeControllers.forEach(FakeController::close);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mujin.samples;
+
+import java.util.Map;
+import java.util.List;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.lang.management.ManagementFactory;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+
+import com.mujin.productioncycleclient.IOState;
+import com.mujin.productioncycleclient.IOStateDecoder;
+
+/**
+ * Compares CPU time and allocation of decoding a SubscribeRobotBridgesState message with JSONObject.toMap()
+ * against IOStateDecoder, with and without the IO name filter.
+ */
+public class DecodeBenchmark {
+
+    private static final Logger log = Logger.getLogger(DecodeBenchmark.class.getName());
+
+    /**
+     * Generates a subscription message similar to one captured from a Mujin controller.
+     *
+     * @param numberOfIOs Number of IO values in each of sentiovalues and receivediovalues
+     * @return Subscription message text
+     */
+    private static String _GenerateMessage(int numberOfIOs) {
+        JSONArray receivedIOValues = new JSONArray();
+        JSONArray sentIOValues = new JSONArray();
+        for (int index = 0; index < numberOfIOs; index++) {
+            Object value = null;
+            switch (index % 4) {
+                case 0:
+                    value = index % 3 == 0;
+                    break;
+                case 1:
+                    value = index;
+                    break;
+                case 2:
+                    value = "c_" + (1700000000000L + index);
+                    break;
+                default:
+                    value = new JSONArray(List.of(index, index + 1, index + 2));
+            }
+            receivedIOValues.put(new JSONArray(List.of("location" + index + "ReceivedIO", value)));
+            sentIOValues.put(new JSONArray(List.of("location" + index + "SentIO", value)));
+        }
+        JSONObject state = new JSONObject();
+        state.put("receivediovalues", receivedIOValues);
+        state.put("sentiovalues", sentIOValues);
+        JSONObject message = new JSONObject();
+        message.put("type", "data");
+        message.put("id", "1");
+        message.put("payload", new JSONObject().put("data", new JSONObject().put("SubscribeRobotBridgesState", state)));
+        return message.toString();
+    }
+
+    /**
+     * Converts list of [ioName, ioValue] pairs into a map, as the client did before IOStateDecoder.
+     *
+     * @param ioValuesObject List of [ioName, ioValue] pairs
+     * @return Map of IO values keyed by IO name
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> _IndexIOValues(Object ioValuesObject) {
+        if (ioValuesObject == null) {
+            return new HashMap<>();
+        }
+        List<List<Object>> ioValues = (List<List<Object>>) ioValuesObject;
+        Map<String, Object> result = new HashMap<String, Object>(ioValues.size() * 2);
+        for (List<Object> ioValue : ioValues) {
+            result.put((String) ioValue.get(0), ioValue.get(1));
+        }
+        return result;
+    }
+
+    /**
+     * Runs a decode function repeatedly and logs time and allocation per message.
+     *
+     * @param name       Name to report
+     * @param iterations Number of messages to decode
+     * @param decode     Decode function
+     */
+    private static void _Measure(String name, int iterations, Runnable decode) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up
+        for (int index = 0; index < iterations; index++) {
+            decode.run();
+        }
+
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long startCpuTime = threadBean.getCurrentThreadCpuTime();
+        for (int index = 0; index < iterations; index++) {
+            decode.run();
+        }
+        long cpuTime = threadBean.getCurrentThreadCpuTime() - startCpuTime;
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+        log.info(String.format("%-24s %10.1f us/message %12d bytes/message", name, cpuTime / 1000.0 / iterations, allocatedBytes / iterations));
+    }
+
+    public static void main(String[] args) throws Exception {
+        ArgumentParser parser = ArgumentParsers.newFor("DecodeBenchmark").build().defaultHelp(true).description("Benchmark decoding of subscription messages");
+        parser.addArgument("--payload").help("File containing a captured subscription message. Generated if not given");
+        parser.addArgument("--ios").type(Integer.class).setDefault(500).help("Number of IO values to generate per direction");
+        parser.addArgument("--interesting").type(Integer.class).setDefault(30).help("Number of IO names to register for the filtered decoder");
+        parser.addArgument("--iterations").type(Integer.class).setDefault(2000).help("Number of messages to decode");
+        Namespace arguments = null;
+        try {
+            arguments = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        }
+
+        String message = arguments.getString("payload") != null
+            ? Files.readString(Paths.get(arguments.getString("payload")))
+            : _GenerateMessage(arguments.getInt("ios"));
+        int iterations = arguments.getInt("iterations");
+        log.info("Message size is " + message.length() + " characters");
+
+        _Measure("JSONObject.toMap", iterations, () -> {
+            Map<String, Object> robotBridgeState = new JSONObject(message)
+                .getJSONObject("payload")
+                .getJSONObject("data")
+                .getJSONObject("SubscribeRobotBridgesState")
+                .toMap();
+            new IOState(1, _IndexIOValues(robotBridgeState.get("receivediovalues")), _IndexIOValues(robotBridgeState.get("sentiovalues")));
+        });
+
+        IOStateDecoder decoder = new IOStateDecoder();
+        _Measure("IOStateDecoder", iterations, () -> {
+            decoder.Decode(message, new HashMap<>(), new HashMap<>());
+        });
+
+        // register the first IO names of the message as interesting
+        Map<String, Object> allIOs = new HashMap<>();
+        decoder.Decode(message, allIOs, new HashMap<>());
+        List<String> interestingIONames = new ArrayList<>(allIOs.keySet()).subList(0, Math.min(arguments.getInt("interesting"), allIOs.size()));
+        IOStateDecoder filteredDecoder = new IOStateDecoder();
+        filteredDecoder.SetIONameFilter(interestingIONames);
+        _Measure("IOStateDecoder filtered", iterations, () -> {
+            filteredDecoder.Decode(message, new HashMap<>(), new HashMap<>());
+        });
+    }
+}
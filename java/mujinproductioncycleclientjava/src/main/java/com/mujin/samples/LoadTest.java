@@ -0,0 +1,148 @@
+package com.mujin.samples;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Map.entry;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+
+import com.mujin.fakecontroller.FakeController;
+import com.mujin.productioncycleclient.GraphClient;
+import com.mujin.productioncycleclient.TrafficRecorder;
+import com.mujin.productioncycleclient.MultiQueueOrderManager;
+
+/**
+ * Drives MultiQueueOrderManager with as many orders as the controller accepts and reports the end-to-end throughput.
+ * Runs against an embedded FakeController unless a controller URL is given.
+ */
+public class LoadTest {
+
+    private static final Logger log = Logger.getLogger(LoadTest.class.getName());
+
+    /**
+     * Queues the orders in batches across the production queues and receives their results as they are
+     * written.
+     *
+     * @param graphClient    Client connected to the controller
+     * @param numberOfQueues Number of production queues to drive, starting from queue 1
+     * @param numberOfOrders Number of orders to run
+     * @param batchSize      Number of orders passed to each QueueOrders call
+     * @throws Exception
+     */
+    private static void _Run(GraphClient graphClient, int numberOfQueues, int numberOfOrders, int batchSize) throws Exception {
+        int[] queueIndices = new int[numberOfQueues];
+        for (int index = 0; index < numberOfQueues; index++) {
+            queueIndices[index] = index + 1;
+        }
+        MultiQueueOrderManager orderManager = new MultiQueueOrderManager(graphClient, queueIndices);
+        orderManager.InitializeOrderPointers(5);
+        orderManager.ResetResultPointers();
+
+        // results of all queues arrive on one listener
+        CountDownLatch finishedOrders = new CountDownLatch(numberOfOrders);
+        orderManager.StartDequeueOrderResults((queueIndex, resultEntry) -> finishedOrders.countDown());
+
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<Integer>> queuedOrders = new ArrayList<>();
+        for (int start = 0; start < numberOfOrders; start += batchSize) {
+            List<Map<String, Object>> orderEntries = new ArrayList<>();
+            for (int index = start; index < Math.min(start + batchSize, numberOfOrders); index++) {
+                orderEntries.add(Map.ofEntries(
+                    entry("orderUniqueId", "order_" + index),
+                    entry("orderGroupId", "group_" + index),
+                    entry("orderPickContainerId", "c_" + index),
+                    entry("orderPlaceContainerId", ""),
+                    entry("orderScenarioId", "depallet"),
+                    entry("orderType", "picking"),
+                    entry("orderNumber", 1),
+                    entry("orderInputPartIndex", 0),
+                    entry("orderPickLocationName", "location1"),
+                    entry("orderPlaceLocationName", "location2")
+                ));
+            }
+            queuedOrders.addAll(orderManager.QueueOrders(orderEntries));
+        }
+        CompletableFuture.allOf(queuedOrders.toArray(new CompletableFuture<?>[0])).get();
+        long queuedNanos = System.nanoTime() - startNanos;
+        finishedOrders.await();
+        long finishedNanos = System.nanoTime() - startNanos;
+        orderManager.StopDequeueOrderResults();
+
+        log.info(String.format("Queued %d orders in %d ms", numberOfOrders, TimeUnit.NANOSECONDS.toMillis(queuedNanos)));
+        log.info(String.format("Finished %d orders in %d ms, %.1f orders/s", numberOfOrders, TimeUnit.NANOSECONDS.toMillis(finishedNanos), numberOfOrders * 1e9 / finishedNanos));
+        log.info("Client metrics:\n" + graphClient.GetMetrics().Dump());
+    }
+
+    public static void main(String[] args) {
+        ArgumentParser parser = ArgumentParsers.newFor("LoadTest").build().defaultHelp(true).description("Measure end-to-end order throughput");
+        parser.addArgument("--url").help("URL of the controller. An embedded fake controller is started if not given");
+        parser.addArgument("--username").setDefault("mujin").help("Username to login with");
+        parser.addArgument("--password").setDefault("mujin").help("Password to login with");
+        parser.addArgument("--orders").type(Integer.class).setDefault(10000).help("Number of orders to run");
+        parser.addArgument("--queues").type(Integer.class).setDefault(1).help("Number of production queues to drive");
+        parser.addArgument("--batch").type(Integer.class).setDefault(16).help("Number of orders per QueueOrders call");
+        parser.addArgument("--queue-length").type(Integer.class).setDefault(64).help("Length of the fake controller order and result queues");
+        parser.addArgument("--processing-latency").type(Long.class).setDefault(0L).help("Fake controller processing time per order in microseconds");
+        parser.addArgument("--processing-jitter").type(Long.class).setDefault(0L).help("Fake controller random processing time added per order in microseconds");
+        parser.addArgument("--request-latency").type(Long.class).setDefault(0L).help("Fake controller response time per request in microseconds");
+        parser.addArgument("--request-jitter").type(Long.class).setDefault(0L).help("Fake controller random response time added per request in microseconds");
+        parser.addArgument("--record").help("Path to record the IO traffic to, to be played back by ReplayTraffic");
+        Namespace arguments = null;
+        try {
+            arguments = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        }
+
+        FakeController fakeController = null;
+        TrafficRecorder trafficRecorder = null;
+        try {
+            String url = arguments.getString("url");
+            if (url == null) {
+                fakeController = new FakeController(arguments.getInt("queues"), arguments.getInt("queue_length"));
+                fakeController.SetProcessingLatency(arguments.getLong("processing_latency"), arguments.getLong("processing_jitter"));
+                fakeController.SetRequestLatency(arguments.getLong("request_latency"), arguments.getLong("request_jitter"));
+                fakeController.Start(0);
+                url = fakeController.GetUrl();
+            }
+
+            GraphClient graphClient = new GraphClient(url, arguments.getString("username"), arguments.getString("password"));
+            if (arguments.getString("record") != null) {
+                // record from before subscribing, so that the log covers the whole session
+                trafficRecorder = new TrafficRecorder(Path.of(arguments.getString("record")));
+                graphClient.SetTrafficRecorder(trafficRecorder);
+            }
+            graphClient.SubscribeRobotBridgesState();
+            _Run(graphClient, arguments.getInt("queues"), arguments.getInt("orders"), arguments.getInt("batch"));
+            graphClient.UnsubscribeRobotBridgesState();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            if (trafficRecorder != null) {
+                try {
+                    trafficRecorder.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            if (fakeController != null) {
+                fakeController.close();
+            }
+        }
+        // the WebSocket library can leave a non-daemon close timer behind when the close handshake races the
+        // server closing the connection, which would keep the JVM alive
+        System.exit(0);
+    }
+}
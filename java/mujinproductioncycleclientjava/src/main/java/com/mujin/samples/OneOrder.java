@@ -2,47 +2,43 @@ package com.mujin.samples;
 
 import java.util.Map;
 import java.util.List;
-import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.logging.Logger;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import java.util.concurrent.CompletableFuture;
 
-import static java.util.Map.entry;
-
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 
+import com.mujin.fakecontroller.FakeController;
 import com.mujin.productioncycleclient.GraphClient;
+import com.mujin.productioncycleclient.OrderEntry;
+import com.mujin.productioncycleclient.OrderResult;
 import com.mujin.productioncycleclient.OrderManager;
+import com.mujin.productioncycleclient.LocationConfig;
+import com.mujin.productioncycleclient.LocationEngine;
+import com.mujin.productioncycleclient.PackRequest;
+import com.mujin.productioncycleclient.PackFormationEntry;
+import com.mujin.productioncycleclient.PackFormationHeader;
+import com.mujin.productioncycleclient.PackResult;
+import com.mujin.productioncycleclient.PackFormationPipeline;
 
 public class OneOrder {
 
     private static final Logger log = Logger.getLogger(OneOrder.class.getName());
 
-    private boolean _done = false;
-    private List<Map<String, Object>> _orderResults = Collections.synchronizedList(new ArrayList<>());
-    
     private void _RunMain(String url, String username, String password) throws Exception {
         // GraphQLClient to set and get controller io variables
         GraphClient graphClient = new GraphClient(url, username, password);
 
-        CompletableFuture.runAsync(() -> this._SubscribeRobotBridgesState(graphClient));
-        this._ManageProductionCycle(graphClient);
-    }
-
-    private void _SubscribeRobotBridgesState(GraphClient graphClient) {
-        try {
-            graphClient.SubscribeRobotBridgesState();
-        } catch (Exception e) {
+        graphClient.SubscribeRobotBridgesStateAsync().exceptionally(e -> {
             log.warning("Graphql subscription failed: " + e.toString());
-        }
+            return null;
+        });
+        this._ManageProductionCycle(graphClient);
     }
 
     /**
@@ -74,56 +70,35 @@ public class OneOrder {
         // start production cycle
         this.StartProductionCycle(graphClient);
 
-        // handle location move in and out for location 1
-        // location1 here is example, depend on Mujin controller configuration
-        CompletableFuture<Void> handlePickLocationMove = CompletableFuture.runAsync(() -> this.HandleLocationMove(
-                graphClient,
-                "location1",
-                "location1ContainerId",
-                "location1RequestContainerId",
-                "location1HasContainer",
-                "moveInLocation1Container",
-                "moveOutLocation1Container")
-        );
+        // handle location move in and out for location 1 and location 2 on one thread, driven by IO changes
+        // location1 and location2 here are examples, depend on Mujin controller configuration
+        LocationEngine locationEngine = new LocationEngine(graphClient, List.of(LocationConfig.ForLocation(1), LocationConfig.ForLocation(2)));
+        locationEngine.Start();
 
-        // handle location move in and out for location 2
-        // location2 here is example, depend on Mujin controller configuration
-        CompletableFuture<Void> handlePlaceLocationMove = CompletableFuture.runAsync(() -> this.HandleLocationMove(
-                graphClient,
-                "location2",
-                "location2ContainerId", 
-                "location2RequestContainerId",
-                "location2HasContainer",
-                "moveInLocation2Container",
-                "moveOutLocation2Container")
-        ); 
-
-        // dequeue order results
-        CompletableFuture<Void> dequeueOrderResults = CompletableFuture.runAsync(() -> this.DequeueOrderResults(orderManager));
+        // dequeue order results whenever the controller writes them, each result completes the future of its order
+        orderManager.StartDequeueOrderResults(null);
 
         // 
         // 1. Execute Depalletizing
         // 
 
         // queue a depalletizing order to productionQueue1Order
-        Map<String, Object> depalletizingOrderEntry = Map.ofEntries(
-            entry("orderUniqueId", "order_0001"), // unique id for this order
-            entry("orderGroupId", "group_0001"), // group multiple orders to same place container
-            entry("orderPickContainerId", this._GenerateUniqueContainerID()),
-            entry("orderPlaceContainerId", ""),
-            entry("orderScenarioId", "depallet"),
-            entry("orderType", "picking"),
-            entry("orderNumber", 100), // number of parts to pick
-            entry("orderInputPartIndex", 0), // 1-based index into the pack formation, 1 meaning the first box in the pack
-            entry("orderPickLocationName", "location1"),
-            entry("orderPlaceLocationName", "location2"),
-            entry("orderPartWeight", 0),
-            entry("orderPartSizeX", 0),
-            entry("orderPartSizeY", 0),
-            entry("orderPartSizeZ", 0)
-            // NOTE: additional parameters may be required depending on the configurations on Mujin controller
-        );
-        orderManager.QueueOrder(depalletizingOrderEntry);
+        OrderEntry depalletizingOrderEntry = OrderEntry.NewBuilder()
+            .SetOrderUniqueId("order_0001") // unique id for this order
+            .SetOrderGroupId("group_0001") // group multiple orders to same place container
+            .SetOrderPickContainerId(this._GenerateUniqueContainerID())
+            .SetOrderPlaceContainerId("")
+            .SetOrderScenarioId("depallet")
+            .SetOrderType("picking")
+            .SetOrderNumber(100) // number of parts to pick
+            .SetOrderInputPartIndex(0) // 1-based index into the pack formation, 1 meaning the first box in the pack
+            .SetOrderPickLocationName("location1")
+            .SetOrderPlaceLocationName("location2")
+            .SetOrderPartWeight(0)
+            .SetOrderPartSize(0, 0, 0)
+            // NOTE: additional parameters may be required depending on the configurations on Mujin controller, pass them with PutExtra
+            .Build();
+        CompletableFuture<OrderResult> depalletizingOrderResultFuture = orderManager.QueueOrder(depalletizingOrderEntry);
         log.info("Queued a depalletizing order: " + depalletizingOrderEntry.toString());
 
 
@@ -133,7 +108,7 @@ public class OneOrder {
 
         // receive the result from productionQueue1Result 
         log.info("Waiting for the depalletizing order result");
-        Map<String, Object> depalletizingOrderResult = this.WaitForOrderResult();
+        OrderResult depalletizingOrderResult = depalletizingOrderResultFuture.get();
         log.info("Received depalletizing order result: " + depalletizingOrderResult.toString());
 
 
@@ -142,138 +117,91 @@ public class OneOrder {
         // 
 
         // item information which we want to compute a pack for
-        List<Object> inputPackFormationEntries = List.of(
-            Map.ofEntries(
-                entry("partFullSize", List.of(204, 223, 191)),
-                entry("partWeight", 300),
-                entry("aabbPoseInContainer", List.of(1, 0, 0, 0, 0, 0, 0))
-            ),
-            Map.ofEntries(
-                entry("partFullSize", List.of(204, 223, 193)),
-                entry("partWeight", 200),
-                entry("aabbPoseInContainer", List.of(1, 0, 0, 0, 0, 0, 0))
-            ),
-            Map.ofEntries(
-                entry("partFullSize", List.of(258, 363, 182)),
-                entry("partWeight", 400),
-                entry("aabbPoseInContainer", List.of(1, 0, 0, 0, 0, 0, 0))
-            )
+        List<PackFormationEntry> inputPackFormationEntries = List.of(
+            new PackFormationEntry(new double[] {204, 223, 191}, 300, new double[] {1, 0, 0, 0, 0, 0, 0}),
+            new PackFormationEntry(new double[] {204, 223, 193}, 200, new double[] {1, 0, 0, 0, 0, 0, 0}),
+            new PackFormationEntry(new double[] {258, 363, 182}, 400, new double[] {1, 0, 0, 0, 0, 0, 0})
         );
         // number of items to pack
         int numberOfItemsToPack = inputPackFormationEntries.size();
 
-        // set inputPackFormationHeader
-        Map<String, Object> inputPackFormationHeader = Map.ofEntries(
-            entry("inputPackFormationHeader", Map.ofEntries(
-                entry("packingUniqueId", "A0"),
-                entry("numPacked", numberOfItemsToPack)
-            ))
-        );
-        graphClient.SetControllerIOVariables(inputPackFormationHeader);
-        log.info("Set inputPackFormationHeader to: " + inputPackFormationHeader.toString());
-
-        // set inputPackFormationEntry
-        Map<String, Object> inputPackFormationEntry = Map.ofEntries(
-            entry("inputPackFormationEntry[0:" + numberOfItemsToPack + "]", inputPackFormationEntries)
-        );
-        graphClient.SetControllerIOVariables(inputPackFormationEntry);
-        log.info("Set inputPackFormationEntry to: " + inputPackFormationEntry.toString());
-        
-        // queue a pack formation computation order to productionQueue1Order
-        Map<String, Object> packFormationRequestOrderEntry = Map.ofEntries(
-            entry("orderUniqueId", "order_0002"), // unique id for this order
-            entry("orderGroupId", "group_0002"), // group multiple orders to same place container
-            entry("orderPickContainerId", ""),
-            entry("orderPlaceContainerId", ""),
-            entry("orderScenarioId", "pack"),
-            entry("orderType", "packFormation"),
-            entry("orderNumber", numberOfItemsToPack), // number of parts to pack
-            entry("orderInputPartIndex", 0), // 1-based index into the pack formation, 1 meaning the first box in the pack
-            entry("orderPickLocationName", "location2"),
-            entry("orderPlaceLocationName", "location1"),
-            entry("orderPartWeight", 0),
-            entry("orderPartSizeX", 0),
-            entry("orderPartSizeY", 0),
-            entry("orderPartSizeZ", 0)
-            // NOTE: additional parameters may be required depending on the configurations on Mujin controller
-        );
-        orderManager.QueueOrder(packFormationRequestOrderEntry);
-        log.info("Queued a pack formation request order: " + packFormationRequestOrderEntry.toString());
-
-
-        // 
-        // 4. Receive Pack Formation Result        
-        // 
-
-        // read resultPackFormationHeader
-        Map<String, Object> resultPackFormationHeader = ((JSONObject) graphClient.GetControllerIOVariable("resultPackFormationHeader")).toMap();
-        log.info("Read pack formation result header: " + resultPackFormationHeader.toString());
-        // get number of items that were successfully computed in the pack
-        int numberOfItemsPacked = (int) resultPackFormationHeader.getOrDefault("numPacked", 0);
-
-        // read resultPackFormationEntry
-        List<Object> resultPackFormationEntries = ((JSONArray) graphClient.GetControllerIOVariable("resultPackFormationEntry")).toList();
-        log.info("Read pack formation result entry: " + resultPackFormationEntries.toString());
+        // value of inputPackFormationHeader
+        PackFormationHeader inputPackFormationHeader = new PackFormationHeader("A0", numberOfItemsToPack);
+
+        // pack formation computation order queued to productionQueue1Order
+        OrderEntry packFormationRequestOrderEntry = OrderEntry.NewBuilder()
+            .SetOrderUniqueId("order_0002") // unique id for this order
+            .SetOrderGroupId("group_0002") // group multiple orders to same place container
+            .SetOrderPickContainerId("")
+            .SetOrderPlaceContainerId("")
+            .SetOrderScenarioId("pack")
+            .SetOrderType("packFormation")
+            .SetOrderNumber(numberOfItemsToPack) // number of parts to pack
+            .SetOrderInputPartIndex(0) // 1-based index into the pack formation, 1 meaning the first box in the pack
+            .SetOrderPickLocationName("location2")
+            .SetOrderPlaceLocationName("location1")
+            .SetOrderPartWeight(0)
+            .SetOrderPartSize(0, 0, 0)
+            // NOTE: additional parameters may be required depending on the configurations on Mujin controller, pass them with PutExtra
+            .Build();
 
-        // receive the order result from productionQueue1Result
-        log.info("Waiting for the pack formation request order result");
-        Map<String, Object> packFormationRequestOrderResult = this.WaitForOrderResult();
-        log.info("Received pack formation request order result: " + packFormationRequestOrderResult.toString());
 
-        
         // 
-        // 5. Execute Pack Formation
+        // 4. Compute and Execute Pack Formation
         // 
 
-        // set orderPackFormationHeader
-        Map<String, Object> orderPackFormationHeader = (Map<String, Object>) resultPackFormationHeader;
-        graphClient.SetControllerIOVariables(Map.of("orderPackFormationHeader", orderPackFormationHeader));
-        log.info("Set orderPackFormationHeader to: " + orderPackFormationHeader.toString());    
-
-        // set orderPackFormationEntry
-        graphClient.SetControllerIOVariables(Map.of("orderPackFormationEntry", resultPackFormationEntries));
-        log.info("Set orderPackFormationEntry to: " + resultPackFormationEntries.toString());
-        
-        // use same container id for place container for whole pack build
-        String packPlaceContainerID = this._GenerateUniqueContainerID(); 
-        // queue pack formation execution orders
-        for (int index = 0; index < numberOfItemsPacked; index++) {
-            Map<String, Object> resultPackFormationEntry = (Map<String, Object>) resultPackFormationEntries.get(index);
-            ArrayList partFullSize = (ArrayList) resultPackFormationEntry.get("partFullSize");
-
-            Map<String, Object> packFormationExecutionOrderEntry = Map.ofEntries(
-                entry("orderUniqueId", "order_0003_" + index), // unique id for this order
-                entry("orderGroupId", "group_0003"), // group multiple orders to same place container
-                entry("orderPickContainerId", this._GenerateUniqueContainerID()), // generate new container id for each item picked from source
-                entry("orderPlaceContainerId", packPlaceContainerID),
-                entry("orderScenarioId", "pallet"),
-                entry("orderType", "picking"),
-                entry("orderNumber", 1), // number of parts to pick
-                entry("orderInputPartIndex", index+1), // 1-based index into the pack formation, 1 meaning the first box in the pack
-                entry("orderPickLocationName", "location2"),
-                entry("orderPlaceLocationName", "location1"),
-                entry("orderPartWeight", resultPackFormationEntry.get("partWeight")),
-                entry("orderPartSizeX", partFullSize.get(0)),
-                entry("orderPartSizeY", partFullSize.get(1)),
-                entry("orderPartSizeZ", partFullSize.get(2))
-                // NOTE: additional parameters may be required depending on the configurations on Mujin controller
-            );
-            orderManager.QueueOrder(packFormationExecutionOrderEntry);
-            log.info("Queued a pack formation execution order: " + packFormationExecutionOrderEntry.toString());
-        }
+        // the pipeline writes the input, queues the computation order, reads the result, writes the
+        // orderPackFormation and queues the execution orders created here; further packs submitted to it
+        // are computed while this one is executed
+        PackFormationPipeline packFormationPipeline = new PackFormationPipeline(graphClient, orderManager, orderManager, (packRequest, resultPackFormationHeader, resultPackFormationEntries) -> {
+            // get number of items that were successfully computed in the pack
+            int numberOfItemsPacked = resultPackFormationHeader.GetNumPacked();
+            // use same container id for place container for whole pack build
+            String packPlaceContainerID = this._GenerateUniqueContainerID();
+            List<OrderEntry> packFormationExecutionOrderEntries = new ArrayList<>();
+            for (int index = 0; index < numberOfItemsPacked; index++) {
+                PackFormationEntry resultPackFormationEntry = resultPackFormationEntries.get(index);
+                double[] partFullSize = resultPackFormationEntry.GetPartFullSize();
+
+                OrderEntry packFormationExecutionOrderEntry = OrderEntry.NewBuilder()
+                    .SetOrderUniqueId("order_0003_" + index) // unique id for this order
+                    .SetOrderGroupId("group_0003") // group multiple orders to same place container
+                    .SetOrderPickContainerId(this._GenerateUniqueContainerID()) // generate new container id for each item picked from source
+                    .SetOrderPlaceContainerId(packPlaceContainerID)
+                    .SetOrderScenarioId("pallet")
+                    .SetOrderType("picking")
+                    .SetOrderNumber(1) // number of parts to pick
+                    .SetOrderInputPartIndex(index + 1) // 1-based index into the pack formation, 1 meaning the first box in the pack
+                    .SetOrderPickLocationName("location2")
+                    .SetOrderPlaceLocationName("location1")
+                    .SetOrderPartWeight(resultPackFormationEntry.GetPartWeight())
+                    .SetOrderPartSize(partFullSize[0], partFullSize[1], partFullSize[2])
+                    // NOTE: additional parameters may be required depending on the configurations on Mujin controller, pass them with PutExtra
+                    .Build();
+                packFormationExecutionOrderEntries.add(packFormationExecutionOrderEntry);
+            }
+            log.info("Queueing pack formation execution orders: " + packFormationExecutionOrderEntries.toString());
+            return packFormationExecutionOrderEntries;
+        });
+        CompletableFuture<PackResult> packResultFuture = packFormationPipeline.SubmitAsync(new PackRequest(inputPackFormationHeader, inputPackFormationEntries, packFormationRequestOrderEntry));
+        log.info("Submitted pack formation for: " + inputPackFormationHeader.toString());
 
-        // receive the results from productionQueue1Result 
+        // receive the results from productionQueue1Result, matched to the orders by orderUniqueId
         log.info("Waiting for the pack formation execution order results");
-        for (int index = 0; index < numberOfItemsPacked; index++) {
-            Map<String, Object> packFormationExecutionOrderResult = this.WaitForOrderResult();
-            log.info("Received pack formation execution order result: " + packFormationExecutionOrderResult.toString());    
+        PackResult packResult = packResultFuture.get();
+        log.info("Received pack formation request order result: " + packResult.GetComputeOrderResult().toString());
+        log.info("Read pack formation result header: " + packResult.GetResultPackFormationHeader().toString());
+        log.info("Read pack formation result entry: " + packResult.GetResultPackFormationEntries().toString());
+        for (OrderResult packFormationExecutionOrderResult : packResult.GetExecutionOrderResults()) {
+            log.info("Received pack formation execution order result: " + packFormationExecutionOrderResult.toString());
         }
 
-        // mark as done
-        this._done = true;
+        // all operations are complete
+        locationEngine.Stop();
+        orderManager.StopDequeueOrderResults();
 
-        // wait until all operations are complete
-        CompletableFuture.allOf(handlePickLocationMove, handlePlaceLocationMove, dequeueOrderResults).get();
+        // report where the time went
+        log.info("Client metrics:\n" + graphClient.GetMetrics().Dump());
     }
 
     /**
@@ -283,12 +211,13 @@ public class OneOrder {
      */
     public void StartProductionCycle(GraphClient graphClient) throws Exception {
         // start production cycle
-        if (!(boolean) graphClient.GetSentIOMap().getOrDefault("isRunningProductionCycle", false)) {
+        if (!graphClient.GetIOState().GetSentBoolean("isRunningProductionCycle", false)) {
             graphClient.SetControllerIOVariables(Map.of("startProductionCycle", true));
         }
 
-        while (!(boolean) graphClient.GetSentIOMap().getOrDefault("isRunningProductionCycle", false)) {
-            // wait for production cycle to start running
+        // wait for production cycle to start running
+        while (graphClient.AwaitIO(ioState -> ioState.GetSentBoolean("isRunningProductionCycle", false), 30000) == null) {
+            log.info("Waiting for production cycle to start running");
         }
 
         // set trigger off
@@ -297,104 +226,12 @@ public class OneOrder {
         log.info("Started production cycle");
     }
 
-    /**
-     * Dequeues order results in the order result queue.
-     * 
-     * @param orderManager For dequeuing order results and managing order pointers
-     */
-    public void DequeueOrderResults(OrderManager orderManager) {
-        while (!this._done) {
-            try {
-                // read the order result
-                Map<String, Object> resultEntry = orderManager.DequeueOrderResult();
-                if (resultEntry != null) {
-                    this._orderResults.add(resultEntry);
-                }
-            } catch (Exception e) {
-                log.warning("Failed to dequeue order result: " + e.toString());
-            }
-        }
-    }
-
-    /**
-     * Blocks until an order result is ready
-     * 
-     * @return Order result
-     */
-    public Map<String, Object> WaitForOrderResult() {
-        Map<String, Object> orderResult = null;
-        while (orderResult == null) {
-            // wait for the depalletizing order result
-            synchronized (this._orderResults) {
-                int orderResultsSize = this._orderResults.size();
-                if (orderResultsSize > 0) {
-                    orderResult = this._orderResults.remove(this._orderResults.size() - 1);
-                }
-            }
-        }
-        return orderResult;
-    }
-
-    /**
-     * Handles state management of a location upon move-in and move-out request sent
-     * from Mujin.
-     * 
-     * @param graphClient              For checking Mujin IO state and setting location state IO
-     * @param locationName             Name of this location for printing
-     * @param containerIDIOName        IO name used to set this location's container ID value
-     * @param requestContainerIDIOName IO name used to get this location's requested container ID
-     * @param hasContainerIOName       IO name used to set this location's hasContainer
-     * @param moveInIOName             IO name used to get and check for move-in request for this location
-     * @param moveOutIOName            IO name used to get and check for move-out request for this location
-     */
-    public void HandleLocationMove(GraphClient graphClient, String locationName, String containerIDIOName, String requestContainerIDIOName, String hasContainerIOName, String moveInIOName, String moveOutIOName) {
-        boolean hasContainer = (boolean) graphClient.GetSentIOMap().getOrDefault(hasContainerIOName, false);
-        while (!this._done) {
-            try {
-                Map<String, Object> ioNameValues = new HashMap<String, Object>();
-                Boolean isMoveIn = (Boolean) graphClient.GetSentIOMap().getOrDefault(moveInIOName, false);
-                Boolean isMoveOut = (Boolean) graphClient.GetSentIOMap().getOrDefault(moveOutIOName, false);
-                
-                // handle move out
-                if (isMoveOut && hasContainer) {
-                    // reset container ID
-                    ioNameValues.put(containerIDIOName, "");
-                    // hasContainer set False
-                    ioNameValues.put(hasContainerIOName, false);
-                    hasContainer = false;
-                    log.info("Moved out container from location " + locationName);
-                }
-                // handle move in only when move out has finished or not requested
-                else if (isMoveIn && !hasContainer && !isMoveOut) {
-                    // get requested container ID for the move in
-                    String requestContainerID = (String) graphClient.GetSentIOMap().getOrDefault(requestContainerIDIOName, "");
-                    if (requestContainerID.length() == 0) {
-                        // generate a new container ID because specific ID was not requested by the system
-                        requestContainerID = this._GenerateUniqueContainerID();
-                    }
-                    // set container ID
-                    ioNameValues.put(containerIDIOName, requestContainerID);
-                    // hasContainer set True
-                    ioNameValues.put(hasContainerIOName, true);
-                    hasContainer = true;
-                    log.info("Moved in container " + requestContainerID + " to location " + locationName);
-                }
-
-                // set ioNameValues
-                if (ioNameValues.size() > 0) {
-                    graphClient.SetControllerIOVariables(ioNameValues);
-                }
-            } catch (Exception e) {
-                log.warning("Failed to handle location move: " + e.toString());
-            }
-        }
-    }
-
     public static void main(String[] args) {
         ArgumentParser parser = ArgumentParsers.newFor("OneOrder").build().defaultHelp(true).description("Example code to run one order on production cycle");
         parser.addArgument("--url").setDefault("http://127.0.0.1").help("URL of the controller");
         parser.addArgument("--username").setDefault("mujin").help("Username to login with");
         parser.addArgument("--password").setDefault("mujin").help("Password to login with");
+        parser.addArgument("--fake").action(Arguments.storeTrue()).help("Run against an embedded fake controller instead of --url");
         Namespace arguments = null;
         try {
             arguments = parser.parseArgs(args);
@@ -403,15 +240,27 @@ public class OneOrder {
             System.exit(1);
         }
 
+        FakeController fakeController = null;
         try {
+            String url = arguments.getString("url");
+            if (arguments.getBoolean("fake")) {
+                fakeController = new FakeController(2, 10);
+                fakeController.Start(0);
+                url = fakeController.GetUrl();
+            }
+
             OneOrder oneOrder = new OneOrder();
             oneOrder._RunMain(
-                    arguments.getString("url"),
+                    url,
                     arguments.getString("username"),
                     arguments.getString("password"));
         } catch (Exception e) {
             e.printStackTrace();
             System.exit(1);
+        } finally {
+            if (fakeController != null) {
+                fakeController.close();
+            }
         }
     }
 }
@@ -0,0 +1,106 @@
+package com.mujin.samples;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+
+import com.mujin.productioncycleclient.GraphClient;
+import com.mujin.productioncycleclient.TrafficReplayer;
+import com.mujin.productioncycleclient.MultiQueueOrderManager;
+
+/**
+ * Plays back IO traffic recorded with LoadTest --record, or any client with a TrafficRecorder, into a client
+ * dequeuing order results, and reports the decode, IO state update and order handling throughput. Runs
+ * without a controller. The replay waits for the client to dequeue the results the recorded client had
+ * dequeued, so at speeds the client cannot keep up with it runs as fast as the client allows. Fails if the
+ * client dequeues a different number of results than recorded.
+ */
+public class ReplayTraffic {
+
+    private static final Logger log = Logger.getLogger(ReplayTraffic.class.getName());
+
+    /**
+     * Replays the log while dequeuing the results of the recorded orders.
+     *
+     * @param replayer       Recorded traffic
+     * @param numberOfQueues Number of production queues the recorded client drove, starting from queue 1
+     * @param speed          Factor to speed up the recorded timing
+     * @return Whether the client dequeued as many results as the recorded client
+     * @throws Exception
+     */
+    private static boolean _Run(TrafficReplayer replayer, int numberOfQueues, double speed) throws Exception {
+        GraphClient graphClient = new GraphClient("http://127.0.0.1", "mujin", "mujin", replayer);
+        log.info(String.format("Replaying %d subscription messages and %d requests recorded over %d ms", replayer.GetSubscriptionEventCount(), replayer.GetRequestCount(), TimeUnit.NANOSECONDS.toMillis(replayer.GetDurationNanos())));
+
+        // handle the traffic the way the recorded client did, starting from the initial IO state
+        replayer.ReplayInitialState(graphClient);
+        int[] queueIndices = new int[numberOfQueues];
+        for (int index = 0; index < numberOfQueues; index++) {
+            queueIndices[index] = index + 1;
+        }
+        MultiQueueOrderManager orderManager = new MultiQueueOrderManager(graphClient, queueIndices);
+        orderManager.InitializeOrderPointers(5);
+        AtomicLong finishedOrders = new AtomicLong();
+        Set<Object> finishedOrderIds = ConcurrentHashMap.newKeySet();
+        orderManager.StartDequeueOrderResults((queueIndex, resultEntry) -> {
+            finishedOrderIds.add(resultEntry.get("orderUniqueId"));
+            finishedOrders.incrementAndGet();
+        });
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> replay = replayer.ReplayAsync(graphClient, speed);
+        replay.get();
+        long replayedNanos = System.nanoTime() - startNanos;
+
+        // results announced by the last messages may still be dequeued
+        long lastFinishedOrders = -1;
+        while (finishedOrders.get() != lastFinishedOrders) {
+            lastFinishedOrders = finishedOrders.get();
+            Thread.sleep(200);
+        }
+        orderManager.StopDequeueOrderResults();
+
+        log.info(String.format("Replayed %d subscription messages in %d ms, %.1f messages/s", replayer.GetSubscriptionEventCount(), TimeUnit.NANOSECONDS.toMillis(replayedNanos), replayer.GetSubscriptionEventCount() * 1e9 / replayedNanos));
+        log.info(String.format("Dequeued %d order results of %d distinct orders, %d recorded, %d requests could not be answered", finishedOrders.get(), finishedOrderIds.size(), replayer.GetRecordedResultCount(), replayer.GetUnmatchedRequestCount()));
+        log.info("Client metrics:\n" + graphClient.GetMetrics().Dump());
+        if (finishedOrders.get() != replayer.GetRecordedResultCount()) {
+            log.severe(String.format("Dequeued %d order results but the recorded client dequeued %d", finishedOrders.get(), replayer.GetRecordedResultCount()));
+            return false;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        ArgumentParser parser = ArgumentParsers.newFor("ReplayTraffic").build().defaultHelp(true).description("Measure client throughput on recorded IO traffic");
+        parser.addArgument("--log").required(true).help("Traffic log written by a TrafficRecorder, e.g. with LoadTest --record");
+        parser.addArgument("--queues").type(Integer.class).setDefault(1).help("Number of production queues the recorded client drove");
+        parser.addArgument("--speed").type(Double.class).setDefault(1.0).help("Factor to speed up the recorded timing, 1 for real time, 0 for as fast as possible");
+        Namespace arguments = null;
+        try {
+            arguments = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        }
+
+        try {
+            double speed = arguments.getDouble("speed");
+            TrafficReplayer replayer = new TrafficReplayer(Path.of(arguments.getString("log")));
+            if (!_Run(replayer, arguments.getInt("queues"), speed > 0 ? speed : TrafficReplayer.MAX_SPEED)) {
+                System.exit(1);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
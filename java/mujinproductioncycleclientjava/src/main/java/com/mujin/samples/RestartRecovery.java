@@ -0,0 +1,235 @@
+package com.mujin.samples;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.logging.Logger;
+import java.nio.file.Path;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static java.util.Map.entry;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+
+import com.mujin.fakecontroller.FakeController;
+import com.mujin.productioncycleclient.GraphClient;
+import com.mujin.productioncycleclient.OrderManager;
+import com.mujin.productioncycleclient.OrderJournal;
+
+/**
+ * Restarts a journaling client against an embedded FakeController and checks that no order result is lost.
+ * The first session claims some results, keeps others unclaimed and leaves the rest on the controller before
+ * it stops. The second session reopens the journal and must receive every result not claimed before, either
+ * from GetOrderResultAsync or from the unclaimed result handler.
+ */
+public class RestartRecovery {
+
+    private static final Logger log = Logger.getLogger(RestartRecovery.class.getName());
+
+    private static Map<String, Object> _CreateOrderEntry(int index) {
+        return Map.ofEntries(
+            entry("orderUniqueId", "order_" + index),
+            entry("orderGroupId", "group_" + index),
+            entry("orderPickContainerId", "c_" + index),
+            entry("orderPlaceContainerId", ""),
+            entry("orderScenarioId", "depallet"),
+            entry("orderType", "picking"),
+            entry("orderNumber", 1),
+            entry("orderInputPartIndex", 0),
+            entry("orderPickLocationName", "location1"),
+            entry("orderPlaceLocationName", "location2")
+        );
+    }
+
+    /**
+     * Blocks until the condition holds.
+     *
+     * @param condition     Condition to wait for
+     * @param timeoutMillis Number of milliseconds to wait
+     * @param description   Description of the condition for the error
+     * @throws Exception If the condition does not hold within the timeout
+     */
+    private static void _AwaitCondition(BooleanSupplier condition, long timeoutMillis, String description) throws Exception {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadlineNanos) {
+                throw new Exception("Timed out waiting for " + description);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Queues orders and waits until they are written and processed by the fake controller.
+     */
+    private static void _QueueAndProcess(OrderManager orderManager, FakeController fakeController, int start, int end) throws Exception {
+        List<Map<String, Object>> orderEntries = new ArrayList<>();
+        for (int index = start; index < end; index++) {
+            orderEntries.add(_CreateOrderEntry(index));
+        }
+        CompletableFuture.allOf(orderManager.QueueOrders(orderEntries).toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        _AwaitCondition(() -> fakeController.GetNumProcessedOrders() >= end, 30000, "orders to be processed");
+    }
+
+    /**
+     * Runs the first session and stops it without claiming all results.
+     *
+     * @return IDs of the orders whose results were claimed
+     */
+    private static Set<String> _RunFirstSession(String url, Path journalPath, long journalBytes, FakeController fakeController, int numberOfOrders) throws Exception {
+        Set<String> claimedOrderUniqueIds = ConcurrentHashMap.newKeySet();
+        GraphClient graphClient = new GraphClient(url, "mujin", "mujin");
+        graphClient.SubscribeRobotBridgesState();
+        try (OrderJournal journal = new OrderJournal(journalPath, journalBytes, -1)) {
+            OrderManager orderManager = new OrderManager(graphClient, 1);
+            orderManager.SetJournal(journal);
+            orderManager.InitializeOrderPointers(5);
+            orderManager.ResetResultPointers();
+
+            // the results of the first half are dequeued, but only half of them are claimed
+            int half = numberOfOrders / 2;
+            orderManager.StartDequeueOrderResults(null);
+            _QueueAndProcess(orderManager, fakeController, 0, half);
+            String resultBacklogName = "ordermanager.queue1.resultBacklog";
+            _AwaitCondition(() -> graphClient.GetMetrics().Snapshot().get(resultBacklogName).longValue() == 0, 30000, "results to be dequeued");
+            for (int index = 0; index < half / 2; index++) {
+                Map<String, Object> resultEntry = orderManager.GetOrderResultAsync("order_" + index).get(30, TimeUnit.SECONDS);
+                claimedOrderUniqueIds.add(String.valueOf(resultEntry.get("orderUniqueId")));
+            }
+            orderManager.StopDequeueOrderResults();
+
+            // the results of the second half stay on the controller
+            _QueueAndProcess(orderManager, fakeController, half, numberOfOrders);
+            log.info("Stopping the first session with " + claimedOrderUniqueIds.size() + " claimed results and " + journal.GetUnclaimedResults().size() + " unclaimed results");
+        } finally {
+            graphClient.UnsubscribeRobotBridgesState();
+        }
+        return claimedOrderUniqueIds;
+    }
+
+    /**
+     * Runs the second session on the journal of the first and receives all results not claimed before.
+     *
+     * @return Number of results received per order ID, including the claimed ones of the first session
+     */
+    private static Map<String, Integer> _RunSecondSession(String url, Path journalPath, long journalBytes, int unclaimedCapacity, int numberOfOrders, Set<String> claimedOrderUniqueIds) throws Exception {
+        Map<String, Integer> receivedCounts = new ConcurrentHashMap<>();
+        for (String orderUniqueId : claimedOrderUniqueIds) {
+            receivedCounts.merge(orderUniqueId, 1, Integer::sum);
+        }
+        GraphClient graphClient = new GraphClient(url, "mujin", "mujin");
+        graphClient.SubscribeRobotBridgesState();
+        try (OrderJournal journal = new OrderJournal(journalPath, journalBytes, -1)) {
+            OrderManager orderManager = new OrderManager(graphClient, 1);
+            orderManager.SetJournal(journal);
+            Set<String> overflowedOrderUniqueIds = ConcurrentHashMap.newKeySet();
+            orderManager.SetUnclaimedResultHandler(unclaimedCapacity, (queueIndex, resultEntry) -> {
+                String orderUniqueId = String.valueOf(resultEntry.get("orderUniqueId"));
+                overflowedOrderUniqueIds.add(orderUniqueId);
+                receivedCounts.merge(orderUniqueId, 1, Integer::sum);
+            });
+            // restores the unclaimed results, evicting beyond the capacity to the handler
+            orderManager.InitializeOrderPointers(5);
+            log.info(overflowedOrderUniqueIds.size() + " restored results went to the unclaimed result handler");
+
+            List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>();
+            for (int index = 0; index < numberOfOrders; index++) {
+                String orderUniqueId = "order_" + index;
+                if (claimedOrderUniqueIds.contains(orderUniqueId) || overflowedOrderUniqueIds.contains(orderUniqueId)) {
+                    continue;
+                }
+                results.add(orderManager.GetOrderResultAsync(orderUniqueId).thenApply(resultEntry -> {
+                    receivedCounts.merge(String.valueOf(resultEntry.get("orderUniqueId")), 1, Integer::sum);
+                    return resultEntry;
+                }));
+            }
+            try {
+                CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                log.warning("Timed out waiting for " + results.stream().filter(result -> !result.isDone()).count() + " results");
+            }
+            // results are journaled as claimed after they are handed over
+            _AwaitCondition(() -> journal.GetUnclaimedResults().isEmpty(), 5000, "the journal to record all results as claimed");
+            orderManager.StopDequeueOrderResults();
+        } finally {
+            graphClient.UnsubscribeRobotBridgesState();
+        }
+        return receivedCounts;
+    }
+
+    public static void main(String[] args) {
+        ArgumentParser parser = ArgumentParsers.newFor("RestartRecovery").build().defaultHelp(true).description("Check that a journaling client loses no results across a restart");
+        parser.addArgument("--orders").type(Integer.class).setDefault(200).help("Number of orders to run");
+        parser.addArgument("--queue-length").type(Integer.class).setDefault(128).help("Length of the fake controller order and result queues");
+        parser.addArgument("--journal-bytes").type(Long.class).setDefault(65536L).help("Size of the journal file, small to compact while running");
+        parser.addArgument("--unclaimed-capacity").type(Integer.class).setDefault(16).help("Number of restored unclaimed results kept for late waiters in the second session");
+        Namespace arguments = null;
+        try {
+            arguments = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        }
+
+        int numberOfOrders = arguments.getInt("orders");
+        if (numberOfOrders - numberOfOrders / 2 >= arguments.getInt("queue_length")) {
+            System.err.println("Half of the orders must fit in the result queue, as they stay on the controller across the restart");
+            System.exit(1);
+        }
+
+        FakeController fakeController = null;
+        Path journalPath = null;
+        int exitCode = 0;
+        try {
+            fakeController = new FakeController(1, arguments.getInt("queue_length"));
+            fakeController.Start(0);
+            journalPath = Files.createTempFile("restartrecovery", ".journal");
+            Files.delete(journalPath);
+
+            long journalBytes = arguments.getLong("journal_bytes");
+            Set<String> claimedOrderUniqueIds = _RunFirstSession(fakeController.GetUrl(), journalPath, journalBytes, fakeController, numberOfOrders);
+            Map<String, Integer> receivedCounts = _RunSecondSession(fakeController.GetUrl(), journalPath, journalBytes, arguments.getInt("unclaimed_capacity"), numberOfOrders, claimedOrderUniqueIds);
+
+            int missingResults = 0;
+            int duplicateResults = 0;
+            for (int index = 0; index < numberOfOrders; index++) {
+                int count = receivedCounts.getOrDefault("order_" + index, 0);
+                if (count == 0) {
+                    missingResults++;
+                } else if (count > 1) {
+                    duplicateResults++;
+                }
+            }
+            log.info(String.format("Received %d of %d results across the restart, %d missing, %d duplicated", receivedCounts.size(), numberOfOrders, missingResults, duplicateResults));
+            if (missingResults != 0 || duplicateResults != 0) {
+                log.severe("Results were lost or duplicated across the restart");
+                exitCode = 1;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            if (fakeController != null) {
+                fakeController.close();
+            }
+            if (journalPath != null) {
+                try {
+                    Files.deleteIfExists(journalPath);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        // the WebSocket library can leave a non-daemon close timer behind, see LoadTest
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,536 @@
+package com.mujin.fakecontroller;
+
+import java.net.Socket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Embeddable stand-in for a Mujin controller, for load and latency testing without a robot cell.
+ *
+ * Serves the CommandRobotBridges SetControllerIOVariables, GetControllerIOVariable and GetControllerIOVariables
+ * mutations on /api/v2/graphql and the SubscribeRobotBridgesState subscription over WebSocket on the same port.
+ * Simulates the productionQueue<N>Order and productionQueue<N>Result ring buffers together with their
+ * location<N>*Pointer IOs: every queued order is processed after the configured latency and jitter, one at a
+ * time per queue, and its result is written to the result ring once there is room. Starting the production
+ * cycle sets isRunningProductionCycle, and pack formation orders copy the input pack formation to the result.
+ * Credentials are not checked.
+ */
+public class FakeController implements AutoCloseable {
+
+    private static final long KEEP_ALIVE_INTERVAL_MILLIS = 5000; // interval of "ka" messages on subscriptions
+
+    private Map<String, Object> _receivedIOValues = new LinkedHashMap<>(); // IO values received from the client
+    private Map<String, Object> _sentIOValues = new LinkedHashMap<>(); // IO values sent by the controller
+    private ProductionQueue[] _queues = null; // simulated production queues, index 0 is queue 1
+
+    private volatile long _processingLatencyNanos = 0; // time to process one order
+    private volatile long _processingJitterNanos = 0; // upper bound of random time added to the processing latency
+    private volatile long _requestLatencyNanos = 0; // time to answer one GraphQL request
+    private volatile long _requestJitterNanos = 0; // upper bound of random time added to the request latency
+
+    private final AtomicLong _commandId = new AtomicLong(); // id of the last executed command
+    private final AtomicLong _processedOrders = new AtomicLong(); // number of orders processed since start
+    private final Map<FakeControllerConnection, String> _subscribers = new ConcurrentHashMap<>(); // subscription id keyed by connection
+    private final Set<FakeControllerConnection> _connections = ConcurrentHashMap.newKeySet(); // open client connections
+    private boolean _isPublishPending = false; // whether a state publish is scheduled, guarded by this
+
+    private ServerSocket _serverSocket = null; // accepts client connections
+    private ExecutorService _connectionExecutor = null; // runs one task per client connection
+    private ScheduledExecutorService _scheduler = null; // processes orders and publishes state
+
+    private static final Logger log = Logger.getLogger(FakeController.class.getName());
+
+    /**
+     * @param numberOfQueues Number of production queues to simulate
+     * @param queueLength    Number of entries in each order and result queue
+     */
+    public FakeController(int numberOfQueues, int queueLength) {
+        this._queues = new ProductionQueue[numberOfQueues];
+        for (int index = 0; index < numberOfQueues; index++) {
+            this._queues[index] = new ProductionQueue(index + 1, queueLength);
+        }
+        this._receivedIOValues.put("startProductionCycle", false);
+        this._sentIOValues.put("isRunningProductionCycle", false);
+        for (int queueIndex = 1; queueIndex <= numberOfQueues; queueIndex++) {
+            this._sentIOValues.put("location" + queueIndex + "HasContainer", false);
+            this._sentIOValues.put("location" + queueIndex + "ContainerId", "");
+            this._sentIOValues.put("location" + queueIndex + "RequestContainerId", "");
+            this._sentIOValues.put("moveInLocation" + queueIndex + "Container", false);
+            this._sentIOValues.put("moveOutLocation" + queueIndex + "Container", false);
+        }
+    }
+
+    /**
+     * Sets how long each order takes to process.
+     *
+     * @param latencyMicros Fixed processing time in microseconds
+     * @param jitterMicros  Upper bound of uniformly distributed time added to each order in microseconds
+     */
+    public void SetProcessingLatency(long latencyMicros, long jitterMicros) {
+        this._processingLatencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this._processingJitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+    }
+
+    /**
+     * Sets how long each GraphQL request takes to answer.
+     *
+     * @param latencyMicros Fixed response time in microseconds
+     * @param jitterMicros  Upper bound of uniformly distributed time added to each response in microseconds
+     */
+    public void SetRequestLatency(long latencyMicros, long jitterMicros) {
+        this._requestLatencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this._requestJitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+    }
+
+    /**
+     * @return Number of orders processed since start
+     */
+    public long GetNumProcessedOrders() {
+        return this._processedOrders.get();
+    }
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port Port to listen on, 0 for any free port
+     * @throws Exception If the port cannot be bound
+     */
+    public synchronized void Start(int port) throws Exception {
+        if (this._serverSocket != null) {
+            throw new Exception("Fake controller is already started");
+        }
+        this._scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FakeController-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this._connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "FakeController-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this._scheduler.scheduleAtFixedRate(this::_SendKeepAlive, KEEP_ALIVE_INTERVAL_MILLIS, KEEP_ALIVE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        this._serverSocket = new ServerSocket();
+        this._serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        Thread acceptThread = new Thread(this::_Accept, "FakeController-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("Fake controller listening on " + this.GetUrl());
+    }
+
+    /**
+     * @return Port the controller listens on
+     */
+    public int GetPort() {
+        return this._serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return URL to pass to GraphClient
+     */
+    public String GetUrl() {
+        return "http://127.0.0.1:" + this.GetPort();
+    }
+
+    /**
+     * Stops serving and closes all client connections.
+     */
+    @Override
+    public synchronized void close() {
+        if (this._serverSocket == null) {
+            return;
+        }
+        try {
+            this._serverSocket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        this._serverSocket = null;
+        this.DisconnectAll();
+        this._connectionExecutor.shutdownNow();
+        this._scheduler.shutdownNow();
+    }
+
+    /**
+     * Drops all client connections, e.g. to exercise subscription reconnects.
+     */
+    public void DisconnectAll() {
+        for (FakeControllerConnection connection : this._connections) {
+            connection.Close();
+        }
+    }
+
+    private void _Accept() {
+        ServerSocket serverSocket = this._serverSocket;
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                FakeControllerConnection connection = new FakeControllerConnection(this, socket);
+                this._connections.add(connection);
+                this._connectionExecutor.execute(() -> {
+                    try {
+                        connection.run();
+                    } finally {
+                        this._connections.remove(connection);
+                    }
+                });
+            } catch (Exception e) {
+                if (!serverSocket.isClosed()) {
+                    log.warning("Failed to accept connection: " + e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers one GraphQL request.
+     *
+     * @param body Request body
+     * @return Response body
+     */
+    byte[] HandleGraphQLRequest(byte[] body) throws Exception {
+        long delayNanos = _Delay(this._requestLatencyNanos, this._requestJitterNanos);
+        if (delayNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        }
+
+        JSONObject response = new JSONObject();
+        try {
+            JSONObject request = new JSONObject(new String(body, StandardCharsets.UTF_8));
+            String query = request.getString("query");
+            JSONObject parameters = request.getJSONObject("variables").getJSONObject("parameters");
+
+            JSONObject commandRobotBridges = new JSONObject();
+            commandRobotBridges.put("commandid", this._commandId.incrementAndGet());
+            if (query.contains("\"SetControllerIOVariables\"")) {
+                JSONArray ioNameValues = parameters.getJSONArray("ioNameValues");
+                synchronized (this) {
+                    for (int index = 0; index < ioNameValues.length(); index++) {
+                        JSONArray ioNameValue = ioNameValues.getJSONArray(index);
+                        this._SetIO(ioNameValue.getString(0), ioNameValue.get(1));
+                    }
+                    this._ProcessOrders();
+                    this._SchedulePublish();
+                }
+            } else if (query.contains("\"GetControllerIOVariables\"")) {
+                JSONArray values = new JSONArray();
+                synchronized (this) {
+                    for (Object ioName : parameters.getJSONArray("parameternames")) {
+                        values.put(this._GetIO((String) ioName));
+                    }
+                }
+                commandRobotBridges.put("parametervalue", values);
+            } else if (query.contains("\"GetControllerIOVariable\"")) {
+                synchronized (this) {
+                    commandRobotBridges.put("parametervalue", this._GetIO(parameters.getString("parametername")));
+                }
+            } else {
+                throw new Exception("Unsupported command in query: " + query);
+            }
+            response.put("data", new JSONObject().put("CommandRobotBridges", commandRobotBridges));
+        } catch (Exception e) {
+            response.put("errors", new JSONArray().put(new JSONObject().put("message", e.getMessage())));
+        }
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles one graphql-ws message of a subscription connection.
+     *
+     * @param connection Connection the message was received on
+     * @param message    Message text
+     */
+    void HandleSubscriptionMessage(FakeControllerConnection connection, String message) {
+        JSONObject request = new JSONObject(message);
+        String type = request.optString("type");
+        if ("connection_init".equals(type)) {
+            connection.SendText("{\"type\":\"connection_ack\"}");
+        } else if ("start".equals(type)) {
+            String id = request.optString("id", "1");
+            this._subscribers.put(connection, id);
+            String state = null;
+            synchronized (this) {
+                state = this._FormatState(id);
+            }
+            connection.SendText(state);
+        } else if ("stop".equals(type)) {
+            this._subscribers.remove(connection);
+        } else if ("connection_terminate".equals(type)) {
+            connection.Close();
+        }
+    }
+
+    void RemoveSubscriber(FakeControllerConnection connection) {
+        this._subscribers.remove(connection);
+    }
+
+    /**
+     * Writes a value set by the client. Supports the name[index] and name[start:end] forms for list IOs.
+     */
+    private void _SetIO(String ioName, Object value) throws Exception {
+        int bracket = ioName.indexOf('[');
+        if (bracket >= 0) {
+            String baseIOName = ioName.substring(0, bracket);
+            String range = ioName.substring(bracket + 1, ioName.length() - 1);
+            int separator = range.indexOf(':');
+            int start = Integer.parseInt(separator < 0 ? range : range.substring(0, separator));
+            Object[] entries = this._GetOrCreateList(baseIOName, separator < 0 ? start + 1 : Integer.parseInt(range.substring(separator + 1)));
+            if (separator < 0) {
+                entries[start] = value;
+            } else {
+                JSONArray values = (JSONArray) value;
+                for (int index = 0; index < values.length(); index++) {
+                    entries[start + index] = values.get(index);
+                }
+            }
+            return;
+        }
+
+        ProductionQueue queue = this._FindQueue(ioName, "location", "OrderWritePointer");
+        if (queue != null) {
+            queue.SetOrderWritePointer(((Number) value).intValue());
+        }
+        queue = this._FindQueue(ioName, "location", "OrderResultReadPointer");
+        if (queue != null) {
+            queue.SetResultReadPointer(((Number) value).intValue());
+        }
+        if (value instanceof JSONArray) {
+            value = ((JSONArray) value).toList().toArray();
+        }
+        this._receivedIOValues.put(ioName, value);
+        if (this._sentIOValues.containsKey(ioName)) {
+            // location state written by the client is reflected in the controller state
+            this._sentIOValues.put(ioName, value);
+        }
+        if (ioName.equals("startProductionCycle") && Boolean.TRUE.equals(value)) {
+            this._sentIOValues.put("isRunningProductionCycle", true);
+        } else if (ioName.equals("stopProductionCycle") && Boolean.TRUE.equals(value)) {
+            this._sentIOValues.put("isRunningProductionCycle", false);
+        }
+    }
+
+    /**
+     * Reads a value for the client. Supports the name[index] form for list IOs.
+     */
+    private Object _GetIO(String ioName) {
+        int bracket = ioName.indexOf('[');
+        if (bracket >= 0) {
+            Object[] entries = this._GetList(ioName.substring(0, bracket));
+            int index = Integer.parseInt(ioName.substring(bracket + 1, ioName.length() - 1));
+            if (entries == null || index < 0 || index >= entries.length) {
+                return JSONObject.NULL;
+            }
+            return entries[index] == null ? JSONObject.NULL : entries[index];
+        }
+        Object[] entries = this._GetList(ioName);
+        if (entries != null) {
+            JSONArray values = new JSONArray();
+            for (Object entry : entries) {
+                values.put(entry == null ? JSONObject.NULL : entry);
+            }
+            return values;
+        }
+        Object value = this._receivedIOValues.containsKey(ioName) ? this._receivedIOValues.get(ioName) : this._sentIOValues.get(ioName);
+        return value == null ? JSONObject.NULL : value;
+    }
+
+    private Object[] _GetList(String ioName) {
+        Object[] entries = this._GetQueueList(ioName);
+        if (entries != null) {
+            return entries;
+        }
+        Object value = this._receivedIOValues.containsKey(ioName) ? this._receivedIOValues.get(ioName) : this._sentIOValues.get(ioName);
+        return value instanceof Object[] ? (Object[]) value : null;
+    }
+
+    /**
+     * @return Order or result ring of a simulated queue, or null if ioName does not name one
+     */
+    private Object[] _GetQueueList(String ioName) {
+        ProductionQueue queue = this._FindQueue(ioName, "productionQueue", "Order");
+        if (queue != null) {
+            return queue.GetOrders();
+        }
+        queue = this._FindQueue(ioName, "productionQueue", "Result");
+        if (queue != null) {
+            return queue.GetResults();
+        }
+        return null;
+    }
+
+    private Object[] _GetOrCreateList(String ioName, int minimumLength) {
+        Object[] entries = this._GetQueueList(ioName);
+        if (entries != null) {
+            return entries;
+        }
+        entries = this._GetList(ioName);
+        if (entries != null && entries.length >= minimumLength) {
+            return entries;
+        }
+        Object[] grown = new Object[minimumLength];
+        if (entries != null) {
+            System.arraycopy(entries, 0, grown, 0, entries.length);
+        }
+        this._receivedIOValues.put(ioName, grown);
+        return grown;
+    }
+
+    /**
+     * @return Queue named by prefix + queueIndex + suffix, or null if ioName is not of that form
+     */
+    private ProductionQueue _FindQueue(String ioName, String prefix, String suffix) {
+        if (!ioName.startsWith(prefix) || !ioName.endsWith(suffix) || ioName.length() <= prefix.length() + suffix.length()) {
+            return null;
+        }
+        String queueIndex = ioName.substring(prefix.length(), ioName.length() - suffix.length());
+        for (int index = 0; index < queueIndex.length(); index++) {
+            if (!Character.isDigit(queueIndex.charAt(index))) {
+                return null;
+            }
+        }
+        int queueNumber = Integer.parseInt(queueIndex);
+        return queueNumber >= 1 && queueNumber <= this._queues.length ? this._queues[queueNumber - 1] : null;
+    }
+
+    /**
+     * Starts processing the next order of every idle queue. Must be called with this locked.
+     */
+    private void _ProcessOrders() {
+        for (ProductionQueue queue : this._queues) {
+            while (queue.CanStartOrder()) {
+                JSONObject order = queue.StartOrder();
+                long delayNanos = _Delay(this._processingLatencyNanos, this._processingJitterNanos);
+                if (delayNanos <= 0) {
+                    this._FinishOrder(queue, order);
+                } else {
+                    this._scheduler.schedule(() -> {
+                        synchronized (this) {
+                            this._FinishOrder(queue, order);
+                            this._ProcessOrders();
+                            this._SchedulePublish();
+                        }
+                    }, delayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the result of a processed order. Must be called with this locked.
+     */
+    private void _FinishOrder(ProductionQueue queue, JSONObject order) {
+        JSONObject result = new JSONObject();
+        result.put("orderUniqueId", order.optString("orderUniqueId"));
+        result.put("orderCycleFinishCode", "FinishedNoMoreTargets");
+        result.put("numPutInDestination", order.optInt("orderNumber"));
+        result.put("numLeftInOrder", 0);
+        if ("packFormation".equals(order.optString("orderType"))) {
+            Object header = this._receivedIOValues.get("inputPackFormationHeader");
+            Object[] entries = this._GetList("inputPackFormationEntry");
+            this._sentIOValues.put("resultPackFormationHeader", header == null ? new JSONObject() : header);
+            this._sentIOValues.put("resultPackFormationEntry", entries == null ? new Object[0] : entries.clone());
+        }
+        queue.FinishOrder(result);
+        this._processedOrders.incrementAndGet();
+    }
+
+    /**
+     * Publishes the state to all subscribers soon, coalescing changes made in the meantime. Must be called
+     * with this locked.
+     */
+    private void _SchedulePublish() {
+        if (this._isPublishPending) {
+            return;
+        }
+        this._isPublishPending = true;
+        this._scheduler.execute(() -> {
+            Map<FakeControllerConnection, String> messages = new LinkedHashMap<>();
+            synchronized (this) {
+                this._isPublishPending = false;
+                for (Map.Entry<FakeControllerConnection, String> subscriber : this._subscribers.entrySet()) {
+                    messages.put(subscriber.getKey(), this._FormatState(subscriber.getValue()));
+                }
+            }
+            messages.forEach(FakeControllerConnection::SendText);
+        });
+    }
+
+    /**
+     * Formats the SubscribeRobotBridgesState data message. Must be called with this locked.
+     */
+    private String _FormatState(String id) {
+        JSONArray receivedIOValues = new JSONArray();
+        for (ProductionQueue queue : this._queues) {
+            int queueIndex = queue.GetQueueIndex();
+            receivedIOValues.put(new JSONArray().put("location" + queueIndex + "OrderReadPointer").put(queue.GetOrderReadPointer()));
+            receivedIOValues.put(new JSONArray().put("location" + queueIndex + "OrderWritePointer").put(queue.GetOrderWritePointer()));
+            receivedIOValues.put(new JSONArray().put("location" + queueIndex + "OrderResultReadPointer").put(queue.GetResultReadPointer()));
+            receivedIOValues.put(new JSONArray().put("location" + queueIndex + "OrderResultWritePointer").put(queue.GetResultWritePointer()));
+        }
+        this._AppendIOValues(receivedIOValues, this._receivedIOValues);
+        JSONArray sentIOValues = new JSONArray();
+        this._AppendIOValues(sentIOValues, this._sentIOValues);
+
+        JSONObject state = new JSONObject();
+        state.put("receivediovalues", receivedIOValues);
+        state.put("sentiovalues", sentIOValues);
+        JSONObject message = new JSONObject();
+        message.put("type", "data");
+        message.put("id", id);
+        message.put("payload", new JSONObject().put("data", new JSONObject().put("SubscribeRobotBridgesState", state)));
+        return message.toString();
+    }
+
+    private void _AppendIOValues(JSONArray ioValues, Map<String, Object> values) {
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            if (this._IsQueuePointer(value.getKey())) {
+                // pointers of simulated queues are published from the queue state
+                continue;
+            }
+            Object ioValue = value.getValue() instanceof Object[] ? new JSONArray((Object[]) value.getValue()) : value.getValue();
+            ioValues.put(new JSONArray().put(value.getKey()).put(ioValue == null ? JSONObject.NULL : ioValue));
+        }
+    }
+
+    /**
+     * @return Whether ioName is one of the location<N>*Pointer IOs of a simulated queue
+     */
+    private boolean _IsQueuePointer(String ioName) {
+        for (String suffix : new String[] {"OrderReadPointer", "OrderWritePointer", "OrderResultReadPointer", "OrderResultWritePointer"}) {
+            if (this._FindQueue(ioName, "location", suffix) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends keep-alive messages to all subscribers.
+     */
+    private void _SendKeepAlive() {
+        for (FakeControllerConnection connection : this._subscribers.keySet()) {
+            connection.SendText("{\"type\":\"ka\"}");
+        }
+    }
+
+    private static long _Delay(long latencyNanos, long jitterNanos) {
+        return latencyNanos + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0);
+    }
+}
@@ -0,0 +1,248 @@
+package com.mujin.fakecontroller;
+
+import java.net.Socket;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.EOFException;
+import java.io.OutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Serves one client socket of the FakeController. Handles keep-alive HTTP/1.1 GraphQL requests, and
+ * WebSocket connections upgraded from HTTP for the subscription.
+ */
+class FakeControllerConnection implements Runnable {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11"; // RFC 6455 handshake GUID
+
+    private FakeController _controller = null; // controller answering the requests
+    private Socket _socket = null; // client socket
+    private InputStream _input = null; // buffered socket input
+    private OutputStream _output = null; // buffered socket output, guarded by this once upgraded to WebSocket
+
+    private static final Logger log = Logger.getLogger(FakeControllerConnection.class.getName());
+
+    FakeControllerConnection(FakeController controller, Socket socket) throws IOException {
+        this._controller = controller;
+        this._socket = socket;
+        this._socket.setTcpNoDelay(true);
+        this._input = new BufferedInputStream(socket.getInputStream());
+        this._output = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                String requestLine = this._ReadLine();
+                if (requestLine == null) {
+                    return;
+                }
+                if (requestLine.isEmpty()) {
+                    continue;
+                }
+                Map<String, String> headers = this._ReadHeaders();
+                if ("websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+                    this._ServeWebSocket(headers);
+                    return;
+                }
+                if (!this._ServeHttp(requestLine, headers)) {
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // client closed the connection
+        } catch (Exception e) {
+            if (!this._socket.isClosed()) {
+                log.fine("Fake controller connection failed: " + e.toString());
+            }
+        } finally {
+            this.Close();
+        }
+    }
+
+    void Close() {
+        try {
+            this._socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * Answers one HTTP request.
+     *
+     * @return Whether the connection should be kept alive
+     */
+    private boolean _ServeHttp(String requestLine, Map<String, String> headers) throws Exception {
+        int contentLength = Integer.parseInt(headers.getOrDefault("content-length", "0"));
+        byte[] body = this._input.readNBytes(contentLength);
+        if (body.length < contentLength) {
+            throw new EOFException();
+        }
+
+        int status = 200;
+        byte[] responseBody = null;
+        if (requestLine.startsWith("POST ") && requestLine.contains("/api/v2/graphql")) {
+            responseBody = this._controller.HandleGraphQLRequest(body);
+        } else {
+            status = 404;
+            responseBody = "{\"errors\":[{\"message\":\"not found\"}]}".getBytes(StandardCharsets.UTF_8);
+        }
+
+        boolean keepAlive = !"close".equalsIgnoreCase(headers.get("connection"));
+        String responseHeaders = "HTTP/1.1 " + status + (status == 200 ? " OK" : " Not Found") + "\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: " + responseBody.length + "\r\n"
+            + (keepAlive ? "" : "Connection: close\r\n")
+            + "\r\n";
+        this._output.write(responseHeaders.getBytes(StandardCharsets.US_ASCII));
+        this._output.write(responseBody);
+        this._output.flush();
+        return keepAlive;
+    }
+
+    /**
+     * Completes the WebSocket handshake and reads client frames until the connection closes.
+     */
+    private void _ServeWebSocket(Map<String, String> headers) throws Exception {
+        String key = headers.get("sec-websocket-key");
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+        String handshake = "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + Base64.getEncoder().encodeToString(digest) + "\r\n"
+            + "\r\n";
+        synchronized (this) {
+            this._output.write(handshake.getBytes(StandardCharsets.US_ASCII));
+            this._output.flush();
+        }
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        try {
+            while (true) {
+                int first = this._ReadByte();
+                int second = this._ReadByte();
+                boolean isFinal = (first & 0x80) != 0;
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) {
+                    length = (this._ReadByte() << 8) | this._ReadByte();
+                } else if (length == 127) {
+                    length = 0;
+                    for (int index = 0; index < 8; index++) {
+                        length = (length << 8) | this._ReadByte();
+                    }
+                }
+                byte[] mask = (second & 0x80) != 0 ? this._input.readNBytes(4) : null;
+                byte[] payload = this._input.readNBytes((int) length);
+                if (payload.length < length) {
+                    throw new EOFException();
+                }
+                if (mask != null) {
+                    for (int index = 0; index < payload.length; index++) {
+                        payload[index] ^= mask[index & 3];
+                    }
+                }
+
+                if (opcode == 0x8) {
+                    // close
+                    this._SendFrame(0x8, payload);
+                    return;
+                } else if (opcode == 0x9) {
+                    // ping
+                    this._SendFrame(0xA, payload);
+                } else if (opcode == 0x1 || opcode == 0x0) {
+                    message.write(payload);
+                    if (isFinal) {
+                        this._controller.HandleSubscriptionMessage(this, message.toString(StandardCharsets.UTF_8));
+                        message.reset();
+                    }
+                }
+            }
+        } finally {
+            this._controller.RemoveSubscriber(this);
+        }
+    }
+
+    /**
+     * Sends a text message to the WebSocket client.
+     *
+     * @param message Message text
+     */
+    void SendText(String message) {
+        try {
+            this._SendFrame(0x1, message.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            this.Close();
+        }
+    }
+
+    private synchronized void _SendFrame(int opcode, byte[] payload) throws IOException {
+        this._output.write(0x80 | opcode);
+        if (payload.length < 126) {
+            this._output.write(payload.length);
+        } else if (payload.length < 65536) {
+            this._output.write(126);
+            this._output.write(payload.length >>> 8);
+            this._output.write(payload.length);
+        } else {
+            this._output.write(127);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                this._output.write((int) ((long) payload.length >>> shift));
+            }
+        }
+        this._output.write(payload);
+        this._output.flush();
+    }
+
+    private Map<String, String> _ReadHeaders() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        String line = null;
+        while ((line = this._ReadLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf(':');
+            if (separator > 0) {
+                headers.put(line.substring(0, separator).trim().toLowerCase(Locale.ROOT), line.substring(separator + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * @return Next CRLF terminated line, or null at the end of the stream
+     */
+    private String _ReadLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int c = this._input.read();
+            if (c < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+    }
+
+    private int _ReadByte() throws IOException {
+        int value = this._input.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,104 @@
+package com.mujin.fakecontroller;
+
+import org.json.JSONObject;
+
+/**
+ * Order and result ring buffers of one production queue, with the location pointers the way a Mujin
+ * controller exposes them. Pointers are 1-based and one slot of each ring is always kept empty.
+ * Not thread-safe, guarded by the owning FakeController.
+ */
+class ProductionQueue {
+
+    private int _queueIndex = 0; // 1-based index of the production queue
+    private Object[] _orders = null; // productionQueue<N>Order entries
+    private Object[] _results = null; // productionQueue<N>Result entries
+
+    private int _orderReadPointer = 1; // location<N>OrderReadPointer, advanced by the controller
+    private int _orderWritePointer = 1; // location<N>OrderWritePointer, advanced by the client
+    private int _resultReadPointer = 1; // location<N>OrderResultReadPointer, advanced by the client
+    private int _resultWritePointer = 1; // location<N>OrderResultWritePointer, advanced by the controller
+
+    private boolean _isProcessing = false; // whether an order is currently being processed
+
+    ProductionQueue(int queueIndex, int queueLength) {
+        this._queueIndex = queueIndex;
+        this._orders = new Object[queueLength];
+        this._results = new Object[queueLength];
+    }
+
+    int GetQueueIndex() {
+        return this._queueIndex;
+    }
+
+    Object[] GetOrders() {
+        return this._orders;
+    }
+
+    Object[] GetResults() {
+        return this._results;
+    }
+
+    int GetOrderReadPointer() {
+        return this._orderReadPointer;
+    }
+
+    int GetOrderWritePointer() {
+        return this._orderWritePointer;
+    }
+
+    int GetResultReadPointer() {
+        return this._resultReadPointer;
+    }
+
+    int GetResultWritePointer() {
+        return this._resultWritePointer;
+    }
+
+    void SetOrderWritePointer(int orderWritePointer) {
+        this._orderWritePointer = orderWritePointer;
+    }
+
+    void SetResultReadPointer(int resultReadPointer) {
+        this._resultReadPointer = resultReadPointer;
+    }
+
+    boolean IsProcessing() {
+        return this._isProcessing;
+    }
+
+    /**
+     * @return Whether there is a queued order and room in the result ring for its result
+     */
+    boolean CanStartOrder() {
+        return !this._isProcessing
+            && this._orderReadPointer != this._orderWritePointer
+            && this._Increment(this._resultWritePointer) != this._resultReadPointer;
+    }
+
+    /**
+     * Takes the next order out of the order ring and advances the order read pointer.
+     *
+     * @return Order entry
+     */
+    JSONObject StartOrder() {
+        Object order = this._orders[this._orderReadPointer - 1];
+        this._orderReadPointer = this._Increment(this._orderReadPointer);
+        this._isProcessing = true;
+        return order instanceof JSONObject ? (JSONObject) order : new JSONObject();
+    }
+
+    /**
+     * Writes the result of the order being processed and advances the result write pointer.
+     *
+     * @param result Order result entry
+     */
+    void FinishOrder(JSONObject result) {
+        this._results[this._resultWritePointer - 1] = result;
+        this._resultWritePointer = this._Increment(this._resultWritePointer);
+        this._isProcessing = false;
+    }
+
+    private int _Increment(int pointerValue) {
+        return pointerValue >= this._orders.length ? 1 : pointerValue + 1;
+    }
+}